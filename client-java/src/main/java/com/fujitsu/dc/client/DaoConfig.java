@@ -16,7 +16,11 @@
  */
 package com.fujitsu.dc.client;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpUriRequest;
 
 import com.fujitsu.dc.client.http.RestAdapter;
 
@@ -32,6 +36,12 @@ public class DaoConfig {
     // /** デフォルトのProxyポート. */
     /** Default proxy Port. */
     public static final int DEFAULT_PROXY_PORT = 8080;
+    /** Default maximum number of pooled connections. */
+    public static final int DEFAULT_MAX_CONNECTIONS_TOTAL = 100;
+    /** Default maximum number of pooled connections per host. */
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 20;
+    /** Default idle time (in milliseconds) after which pooled connections are closed. */
+    public static final long DEFAULT_CONNECTION_IDLE_TIMEOUT = 30000L;
 
     // /** HTTPタイムアウト値. */
     /** HTTP time-out value. */
@@ -58,6 +68,20 @@ public class DaoConfig {
     private String proxyUsername = null;
     /** Proxy password. */
     private String proxyPassword = null;
+    /** Share a pooled, thread-safe HttpClient among DAO calls. */
+    private Boolean connectionPooling = false;
+    /** Maximum number of pooled connections. */
+    private int maxConnectionsTotal = DEFAULT_MAX_CONNECTIONS_TOTAL;
+    /** Maximum number of pooled connections per host. */
+    private int maxConnectionsPerRoute = DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+    /** Idle time (in milliseconds) after which pooled connections are closed. */
+    private long connectionIdleTimeout = DEFAULT_CONNECTION_IDLE_TIMEOUT;
+    /** Public base URL whose requests are sent directly to core. */
+    private String directBaseUrl = null;
+    /** URL of the co-deployed core to which the requests are sent directly. */
+    private String directUrl = null;
+    /** Requests executed on pooled connections, released by releaseConnections. */
+    private List<HttpUriRequest> pooledRequests = new ArrayList<HttpUriRequest>();
 
     // /**
     // * HTTPタイムアウト値を習得.
@@ -238,6 +262,135 @@ public class DaoConfig {
         this.proxyPassword = value;
     }
 
+    /**
+     * This method returns whether a pooled, thread-safe HttpClient is shared among DAO calls.
+     * @return true if connection pooling is enabled
+     */
+    public Boolean getConnectionPooling() {
+        return connectionPooling;
+    }
+
+    /**
+     * This method sets whether a pooled, thread-safe HttpClient is shared among DAO calls. When enabled, keep-alive
+     * connections are reused across RestAdapter calls and releaseConnections must be called when the DAO is no
+     * longer used.
+     * @param value true to enable connection pooling
+     */
+    public void setConnectionPooling(Boolean value) {
+        this.connectionPooling = value;
+    }
+
+    /**
+     * This method returns the maximum number of pooled connections.
+     * @return Maximum number of connections
+     */
+    public int getMaxConnectionsTotal() {
+        return maxConnectionsTotal;
+    }
+
+    /**
+     * This method sets the maximum number of pooled connections.
+     * @param value Maximum number of connections
+     */
+    public void setMaxConnectionsTotal(int value) {
+        if (value <= 0) {
+            throw new IllegalArgumentException("maxConnectionsTotal must be positive");
+        }
+        this.maxConnectionsTotal = value;
+    }
+
+    /**
+     * This method returns the maximum number of pooled connections per host.
+     * @return Maximum number of connections per host
+     */
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    /**
+     * This method sets the maximum number of pooled connections per host.
+     * @param value Maximum number of connections per host
+     */
+    public void setMaxConnectionsPerRoute(int value) {
+        if (value <= 0) {
+            throw new IllegalArgumentException("maxConnectionsPerRoute must be positive");
+        }
+        this.maxConnectionsPerRoute = value;
+    }
+
+    /**
+     * This method returns the idle time after which pooled connections are closed.
+     * @return Idle time (in milliseconds)
+     */
+    public long getConnectionIdleTimeout() {
+        return connectionIdleTimeout;
+    }
+
+    /**
+     * This method sets the idle time after which pooled connections are closed.
+     * @param value Idle time (in milliseconds)
+     */
+    public void setConnectionIdleTimeout(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("connectionIdleTimeout can't be negative");
+        }
+        this.connectionIdleTimeout = value;
+    }
+
+    /**
+     * This method returns the public base URL whose requests are sent directly to core.
+     * @return Public base URL
+     */
+    public String getDirectBaseUrl() {
+        return directBaseUrl;
+    }
+
+    /**
+     * This method returns the URL of the co-deployed core to which the requests are sent directly.
+     * @return Direct URL of core / null if not set
+     */
+    public String getDirectUrl() {
+        return directUrl;
+    }
+
+    /**
+     * This method sets the direct route to core. When core is co-deployed, the requests addressed to the public base
+     * URL are sent to the direct URL without going through the front-end web server.
+     * @param publicBaseUrl Public base URL
+     * @param value Direct URL of core (e.g. http://localhost:8080/dc1-core/). null to disable
+     */
+    public void setDirectRoute(String publicBaseUrl, String value) {
+        if (value != null && !value.endsWith("/")) {
+            value = value + "/";
+        }
+        this.directBaseUrl = publicBaseUrl;
+        this.directUrl = value;
+    }
+
+    /**
+     * This method registers a request executed on a pooled connection.
+     * @param request HTTP request
+     */
+    public void addPooledRequest(HttpUriRequest request) {
+        synchronized (this.pooledRequests) {
+            this.pooledRequests.add(request);
+        }
+    }
+
+    /**
+     * This method aborts the pooled requests whose response body has not been read to the end so that their
+     * connections are released. Connections of responses already consumed or closed have been returned to the pool
+     * and are not affected.
+     */
+    public void releaseConnections() {
+        synchronized (this.pooledRequests) {
+            for (HttpUriRequest request : this.pooledRequests) {
+                request.abort();
+            }
+            this.pooledRequests.clear();
+        }
+    }
+
     // /**
     // * RestAdapterのモッククラスを取得.
     // * @return RestAdapterモッククラス
@@ -379,6 +379,23 @@ public class DcContext {
         config.setHttpClient(value);
     }
 
+    /**
+     * This method sets the URL of the co-deployed core. The requests addressed to the base URL of this context are
+     * sent to it directly without going through the front-end web server.
+     * @param value Direct URL of core (e.g. http://localhost:8080/dc1-core/). null to disable
+     */
+    public final void setDirectUrl(final String value) {
+        config.setDirectRoute(this.baseUrl, value);
+    }
+
+    /**
+     * This method releases the pooled connections used by this context. It is effective only when connection pooling
+     * is enabled in DaoConfig.
+     */
+    public final void releaseConnections() {
+        config.releaseConnections();
+    }
+
     // /**
     // * サーバーのレスポンスから取得したAPIのバージョンを取得.
     // * @return APIのバージョン リクエストを送信するまではnullを返す。 setDcVersionメソッドを利用してバージョンを設定するとnullに初期化される。
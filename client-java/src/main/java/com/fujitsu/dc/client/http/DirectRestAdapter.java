@@ -0,0 +1,90 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.client.http;
+
+import java.io.IOException;
+import java.net.URI;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.methods.HttpUriRequest;
+
+import com.fujitsu.dc.client.Accessor;
+import com.fujitsu.dc.client.DaoConfig;
+
+/**
+ * It creates a new object of DirectRestAdapter. This class sends the requests addressed to the public base URL
+ * directly to the co-deployed core (bypassing the front-end web server), in the same way as the front-end does:
+ * the original host is sent in the Host and X-Forwarded-Host headers, the original scheme in X-Forwarded-Proto and
+ * the original path in X-Forwarded-Path, so that core builds the same URLs and applies the same authorization as for
+ * requests received through the front-end. Requests addressed to other hosts are sent as they are.
+ */
+public class DirectRestAdapter extends RestAdapter {
+
+    /** Header that specifies the original scheme. */
+    static final String X_FORWARDED_PROTO = "X-Forwarded-Proto";
+    /** Header that specifies the original host. */
+    static final String X_FORWARDED_HOST = "X-Forwarded-Host";
+    /** Header that specifies the original path. */
+    static final String X_FORWARDED_PATH = "X-Forwarded-Path";
+
+    /** Public base URL whose requests are sent directly. */
+    private String publicBaseUrl;
+    /** URL of the co-deployed core. */
+    private String directUrl;
+
+    /**
+     * This is the parameterized constructor to initialize various fields.
+     * @param as Accessor
+     */
+    public DirectRestAdapter(Accessor as) {
+        super(as);
+        DaoConfig config = as.getDaoConfig();
+        this.publicBaseUrl = config.getDirectBaseUrl();
+        this.directUrl = config.getDirectUrl();
+    }
+
+    /**
+     * This method executes the HTTP request, sending it directly to core when it is addressed to the public base
+     * URL.
+     * @param httpReq HTTPRequest
+     * @return HttpResponse object
+     * @throws IOException Exception thrown
+     */
+    @Override
+    public HttpResponse execute(HttpUriRequest httpReq) throws IOException {
+        String url = httpReq.getURI().toString();
+        if (!(httpReq instanceof HttpRequestBase) || !url.startsWith(this.publicBaseUrl)) {
+            return super.execute(httpReq);
+        }
+        URI publicUri = httpReq.getURI();
+        String path = publicUri.getRawPath();
+        if (publicUri.getRawQuery() != null) {
+            path = path + "?" + publicUri.getRawQuery();
+        }
+        String host = publicUri.getHost();
+        if (publicUri.getPort() != -1) {
+            host = host + ":" + publicUri.getPort();
+        }
+        ((HttpRequestBase) httpReq).setURI(URI.create(this.directUrl + url.substring(this.publicBaseUrl.length())));
+        httpReq.setHeader("Host", host);
+        httpReq.setHeader(X_FORWARDED_PROTO, publicUri.getScheme());
+        httpReq.setHeader(X_FORWARDED_HOST, publicUri.getHost());
+        httpReq.setHeader(X_FORWARDED_PATH, path);
+        return super.execute(httpReq);
+    }
+}
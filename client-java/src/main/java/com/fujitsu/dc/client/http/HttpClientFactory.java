@@ -22,6 +22,9 @@ import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.UnrecoverableKeyException;
 import java.security.cert.X509Certificate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.SSLContext;
@@ -29,6 +32,7 @@ import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
 
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.params.CookiePolicy;
 import org.apache.http.client.params.HttpClientParams;
 import org.apache.http.conn.ClientConnectionManager;
 import org.apache.http.conn.scheme.PlainSocketFactory;
@@ -38,6 +42,7 @@ import org.apache.http.conn.ssl.SSLSocketFactory;
 import org.apache.http.conn.ssl.X509HostnameVerifier;
 import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.http.impl.conn.SingleClientConnManager;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
 import org.apache.http.params.BasicHttpParams;
 import org.apache.http.params.HttpConnectionParams;
 import org.apache.http.params.HttpParams;
@@ -138,6 +143,79 @@ public class HttpClientFactory extends DefaultHttpClient {
         return hc;
     }
 
+    /** Shared pooled HttpClient instances, keyed by their settings. */
+    private static Map<String, HttpClient> pooledClients = new HashMap<String, HttpClient>();
+    /** Time of the last eviction of idle pooled connections. */
+    private static long lastEviction = 0L;
+
+    /**
+     * This method returns a pooled, thread-safe HttpClient shared by all callers with the same settings. Keep-alive
+     * connections are reused across requests, and idle connections are closed when they exceed the idle timeout.
+     * Response bodies must be read to the end or closed (or the request aborted) to return the connection to the pool.
+     * Because the instance is shared by every DcContext, cookies are neither stored nor sent.
+     * @param type Type of communication
+     * @param connectionTimeout Iime-out value (in milliseconds). Use the default value of 0.
+     * @param maxTotal Maximum number of connections
+     * @param maxPerRoute Maximum number of connections per host
+     * @param idleTimeout Idle time (in milliseconds) after which connections are closed
+     * @return Shared HttpClient instance
+     */
+    public static HttpClient getPooled(final String type, final int connectionTimeout, final int maxTotal,
+            final int maxPerRoute, final long idleTimeout) {
+        String key = type + "," + connectionTimeout + "," + maxTotal + "," + maxPerRoute;
+        synchronized (pooledClients) {
+            HttpClient hc = pooledClients.get(key);
+            if (hc == null) {
+                hc = createPooled(type, connectionTimeout, maxTotal, maxPerRoute);
+                pooledClients.put(key, hc);
+            }
+            long now = System.currentTimeMillis();
+            if (now - lastEviction >= idleTimeout) {
+                for (HttpClient client : pooledClients.values()) {
+                    client.getConnectionManager().closeExpiredConnections();
+                    client.getConnectionManager().closeIdleConnections(idleTimeout, TimeUnit.MILLISECONDS);
+                }
+                lastEviction = now;
+            }
+            return hc;
+        }
+    }
+
+    /**
+     * This method is used to create a pooled, thread-safe HttpClient object.
+     * @param type Type of communication
+     * @param connectionTimeout Iime-out value (in milliseconds). Use the default value of 0.
+     * @param maxTotal Maximum number of connections
+     * @param maxPerRoute Maximum number of connections per host
+     * @return HttpClient class instance that is created
+     */
+    private static HttpClient createPooled(final String type, final int connectionTimeout, final int maxTotal,
+            final int maxPerRoute) {
+        SchemeRegistry schemeRegistry = new SchemeRegistry();
+        if (TYPE_INSECURE.equalsIgnoreCase(type)) {
+            schemeRegistry.register(new Scheme("https", PORTHTTPS, createInsecureSSLSocketFactory()));
+        } else {
+            schemeRegistry.register(new Scheme("https", PORTHTTPS, SSLSocketFactory.getSocketFactory()));
+        }
+        schemeRegistry.register(new Scheme("http", PORTHTTP, PlainSocketFactory.getSocketFactory()));
+        ThreadSafeClientConnManager cm = new ThreadSafeClientConnManager(schemeRegistry);
+        cm.setMaxTotal(maxTotal);
+        cm.setDefaultMaxPerRoute(maxPerRoute);
+        HttpClient hc = new DefaultHttpClient(cm);
+
+        HttpParams params = hc.getParams();
+        int timeout = TIMEOUT;
+        if (connectionTimeout != 0) {
+            timeout = connectionTimeout;
+        }
+        HttpConnectionParams.setConnectionTimeout(params, timeout);
+        HttpConnectionParams.setSoTimeout(params, timeout);
+        HttpClientParams.setRedirecting(params, false);
+        // Do not share cookies of one cell or user with other contexts using the same client
+        HttpClientParams.setCookiePolicy(params, CookiePolicy.IGNORE_COOKIES);
+        return hc;
+    }
+
     // /**
     // * SSLSocketを生成.
     // * @return 生成したSSLSocket
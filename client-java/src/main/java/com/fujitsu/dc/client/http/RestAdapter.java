@@ -28,10 +28,15 @@ import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.CredentialsProvider;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.protocol.ClientContext;
 import org.apache.http.conn.params.ConnRoutePNames;
 import org.apache.http.impl.client.AbstractHttpClient;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
 
 import com.fujitsu.dc.client.Accessor;
 import com.fujitsu.dc.client.DaoConfig;
@@ -50,6 +55,12 @@ public class RestAdapter implements IRestAdapter {
 
     /** HTTPClient. */
     private HttpClient httpClient;
+    /** Whether httpClient is the shared pooled HttpClient. */
+    private boolean pooled = false;
+    /** Proxy applied to each request when the pooled HttpClient is used. */
+    private HttpHost requestProxy = null;
+    /** HTTP context holding the proxy credentials when the pooled HttpClient is used. */
+    private HttpContext httpContext = null;
     // /** アクセス主体. */
     /** Reference to Accessor. */
     private Accessor accessor;
@@ -67,11 +78,30 @@ public class RestAdapter implements IRestAdapter {
         DaoConfig config = accessor.getDaoConfig();
         httpClient = config.getHttpClient();
         if (httpClient == null) {
-            httpClient = HttpClientFactory.create(DcContext.getPlatform(), config.getConnectionTimeout());
+            if (config.getConnectionPooling()) {
+                httpClient = HttpClientFactory.getPooled(DcContext.getPlatform(), config.getConnectionTimeout(),
+                        config.getMaxConnectionsTotal(), config.getMaxConnectionsPerRoute(),
+                        config.getConnectionIdleTimeout());
+                pooled = true;
+            } else {
+                httpClient = HttpClientFactory.create(DcContext.getPlatform(), config.getConnectionTimeout());
+            }
         }
         String proxyHost = config.getProxyHostname();
         int proxyPort = config.getProxyPort();
-        if (proxyHost != null) {
+        if (proxyHost != null && pooled) {
+            // The pooled HttpClient is shared, so the proxy settings are applied per request.
+            requestProxy = new HttpHost(proxyHost, proxyPort);
+            String proxyUsername = config.getProxyUsername();
+            String proxyPassword = config.getProxyPassword();
+            if (proxyUsername != null && proxyPassword != null) {
+                CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
+                credentialsProvider.setCredentials(new AuthScope(proxyHost, proxyPort),
+                        new UsernamePasswordCredentials(proxyUsername, proxyPassword));
+                httpContext = new BasicHttpContext();
+                httpContext.setAttribute(ClientContext.CREDS_PROVIDER, credentialsProvider);
+            }
+        } else if (proxyHost != null) {
             HttpHost proxy = new HttpHost(proxyHost, proxyPort);
             httpClient.getParams().setParameter(ConnRoutePNames.DEFAULT_PROXY, proxy);
             // ID/Passが共にnullでなければ認証Proxyをセット
@@ -639,7 +669,7 @@ public class RestAdapter implements IRestAdapter {
      */
     private DcResponse request(HttpUriRequest httpReq) throws DaoException {
         try {
-            HttpResponse objResponse = httpClient.execute(httpReq);
+            HttpResponse objResponse = this.execute(httpReq);
             DcResponse dcRes = new DcResponse(objResponse);
 
             this.accessor.setResHeaders(objResponse.getAllHeaders());
@@ -653,6 +683,24 @@ public class RestAdapter implements IRestAdapter {
         }
     }
 
+    /**
+     * This method executes the HTTP request. When the pooled HttpClient is used, the proxy settings are applied and the
+     * request is registered so that its connection is released by DaoConfig.releaseConnections.
+     * @param httpReq HTTPRequest
+     * @return HttpResponse object
+     * @throws IOException Exception thrown
+     */
+    public HttpResponse execute(HttpUriRequest httpReq) throws IOException {
+        if (!this.pooled) {
+            return httpClient.execute(httpReq);
+        }
+        if (this.requestProxy != null) {
+            httpReq.getParams().setParameter(ConnRoutePNames.DEFAULT_PROXY, this.requestProxy);
+        }
+        this.accessor.getDaoConfig().addPooledRequest(httpReq);
+        return httpClient.execute(httpReq, this.httpContext);
+    }
+
     // /**
     // * Accessorからトークンを取得する.
     // * @return トークン
@@ -41,13 +41,16 @@ public class RestAdapterFactory {
     // * @return RestAdapter
     // */
     /**
-     * It generate a BatchAdapter or ResrAdapter.
+     * It generate a BatchAdapter or ResrAdapter. A DirectRestAdapter is generated when the direct URL of core is set
+     * in DaoConfig.
      * @param accessor Accessor
      * @return RestAdapter/BatchAdapter
      */
     public static IRestAdapter create(Accessor accessor) {
         if (accessor.isBatchMode()) {
             return accessor.getBatchAdapter();
+        } else if (accessor.getDaoConfig().getDirectUrl() != null) {
+            return (IRestAdapter) new DirectRestAdapter(accessor);
         } else {
             return (IRestAdapter) new RestAdapter(accessor);
         }
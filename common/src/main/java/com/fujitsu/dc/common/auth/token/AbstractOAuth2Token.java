@@ -207,6 +207,15 @@ public abstract class AbstractOAuth2Token {
         return SECS_IN_A_HOUR;
     }
 
+    /**
+     * トークンが失効する日時を返します.
+     * @return 有効期限のリミット(epochからのミリ秒)
+     */
+    public final long expiresAt() {
+        // 有効期限のリミット=認証した時刻＋有効期限
+        return this.issuedAt + this.expiresIn() * MILLISECS_IN_A_SEC;
+    }
+
     /**
      * トークンが失効しているかどうかチェック.
      * @return boolean
@@ -214,10 +223,7 @@ public abstract class AbstractOAuth2Token {
     public final boolean isExpired() {
         long now = new Date().getTime();
 
-        // 有効期限のリミット=認証した時刻＋有効期限
-        long expiresLimit = this.issuedAt + this.expiresIn() * MILLISECS_IN_A_SEC;
-
-        if (now > expiresLimit) {
+        if (now > this.expiresAt()) {
             return true;
         }
         return false;
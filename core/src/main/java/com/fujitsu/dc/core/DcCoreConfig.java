@@ -21,12 +21,15 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fujitsu.dc.common.es.EsRefreshPolicy;
+
 import java.util.Arrays;
 
 /**
@@ -106,6 +109,26 @@ public class DcCoreConfig {
          */
         public static final String BATCH_SLEEP_INTERVAL_IN_MILLIS = KEY_ROOT + "odata.batch.sleepIntervalInMillis";
 
+        /**
+         * $batch処理で並行して実行する取得系リクエストのスレッド数. 1以下の場合は逐次実行する.
+         */
+        public static final String BATCH_PARALLELISM = KEY_ROOT + "odata.batch.parallelism";
+
+        /**
+         * $batch処理で並行して実行する取得系リクエストのスレッド数のデフォルト値.
+         */
+        public static final int DEFAULT_BATCH_PARALLELISM = 4;
+
+        /**
+         * $batch処理で先行して実行した取得系リクエストの結果を保持するバッファサイズ(文字数).
+         */
+        public static final String BATCH_RESPONSE_BUFFER_SIZE = KEY_ROOT + "odata.batch.responseBufferSize";
+
+        /**
+         * $batch処理で先行して実行した取得系リクエストの結果を保持するバッファサイズのデフォルト値(4M文字).
+         */
+        public static final long DEFAULT_BATCH_RESPONSE_BUFFER_SIZE = 4L * 1024L * 1024L;
+
         /**
          * リクエストボディのプロパティの最大要素数.
          */
@@ -203,6 +226,24 @@ public class DcCoreConfig {
          * トークンを暗号化する際に利用している秘密鍵.
          */
         public static final String AUTH_PASSWORD_SALT = KEY_ROOT + "security.auth.password.salt";
+
+        /**
+         * 検証済みトークンのプロセス内キャッシュの最大保持件数.
+         * 0を指定した場合はキャッシュしない。
+         */
+        public static final String TOKEN_CACHE_MAX_ENTRIES = KEY_ROOT + "security.tokenCache.maxEntries";
+
+        /**
+         * Basic認証に成功した認証情報のプロセス内キャッシュの最大保持件数.
+         * 0を指定した場合はキャッシュしない。
+         */
+        public static final String BASIC_AUTH_CACHE_MAX_ENTRIES = KEY_ROOT + "security.basicAuthCache.maxEntries";
+
+        /**
+         * Basic認証に成功した認証情報のプロセス内キャッシュの有効期間(秒).
+         * 他プロセスでのパスワード変更はこの期間が経過するまで反映されない。0を指定した場合はキャッシュしない。
+         */
+        public static final String BASIC_AUTH_CACHE_EXPIRES_IN = KEY_ROOT + "security.basicAuthCache.expiresIn";
     }
 
     /**
@@ -230,6 +271,24 @@ public class DcCoreConfig {
          */
         public static final String RETRY_INTERVAL = KEY_ROOT + "lock.retry.interval";
 
+        /**
+         * ロック取得待ちのモード.
+         * 許容値： notify(同一プロセス内の待ち行列に並び解放通知で起床する), poll(リトライ間隔ごとにスリープして再試行する)
+         */
+        public static final String WAIT_MODE = KEY_ROOT + "lock.wait.mode";
+
+        /**
+         * InProcessのロックのリース期間(s). 期間を超えて解放されないロックは他のリクエストが取得できる. 0の場合は無期限.
+         */
+        public static final String IN_PROCESS_LEASE_IN_SEC = KEY_ROOT + "lock.inProcess.leaseInSec";
+
+        /**
+         * 階層ロックを使用するか否か. trueの場合、単一エンティティ・単一ノードの更新はOData空間・Boxを共有モードでロックし、
+         * 対象のエンティティ・ノードを排他モードでロックする.
+         */
+        public static final String HIERARCHICAL_ENABLED = KEY_ROOT + "lock.hierarchical.enabled";
+        static final int DEFAULT_IN_PROCESS_LEASE_IN_SEC = 0;
+
         /**
          * セルロック取得時のリトライ回数.
          */
@@ -240,6 +299,23 @@ public class DcCoreConfig {
          */
         public static final String CELL_RETRY_INTERVAL = KEY_ROOT + "lock.cell.retry.interval";
 
+        /**
+         * セルの処理状態と参照カウントをプロセス内で管理するか否か.
+         * 有効な場合、共有ストアにはプロセスごとに参照中か否か(リース)のみを反映する。
+         */
+        public static final String CELL_STATE_LOCAL_ENABLED = KEY_ROOT + "lock.cellState.local.enabled";
+
+        /**
+         * プロセス内に保持したセルの処理状態とPCSの動作モードを共有ストアから再取得する間隔(ms).
+         * 0を指定した場合は保持せず、リクエストごとに共有ストアから取得する。
+         */
+        public static final String CELL_STATE_REFRESH_INTERVAL = KEY_ROOT + "lock.cellState.refreshInterval";
+
+        /**
+         * セルへの参照がなくなってから共有ストア上のリースを解放するまでの時間(ms).
+         */
+        public static final String CELL_STATE_LEASE_IDLE = KEY_ROOT + "lock.cellState.leaseIdle";
+
         /**
          * ロックをmemcachedに保持する際のmemcachedホスト名.
          */
@@ -299,6 +375,26 @@ public class DcCoreConfig {
          */
         public static final String RETRY_INTERVAL = KEY_ROOT + "es.retryInterval";
 
+        /**
+         * バルクリクエストを集約する際の1バルクあたりのアクション数の閾値.
+         */
+        public static final String BULK_MAX_ACTIONS = KEY_ROOT + "es.bulk.maxActions";
+
+        /**
+         * バルクリクエストを集約する際の1バルクあたりのバイト数の閾値.
+         */
+        public static final String BULK_MAX_BYTES = KEY_ROOT + "es.bulk.maxBytes";
+
+        /**
+         * 集約中のバルクリクエストを送信するまでの待機時間の閾値(ms).
+         */
+        public static final String BULK_FLUSH_INTERVAL = KEY_ROOT + "es.bulk.flushInterval";
+
+        /**
+         * バルク登録時のリフレッシュ方針(none/wait_for/immediate).
+         */
+        public static final String BULK_REFRESH_POLICY = KEY_ROOT + "es.bulk.refreshPolicy";
+
         /**
          * AuthenticDataStoreの設定.
          */
@@ -353,6 +449,23 @@ public class DcCoreConfig {
              * コネクションプールのvalidationQuery.
              */
             public static final String CP_VALIDATION_QUERY = ADS_ROOT + "jdbc.cp.validationQuery";
+            /**
+             * コネクションプールでPreparedStatementをキャッシュするか否か.
+             */
+            public static final String CP_POOL_PREPARED_STATEMENTS = ADS_ROOT + "jdbc.cp.poolPreparedStatements";
+            /**
+             * コネクションごとにキャッシュするPreparedStatementの最大数.
+             */
+            public static final String CP_MAX_OPEN_PREPARED_STATEMENTS =
+                    ADS_ROOT + "jdbc.cp.maxOpenPreparedStatements";
+            /**
+             * 一括登録/更新で1つのSQLにまとめる行数.
+             */
+            public static final String BULK_ROWS_PER_STATEMENT = ADS_ROOT + "jdbc.bulkRowsPerStatement";
+            /**
+             * ID指定の検索で1つのSQLに指定するID数.
+             */
+            public static final String SEARCH_IDS_PER_STATEMENT = ADS_ROOT + "jdbc.searchIdsPerStatement";
         }
     }
 
@@ -434,6 +547,42 @@ public class DcCoreConfig {
          * 最新のイベントログファイルの格納ディレクトリ.
          */
         public static final String EVENT_LOG_CURRENT_DIR = KEY_ROOT + "event.log.current.dir";
+
+        /**
+         * 検索用のイベントログ(セグメント)の1ブロックに格納するイベントのサイズ(文字数).
+         */
+        public static final String SEGMENT_BLOCK_SIZE = KEY_ROOT + "event.log.segment.blockSize";
+
+        /**
+         * 検索用のイベントログ(セグメント)の1ブロックに格納するイベントのサイズのデフォルト値(64K文字).
+         */
+        public static final int DEFAULT_SEGMENT_BLOCK_SIZE = 65536;
+
+        /**
+         * イベントログの出力を非同期に行うか否か.
+         */
+        public static final String ASYNC_ENABLED = KEY_ROOT + "event.log.async.enabled";
+
+        /**
+         * 非同期出力のキューに保持するイベント数の上限.
+         */
+        public static final String ASYNC_CAPACITY = KEY_ROOT + "event.log.async.capacity";
+
+        /**
+         * 非同期出力で1回に取り出して出力するイベント数の上限.
+         */
+        public static final String ASYNC_BATCH_SIZE = KEY_ROOT + "event.log.async.batchSize";
+
+        /**
+         * 非同期出力のキューが上限に達した場合の動作.
+         * 許容値： block(空きを待つ)/drop(破棄する)
+         */
+        public static final String ASYNC_OVERFLOW_POLICY = KEY_ROOT + "event.log.async.overflowPolicy";
+
+        /**
+         * 非同期出力でまとめて出力したセルのログファイルごとにfsyncを行うか否か.
+         */
+        public static final String ASYNC_FSYNC = KEY_ROOT + "event.log.async.fsync";
     }
 
     /**
@@ -464,6 +613,12 @@ public class DcCoreConfig {
          */
         public static final String SCHEMA_CACHE_ENABLED = KEY_ROOT + "cache.schema.enabled";
 
+        /**
+         * ロール解決結果のキャッシュを有効とするか否か.
+         * 許容値： true/false
+         */
+        public static final String ROLE_CACHE_ENABLED = KEY_ROOT + "cache.role.enabled";
+
         /**
          * memcachedホスト名.
          */
@@ -483,6 +638,22 @@ public class DcCoreConfig {
          * キャッシュ有効期限.
          */
         public static final String MEMCACHED_EXPIRES_IN = KEY_ROOT + "cache.memcached.expiresin";
+
+        /**
+         * プロセス内キャッシュの有効期限(秒).
+         * 0を指定した場合はプロセス内キャッシュを使用しない。
+         */
+        public static final String LOCAL_EXPIRES_IN = KEY_ROOT + "cache.local.expiresin";
+
+        /**
+         * プロセス内キャッシュの最大保持件数.
+         */
+        public static final String LOCAL_MAX_ENTRIES = KEY_ROOT + "cache.local.maxEntries";
+
+        /**
+         * 解析済みスキーマ(EdmDataServices)のプロセス内キャッシュの最大保持件数.
+         */
+        public static final String SCHEMA_METADATA_MAX_ENTRIES = KEY_ROOT + "cache.schema.metadata.maxEntries";
     }
 
     /**
@@ -509,6 +680,21 @@ public class DcCoreConfig {
          * EngineのPathキー.
          */
         public static final String PATH = KEY_ROOT + "engine.path";
+
+        /**
+         * Engineへの接続プールの最大接続数キー.
+         */
+        public static final String CONNECTION_MAX_TOTAL = KEY_ROOT + "engine.connection.maxTotal";
+
+        /**
+         * Engineへの接続プールのホスト毎の最大接続数キー.
+         */
+        public static final String CONNECTION_MAX_PER_ROUTE = KEY_ROOT + "engine.connection.maxPerRoute";
+
+        /**
+         * Engineへの接続プールから接続を取得する際のタイムアウト(ms)キー.
+         */
+        public static final String CONNECTION_POOL_TIMEOUT = KEY_ROOT + "engine.connection.poolTimeout";
     }
 
     /**
@@ -621,6 +807,12 @@ public class DcCoreConfig {
          */
         public static final String REPAIR_ADS_INVOCATION_FILE_PATH = KEY_ROOT + "es.ads.repair.invocationFlagFile";
         static final String DEFAULT_REPAIR_ADS_INVOCATION_FILE_PATH = "/fj/dc-core/invokeRepair";
+
+        /**
+         * OData空間ごとのリペアを並列に実行するスレッド数. 1の場合は並列化せずに逐次実行する。
+         */
+        public static final String REPAIR_PARALLELISM = KEY_ROOT + "es.ads.repair.parallelism";
+        static final int DEFAULT_REPAIR_PARALLELISM = 4;
     }
 
     /**
@@ -641,6 +833,40 @@ public class DcCoreConfig {
         public static final String COUNT_ITERATION = KEY_ROOT + "es.ads.log.count.iteration";
     }
 
+    /**
+     * Adsへの非同期書き込み(ライトビハインド)用の設定.
+     */
+    public static final class AdsWriteBehind {
+        /**
+         * Adsへの書き込みを非同期に行うか否か.
+         */
+        public static final String ENABLED = KEY_ROOT + "es.ads.writeBehind.enabled";
+        /**
+         * Adsへ書き込むスレッド数.
+         */
+        public static final String THREADS = KEY_ROOT + "es.ads.writeBehind.threads";
+        /**
+         * 書き込み待ちとして保持するデータ件数の上限.
+         */
+        public static final String CAPACITY = KEY_ROOT + "es.ads.writeBehind.capacity";
+        /**
+         * 1回のAds書き込みでまとめるデータ件数の上限.
+         */
+        public static final String BATCH_SIZE = KEY_ROOT + "es.ads.writeBehind.batchSize";
+        /**
+         * 書き込み待ちが上限に達した場合の待ち時間(ms). 待ち時間を過ぎた場合は同期で書き込む.
+         */
+        public static final String OFFER_TIMEOUT = KEY_ROOT + "es.ads.writeBehind.offerTimeout";
+        /**
+         * ジャーナルファイルを切り替えるまでの記録件数.
+         */
+        public static final String JOURNAL_SEGMENT_SIZE = KEY_ROOT + "es.ads.writeBehind.journal.segmentSize";
+        /**
+         * shutdown時、書き込み待ちデータの完了待ち時間.
+         */
+        public static final String AWAIT_SHUTDOWN_IN_SEC = KEY_ROOT + "es.ads.writeBehind.awaitShutdownInSec";
+    }
+
     static {
         // 各種メッセージ出力クラスを強制的にロードする
         DcCoreLog.loadConfig();
@@ -921,6 +1147,28 @@ public class DcCoreConfig {
         return DEFAULT_BATCH_SLEEP_INTERVAL;
     }
 
+    /**
+     * @return $batch処理で並行して実行する取得系リクエストのスレッド数
+     */
+    public static int getOdataBatchParallelism() {
+        String value = get(OData.BATCH_PARALLELISM);
+        if (null != value && !value.isEmpty()) {
+            return Integer.valueOf(value);
+        }
+        return OData.DEFAULT_BATCH_PARALLELISM;
+    }
+
+    /**
+     * @return $batch処理で先行して実行した取得系リクエストの結果を保持するバッファサイズ(文字数)
+     */
+    public static long getOdataBatchResponseBufferSize() {
+        String value = get(OData.BATCH_RESPONSE_BUFFER_SIZE);
+        if (null != value && !value.isEmpty()) {
+            return Long.parseLong(value);
+        }
+        return OData.DEFAULT_BATCH_RESPONSE_BUFFER_SIZE;
+    }
+
     /**
      * @return $batch処理を行う際の処理単位間のSleepミリ秒.
      */
@@ -1050,6 +1298,33 @@ public class DcCoreConfig {
         return get(Lock.RETRY_INTERVAL);
     }
 
+    /**
+     * @return ロック取得待ちのモード.
+     */
+    public static String getLockWaitMode() {
+        return get(Lock.WAIT_MODE);
+    }
+
+    /**
+     * @return 階層ロックを使用するか否か.
+     */
+    public static boolean isLockHierarchicalEnabled() {
+        return Boolean.parseBoolean(get(Lock.HIERARCHICAL_ENABLED));
+    }
+
+    /**
+     * @return InProcessのロックのリース期間(s).
+     */
+    public static int getLockInProcessLeaseInSec() {
+        String value = get(Lock.IN_PROCESS_LEASE_IN_SEC);
+        if (null != value && !value.isEmpty()) {
+            return Integer.valueOf(value);
+        } else {
+            // Default値.
+            return Lock.DEFAULT_IN_PROCESS_LEASE_IN_SEC;
+        }
+    }
+
     /**
      * @return セルロック取得時のリトライ回数.
      */
@@ -1064,6 +1339,27 @@ public class DcCoreConfig {
         return get(Lock.CELL_RETRY_INTERVAL);
     }
 
+    /**
+     * @return セルの処理状態と参照カウントをプロセス内で管理するか否か.
+     */
+    public static boolean isCellStateLocalEnabled() {
+        return Boolean.parseBoolean(get(Lock.CELL_STATE_LOCAL_ENABLED));
+    }
+
+    /**
+     * @return プロセス内に保持したセルの処理状態とPCSの動作モードを再取得する間隔(ms).
+     */
+    public static long getCellStateRefreshInterval() {
+        return Long.parseLong(get(Lock.CELL_STATE_REFRESH_INTERVAL));
+    }
+
+    /**
+     * @return セルへの参照がなくなってから共有ストア上のリースを解放するまでの時間(ms).
+     */
+    public static long getCellStateLeaseIdle() {
+        return Long.parseLong(get(Lock.CELL_STATE_LEASE_IDLE));
+    }
+
     /**
      * @return ロックをmemcachedに保持する際のmemcachedホスト名.
      */
@@ -1092,6 +1388,52 @@ public class DcCoreConfig {
         return get(Event.EVENT_LOG_CURRENT_DIR);
     }
 
+    /**
+     * @return 検索用のイベントログ(セグメント)の1ブロックに格納するイベントのサイズ(文字数)
+     */
+    public static int getEventLogSegmentBlockSize() {
+        String value = get(Event.SEGMENT_BLOCK_SIZE);
+        if (null != value && !value.isEmpty()) {
+            return Integer.valueOf(value);
+        }
+        return Event.DEFAULT_SEGMENT_BLOCK_SIZE;
+    }
+
+    /**
+     * @return イベントログの出力を非同期に行うか否か
+     */
+    public static boolean isEventLogAsyncEnabled() {
+        return Boolean.parseBoolean(get(Event.ASYNC_ENABLED));
+    }
+
+    /**
+     * @return 非同期出力のキューに保持するイベント数の上限
+     */
+    public static int getEventLogAsyncCapacity() {
+        return Integer.parseInt(get(Event.ASYNC_CAPACITY));
+    }
+
+    /**
+     * @return 非同期出力で1回に取り出して出力するイベント数の上限
+     */
+    public static int getEventLogAsyncBatchSize() {
+        return Integer.parseInt(get(Event.ASYNC_BATCH_SIZE));
+    }
+
+    /**
+     * @return 非同期出力のキューが上限に達した場合の動作(block/drop)
+     */
+    public static String getEventLogAsyncOverflowPolicy() {
+        return get(Event.ASYNC_OVERFLOW_POLICY);
+    }
+
+    /**
+     * @return 非同期出力でまとめて出力したセルのログファイルごとにfsyncを行うか否か
+     */
+    public static boolean isEventLogAsyncFsyncEnabled() {
+        return Boolean.parseBoolean(get(Event.ASYNC_FSYNC));
+    }
+
     /**
      * ElasticSearchのホスト名の設定値を取得します.
      * @return 設定値
@@ -1196,6 +1538,34 @@ public class DcCoreConfig {
         return get(ES.RETRY_INTERVAL);
     }
 
+    /**
+     * @return バルクリクエストを集約する際の1バルクあたりのアクション数の閾値.
+     */
+    public static int getEsBulkMaxActions() {
+        return Integer.parseInt(get(ES.BULK_MAX_ACTIONS));
+    }
+
+    /**
+     * @return バルクリクエストを集約する際の1バルクあたりのバイト数の閾値.
+     */
+    public static long getEsBulkMaxBytes() {
+        return Long.parseLong(get(ES.BULK_MAX_BYTES));
+    }
+
+    /**
+     * @return 集約中のバルクリクエストを送信するまでの待機時間の閾値(ms).
+     */
+    public static long getEsBulkFlushInterval() {
+        return Long.parseLong(get(ES.BULK_FLUSH_INTERVAL));
+    }
+
+    /**
+     * @return バルク登録時のリフレッシュ方針.
+     */
+    public static EsRefreshPolicy getEsBulkRefreshPolicy() {
+        return EsRefreshPolicy.valueOf(get(ES.BULK_REFRESH_POLICY).toUpperCase(Locale.ENGLISH));
+    }
+
     /**
      * @return barインストールの非同期処理状況の有効期限(s).
      */
@@ -1217,9 +1587,25 @@ public class DcCoreConfig {
         ret.setProperty("maxIdle", get(ES.ADS.CP_MAX_IDLE));
         ret.setProperty("maxWait", get(ES.ADS.CP_MAX_WAIT));
         ret.setProperty("validationQuery", get(ES.ADS.CP_VALIDATION_QUERY));
+        ret.setProperty("poolPreparedStatements", get(ES.ADS.CP_POOL_PREPARED_STATEMENTS));
+        ret.setProperty("maxOpenPreparedStatements", get(ES.ADS.CP_MAX_OPEN_PREPARED_STATEMENTS));
         return ret;
     }
 
+    /**
+     * @return ES ADSへの一括登録/更新で1つのSQLにまとめる行数.
+     */
+    public static int getEsAdsBulkRowsPerStatement() {
+        return Integer.parseInt(get(ES.ADS.BULK_ROWS_PER_STATEMENT));
+    }
+
+    /**
+     * @return ES ADSのID指定の検索で1つのSQLに指定するID数.
+     */
+    public static int getEsAdsSearchIdsPerStatement() {
+        return Integer.parseInt(get(ES.ADS.SEARCH_IDS_PER_STATEMENT));
+    }
+
     /**
      * @return Cacheのタイプ.
      */
@@ -1272,6 +1658,14 @@ public class DcCoreConfig {
         return Boolean.parseBoolean(get(Cache.SCHEMA_CACHE_ENABLED));
     }
 
+    /**
+     * ロール解決結果のキャッシュが有効か否かを返す.
+     * @return 有効な場合はtrue.
+     */
+    public static boolean isRoleCacheEnabled() {
+        return Boolean.parseBoolean(get(Cache.ROLE_CACHE_ENABLED));
+    }
+
     /**
      * @return memcachedキャッシュ有効期限.
      */
@@ -1279,6 +1673,48 @@ public class DcCoreConfig {
         return Integer.parseInt(get(Cache.MEMCACHED_EXPIRES_IN));
     }
 
+    /**
+     * @return プロセス内キャッシュ有効期限(秒).
+     */
+    public static int getCacheLocalExpiresIn() {
+        return Integer.parseInt(get(Cache.LOCAL_EXPIRES_IN));
+    }
+
+    /**
+     * @return プロセス内キャッシュの最大保持件数.
+     */
+    public static int getCacheLocalMaxEntries() {
+        return Integer.parseInt(get(Cache.LOCAL_MAX_ENTRIES));
+    }
+
+    /**
+     * @return 検証済みトークンのプロセス内キャッシュの最大保持件数.
+     */
+    public static int getTokenCacheMaxEntries() {
+        return Integer.parseInt(get(Security.TOKEN_CACHE_MAX_ENTRIES));
+    }
+
+    /**
+     * @return Basic認証に成功した認証情報のプロセス内キャッシュの最大保持件数.
+     */
+    public static int getBasicAuthCacheMaxEntries() {
+        return Integer.parseInt(get(Security.BASIC_AUTH_CACHE_MAX_ENTRIES));
+    }
+
+    /**
+     * @return Basic認証に成功した認証情報のプロセス内キャッシュの有効期間(秒).
+     */
+    public static int getBasicAuthCacheExpiresIn() {
+        return Integer.parseInt(get(Security.BASIC_AUTH_CACHE_EXPIRES_IN));
+    }
+
+    /**
+     * @return 解析済みスキーマのプロセス内キャッシュの最大保持件数.
+     */
+    public static int getCacheSchemaMetadataMaxEntries() {
+        return Integer.parseInt(get(Cache.SCHEMA_METADATA_MAX_ENTRIES));
+    }
+
     /**
      * Engineが有効かどうかを返却する.
      * @return true:Engine有効 / false:Engine無効
@@ -1311,6 +1747,30 @@ public class DcCoreConfig {
         return get(Engine.PATH);
     }
 
+    /**
+     * Engineへの接続プールの最大接続数の設定値を取得します.
+     * @return 設定値
+     */
+    public static int getEngineConnectionMaxTotal() {
+        return Integer.parseInt(get(Engine.CONNECTION_MAX_TOTAL));
+    }
+
+    /**
+     * Engineへの接続プールのホスト毎の最大接続数の設定値を取得します.
+     * @return 設定値
+     */
+    public static int getEngineConnectionMaxPerRoute() {
+        return Integer.parseInt(get(Engine.CONNECTION_MAX_PER_ROUTE));
+    }
+
+    /**
+     * Engineへの接続プールから接続を取得する際のタイムアウト(ms)の設定値を取得します.
+     * @return 設定値
+     */
+    public static long getEngineConnectionPoolTimeout() {
+        return Long.parseLong(get(Engine.CONNECTION_POOL_TIMEOUT));
+    }
+
     /**
      * 本UNITのX509秘密鍵ファイルのパスの設定値を取得します.
      * @return 設定値
@@ -1452,6 +1912,20 @@ public class DcCoreConfig {
         }
     }
 
+    /**
+     * OData空間ごとのリペアを並列に実行するスレッド数.
+     * @return OData空間ごとのリペアを並列に実行するスレッド数.
+     */
+    public static int getAdsRepairParallelism() {
+        String value = get(AdsRepair.REPAIR_PARALLELISM);
+        if (null != value && !value.isEmpty()) {
+            return Integer.valueOf(value);
+        } else {
+            // Default値.
+            return AdsRepair.DEFAULT_REPAIR_PARALLELISM;
+        }
+    }
+
     /**
      * 設定情報をリロードします.
      */
@@ -1544,6 +2018,62 @@ public class DcCoreConfig {
         return Integer.parseInt(get(AdsFailureLog.COUNT_ITERATION));
     }
 
+    /**
+     * Adsへの書き込みを非同期に行うか否かを取得.
+     * @return 非同期に行う場合はtrue
+     */
+    public static boolean isAdsWriteBehindEnabled() {
+        return Boolean.parseBoolean(get(AdsWriteBehind.ENABLED));
+    }
+
+    /**
+     * Adsへ非同期に書き込むスレッド数を取得.
+     * @return スレッド数
+     */
+    public static int getAdsWriteBehindThreads() {
+        return Integer.parseInt(get(AdsWriteBehind.THREADS));
+    }
+
+    /**
+     * Adsへの書き込み待ちとして保持するデータ件数の上限を取得.
+     * @return データ件数の上限
+     */
+    public static int getAdsWriteBehindCapacity() {
+        return Integer.parseInt(get(AdsWriteBehind.CAPACITY));
+    }
+
+    /**
+     * 1回のAds書き込みでまとめるデータ件数の上限を取得.
+     * @return データ件数の上限
+     */
+    public static int getAdsWriteBehindBatchSize() {
+        return Integer.parseInt(get(AdsWriteBehind.BATCH_SIZE));
+    }
+
+    /**
+     * Adsへの書き込み待ちが上限に達した場合の待ち時間(ms)を取得.
+     * @return 待ち時間(ms)
+     */
+    public static long getAdsWriteBehindOfferTimeout() {
+        return Long.parseLong(get(AdsWriteBehind.OFFER_TIMEOUT));
+    }
+
+    /**
+     * Ads書き込みジャーナルファイルを切り替えるまでの記録件数を取得.
+     * @return 記録件数
+     */
+    public static int getAdsWriteBehindJournalSegmentSize() {
+        return Integer.parseInt(get(AdsWriteBehind.JOURNAL_SEGMENT_SIZE));
+    }
+
+    /**
+     * shutdown時、Adsへの書き込み待ちデータの完了待ち時間を取得.
+     * @return 完了待ち時間(秒)
+     */
+    public static long getAdsWriteBehindAwaitShutdownInSec() {
+        return Long.parseLong(get(AdsWriteBehind.AWAIT_SHUTDOWN_IN_SEC));
+    }
+
     /**
      * パスワード認証成功時に、Accountの最終ログイン時刻を更新するか否か().
      * @return true:更新する(デフォルト) false:更新しない
@@ -17,9 +17,13 @@
 package com.fujitsu.dc.core.auth;
 
 import java.net.URI;
-import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.ws.rs.core.UriInfo;
 
@@ -46,7 +50,6 @@ import com.fujitsu.dc.core.DcCoreLog;
 import com.fujitsu.dc.core.auth.OAuth2Helper.AcceptableAuthScheme;
 import com.fujitsu.dc.core.model.Box;
 import com.fujitsu.dc.core.model.Cell;
-import com.fujitsu.dc.core.model.jaxb.Ace;
 import com.fujitsu.dc.core.model.jaxb.Acl;
 import com.fujitsu.dc.core.odata.OEntityWrapper;
 import com.fujitsu.dc.core.rs.cell.AuthResourceUtils;
@@ -68,6 +71,12 @@ public final class AccessContext {
     private String baseUri;
     private InvalidReason invalidReason;
 
+    /**
+     * ACLの評価結果. ACLの評価時に生成し、ロールの変更時に破棄する.
+     * $batchでは取得系リクエストが並行してアクセス制御を行うため、参照を差し替えることで更新する。
+     */
+    private volatile GrantedPrivileges grantedPrivileges;
+
     /**
      * ログ.
      */
@@ -216,6 +225,14 @@ public final class AccessContext {
 
     void addRole(final Role role) {
         this.roles.add(role);
+        clearGrantedPrivileges();
+    }
+
+    /**
+     * ロールの変更に伴い、ACLの評価結果を破棄する.
+     */
+    private void clearGrantedPrivileges() {
+        this.grantedPrivileges = null;
     }
 
     /**
@@ -322,13 +339,19 @@ public final class AccessContext {
         String username = idpw[0];
         String password = idpw[1];
 
-        OEntityWrapper oew = cell.getAccount(username);
-        if (oew == null) {
-            return new AccessContext(TYPE_INVALID, cell, baseUri, InvalidReason.basicAuthFormat);
+        // 認証済みの認証情報であればAccountの検索とパスワードの照合を省略する
+        long generation = BasicAuthCache.generation();
+        String accountId = BasicAuthCache.getAccountId(cell.getId(), username, password);
+        OEntityWrapper oew = null;
+        if (accountId == null) {
+            oew = cell.getAccount(username);
+            if (oew == null) {
+                return new AccessContext(TYPE_INVALID, cell, baseUri, InvalidReason.basicAuthFormat);
+            }
+            accountId = oew.getUuid();
         }
 
         // Accountのロックチェック
-        String accountId = oew.getUuid();
         Boolean isLock = AuthResourceUtils.isLockedAccount(accountId);
         if (isLock) {
             // memcachedのロック時間を更新
@@ -336,11 +359,14 @@ public final class AccessContext {
             return new AccessContext(TYPE_INVALID, cell, baseUri, InvalidReason.basicAuthErrorInAccountLock);
         }
 
-        boolean authnSuccess = cell.authenticateAccount(oew, password);
-        if (!authnSuccess) {
-            // memcachedにロックを作成
-            AuthResourceUtils.registAccountLock(accountId);
-            return new AccessContext(TYPE_INVALID, cell, baseUri, InvalidReason.basicAuthError);
+        if (oew != null) {
+            boolean authnSuccess = cell.authenticateAccount(oew, password);
+            if (!authnSuccess) {
+                // memcachedにロックを作成
+                AuthResourceUtils.registAccountLock(accountId);
+                return new AccessContext(TYPE_INVALID, cell, baseUri, InvalidReason.basicAuthError);
+            }
+            BasicAuthCache.put(cell.getId(), username, password, accountId, generation);
         }
         // 認証して成功なら
         AccessContext ret = new AccessContext(TYPE_BASIC, cell, baseUri);
@@ -384,7 +410,8 @@ public final class AccessContext {
             if (cell != null) {
                 issuer = cell.getUrl();
             }
-            tk = AbstractOAuth2Token.parse(accessToken, issuer, host);
+            // 検証済みのトークンはキャッシュから取得し、復号や署名検証を省略する
+            tk = VerifiedTokenCache.parse(accessToken, issuer, host);
         } catch (TokenParseException e) {
             // パースに失敗したので
             DcCoreLog.Auth.TOKEN_PARSE_ERROR.params(e.getMessage()).writeLog();
@@ -427,7 +454,8 @@ public final class AccessContext {
             CellLocalAccessToken clat = (CellLocalAccessToken) tk;
             ret.accessType = TYPE_LOCAL;
             // ロール情報を取得して詰める。
-            ret.roles = clat.getRoles();
+            // キャッシュしたトークンは共有されるため、ロール情報は複製して詰める
+            ret.roles = new ArrayList<Role>(clat.getRoles());
             ret.subject = tk.getSubject();
             ret.issuer = tk.getIssuer();
         } else if (tk instanceof UnitLocalUnitUserToken) {
@@ -494,91 +522,69 @@ public final class AccessContext {
      * @return boolean
      */
     public boolean requirePrivilege(Acl acl, Privilege resourcePrivilege, String cellUrl) {
-        // ACLが未設定だったらアクセス不可
-        if (acl == null || acl.getAceList() == null) {
-            return false;
-        }
         // Privilegeが未定義だったらアクセス不可
         if (resourcePrivilege == null) {
             return false;
         }
+        return resourcePrivilege.isGrantedBy(getGrantedPrivileges(acl, cellUrl));
+    }
 
-        // ACLからROLE情報を取得し、権限を取得
-        if (acl.getAceList() == null) {
-            return false;
+    /**
+     * ACLでこのアクセスコンテキストのロールに許可されたPrivilegeのビットマスクを返す.
+     * 判定結果はACLごとに保持し、同じリクエスト内で同じACLを評価する場合は再計算しない。
+     * @param acl リソースに設定されているALC
+     * @param cellUrl セルURL
+     * @return 許可されたPrivilegeのビットマスク. ACLが未設定の場合は0
+     */
+    public long getGrantedPrivileges(Acl acl, String cellUrl) {
+        // ACLが未設定だったらアクセス不可
+        if (acl == null || acl.getAceList() == null) {
+            return 0;
         }
-        for (Ace ace : acl.getAceList()) {
-            // 空のaceが設定されている場合はチェックの必要がないためがcontinueする
-            if (ace.getGrantedPrivilegeList().size() == 0 && ace.getPrincipalHref() == null) {
-                continue;
-            }
-            // Principalがallの場合、アクセス可
-            if (ace.getPrincipalAll() != null) {
-                if (requireAcePrivilege(ace.getGrantedPrivilegeList(), resourcePrivilege)) {
-                    return true;
-                }
-                continue;
-            }
-            // Accountに紐付いたRoleが存在しない場合は、アクセス不可
-            if (this.roles == null) {
-                return false;
-            }
-            for (Role role : this.roles) {
-                // 相対パスロールURL対応
-                String principalHref = getPrincipalHrefUrl(acl.getBase(), ace.getPrincipalHref());
-                if (principalHref == null) {
-                    return false;
-                }
-                // ロールに対応している設定を検出
-                if (role.localCreateUrl(cellUrl).equals(principalHref)
-                        && requireAcePrivilege(ace.getGrantedPrivilegeList(), resourcePrivilege)) {
-                    return true;
-                }
-            }
+        GrantedPrivileges granted = this.grantedPrivileges;
+        if (granted == null || !cellUrl.equals(granted.cellUrl)) {
+            // ロールリソースURLはセルURLにより変わるため、判定結果を作り直す
+            granted = new GrantedPrivileges(cellUrl, createRoleUrls(cellUrl));
+            this.grantedPrivileges = granted;
         }
-        return false;
+        return granted.get(acl.getCompiledAcl());
     }
 
-    /**
-     * 必要な権限がACLのPrivilegeに設定されているかチェックする.
-     * @param acePrivileges ACEに設定されたPrivilege設定のリスト
-     * @param Privilege 必要な権限
-     * @return チェック可否
-     */
-    private boolean requireAcePrivilege(List<String> acePrivileges, Privilege resourcePrivilege) {
-        for (String aclPrivilege : acePrivileges) {
-            Privilege priv = Privilege.get(resourcePrivilege.getClass(), aclPrivilege);
-            if (priv != null
-                    && priv.includes(resourcePrivilege)) {
-                // メモ
-                // Privilege.get(${ACLの設定}).includes(${リソースにアクセスするために必要な値})) {
-                return true;
-            }
+    private Set<String> createRoleUrls(String cellUrl) {
+        // Accountに紐付いたRoleが解決できない場合はnull
+        List<Role> roleList = this.roles;
+        if (roleList == null) {
+            return null;
         }
-        return false;
+        Set<String> urls = new HashSet<String>();
+        for (Role role : roleList) {
+            urls.add(role.localCreateUrl(cellUrl));
+        }
+        return Collections.unmodifiableSet(urls);
     }
 
     /**
-     * 設定ロールURLの相対パス解決.
-     * @param base ACLのxml:base属性の値
-     * @param principalHref ACLのprincipal-Href
-     * @return
+     * セルURLに対するACLの評価結果. ロールリソースURLは不変とし、ACLごとの結果はスレッドセーフに保持する.
      */
-    private String getPrincipalHrefUrl(String base, String principalHref) {
-        String result = null;
-        if (base != null && !"".equals(base)) {
-            // 相対パスの解決
-            try {
-                URI url = new URI(base);
-                result = url.resolve(principalHref).toString();
-            } catch (URISyntaxException e) {
-                return null;
+    private static final class GrantedPrivileges {
+        private final String cellUrl;
+        private final Set<String> roleUrls;
+        private final ConcurrentMap<CompiledAcl, Long> byAcl = new ConcurrentHashMap<CompiledAcl, Long>();
+
+        GrantedPrivileges(String cellUrl, Set<String> roleUrls) {
+            this.cellUrl = cellUrl;
+            this.roleUrls = roleUrls;
+        }
+
+        long get(CompiledAcl compiledAcl) {
+            // CompiledAclはequalsを実装しないため、インスタンスごとに保持する
+            Long granted = this.byAcl.get(compiledAcl);
+            if (granted == null) {
+                granted = compiledAcl.getGrantedPrivileges(this.roleUrls);
+                this.byAcl.put(compiledAcl, granted);
             }
-        } else {
-            // xml:baseが未設定の場合、hrefにフルパス設定されていると扱う
-            result = principalHref;
+            return granted;
         }
-        return result;
     }
 
     /**
@@ -733,6 +739,7 @@ public final class AccessContext {
         this.invalidReason = InvalidReason.basicNotAllowed;
         this.subject = null;
         this.roles = new ArrayList<Role>();
+        clearGrantedPrivileges();
     }
 
     /**
@@ -0,0 +1,220 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.auth;
+
+import java.io.UnsupportedEncodingException;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.codec.CharEncoding;
+
+import com.fujitsu.dc.core.DcCoreConfig;
+
+/**
+ * Basic認証に成功した認証情報をプロセス内に短時間キャッシュするクラス.
+ * 同じ認証情報による繰り返しのリクエストでは、Accountの検索とパスワードのハッシュ化を行わない。<br />
+ * キーはCellのIDとAccount名とし、パスワードはプロセスごとに生成した鍵によるHMACのみを保持する。
+ * Accountのロック状態はキャッシュせず、呼び出し側で毎回確認すること。
+ * 自プロセスでのパスワード変更、Accountの更新・削除では{@link #invalidate(String, String)}で破棄する。
+ * 他プロセスでの変更は検知できないため、エントリは有効期間の経過で破棄する.
+ */
+public final class BasicAuthCache {
+
+    private static final int SEGMENTS = 16;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+    private static final char SEPARATOR = '\n';
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final int MAC_KEY_LENGTH = 32;
+    private static final long MILLISECONDS_PER_SECOND = 1000L;
+
+    private static final BasicAuthCache INSTANCE = new BasicAuthCache(
+            DcCoreConfig.getBasicAuthCacheMaxEntries(),
+            DcCoreConfig.getBasicAuthCacheExpiresIn() * MILLISECONDS_PER_SECOND);
+
+    private final Map<String, Entry>[] segments;
+    private final long lifetimeMillis;
+    private final SecretKeySpec macKey;
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * コンストラクタ.
+     * @param maxEntries 最大保持件数. 0以下の場合はキャッシュしない
+     * @param lifetimeMillis エントリの有効期間(ms). 0以下の場合はキャッシュしない
+     */
+    @SuppressWarnings("unchecked")
+    BasicAuthCache(int maxEntries, long lifetimeMillis) {
+        this.lifetimeMillis = lifetimeMillis;
+        byte[] key = new byte[MAC_KEY_LENGTH];
+        new SecureRandom().nextBytes(key);
+        this.macKey = new SecretKeySpec(key, MAC_ALGORITHM);
+        if (maxEntries <= 0 || lifetimeMillis <= 0) {
+            this.segments = null;
+            return;
+        }
+        this.segments = new Map[SEGMENTS];
+        // 分割した領域の合計が最大保持件数を超えないように割り当てる
+        final int segmentMaxEntries = Math.max(maxEntries / SEGMENTS, 1);
+        for (int i = 0; i < SEGMENTS; i++) {
+            this.segments[i] = new LinkedHashMap<String, Entry>(INITIAL_CAPACITY, LOAD_FACTOR, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                    return size() > segmentMaxEntries;
+                }
+            };
+        }
+    }
+
+    /**
+     * キャッシュの世代を返す. 認証前に取得し、{@link #put(String, String, String, String, long)}に渡すこと.
+     * 認証中に破棄が行われた場合、その認証結果はキャッシュされない。
+     * @return キャッシュの世代
+     */
+    public static long generation() {
+        return INSTANCE.generation.get();
+    }
+
+    /**
+     * 認証済みの認証情報に対応するAccountのIDを返す.
+     * @param cellId CellのID
+     * @param username Account名
+     * @param password パスワード
+     * @return AccountのID. キャッシュに存在しない場合、またはパスワードが一致しない場合はnull
+     */
+    public static String getAccountId(String cellId, String username, String password) {
+        return INSTANCE.get(cellId, username, password);
+    }
+
+    /**
+     * 認証に成功した認証情報をキャッシュする.
+     * @param cellId CellのID
+     * @param username Account名
+     * @param password パスワード
+     * @param accountId AccountのID
+     * @param generation 認証前に{@link #generation()}で取得したキャッシュの世代
+     */
+    public static void put(String cellId, String username, String password, String accountId, long generation) {
+        INSTANCE.cache(cellId, username, password, accountId, generation);
+    }
+
+    /**
+     * 指定したAccountの認証情報をキャッシュから破棄する.
+     * @param cellId CellのID
+     * @param username Account名
+     */
+    public static void invalidate(String cellId, String username) {
+        INSTANCE.remove(cellId, username);
+    }
+
+    String get(String cellId, String username, String password) {
+        if (this.segments == null) {
+            return null;
+        }
+        String key = createKey(cellId, username);
+        Map<String, Entry> segment = segmentOf(key);
+        Entry entry;
+        synchronized (segment) {
+            entry = segment.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (System.currentTimeMillis() >= entry.expiresAt) {
+                segment.remove(key);
+                return null;
+            }
+        }
+        // HMACの計算は排他の外で行う
+        if (!MessageDigest.isEqual(entry.passwordMac, mac(key, password))) {
+            return null;
+        }
+        return entry.accountId;
+    }
+
+    void cache(String cellId, String username, String password, String accountId, long gen) {
+        if (this.segments == null) {
+            return;
+        }
+        String key = createKey(cellId, username);
+        Entry entry = new Entry(mac(key, password), accountId, System.currentTimeMillis() + this.lifetimeMillis);
+        Map<String, Entry> segment = segmentOf(key);
+        synchronized (segment) {
+            if (this.generation.get() == gen) {
+                segment.put(key, entry);
+            }
+        }
+    }
+
+    void remove(String cellId, String username) {
+        // 認証中の結果がキャッシュされないよう、破棄の前に世代を進める
+        this.generation.incrementAndGet();
+        if (this.segments == null) {
+            return;
+        }
+        String key = createKey(cellId, username);
+        Map<String, Entry> segment = segmentOf(key);
+        synchronized (segment) {
+            segment.remove(key);
+        }
+    }
+
+    private Map<String, Entry> segmentOf(String key) {
+        return this.segments[(key.hashCode() & Integer.MAX_VALUE) % SEGMENTS];
+    }
+
+    private byte[] mac(String key, String password) {
+        try {
+            Mac m = Mac.getInstance(MAC_ALGORITHM);
+            m.init(this.macKey);
+            // 同じパスワードでもAccountごとに異なる値とする
+            m.update(key.getBytes(CharEncoding.UTF_8));
+            m.update((byte) SEPARATOR);
+            return m.doFinal(password.getBytes(CharEncoding.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String createKey(String cellId, String username) {
+        return cellId + SEPARATOR + username;
+    }
+
+    /**
+     * キャッシュのエントリ.
+     */
+    static final class Entry {
+        private final byte[] passwordMac;
+        private final String accountId;
+        private final long expiresAt;
+
+        Entry(byte[] passwordMac, String accountId, long expiresAt) {
+            this.passwordMac = passwordMac;
+            this.accountId = accountId;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
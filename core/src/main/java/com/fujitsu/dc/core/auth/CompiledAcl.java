@@ -0,0 +1,169 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.auth;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.fujitsu.dc.core.model.jaxb.Ace;
+import com.fujitsu.dc.core.model.jaxb.Acl;
+
+/**
+ * ACLを評価用にコンパイルしたもの.<br />
+ * ACEのPrincipal(ロールリソースURL)ごとに許可されたPrivilegeをビットマスクとして保持する。
+ * xml:baseによる相対パスの解決とPrivilege名の解決はコンパイル時に1回だけ行い、
+ * リクエストごとの判定はロールリソースURLの検索とビット演算のみで行う。
+ * ACLの変更時はACLごと置き換えられるため、インスタンスは不変とする.<br />
+ * ACEを先頭から順に評価していた従来の判定と同じく、以下の場合は後続のACEによる許可を行わない。
+ * <ul>
+ * <li>ロールが解決できない場合は、最初のロール指定のACEより前のPrincipalがallのACEのみ許可する</li>
+ * <li>ロールリソースURLが解決できないACEがある場合は、ロールを持つアクセス主体にはそれより前のACEのみ許可する</li>
+ * </ul>
+ */
+public final class CompiledAcl {
+
+    /** ACEを持たないACL. */
+    static final CompiledAcl EMPTY = new CompiledAcl(0, Collections.<String, Long>emptyMap(), 0, null);
+
+    /** Principalがallのエントリで許可されたPrivilegeのビットマスク. */
+    private final long grantedToAll;
+
+    /** ロールリソースURLごとに許可されたPrivilegeのビットマスク. */
+    private final Map<String, Long> grantedToRoles;
+
+    /** ロールが解決できない場合に許可するPrivilegeのビットマスク. */
+    private final long grantedWithoutRoles;
+
+    /** ロールリソースURLが解決できないACEより前のACEのみをコンパイルしたもの. 該当するACEがない場合はnull. */
+    private final CompiledAcl beforeUnresolvable;
+
+    private CompiledAcl(long grantedToAll, Map<String, Long> grantedToRoles, long grantedWithoutRoles,
+            CompiledAcl beforeUnresolvable) {
+        this.grantedToAll = grantedToAll;
+        this.grantedToRoles = grantedToRoles;
+        this.grantedWithoutRoles = grantedWithoutRoles;
+        this.beforeUnresolvable = beforeUnresolvable;
+    }
+
+    /**
+     * ACLをコンパイルする.
+     * @param acl ACL
+     * @return コンパイルしたACL
+     */
+    public static CompiledAcl compile(Acl acl) {
+        if (acl == null || acl.getAceList() == null) {
+            return EMPTY;
+        }
+        long grantedToAll = 0;
+        Map<String, Long> grantedToRoles = new HashMap<String, Long>();
+        Long grantedWithoutRoles = null;
+        CompiledAcl beforeUnresolvable = null;
+        for (Ace ace : acl.getAceList()) {
+            List<String> privileges = ace.getGrantedPrivilegeList();
+            // 空のaceが設定されている場合はチェックの必要がないため無視する
+            if (privileges.isEmpty() && ace.getPrincipalHref() == null) {
+                continue;
+            }
+            long mask = 0;
+            for (String privilege : privileges) {
+                mask |= Privilege.maskOf(privilege);
+            }
+            if (ace.getPrincipalAll() != null) {
+                grantedToAll |= mask;
+                continue;
+            }
+            if (grantedWithoutRoles == null) {
+                grantedWithoutRoles = grantedToAll;
+            }
+            // 相対パスロールURL対応
+            String principalHref = resolvePrincipalHref(acl.getBase(), ace.getPrincipalHref());
+            if (principalHref == null) {
+                if (beforeUnresolvable == null) {
+                    beforeUnresolvable = new CompiledAcl(grantedToAll, new HashMap<String, Long>(grantedToRoles),
+                            grantedWithoutRoles, null);
+                }
+                continue;
+            }
+            Long current = grantedToRoles.get(principalHref);
+            if (current != null) {
+                mask |= current;
+            }
+            grantedToRoles.put(principalHref, mask);
+        }
+        if (grantedWithoutRoles == null) {
+            grantedWithoutRoles = grantedToAll;
+        }
+        return new CompiledAcl(grantedToAll, grantedToRoles, grantedWithoutRoles, beforeUnresolvable);
+    }
+
+    /**
+     * 指定したロールに許可されたPrivilegeのビットマスクを返す.
+     * @param roleUrls ロールリソースURLの集合. ロールが解決できない場合はnull
+     * @return 許可されたPrivilegeのビットマスク. Principalがallのエントリで許可されたPrivilegeを含む
+     */
+    long getGrantedPrivileges(Set<String> roleUrls) {
+        if (roleUrls == null) {
+            return this.grantedWithoutRoles;
+        }
+        if (roleUrls.isEmpty()) {
+            // ロールを持たない場合は、ロール指定のACEの内容に関わらずPrincipalがallのACEをすべて許可する
+            return this.grantedToAll;
+        }
+        if (this.beforeUnresolvable != null) {
+            return this.beforeUnresolvable.getGrantedPrivileges(roleUrls);
+        }
+        long mask = this.grantedToAll;
+        if (this.grantedToRoles.isEmpty()) {
+            return mask;
+        }
+        for (String roleUrl : roleUrls) {
+            Long granted = this.grantedToRoles.get(roleUrl);
+            if (granted != null) {
+                mask |= granted;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * 設定ロールURLの相対パス解決.
+     * @param base ACLのxml:base属性の値
+     * @param principalHref ACLのprincipal-Href
+     * @return ロールリソースURL. 解決できない場合はnull
+     */
+    private static String resolvePrincipalHref(String base, String principalHref) {
+        if (principalHref == null) {
+            return null;
+        }
+        if (base == null || "".equals(base)) {
+            // xml:baseが未設定の場合、hrefにフルパス設定されていると扱う
+            return principalHref;
+        }
+        try {
+            return new URI(base).resolve(principalHref).toString();
+        } catch (URISyntaxException e) {
+            return null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
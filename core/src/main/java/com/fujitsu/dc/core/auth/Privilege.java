@@ -16,11 +16,18 @@
  */
 package com.fujitsu.dc.core.auth;
 
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * WebDAVACLのPrivilege.
+ * WebDAVACLのPrivilege.<br />
+ * Privilegeごとに一意のビットを割り当て、ACLで許可されたPrivilegeの集合をビットマスクとして扱う。
  */
 public abstract class Privilege {
+    /** ビットマスクとして扱えるPrivilegeの最大数. */
+    private static final int MAX_PRIVILEGES = Long.SIZE - 1;
+    /** 割り当て済みのビット数. */
+    private static final AtomicInteger ASSIGNED_BITS = new AtomicInteger();
+
     private String name;
     /**
      * @return 権限名
@@ -38,12 +45,18 @@ public abstract class Privilege {
 
     private Privilege parent;
 
+    /** このPrivilegeに割り当てたビット. */
+    private final long bit;
+
+    /** このPrivilegeを含むPrivilege(自身と祖先)のビットマスク. */
+    private final long includingMask;
+
     /**
      * コンストラクタ.
      * @param name Privilege名
      */
     Privilege(final String name) {
-        this.name = name;
+        this(name, null);
     }
 
     /**
@@ -54,6 +67,26 @@ public abstract class Privilege {
     Privilege(final String name, final Privilege parent) {
         this.name = name;
         this.parent = parent;
+        int index = ASSIGNED_BITS.getAndIncrement();
+        if (index >= MAX_PRIVILEGES) {
+            throw new IllegalStateException("Too many privileges: " + name);
+        }
+        this.bit = 1L << index;
+        if (parent == null) {
+            this.includingMask = this.bit;
+        } else {
+            this.includingMask = this.bit | parent.includingMask;
+        }
+    }
+
+    /**
+     * 許可されたPrivilegeのビットマスクがこのPrivilegeを含むかどうかを返す.
+     * 許可されたPrivilegeのいずれかが{@link #includes(Privilege)}でこのPrivilegeを含む場合と同じ結果となる。
+     * @param grantedMask 許可されたPrivilegeのビットマスク
+     * @return このPrivilegeを含む場合真
+     */
+    public boolean isGrantedBy(final long grantedMask) {
+        return (grantedMask & this.includingMask) != 0;
     }
 
     /**
@@ -86,4 +119,23 @@ public abstract class Privilege {
             return (T) BoxPrivilege.map.get(privilegeName);
         }
     }
+
+    /**
+     * Privilege名に対応するPrivilegeのビットマスクを返す.
+     * Cell・Boxのいずれに属するPrivilegeかはACLの評価時に判断するため、同名のPrivilegeのビットをすべて立てる。
+     * @param privilegeName Privilege名
+     * @return ビットマスク. 該当するPrivilegeが存在しない場合は0
+     */
+    static long maskOf(String privilegeName) {
+        long mask = 0;
+        Privilege cellPrivilege = CellPrivilege.map.get(privilegeName);
+        if (cellPrivilege != null) {
+            mask |= cellPrivilege.bit;
+        }
+        Privilege boxPrivilege = BoxPrivilege.map.get(privilegeName);
+        if (boxPrivilege != null) {
+            mask |= boxPrivilege.bit;
+        }
+        return mask;
+    }
 }
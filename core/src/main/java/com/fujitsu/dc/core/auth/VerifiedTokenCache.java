@@ -0,0 +1,155 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.auth;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+import com.fujitsu.dc.common.auth.token.AbstractOAuth2Token;
+import com.fujitsu.dc.common.auth.token.AbstractOAuth2Token.TokenDsigException;
+import com.fujitsu.dc.common.auth.token.AbstractOAuth2Token.TokenParseException;
+import com.fujitsu.dc.common.auth.token.AbstractOAuth2Token.TokenRootCrtException;
+import com.fujitsu.dc.core.DcCoreConfig;
+
+/**
+ * パースと署名検証が完了したトークンをプロセス内にキャッシュするクラス.
+ * 同じトークンによる繰り返しのリクエストでは、トークンの復号、SAMLのパース、署名検証を行わない。<br />
+ * キーはトークン文字列、検証時のissuer、Hostのハッシュ値とし、エントリはトークン自身の有効期限で破棄する。
+ * 最大保持件数を超えた場合はLRUで破棄する。ロック競合を避けるため、キーのハッシュ値で分割した領域ごとに排他する。
+ * キャッシュしたトークンは複数のリクエストで共有されるため、変更しないこと。
+ */
+public final class VerifiedTokenCache {
+
+    private static final int SEGMENTS = 16;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+    private static final char SEPARATOR = '\n';
+
+    private static final VerifiedTokenCache INSTANCE = new VerifiedTokenCache(
+            DcCoreConfig.getTokenCacheMaxEntries());
+
+    private final Map<String, Entry>[] segments;
+
+    /**
+     * コンストラクタ.
+     * @param maxEntries 最大保持件数. 0以下の場合はキャッシュしない
+     */
+    @SuppressWarnings("unchecked")
+    VerifiedTokenCache(int maxEntries) {
+        if (maxEntries <= 0) {
+            this.segments = null;
+            return;
+        }
+        this.segments = new Map[SEGMENTS];
+        // 分割した領域の合計が最大保持件数を超えないように割り当てる
+        final int segmentMaxEntries = Math.max(maxEntries / SEGMENTS, 1);
+        for (int i = 0; i < SEGMENTS; i++) {
+            this.segments[i] = new LinkedHashMap<String, Entry>(INITIAL_CAPACITY, LOAD_FACTOR, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                    return size() > segmentMaxEntries;
+                }
+            };
+        }
+    }
+
+    /**
+     * トークン文字列をパースする. 検証済みのトークンがキャッシュに存在する場合はキャッシュから返却する.
+     * @param token Token String
+     * @param issuer Cell Root URL
+     * @param host リクエストヘッダHostの値
+     * @return パースされたトークン
+     * @throws TokenParseException トークンのパースに失敗したときに投げられる例外
+     * @throws TokenDsigException トークンの署名検証に失敗した時に投げられる例外
+     * @throws TokenRootCrtException ルートCA証明書の検証に失敗した時に投げられる例外
+     * @see AbstractOAuth2Token#parse(String, String, String)
+     */
+    public static AbstractOAuth2Token parse(final String token, final String issuer, final String host)
+            throws TokenParseException, TokenDsigException, TokenRootCrtException {
+        return INSTANCE.get(token, issuer, host);
+    }
+
+    AbstractOAuth2Token get(String token, String issuer, String host)
+            throws TokenParseException, TokenDsigException, TokenRootCrtException {
+        if (this.segments == null) {
+            return AbstractOAuth2Token.parse(token, issuer, host);
+        }
+        String key = createKey(token, issuer, host);
+        Map<String, Entry> segment = segmentOf(key);
+        long now = System.currentTimeMillis();
+        synchronized (segment) {
+            Entry entry = segment.get(key);
+            if (entry != null) {
+                if (now < entry.expiresAt) {
+                    return entry.token;
+                }
+                segment.remove(key);
+            }
+        }
+
+        // パースと署名検証は排他の外で行う
+        AbstractOAuth2Token parsed = AbstractOAuth2Token.parse(token, issuer, host);
+        long expiresAt = parsed.expiresAt();
+        if (now < expiresAt) {
+            synchronized (segment) {
+                segment.put(key, new Entry(parsed, expiresAt));
+            }
+        }
+        return parsed;
+    }
+
+    int count() {
+        if (this.segments == null) {
+            return 0;
+        }
+        int count = 0;
+        for (Map<String, Entry> segment : this.segments) {
+            synchronized (segment) {
+                count += segment.size();
+            }
+        }
+        return count;
+    }
+
+    private Map<String, Entry> segmentOf(String key) {
+        return this.segments[(key.hashCode() & Integer.MAX_VALUE) % SEGMENTS];
+    }
+
+    private static String createKey(String token, String issuer, String host) {
+        // トークン文字列そのものはキーとして保持しない
+        StringBuilder sb = new StringBuilder();
+        sb.append(issuer).append(SEPARATOR).append(host).append(SEPARATOR).append(token);
+        return DigestUtils.sha256Hex(sb.toString());
+    }
+
+    /**
+     * キャッシュのエントリ.
+     */
+    static final class Entry {
+        private final AbstractOAuth2Token token;
+        private final long expiresAt;
+
+        Entry(AbstractOAuth2Token token, long expiresAt) {
+            this.token = token;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
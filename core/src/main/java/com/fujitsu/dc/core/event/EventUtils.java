@@ -22,6 +22,7 @@ import java.util.List;
 
 import com.fujitsu.dc.common.es.util.IndexNameEncoder;
 import com.fujitsu.dc.core.DcCoreConfig;
+import com.fujitsu.dc.core.eventlog.EventLogQuery;
 import com.fujitsu.dc.core.model.file.BinaryDataAccessException;
 import com.fujitsu.dc.core.model.file.BinaryDataAccessor;
 import com.fujitsu.dc.core.rs.cell.LogResource;
@@ -126,6 +127,18 @@ public class EventUtils {
             }
         }
 
+        // 検索用のセグメント一覧取得
+        sb = new StringBuilder(logDir);
+        sb.append(EventLogQuery.SEGMENT_DIR);
+        sb.append(File.separator);
+        File segmentDir = new File(sb.toString());
+        if (segmentDir.exists()) {
+            String[] segmentFiles = segmentDir.list();
+            for (String segmentFile : segmentFiles) {
+                logFiles.add(sb.toString() + segmentFile);
+            }
+        }
+
         return logFiles;
     }
 
@@ -29,14 +29,20 @@ import com.fujitsu.dc.core.model.ctl.Event;
  */
 public class DcEventBus {
 
+    /** イベントログ出力用のロガー名. */
+    static final String LOGGER_NAME = "com.fujitsu.dc.core.eventbus";
+    /** イベントログの格納パスを設定するMDCのキー. */
+    static final String MDC_KEY_EVENTLOG_PATH = "eventlog_path";
+
     private static final int IDX_1ST_START = 0;
     private static final int IDX_1ST_END = 2;
     private static final int IDX_2ND_START = 2;
     private static final int IDX_2ND_END = 4;
     private Logger logger;
+    private String path;
 
     private DcEventBus() {
-        this.logger = LoggerFactory.getLogger("com.fujitsu.dc.core.eventbus");
+        this.logger = LoggerFactory.getLogger(LOGGER_NAME);
     }
 
     /**
@@ -48,10 +54,10 @@ public class DcEventBus {
         String unitUserName = getUnitUserName(cell.getOwner());
         String prefix1 = cell.getId().substring(IDX_1ST_START, IDX_1ST_END);
         String prefix2 = cell.getId().substring(IDX_2ND_START, IDX_2ND_END);
-        String path = String.format("%s/%s/%s/%s", unitUserName, prefix1, prefix2, cell.getId());
+        this.path = String.format("%s/%s/%s/%s", unitUserName, prefix1, prefix2, cell.getId());
 
         // MDCにCell名を設定
-        MDC.put("eventlog_path", path);
+        MDC.put(MDC_KEY_EVENTLOG_PATH, this.path);
 
     }
 
@@ -75,13 +81,28 @@ public class DcEventBus {
      * @param event Eventオブジェクト
      */
     public void outputEventLog(Event event) {
+        // 非同期出力が有効な場合は書き込みスレッドに出力を任せる
+        EventLogSink sink = EventLogSink.getInstance();
+        if (sink != null && sink.offer(this.path, event.getLevel(), createLogContent(event))) {
+            return;
+        }
+        MDC.put(MDC_KEY_EVENTLOG_PATH, this.path);
+        log(logger, event.getLevel(), createLogContent(event));
+    }
 
-        if (event.getLevel() == Event.LEVEL.INFO) {
-            logger.info(createLogContent(event));
-        } else if (event.getLevel() == Event.LEVEL.WARN) {
-            logger.warn(createLogContent(event));
-        } else if (event.getLevel() == Event.LEVEL.ERROR) {
-            logger.error(createLogContent(event));
+    /**
+     * ログレベルに応じてログを出力する.
+     * @param logger ロガー
+     * @param level ログレベル
+     * @param content 出力内容
+     */
+    static void log(Logger logger, Event.LEVEL level, String content) {
+        if (level == Event.LEVEL.INFO) {
+            logger.info(content);
+        } else if (level == Event.LEVEL.WARN) {
+            logger.warn(content);
+        } else if (level == Event.LEVEL.ERROR) {
+            logger.error(content);
         }
     }
 
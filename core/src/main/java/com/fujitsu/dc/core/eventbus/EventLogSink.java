@@ -0,0 +1,429 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.eventbus;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.LoggingEvent;
+
+import com.fujitsu.dc.core.DcCoreConfig;
+import com.fujitsu.dc.core.model.ctl.Event;
+import com.fujitsu.dc.core.rs.cell.LogResource;
+
+/**
+ * イベントログの出力を非同期に行うクラス.
+ * 受け付けたイベントは固定長のキューに格納して返却し、書き込みスレッドがまとめて取り出してセルごとに連続して出力する。<br />
+ * キューが上限に達した場合は、設定に応じて空きを待つ(block)か、イベントを破棄する(drop)。
+ * fsyncを有効にした場合は、まとめて出力したセルのログファイルごとに1回だけfsyncを行う.
+ * 出力時刻は受け付け時刻とし、非同期化によってログの日時がずれないようにする。
+ */
+public final class EventLogSink {
+
+    static Logger log = LoggerFactory.getLogger(EventLogSink.class);
+
+    /** キューが上限に達した場合に空きを待つ. */
+    public static final String POLICY_BLOCK = "block";
+    /** キューが上限に達した場合にイベントを破棄する. */
+    public static final String POLICY_DROP = "drop";
+
+    private static final long POLL_MILLIS = 100L;
+    private static final long AWAIT_SHUTDOWN_MILLIS = 10000L;
+    private static final String DEFAULT_LOG = "default.log";
+
+    private static volatile EventLogSink singleton = null;
+
+    private final Appender appender;
+    private final BlockingQueue<Record> queue;
+    private final int batchSize;
+    private final boolean dropOnOverflow;
+    private final boolean fsync;
+    private final Thread thread;
+    private volatile boolean closed = false;
+
+    private final AtomicLong acceptedCount = new AtomicLong();
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong maxPendingCount = new AtomicLong();
+    private long reportedDroppedCount = 0;
+
+    /**
+     * イベントログの出力先.
+     */
+    interface Appender {
+        /**
+         * 同一セルのイベントを出力する.
+         * @param path セルのイベントログの格納パス
+         * @param records 受け付け順のイベント
+         */
+        void append(String path, List<Record> records);
+
+        /**
+         * セルのイベントログをストレージに同期する.
+         * @param path セルのイベントログの格納パス
+         * @throws IOException 同期に失敗した場合
+         */
+        void sync(String path) throws IOException;
+    }
+
+    /**
+     * コンストラクタ.
+     * @param appender 出力先
+     * @param capacity キューに保持するイベント数の上限
+     * @param batchSize 1回に取り出すイベント数の上限
+     * @param dropOnOverflow キューが上限に達した場合にイベントを破棄する場合はtrue
+     * @param fsync 出力ごとにfsyncを行う場合はtrue
+     */
+    EventLogSink(Appender appender, int capacity, int batchSize, boolean dropOnOverflow, boolean fsync) {
+        this.appender = appender;
+        this.queue = new ArrayBlockingQueue<Record>(Math.max(capacity, 1));
+        this.batchSize = Math.max(batchSize, 1);
+        this.dropOnOverflow = dropOnOverflow;
+        this.fsync = fsync;
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        }, "event-log-sink");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * イベントログの非同期出力が有効な場合に、インスタンスを取得する.
+     * @return インスタンス. 非同期出力が無効な場合はnull
+     */
+    public static EventLogSink getInstance() {
+        EventLogSink sink = singleton;
+        if (sink != null || !DcCoreConfig.isEventLogAsyncEnabled()) {
+            return sink;
+        }
+        return createInstance();
+    }
+
+    private static synchronized EventLogSink createInstance() {
+        if (singleton == null && DcCoreConfig.isEventLogAsyncEnabled()) {
+            singleton = new EventLogSink(new LogbackAppender(), DcCoreConfig.getEventLogAsyncCapacity(),
+                    DcCoreConfig.getEventLogAsyncBatchSize(),
+                    POLICY_DROP.equals(DcCoreConfig.getEventLogAsyncOverflowPolicy()),
+                    DcCoreConfig.isEventLogAsyncFsyncEnabled());
+            singleton.start();
+        }
+        return singleton;
+    }
+
+    /**
+     * インスタンスを停止する.
+     * キューに残ったイベントの出力完了を待つ。
+     */
+    public static synchronized void shutdownInstance() {
+        if (singleton != null) {
+            singleton.shutdown(AWAIT_SHUTDOWN_MILLIS);
+            singleton = null;
+        }
+    }
+
+    /**
+     * 書き込みスレッドを開始する.
+     */
+    void start() {
+        this.thread.start();
+    }
+
+    /**
+     * イベントを受け付ける.
+     * @param path セルのイベントログの格納パス
+     * @param level ログレベル
+     * @param message 出力内容
+     * @return 受け付けた、または破棄した場合はtrue. 停止中などで受け付けなかった場合はfalseを返すため、呼び出し元で同期の出力を行うこと
+     */
+    public boolean offer(String path, Event.LEVEL level, String message) {
+        if (closed) {
+            return false;
+        }
+        Record record = new Record(path, level, message, System.currentTimeMillis());
+        if (dropOnOverflow) {
+            if (!queue.offer(record)) {
+                droppedCount.incrementAndGet();
+                return true;
+            }
+        } else {
+            try {
+                // 停止された場合に待ち続けないよう、一定間隔で停止を確認する
+                while (!queue.offer(record, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    if (closed) {
+                        return false;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        acceptedCount.incrementAndGet();
+        long pending = queue.size();
+        long max = maxPendingCount.get();
+        while (pending > max && !maxPendingCount.compareAndSet(max, pending)) {
+            max = maxPendingCount.get();
+        }
+        return true;
+    }
+
+    /**
+     * @return キューで出力を待っているイベント数
+     */
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+    /**
+     * @return キューで出力を待っていたイベント数の最大値
+     */
+    public long getMaxPendingCount() {
+        return maxPendingCount.get();
+    }
+
+    /**
+     * @return 受け付けたイベント数
+     */
+    public long getAcceptedCount() {
+        return acceptedCount.get();
+    }
+
+    /**
+     * @return 出力したイベント数
+     */
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    /**
+     * @return キューが上限に達したために破棄したイベント数
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * @return 出力に失敗したイベント数
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * 受け付けを停止し、キューに残ったイベントの出力完了を待つ.
+     * @param awaitMillis 出力完了の待ち時間(ms)
+     */
+    void shutdown(long awaitMillis) {
+        closed = true;
+        try {
+            thread.join(awaitMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            log.warn("event log sink did not finish in time. pending: " + queue.size());
+            thread.interrupt();
+        }
+    }
+
+    private void drain() {
+        List<Record> batch = new ArrayList<Record>(batchSize);
+        while (true) {
+            Record first;
+            try {
+                first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                log.warn("event log sink is interrupted. pending: " + queue.size());
+                return;
+            }
+            if (first == null) {
+                // 停止後はキューが空になるまで出力してから終了する
+                if (closed) {
+                    return;
+                }
+                continue;
+            }
+            batch.add(first);
+            queue.drainTo(batch, batchSize - 1);
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * 取り出したイベントをセルごとにまとめて出力する. セル内の順序は受け付け順とする.
+     * @param batch 取り出したイベント
+     */
+    void write(List<Record> batch) {
+        Map<String, List<Record>> byPath = new LinkedHashMap<String, List<Record>>();
+        for (Record record : batch) {
+            List<Record> records = byPath.get(record.path);
+            if (records == null) {
+                records = new ArrayList<Record>();
+                byPath.put(record.path, records);
+            }
+            records.add(record);
+        }
+        for (Map.Entry<String, List<Record>> entry : byPath.entrySet()) {
+            List<Record> records = entry.getValue();
+            try {
+                appender.append(entry.getKey(), records);
+                writtenCount.addAndGet(records.size());
+            } catch (RuntimeException e) {
+                failedCount.addAndGet(records.size());
+                log.warn("Failed to write event log. [" + entry.getKey() + "]", e);
+                continue;
+            }
+            if (fsync) {
+                try {
+                    appender.sync(entry.getKey());
+                } catch (IOException e) {
+                    log.warn("Failed to sync event log. [" + entry.getKey() + "]", e);
+                }
+            }
+        }
+
+        long dropped = droppedCount.get();
+        if (dropped > reportedDroppedCount) {
+            log.warn("event log sink queue is full. dropped: " + (dropped - reportedDroppedCount));
+            reportedDroppedCount = dropped;
+        }
+    }
+
+    /**
+     * 受け付けたイベント.
+     */
+    static final class Record {
+        private final String path;
+        private final Event.LEVEL level;
+        private final String message;
+        private final long timeStamp;
+
+        Record(String path, Event.LEVEL level, String message, long timeStamp) {
+            this.path = path;
+            this.level = level;
+            this.message = message;
+            this.timeStamp = timeStamp;
+        }
+
+        String getPath() {
+            return path;
+        }
+
+        Event.LEVEL getLevel() {
+            return level;
+        }
+
+        String getMessage() {
+            return message;
+        }
+
+        long getTimeStamp() {
+            return timeStamp;
+        }
+    }
+
+    /**
+     * Logbackへ出力するAppender.
+     * 出力先のファイルはセルごとにSiftingAppenderで振り分けられる。
+     */
+    static final class LogbackAppender implements Appender {
+        private static final String FQCN = LogbackAppender.class.getName();
+        private final Logger logger = LoggerFactory.getLogger(DcEventBus.LOGGER_NAME);
+
+        @Override
+        public void append(String path, List<Record> records) {
+            if (logger instanceof ch.qos.logback.classic.Logger) {
+                appendEvents((ch.qos.logback.classic.Logger) logger, path, records);
+                return;
+            }
+            MDC.put(DcEventBus.MDC_KEY_EVENTLOG_PATH, path);
+            try {
+                for (Record record : records) {
+                    DcEventBus.log(logger, record.level, record.message);
+                }
+            } finally {
+                MDC.remove(DcEventBus.MDC_KEY_EVENTLOG_PATH);
+            }
+        }
+
+        /**
+         * ログの日時を受け付け時刻とするため、LoggingEventを生成して出力する.
+         */
+        private void appendEvents(ch.qos.logback.classic.Logger logbackLogger, String path, List<Record> records) {
+            Map<String, String> mdc = new HashMap<String, String>();
+            mdc.put(DcEventBus.MDC_KEY_EVENTLOG_PATH, path);
+            for (Record record : records) {
+                Level level = toLogbackLevel(record.level);
+                if (level == null || !logbackLogger.isEnabledFor(level)) {
+                    continue;
+                }
+                LoggingEvent event = new LoggingEvent(FQCN, logbackLogger, level, record.message, null, null);
+                event.setTimeStamp(record.timeStamp);
+                event.setMDCPropertyMap(mdc);
+                logbackLogger.callAppenders(event);
+            }
+        }
+
+        private static Level toLogbackLevel(Event.LEVEL level) {
+            if (level == Event.LEVEL.INFO) {
+                return Level.INFO;
+            } else if (level == Event.LEVEL.WARN) {
+                return Level.WARN;
+            } else if (level == Event.LEVEL.ERROR) {
+                return Level.ERROR;
+            }
+            return null;
+        }
+
+        @Override
+        public void sync(String path) throws IOException {
+            StringBuilder sb = new StringBuilder(DcCoreConfig.getEventLogCurrentDir());
+            sb.append(File.separator).append(path);
+            sb.append(File.separator).append(LogResource.CURRENT_COLLECTION);
+            sb.append(File.separator).append(DEFAULT_LOG);
+            File file = new File(sb.toString());
+            if (!file.isFile()) {
+                return;
+            }
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                raf.getFD().sync();
+            } finally {
+                raf.close();
+            }
+        }
+    }
+}
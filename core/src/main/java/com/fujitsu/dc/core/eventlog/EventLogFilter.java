@@ -0,0 +1,181 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.eventlog;
+
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * イベントログの検索条件.
+ * 日時の範囲と、subject、action、object、resultの完全一致で絞り込む。未指定の条件は絞り込みに使用しない.
+ */
+public class EventLogFilter {
+
+    // イベントログの各項目の位置({日時},[{レベル}],requestKey,name,schema,subject,action,object,result)
+    private static final int IDX_SUBJECT = 5;
+    private static final int IDX_ACTION = 6;
+    private static final int IDX_OBJECT = 7;
+    private static final int IDX_RESULT = 8;
+
+    private long since = Long.MIN_VALUE;
+    private long until = Long.MAX_VALUE;
+    private String subject;
+    private String action;
+    private String object;
+    private String result;
+
+    /**
+     * 検索範囲に指定された日時をパースする.
+     * @param value エポックミリ秒、またはイベントログの日時の形式(yyyy-MM-dd'T'HH:mm:ss.SSS'Z')の文字列
+     * @return エポックミリ秒. 形式が不正な場合はIllegalArgumentExceptionをスローする
+     */
+    public static long parseTime(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            SimpleDateFormat format = new SimpleDateFormat(EventLogReader.TIMESTAMP_PATTERN);
+            format.setTimeZone(TimeZone.getTimeZone("UTC"));
+            format.setLenient(false);
+            ParsePosition position = new ParsePosition(0);
+            Date date = format.parse(value, position);
+            if (date == null || position.getIndex() != value.length()) {
+                throw new IllegalArgumentException("Invalid time: " + value, e);
+            }
+            return date.getTime();
+        }
+    }
+
+    /**
+     * @param since 検索範囲の開始日時(エポックミリ秒、この日時を含む)
+     */
+    public void setSince(long since) {
+        this.since = since;
+    }
+
+    /**
+     * @param until 検索範囲の終了日時(エポックミリ秒、この日時を含まない)
+     */
+    public void setUntil(long until) {
+        this.until = until;
+    }
+
+    /**
+     * @param subject 検索するsubject
+     */
+    public void setSubject(String subject) {
+        this.subject = subject;
+    }
+
+    /**
+     * @param action 検索するaction
+     */
+    public void setAction(String action) {
+        this.action = action;
+    }
+
+    /**
+     * @param object 検索するobject
+     */
+    public void setObject(String object) {
+        this.object = object;
+    }
+
+    /**
+     * @param result 検索するresult
+     */
+    public void setResult(String result) {
+        this.result = result;
+    }
+
+    /**
+     * 指定された日時の範囲が検索範囲と重なるかを判定する.
+     * @param minTime 範囲の開始日時
+     * @param maxTime 範囲の終了日時
+     * @return 重なる場合はtrue
+     */
+    boolean overlaps(long minTime, long maxTime) {
+        return minTime < this.until && maxTime >= this.since;
+    }
+
+    /**
+     * イベントが検索条件に一致するかを判定する.
+     * @param time イベントの日時
+     * @param event イベント
+     * @return 一致する場合はtrue
+     */
+    boolean matches(long time, String event) {
+        if (time < this.since || time >= this.until) {
+            return false;
+        }
+        if (this.subject == null && this.action == null && this.object == null && this.result == null) {
+            return true;
+        }
+        List<String> fields = parseFields(event);
+        return matches(this.subject, fields, IDX_SUBJECT)
+                && matches(this.action, fields, IDX_ACTION)
+                && matches(this.object, fields, IDX_OBJECT)
+                && matches(this.result, fields, IDX_RESULT);
+    }
+
+    private static boolean matches(String expected, List<String> fields, int index) {
+        if (expected == null) {
+            return true;
+        }
+        return index < fields.size() && expected.equals(fields.get(index));
+    }
+
+    /**
+     * CSV形式のイベントを項目に分割する. ダブルクォートで囲まれた項目はエスケープを解除する.
+     * @param event イベント
+     * @return 項目のリスト
+     */
+    static List<String> parseFields(String event) {
+        List<String> fields = new ArrayList<String>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        int length = event.length();
+        if (length > 0 && event.charAt(length - 1) == '\n') {
+            length--;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = event.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < length && event.charAt(i + 1) == '"') {
+                    field.append(c);
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
@@ -0,0 +1,227 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.eventlog;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.CharEncoding;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fujitsu.dc.core.DcCoreConfig;
+import com.fujitsu.dc.core.DcCoreException;
+import com.fujitsu.dc.core.event.EventUtils;
+import com.fujitsu.dc.core.rs.cell.LogResource;
+
+/**
+ * イベントログの検索を行うクラス.
+ * <p>
+ * アーカイブされたイベントログ(default.log.{timestamp}.zip)は、初回の検索時にセグメント({@link EventLogSegment})へ変換して
+ * segmentディレクトリに保持し、以降の検索では日時の範囲と重なるブロックのみを読み込む。
+ * アーカイブファイル自体は変更しないため、ローテートやファイル単位の取得には影響しない。
+ * </p>
+ */
+public class EventLogQuery {
+
+    static Logger log = LoggerFactory.getLogger(EventLogQuery.class);
+
+    /** セグメントファイルを格納するディレクトリ名. */
+    public static final String SEGMENT_DIR = "segment";
+
+    private static final String ARCHIVE_PREFIX = "default.log.";
+    private static final String ARCHIVE_SUFFIX = ".zip";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String CURRENT_LOG = "default.log";
+
+    private final String logDir;
+    private final EventLogFilter filter;
+    private List<File> segments = Collections.emptyList();
+
+    /**
+     * コンストラクタ.
+     * @param cellId CellのID
+     * @param owner Cellのオーナー
+     * @param filter 検索条件
+     */
+    public EventLogQuery(String cellId, String owner, EventLogFilter filter) {
+        this(EventUtils.getEventLogDir(cellId, owner).toString(), filter);
+    }
+
+    /**
+     * コンストラクタ.
+     * @param logDir Cellのイベントログの格納ディレクトリ
+     * @param filter 検索条件
+     */
+    EventLogQuery(String logDir, EventLogFilter filter) {
+        this.logDir = logDir;
+        this.filter = filter;
+    }
+
+    /**
+     * アーカイブの検索を準備する.
+     * セグメントが存在しない、またはアーカイブファイルより古いアーカイブファイルのセグメントを作成し、アーカイブファイルが削除されたセグメントを削除する。
+     * レスポンスの出力前にエラーを検出できるよう、検索の前に呼び出す。
+     */
+    public void prepare() {
+        File archiveDir = new File(this.logDir, LogResource.ARCHIVE_COLLECTION);
+        File segmentDir = new File(this.logDir, SEGMENT_DIR);
+        File[] archives = archiveDir.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(ARCHIVE_PREFIX) && name.endsWith(ARCHIVE_SUFFIX);
+            }
+        });
+        if (archives == null) {
+            archives = new File[0];
+        }
+        // 古いアーカイブから順に検索する
+        Arrays.sort(archives, new Comparator<File>() {
+            @Override
+            public int compare(File o1, File o2) {
+                long t1 = getTimestamp(o1.getName());
+                long t2 = getTimestamp(o2.getName());
+                if (t1 < t2) {
+                    return -1;
+                } else if (t1 > t2) {
+                    return 1;
+                }
+                return o1.getName().compareTo(o2.getName());
+            }
+        });
+
+        int blockSize = DcCoreConfig.getEventLogSegmentBlockSize();
+        List<File> prepared = new ArrayList<File>();
+        Set<String> names = new HashSet<String>();
+        for (File archive : archives) {
+            String name = archive.getName();
+            File segment = new File(segmentDir, name.substring(0, name.length() - ARCHIVE_SUFFIX.length())
+                    + SEGMENT_SUFFIX);
+            if (!segment.isFile() || segment.lastModified() < archive.lastModified()) {
+                buildSegment(archive, segment, blockSize);
+            }
+            prepared.add(segment);
+            names.add(segment.getName());
+        }
+        pruneSegments(segmentDir, names);
+        this.segments = prepared;
+    }
+
+    /**
+     * アーカイブされたイベントログから検索条件に一致するイベントを古い順に書き込む.
+     * @param writer 書き込み先
+     * @throws IOException 読み込みまたは書き込みに失敗した場合
+     */
+    public void queryArchive(Writer writer) throws IOException {
+        for (File file : this.segments) {
+            EventLogSegment segment;
+            try {
+                segment = EventLogSegment.open(file);
+            } catch (FileNotFoundException e) {
+                // 検索中にローテートでアーカイブとともに削除された場合
+                continue;
+            }
+            if (this.filter.overlaps(segment.getMinTime(), segment.getMaxTime())) {
+                segment.query(this.filter, writer);
+            }
+        }
+    }
+
+    /**
+     * 最新のイベントログから検索条件に一致するイベントを書き込む.
+     * 最新のイベントログは書き込み中のためセグメントを作成せず、先頭から読み込む。
+     * @param writer 書き込み先
+     * @throws IOException 読み込みまたは書き込みに失敗した場合
+     */
+    public void queryCurrent(Writer writer) throws IOException {
+        File current = new File(new File(this.logDir, LogResource.CURRENT_COLLECTION), CURRENT_LOG);
+        if (!current.isFile() || !current.canRead()) {
+            return;
+        }
+        Reader reader = null;
+        try {
+            reader = new InputStreamReader(new FileInputStream(current), CharEncoding.UTF_8);
+            EventLogReader events = new EventLogReader(reader);
+            while (events.next()) {
+                if (this.filter.matches(events.getTime(), events.getEvent())) {
+                    writer.write(events.getEvent());
+                }
+            }
+        } catch (FileNotFoundException e) {
+            // ローテート中の場合は空とする
+            return;
+        } finally {
+            IOUtils.closeQuietly(reader);
+        }
+    }
+
+    private static void buildSegment(File archive, File segment, int blockSize) {
+        ZipArchiveInputStream zipArchiveInputStream = null;
+        try {
+            log.info("Build EventLog segment : " + segment.getPath());
+            zipArchiveInputStream = new ZipArchiveInputStream(new BufferedInputStream(new FileInputStream(archive)));
+            // 圧縮ログファイル内には1ファイルのみ格納されていることを前提としている
+            if (zipArchiveInputStream.getNextZipEntry() == null) {
+                throw DcCoreException.Event.ARCHIVE_FILE_CANNOT_OPEN;
+            }
+            EventLogSegment.build(new InputStreamReader(zipArchiveInputStream, CharEncoding.UTF_8), segment,
+                    blockSize);
+        } catch (IOException e) {
+            log.info("Failed to build EventLog segment : " + e.getMessage());
+            throw DcCoreException.Event.ARCHIVE_FILE_CANNOT_OPEN;
+        } finally {
+            IOUtils.closeQuietly(zipArchiveInputStream);
+        }
+    }
+
+    private static void pruneSegments(File segmentDir, Set<String> names) {
+        File[] files = segmentDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.getName().endsWith(SEGMENT_SUFFIX) && !names.contains(file.getName()) && !file.delete()) {
+                log.info("Failed to delete EventLog segment : " + file.getPath());
+            }
+        }
+    }
+
+    private static long getTimestamp(String name) {
+        String timestamp = name.substring(ARCHIVE_PREFIX.length(), name.length() - ARCHIVE_SUFFIX.length());
+        try {
+            return Long.parseLong(timestamp);
+        } catch (NumberFormatException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+}
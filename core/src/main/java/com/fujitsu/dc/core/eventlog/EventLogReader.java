@@ -0,0 +1,117 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.eventlog;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * イベントログを1イベントずつ読み込むクラス.
+ * <p>
+ * イベントログの各行は「{UTC日時},[{レベル}],{CSV形式のイベント}」の形式で出力される。
+ * 日時で始まらない行は、イベントの項目に含まれる改行として直前のイベントに連結する。
+ * </p>
+ */
+class EventLogReader {
+
+    /** イベントログの日時の書式. */
+    static final String TIMESTAMP_PATTERN = "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'";
+    private static final int TIMESTAMP_LENGTH = 24;
+
+    private final BufferedReader reader;
+    private final SimpleDateFormat format;
+    private String nextLine;
+    private long nextTime;
+    private long time;
+    private String event;
+
+    /**
+     * コンストラクタ.
+     * @param reader イベントログ
+     */
+    EventLogReader(Reader reader) {
+        this.reader = new BufferedReader(reader);
+        this.format = new SimpleDateFormat(TIMESTAMP_PATTERN);
+        this.format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        this.format.setLenient(false);
+    }
+
+    /**
+     * 次のイベントを読み込む.
+     * @return イベントがある場合はtrue
+     * @throws IOException 読み込みに失敗した場合
+     */
+    boolean next() throws IOException {
+        if (this.nextLine == null) {
+            this.nextLine = this.reader.readLine();
+            if (this.nextLine == null) {
+                return false;
+            }
+            this.nextTime = parseTime(this.nextLine);
+        }
+        StringBuilder builder = new StringBuilder(this.nextLine).append('\n');
+        this.time = this.nextTime;
+        while (true) {
+            this.nextLine = this.reader.readLine();
+            if (this.nextLine == null) {
+                break;
+            }
+            this.nextTime = parseTime(this.nextLine);
+            if (this.nextTime >= 0) {
+                break;
+            }
+            builder.append(this.nextLine).append('\n');
+        }
+        this.event = builder.toString();
+        if (this.time < 0) {
+            // 日時で始まらない先頭行は、日時不明のイベントとして扱う
+            this.time = 0;
+        }
+        return true;
+    }
+
+    /**
+     * @return 読み込んだイベントの日時(エポックミリ秒)
+     */
+    long getTime() {
+        return this.time;
+    }
+
+    /**
+     * @return 読み込んだイベント(改行を含む)
+     */
+    String getEvent() {
+        return this.event;
+    }
+
+    private long parseTime(String line) {
+        if (line.length() <= TIMESTAMP_LENGTH || line.charAt(TIMESTAMP_LENGTH) != ',') {
+            return -1;
+        }
+        ParsePosition position = new ParsePosition(0);
+        Date date = this.format.parse(line.substring(0, TIMESTAMP_LENGTH), position);
+        if (date == null || position.getIndex() != TIMESTAMP_LENGTH) {
+            return -1;
+        }
+        return date.getTime();
+    }
+}
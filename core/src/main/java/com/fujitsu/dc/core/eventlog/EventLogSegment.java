@@ -0,0 +1,274 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.eventlog;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.CharEncoding;
+
+/**
+ * 日時で範囲検索できる形式に変換したイベントログ(セグメント).
+ * <p>
+ * イベントをブロック単位に分割してブロックごとに圧縮し、ブロックごとの日時の範囲を疎なインデックスとして末尾に保持する。
+ * 検索時はインデックスから検索範囲と重なるブロックのみを読み込んで展開する。
+ * </p>
+ * <pre>
+ * ファイル形式
+ *   ヘッダ     : MAGIC(int) VERSION(int)
+ *   ブロック   : Deflate圧縮したイベント(UTF-8) × ブロック数
+ *   インデックス: ブロック数(int) {最小日時(long) 最大日時(long) オフセット(long) 長さ(int) イベント数(int)} × ブロック数
+ *   フッタ     : インデックスのオフセット(long) MAGIC(int)
+ * </pre>
+ */
+public final class EventLogSegment {
+
+    /** セグメントファイルの識別子("DCSG"). */
+    static final int MAGIC = 0x44435347;
+    /** セグメントファイルの形式のバージョン. */
+    static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int FOOTER_SIZE = 12;
+
+    private final File file;
+    private final List<Block> blocks;
+
+    private EventLogSegment(File file, List<Block> blocks) {
+        this.file = file;
+        this.blocks = blocks;
+    }
+
+    /**
+     * イベントログからセグメントファイルを作成する.
+     * 一時ファイルに書き込んでから置き換えるため、作成中のセグメントファイルが検索されることはない。
+     * @param log イベントログ
+     * @param segmentFile 作成するセグメントファイル
+     * @param blockSize 1ブロックに格納するイベントのサイズの目安(文字数)
+     * @throws IOException 読み込みまたは書き込みに失敗した場合
+     */
+    public static void build(Reader log, File segmentFile, int blockSize) throws IOException {
+        File dir = segmentFile.getAbsoluteFile().getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+            throw new IOException("Failed to create directory: " + dir.getPath());
+        }
+        File tmp = File.createTempFile(segmentFile.getName(), ".tmp", dir);
+        FileOutputStream fos = null;
+        try {
+            fos = new FileOutputStream(tmp);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            List<Block> written = new ArrayList<Block>();
+            long offset = HEADER_SIZE;
+            EventLogReader reader = new EventLogReader(log);
+            BlockBuilder block = new BlockBuilder();
+            while (reader.next()) {
+                block.add(reader.getTime(), reader.getEvent());
+                if (block.size() >= blockSize) {
+                    offset = block.writeTo(out, offset, written);
+                    block = new BlockBuilder();
+                }
+            }
+            if (block.count > 0) {
+                offset = block.writeTo(out, offset, written);
+            }
+
+            out.writeInt(written.size());
+            for (Block b : written) {
+                out.writeLong(b.minTime);
+                out.writeLong(b.maxTime);
+                out.writeLong(b.offset);
+                out.writeInt(b.length);
+                out.writeInt(b.count);
+            }
+            out.writeLong(offset);
+            out.writeInt(MAGIC);
+            out.flush();
+            fos.getFD().sync();
+            out.close();
+            fos = null;
+            Files.move(tmp.toPath(), segmentFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            IOUtils.closeQuietly(fos);
+            if (tmp.exists() && !tmp.delete()) {
+                tmp.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * セグメントファイルを開いてインデックスを読み込む.
+     * @param segmentFile セグメントファイル
+     * @return セグメント
+     * @throws IOException 読み込みに失敗した場合、またはセグメントファイルの形式が不正な場合
+     */
+    public static EventLogSegment open(File segmentFile) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(segmentFile, "r");
+        try {
+            long length = raf.length();
+            if (length < HEADER_SIZE + FOOTER_SIZE) {
+                throw new IOException("Invalid segment file: " + segmentFile.getPath());
+            }
+            raf.seek(0);
+            if (raf.readInt() != MAGIC || raf.readInt() != VERSION) {
+                throw new IOException("Invalid segment file header: " + segmentFile.getPath());
+            }
+            raf.seek(length - FOOTER_SIZE);
+            long indexOffset = raf.readLong();
+            if (raf.readInt() != MAGIC || indexOffset < HEADER_SIZE || indexOffset > length - FOOTER_SIZE) {
+                throw new IOException("Invalid segment file footer: " + segmentFile.getPath());
+            }
+            raf.seek(indexOffset);
+            int count = raf.readInt();
+            List<Block> blocks = new ArrayList<Block>(count);
+            for (int i = 0; i < count; i++) {
+                Block block = new Block();
+                block.minTime = raf.readLong();
+                block.maxTime = raf.readLong();
+                block.offset = raf.readLong();
+                block.length = raf.readInt();
+                block.count = raf.readInt();
+                blocks.add(block);
+            }
+            return new EventLogSegment(segmentFile, Collections.unmodifiableList(blocks));
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * @return セグメント内のイベントの最小日時. イベントがない場合はLong.MAX_VALUE
+     */
+    public long getMinTime() {
+        long min = Long.MAX_VALUE;
+        for (Block block : this.blocks) {
+            min = Math.min(min, block.minTime);
+        }
+        return min;
+    }
+
+    /**
+     * @return セグメント内のイベントの最大日時. イベントがない場合はLong.MIN_VALUE
+     */
+    public long getMaxTime() {
+        long max = Long.MIN_VALUE;
+        for (Block block : this.blocks) {
+            max = Math.max(max, block.maxTime);
+        }
+        return max;
+    }
+
+    /**
+     * 検索条件に一致するイベントを書き込む. 日時の範囲と重なるブロックのみを読み込む.
+     * @param filter 検索条件
+     * @param writer 書き込み先
+     * @return 一致したイベント数
+     * @throws IOException 読み込みまたは書き込みに失敗した場合
+     */
+    public int query(EventLogFilter filter, Writer writer) throws IOException {
+        int matched = 0;
+        RandomAccessFile raf = new RandomAccessFile(this.file, "r");
+        try {
+            for (Block block : this.blocks) {
+                if (!filter.overlaps(block.minTime, block.maxTime)) {
+                    continue;
+                }
+                byte[] compressed = new byte[block.length];
+                raf.seek(block.offset);
+                raf.readFully(compressed);
+                EventLogReader reader = new EventLogReader(new InputStreamReader(
+                        new InflaterInputStream(new ByteArrayInputStream(compressed)), CharEncoding.UTF_8));
+                while (reader.next()) {
+                    if (filter.matches(reader.getTime(), reader.getEvent())) {
+                        writer.write(reader.getEvent());
+                        matched++;
+                    }
+                }
+            }
+        } finally {
+            raf.close();
+        }
+        return matched;
+    }
+
+    /**
+     * インデックスのブロック情報.
+     */
+    static final class Block {
+        private long minTime = Long.MAX_VALUE;
+        private long maxTime = Long.MIN_VALUE;
+        private long offset;
+        private int length;
+        private int count;
+    }
+
+    /**
+     * 書き込み中のブロック.
+     */
+    private static final class BlockBuilder {
+        private final StringBuilder events = new StringBuilder();
+        private long minTime = Long.MAX_VALUE;
+        private long maxTime = Long.MIN_VALUE;
+        private int count;
+
+        void add(long time, String event) {
+            this.events.append(event);
+            this.minTime = Math.min(this.minTime, time);
+            this.maxTime = Math.max(this.maxTime, time);
+            this.count++;
+        }
+
+        int size() {
+            return this.events.length();
+        }
+
+        long writeTo(DataOutputStream out, long offset, List<Block> written) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DeflaterOutputStream deflater = new DeflaterOutputStream(bytes);
+            deflater.write(this.events.toString().getBytes(CharEncoding.UTF_8));
+            deflater.close();
+            out.write(bytes.toByteArray());
+
+            Block block = new Block();
+            block.minTime = this.minTime;
+            block.maxTime = this.maxTime;
+            block.offset = offset;
+            block.length = bytes.size();
+            block.count = this.count;
+            written.add(block);
+            return offset + block.length;
+        }
+    }
+}
@@ -90,13 +90,23 @@ public class CellRsCmp extends DavRsCmp {
      * @return boolean
      */
     public boolean hasPrivilege(AccessContext ac, Privilege privilege) {
+        if (privilege == null) {
+            return false;
+        }
+        return privilege.isGrantedBy(this.getGrantedPrivileges());
+    }
 
+    /**
+     * ACL情報を確認し、許可されたPrivilegeのビットマスクを返す. CellのACLは親とマージしない.
+     * @return 許可されたPrivilegeのビットマスク
+     */
+    @Override
+    public long getGrantedPrivileges() {
         // davCmpが無い（存在しないリソースが指定された）場合はそのリソースのACLチェック飛ばす
-        if (this.davCmp != null
-                && this.getAccessContext().requirePrivilege(this.davCmp.getAcl(), privilege, this.getCell().getUrl())) {
-            return true;
+        if (this.davCmp == null) {
+            return 0;
         }
-        return false;
+        return this.getAccessContext().getGrantedPrivileges(this.davCmp.getAcl(), this.getCell().getUrl());
     }
 
     /**
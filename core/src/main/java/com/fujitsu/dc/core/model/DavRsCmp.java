@@ -289,19 +289,28 @@ public class DavRsCmp {
      * @return boolean
      */
     public boolean hasPrivilege(AccessContext ac, Privilege privilege) {
+        if (privilege == null) {
+            return false;
+        }
+        return privilege.isGrantedBy(this.getGrantedPrivileges());
+    }
 
+    /**
+     * 親のACL情報とマージし、許可されたPrivilegeのビットマスクを返す.
+     * 各リソースのACLの評価結果はアクセスコンテキストが保持するため、親を遡る際にACLを再評価しない。
+     * @return 許可されたPrivilegeのビットマスク
+     */
+    public long getGrantedPrivileges() {
+        long granted = 0;
         // davCmpが無い（存在しないリソースが指定された）場合はそのリソースのACLチェック飛ばす
-        if (this.davCmp != null
-                && this.getAccessContext().requirePrivilege(this.davCmp.getAcl(), privilege, this.getCell().getUrl())) {
-            return true;
+        if (this.davCmp != null) {
+            granted = this.getAccessContext().getGrantedPrivileges(this.davCmp.getAcl(), this.getCell().getUrl());
         }
-
-        // 親の設定をチェックする。
-        if (this.parent != null && this.parent.hasPrivilege(ac, privilege)) {
-            return true;
+        // 親の設定をマージする。
+        if (this.parent != null) {
+            granted |= this.parent.getGrantedPrivileges();
         }
-
-        return false;
+        return granted;
     }
 
     /**
@@ -18,6 +18,7 @@ package com.fujitsu.dc.core.model.impl.es;
 
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -69,6 +70,7 @@ import com.fujitsu.dc.core.model.impl.es.accessor.EntitySetAccessor;
 import com.fujitsu.dc.core.model.impl.es.accessor.ODataLinkAccessor;
 import com.fujitsu.dc.core.model.impl.es.cache.BoxCache;
 import com.fujitsu.dc.core.model.impl.es.cache.CellCache;
+import com.fujitsu.dc.core.model.impl.es.cache.RoleCache;
 import com.fujitsu.dc.core.model.impl.es.doc.OEntityDocHandler;
 import com.fujitsu.dc.core.model.impl.es.odata.CellCtlODataProducer;
 import com.fujitsu.dc.core.odata.OEntityWrapper;
@@ -342,9 +344,27 @@ public final class CellEsImpl implements Cell {
         return false;
     }
 
-    @SuppressWarnings("unchecked")
     @Override
     public List<Role> getRoleListForAccount(final String username) {
+        // 解決前に世代を取得し、解決中にロール設定が変更された場合の結果を参照させないようにする
+        String generation = RoleCache.generation(this);
+        String cacheKey = "account\n" + username;
+        List<Role> ret = RoleCache.get(this, generation, cacheKey);
+        if (ret != null) {
+            return ret;
+        }
+        ret = this.resolveRoleListForAccount(username);
+        RoleCache.cache(this, generation, cacheKey, ret);
+        return ret;
+    }
+
+    /**
+     * Accountに結びつくロールをESから取得する.
+     * @param username Account名
+     * @return ロールのリスト。Accountが存在しない場合はnull
+     */
+    @SuppressWarnings("unchecked")
+    private List<Role> resolveRoleListForAccount(final String username) {
         // Accountを取得
         EntitySetAccessor accountType = EsModel.cellCtl(this, Account.EDM_TYPE_NAME);
 
@@ -433,7 +453,24 @@ public final class CellEsImpl implements Cell {
 
     @Override
     public List<Role> getRoleListHere(final IExtRoleContainingToken token) {
-        List<Role> ret = new ArrayList<Role>();
+        // ExtCell-Roleの払い出しはアクセス主体のセルに依存するため、その判定結果もキーに含める
+        StringBuilder cacheKey = new StringBuilder("extcell\n").append(token.getExtCellUrl()).append("\n")
+                .append(token.getExtCellUrl().equals(getPrincipalCell(token)));
+        List<String> tokenRoles = new ArrayList<String>();
+        for (Role tokenRole : token.getRoleList()) {
+            tokenRoles.add(tokenRole.createUrl());
+        }
+        Collections.sort(tokenRoles);
+        for (String tokenRole : tokenRoles) {
+            cacheKey.append("\n").append(tokenRole);
+        }
+
+        String generation = RoleCache.generation(this);
+        List<Role> ret = RoleCache.get(this, generation, cacheKey.toString());
+        if (ret != null) {
+            return ret;
+        }
+        ret = new ArrayList<Role>();
 
         // ExtCellとRoleの結びつけ設定から払い出すRoleをリストアップ
         this.addRoleListExtCelltoRole(token, ret);
@@ -443,9 +480,23 @@ public final class CellEsImpl implements Cell {
         // ExtCellとRelationとExtRoleとRoleの結びつけから払い出すRoleをリストアップ
         this.addRoleListExtCelltoRelationAndExtRole(token, ret);
 
+        RoleCache.cache(this, generation, cacheKey.toString(), ret);
         return ret;
     }
 
+    /**
+     * トランスセルアクセストークンのアクセス主体のセルURLを取得する.
+     * @param token トランスセルアクセストークン
+     * @return アクセス主体のセルURL
+     */
+    private static String getPrincipalCell(final IExtRoleContainingToken token) {
+        String principal = token.getSubject();
+        if (principal.contains("#")) {
+            return principal.substring(0, principal.indexOf("#"));
+        }
+        return principal;
+    }
+
     /**
      * ExtCellとRoleの突き合わせを行い払い出すRoleを決める.
      * @param token トランスセルアクセストークン
@@ -454,13 +505,7 @@ public final class CellEsImpl implements Cell {
     private void addRoleListExtCelltoRole(final IExtRoleContainingToken token, List<Role> roles) {
         // ExtCell-Role結びつけに対応するRoleの取得
         String extCell = token.getExtCellUrl();
-        String principal = token.getSubject();
-        String principalCell;
-        if (principal.contains("#")) {
-            principalCell = token.getSubject().substring(0, principal.indexOf("#"));
-        } else {
-            principalCell = token.getSubject();
-        }
+        String principalCell = getPrincipalCell(token);
 
         // アクセス主体がExtCellと異なる場合（2段階以上のトランスセルトークン認証）は許さない。
         if (extCell.equals(principalCell)) {
@@ -100,6 +100,7 @@ import com.fujitsu.dc.core.model.file.StreamingOutputForDavFileWithRange;
 import com.fujitsu.dc.core.model.impl.es.accessor.DavMoveAccessor;
 import com.fujitsu.dc.core.model.impl.es.accessor.DavNodeAccessor;
 import com.fujitsu.dc.core.model.impl.es.accessor.EntitySetAccessor;
+import com.fujitsu.dc.core.model.impl.es.cache.RoleCache;
 import com.fujitsu.dc.core.model.impl.es.doc.EsDocHandler;
 import com.fujitsu.dc.core.model.impl.es.odata.UserSchemaODataProducer;
 import com.fujitsu.dc.core.model.jaxb.Acl;
@@ -147,6 +148,19 @@ public class DavCmpEsImpl implements DavCmp, EsDocHandler {
         return LockManager.getLock(Lock.CATEGORY_DAV, null, this.box.getId(), null);
     }
 
+    /**
+     * Boxを共有モードで、自ノードを排他モードでロックする.
+     * 自ノードのみを更新する処理で使用し、Box配下の他のノードの更新とは並行して処理できる。
+     * Boxに属さない、または自ノードが未作成の場合はロック対象を特定できないため{@link #lock()}でロックする.
+     * @return 自ノードのロック
+     */
+    public Lock lockNode() {
+        if (this.box == null || this.nodeId == null) {
+            return this.lock();
+        }
+        return LockManager.getHierarchicalLock(Lock.CATEGORY_DAV, null, this.box.getId(), null, this.nodeId);
+    }
+
     /**
      * @return ETag文字列.
      */
@@ -337,6 +351,8 @@ public class DavCmpEsImpl implements DavCmp, EsDocHandler {
 
             this.acl = Acl.fromJson(aclObj.toJSONString());
             this.acl.setBase(baseUrlStr);
+            // アクセス制御の判定用に、ノードの読込み時にACLをコンパイルしておく
+            this.acl.getCompiledAcl();
             log.debug(this.acl.toJSON());
         }
 
@@ -545,8 +561,8 @@ public class DavCmpEsImpl implements DavCmp, EsDocHandler {
         Response res = this.of.createResponse();
         res.getHref().add(reqUri);
 
-        // ロック
-        Lock lock = this.lock();
+        // ロック(自ノードのプロパティのみを更新するため、ノード単位でロックする)
+        Lock lock = this.lockNode();
         // 更新処理
         try {
             this.load(); // ロック後の最新情報取得
@@ -778,7 +794,18 @@ public class DavCmpEsImpl implements DavCmp, EsDocHandler {
 
     @Override
     public final ResponseBuilder putForUpdate(final String contentType, final InputStream inputStream, String etag) {
-        // ロック
+        // 既存ファイルの内容の更新は自ノードのみを更新するため、ノード単位でロックする
+        Lock nodeLock = this.lockNode();
+        try {
+            this.load();
+            if (this.davNode != null) {
+                return this.doPutForUpdate(contentType, inputStream, etag);
+            }
+        } finally {
+            nodeLock.release();
+        }
+
+        // 他のリクエストによって削除されていた場合は、親ノードを更新するためBox全体をロックする
         Lock lock = this.lock();
         try {
             // 更新には、更新対象のDavNodeが存在するため、更新対象のDavNodeをリロードして存在確認する。
@@ -1532,13 +1559,14 @@ public class DavCmpEsImpl implements DavCmp, EsDocHandler {
             array = (JSONArray) jsonObj;
         }
         if (array != null) {
+            String generation = RoleCache.generation(this.cell);
             // xml:base対応
             for (int i = 0; i < array.size(); i++) {
                 JSONObject aceJson = (JSONObject) array.get(i);
                 JSONObject principal = (JSONObject) aceJson.get(KEY_ACL_PRINCIPAL);
                 if (principal.get(KEY_ACL_HREF) != null) {
                     // ロールIDに該当するロール名が無かった場合はロールが削除済みと判断し、無視する。
-                    String roloResourceUrl = roleIdToRoleResourceUrl((String) principal.get(KEY_ACL_HREF));
+                    String roloResourceUrl = roleIdToRoleResourceUrl((String) principal.get(KEY_ACL_HREF), generation);
                     if (roloResourceUrl == null) {
                         // ロールIDに該当するロール名が無かった場合はロールが削除済みと判断し、ACEタグごと削除する。
                         array.remove(i);
@@ -1561,12 +1589,40 @@ public class DavCmpEsImpl implements DavCmp, EsDocHandler {
     }
 
     /**
-     * ロールIDからロール名を取得.
+     * ロールIDからロール名を取得. 取得結果はロール解決結果のキャッシュに保持する.
      * @param roleId ロールID
+     * @param generation {@link RoleCache#generation(Cell)}で取得したキャッシュ世代
      * @return ロール名
      */
+    private String roleIdToRoleResourceUrl(String roleId, String generation) {
+        String cacheKey = "roleid\n" + roleId;
+        List<Role> cached = RoleCache.get(this.cell, generation, cacheKey);
+        if (cached != null) {
+            // ロールが存在しない場合は空のリストをキャッシュしている
+            if (cached.isEmpty()) {
+                return null;
+            }
+            return cached.get(0).createUrl();
+        }
+        Role role = this.retrieveRole(roleId);
+        List<Role> roles = new ArrayList<Role>();
+        if (role != null) {
+            roles.add(role);
+        }
+        RoleCache.cache(this.cell, generation, cacheKey, roles);
+        if (role == null) {
+            return null;
+        }
+        return role.createUrl();
+    }
+
+    /**
+     * ロールIDからロールを取得.
+     * @param roleId ロールID
+     * @return ロール. 存在しない場合はnull
+     */
     @SuppressWarnings("unchecked")
-    private String roleIdToRoleResourceUrl(String roleId) {
+    private Role retrieveRole(String roleId) {
         String boxName = null;
         String schema = null;
 
@@ -1589,8 +1645,7 @@ public class DavCmpEsImpl implements DavCmp, EsDocHandler {
             boxName = (String) boxs.get(KEY_NAME);
             schema = (String) boxs.get(KEY_SCHEMA);
         }
-        Role roleObj = new Role(roleName, boxName, schema, this.cell.getUrl());
-        return roleObj.createUrl();
+        return new Role(roleName, boxName, schema, this.cell.getUrl());
     }
 
     /**
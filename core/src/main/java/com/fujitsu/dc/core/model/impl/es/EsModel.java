@@ -92,6 +92,8 @@ public class EsModel {
         });
 
         esClient = new EsClient(DcCoreConfig.getEsClusterName(), DcCoreConfig.getEsHosts());
+        esClient.setBulkThresholds(DcCoreConfig.getEsBulkMaxActions(), DcCoreConfig.getEsBulkMaxBytes(),
+                DcCoreConfig.getEsBulkFlushInterval());
     }
 
     private EsModel() {
@@ -16,6 +16,7 @@
  */
 package com.fujitsu.dc.core.model.impl.es.accessor;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -36,6 +37,7 @@ import com.fujitsu.dc.common.es.response.DcBulkResponse;
 import com.fujitsu.dc.common.es.response.DcDeleteResponse;
 import com.fujitsu.dc.common.es.response.DcGetResponse;
 import com.fujitsu.dc.common.es.response.DcIndexResponse;
+import com.fujitsu.dc.common.es.response.DcMultiGetResponse;
 import com.fujitsu.dc.common.es.response.DcMultiSearchResponse;
 import com.fujitsu.dc.common.es.response.DcSearchResponse;
 import com.fujitsu.dc.common.es.response.EsClientException;
@@ -46,6 +48,8 @@ import com.fujitsu.dc.core.DcCoreLog;
 import com.fujitsu.dc.core.model.impl.es.EsModel;
 import com.fujitsu.dc.core.model.impl.es.ads.AdsConnectionException;
 import com.fujitsu.dc.core.model.impl.es.ads.AdsException;
+import com.fujitsu.dc.core.model.impl.es.ads.AdsWriteBehindQueue;
+import com.fujitsu.dc.core.model.impl.es.ads.AdsWriteRequest;
 import com.fujitsu.dc.core.model.impl.es.ads.JdbcAds;
 import com.fujitsu.dc.core.model.impl.es.doc.EntitySetDocHandler;
 import com.fujitsu.dc.core.model.impl.es.doc.LinkDocHandler;
@@ -161,6 +165,19 @@ public class DataSourceAccessor {
         }
     }
 
+    /**
+     * ドキュメントの一括取得.
+     * @param ids ドキュメントのIDのリスト
+     * @return 応答. インデックスが存在しない場合はnull
+     */
+    public DcMultiGetResponse multiGet(final List<String> ids) {
+        try {
+            return this.type.multiGet(ids);
+        } catch (EsClientException.EsNoResponseException e) {
+            throw DcCoreException.Server.ES_RETRY_OVER.params(e.getMessage());
+        }
+    }
+
     /**
      * ドキュメント新規作成.
      * @param data ドキュメント
@@ -390,11 +407,24 @@ public class DataSourceAccessor {
 
         DcBulkResponse response = null;
         try {
-            response = this.index.bulkRequest(routingId, esBulkRequest, false);
+            response = this.index.bulkRequest(routingId, esBulkRequest, false,
+                    DcCoreConfig.getEsBulkRefreshPolicy());
         } catch (EsClientException.EsNoResponseException e) {
             throw DcCoreException.Server.ES_RETRY_OVER.params(e.getMessage());
         }
         if (this.ads != null) {
+            AdsWriteBehindQueue queue = AdsWriteBehindQueue.getInstance();
+            if (queue != null) {
+                List<AdsWriteRequest> requests = new ArrayList<AdsWriteRequest>();
+                for (EntitySetDocHandler docHandler : adsBulkRequest) {
+                    requests.add(AdsWriteRequest.entity(this.index.getName(), AdsWriteRequest.Kind.CREATE_ENTITY,
+                            docHandler, createAdsWriteFailureLogInfo(docHandler,
+                                    AdsWriteFailureLogInfo.OperationKind.CREATE, 1)));
+                }
+                if (queue.offer(requests)) {
+                    return response;
+                }
+            }
             try {
                 this.ads.bulkEntity(this.index.getName(), adsBulkRequest);
             } catch (AdsException e) {
@@ -433,11 +463,17 @@ public class DataSourceAccessor {
 
         DcBulkResponse response = null;
         try {
-            response = this.index.bulkRequest(routingId, esBulkRequest, false);
+            response = this.index.bulkRequest(routingId, esBulkRequest, false,
+                    DcCoreConfig.getEsBulkRefreshPolicy());
         } catch (EsClientException.EsNoResponseException e) {
             throw DcCoreException.Server.ES_RETRY_OVER.params(e.getMessage());
         }
         if (this.ads != null) {
+            AdsWriteBehindQueue queue = AdsWriteBehindQueue.getInstance();
+            if (queue != null && queue.offer(createBulkUpdateLinkRequests(esBulkRequest, response,
+                    adsBulkEntityRequest, adsBulkLinkRequest))) {
+                return response;
+            }
             try {
                 // Entityテーブル更新
                 if (adsBulkEntityRequest.size() > 0) {
@@ -491,6 +527,34 @@ public class DataSourceAccessor {
         return response;
     }
 
+    private List<AdsWriteRequest> createBulkUpdateLinkRequests(List<EsBulkRequest> esBulkRequest,
+            DcBulkResponse response,
+            List<EntitySetDocHandler> adsBulkEntityRequest,
+            List<LinkDocHandler> adsBulkLinkRequest) {
+        List<AdsWriteRequest> requests = new ArrayList<AdsWriteRequest>();
+        // ESでのバージョン情報を取得するためにesBulkRequestをループさせている
+        DcBulkItemResponse[] responseItems = response.items();
+        int responseIndex = 0;
+        int adsBulkEntityRequestIndex = 0;
+        for (EsBulkRequest request : esBulkRequest) {
+            if (request.getType().equals(EsModel.TYPE_CTL_LINK)) {
+                responseIndex++;
+                continue;
+            }
+            DcBulkItemResponse itemResponse = responseItems[responseIndex++];
+            EntitySetDocHandler docHandler = adsBulkEntityRequest.get(adsBulkEntityRequestIndex++);
+            requests.add(AdsWriteRequest.entity(this.index.getName(), AdsWriteRequest.Kind.UPDATE_ENTITY_LINKS,
+                    docHandler, createAdsWriteFailureLogInfo(docHandler,
+                            AdsWriteFailureLogInfo.OperationKind.UPDATE, itemResponse.version())));
+        }
+        for (LinkDocHandler docHandler : adsBulkLinkRequest) {
+            requests.add(AdsWriteRequest.link(this.index.getName(), AdsWriteRequest.Kind.CREATE_LINK,
+                    docHandler, createAdsWriteFailureLogInfo(docHandler,
+                            AdsWriteFailureLogInfo.OperationKind.CREATE, 1)));
+        }
+        return requests;
+    }
+
     /**
      * 指定されたクエリを使用してデータの削除を行う.
      * @param routingId routingId
@@ -507,6 +571,11 @@ public class DataSourceAccessor {
      * @throws AdsException 削除に失敗
      */
     protected void cellBulkDeletionAds(String cellId, String unitUserName) throws AdsException {
+        // 非同期で書き込み中のデータが削除後に書き込まれないよう、書き込みの完了を待つ
+        AdsWriteBehindQueue queue = AdsWriteBehindQueue.getInstance();
+        if (queue != null) {
+            queue.flush();
+        }
         this.ads.deleteCellResourceFromEntity(unitUserName, cellId);
         this.ads.deleteCellResourceFromDavNode(unitUserName, cellId);
         this.ads.deleteCellResourceFromLink(unitUserName, cellId);
@@ -593,6 +662,64 @@ public class DataSourceAccessor {
         }
     }
 
+    /**
+     * Adsへの書き込みを非同期書き込みキューに登録する.
+     * @param kind 書き込み種別
+     * @param docHandler 書き込み対象のEntity
+     * @param operation ADS書き込み失敗ログに出力する操作種別
+     * @param version Elasticsearchに登録されたドキュメントのバージョン
+     * @return 登録した場合はtrue. 非同期書き込みが無効、またはキューが受け付けなかった場合はfalse
+     */
+    protected boolean offerAdsWrite(AdsWriteRequest.Kind kind, EntitySetDocHandler docHandler,
+            AdsWriteFailureLogInfo.OperationKind operation, long version) {
+        AdsWriteBehindQueue queue = AdsWriteBehindQueue.getInstance();
+        if (queue == null) {
+            return false;
+        }
+        List<AdsWriteRequest> requests = new ArrayList<AdsWriteRequest>(1);
+        requests.add(AdsWriteRequest.entity(this.index.getName(), kind, docHandler,
+                createAdsWriteFailureLogInfo(docHandler, operation, version)));
+        return queue.offer(requests);
+    }
+
+    /**
+     * Adsへの書き込みを非同期書き込みキューに登録する.
+     * @param kind 書き込み種別
+     * @param docHandler 書き込み対象のLink
+     * @param operation ADS書き込み失敗ログに出力する操作種別
+     * @param version Elasticsearchに登録されたドキュメントのバージョン
+     * @return 登録した場合はtrue. 非同期書き込みが無効、またはキューが受け付けなかった場合はfalse
+     */
+    protected boolean offerAdsWrite(AdsWriteRequest.Kind kind, LinkDocHandler docHandler,
+            AdsWriteFailureLogInfo.OperationKind operation, long version) {
+        AdsWriteBehindQueue queue = AdsWriteBehindQueue.getInstance();
+        if (queue == null) {
+            return false;
+        }
+        List<AdsWriteRequest> requests = new ArrayList<AdsWriteRequest>(1);
+        requests.add(AdsWriteRequest.link(this.index.getName(), kind, docHandler,
+                createAdsWriteFailureLogInfo(docHandler, operation, version)));
+        return queue.offer(requests);
+    }
+
+    private AdsWriteFailureLogInfo createAdsWriteFailureLogInfo(EntitySetDocHandler docHandler,
+            AdsWriteFailureLogInfo.OperationKind operation, long version) {
+        String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
+                docHandler.getCellId(), null, docHandler.getNodeId());
+        return new AdsWriteFailureLogInfo(
+                this.index.getName(), docHandler.getType(), lockKey,
+                docHandler.getCellId(), docHandler.getId(), operation, version, docHandler.getUpdated());
+    }
+
+    private AdsWriteFailureLogInfo createAdsWriteFailureLogInfo(LinkDocHandler docHandler,
+            AdsWriteFailureLogInfo.OperationKind operation, long version) {
+        String lockKey = LockKeyComposer.fullKeyFromCategoryAndKey(Lock.CATEGORY_ODATA,
+                docHandler.getCellId(), null, docHandler.getNodeId());
+        return new AdsWriteFailureLogInfo(
+                this.index.getName(), EsModel.TYPE_CTL_LINK, lockKey,
+                docHandler.getCellId(), docHandler.getId(), operation, version, docHandler.getUpdated());
+    }
+
     /**
      * Ads書込みエラー時にファイルにリペア用のエラー情報を書込む.
      * @param loginfo リペア用のエラー情報
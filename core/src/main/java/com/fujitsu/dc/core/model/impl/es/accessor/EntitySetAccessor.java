@@ -16,11 +16,13 @@
  */
 package com.fujitsu.dc.core.model.impl.es.accessor;
 
+import java.util.List;
 import java.util.Map;
 
 import com.fujitsu.dc.common.es.response.DcDeleteResponse;
 import com.fujitsu.dc.common.es.response.DcGetResponse;
 import com.fujitsu.dc.common.es.response.DcIndexResponse;
+import com.fujitsu.dc.common.es.response.DcMultiGetResponse;
 import com.fujitsu.dc.common.es.response.DcSearchResponse;
 import com.fujitsu.dc.core.model.impl.es.doc.EntitySetDocHandler;
 
@@ -36,6 +38,13 @@ public interface EntitySetAccessor {
      */
     DcGetResponse get(String id);
 
+    /**
+     * ドキュメントを一括取得する.
+     * @param ids ドキュメントのIDのリスト
+     * @return 応答
+     */
+    DcMultiGetResponse multiGet(List<String> ids);
+
     /**
      * UUIDでデータ登録を行う.
      * @param docHandler 登録データ
@@ -22,6 +22,7 @@ import com.fujitsu.dc.common.ads.AdsWriteFailureLogInfo;
 import com.fujitsu.dc.common.es.EsIndex;
 import com.fujitsu.dc.core.DcCoreLog;
 import com.fujitsu.dc.core.model.impl.es.ads.AdsException;
+import com.fujitsu.dc.core.model.impl.es.ads.AdsWriteRequest;
 import com.fujitsu.dc.core.model.impl.es.doc.EntitySetDocHandler;
 import com.fujitsu.dc.core.model.lock.Lock;
 import com.fujitsu.dc.core.model.lock.LockKeyComposer;
@@ -48,6 +49,10 @@ public class ODataEntityAccessor extends AbstractEntitySetAccessor {
     protected void createAds(EntitySetDocHandler docHandler) {
         // 登録に成功した場合、マスタデータを書き込む
         if (getAds() != null) {
+            if (offerAdsWrite(AdsWriteRequest.Kind.CREATE_ENTITY, docHandler,
+                    AdsWriteFailureLogInfo.OperationKind.CREATE, 1)) {
+                return;
+            }
             String indexName = getIndex().getName();
             try {
                 getAds().createEntity(indexName, docHandler);
@@ -95,6 +100,10 @@ public class ODataEntityAccessor extends AbstractEntitySetAccessor {
     protected void updateAds(EntitySetDocHandler docHandler, long version) {
         // 更新に成功した場合、マスタデータを更新する
         if (getAds() != null) {
+            if (offerAdsWrite(AdsWriteRequest.Kind.UPDATE_ENTITY, docHandler,
+                    AdsWriteFailureLogInfo.OperationKind.UPDATE, version)) {
+                return;
+            }
             try {
                 getAds().updateEntity(getIndex().getName(), docHandler);
             } catch (AdsException e) {
@@ -123,6 +132,10 @@ public class ODataEntityAccessor extends AbstractEntitySetAccessor {
 
         // 削除に成功した場合、マスタデータを削除する
         if (getAds() != null) {
+            if (offerAdsWrite(AdsWriteRequest.Kind.DELETE_ENTITY, docHandler,
+                    AdsWriteFailureLogInfo.OperationKind.DELETE, version)) {
+                return;
+            }
             try {
                 getAds().deleteEntity(getIndex().getName(), id);
             } catch (AdsException e) {
@@ -24,6 +24,7 @@ import com.fujitsu.dc.common.es.util.DcUUID;
 import com.fujitsu.dc.core.DcCoreLog;
 import com.fujitsu.dc.core.model.impl.es.EsModel;
 import com.fujitsu.dc.core.model.impl.es.ads.AdsException;
+import com.fujitsu.dc.core.model.impl.es.ads.AdsWriteRequest;
 import com.fujitsu.dc.core.model.impl.es.doc.LinkDocHandler;
 import com.fujitsu.dc.core.model.lock.Lock;
 import com.fujitsu.dc.core.model.lock.LockKeyComposer;
@@ -75,6 +76,10 @@ public class ODataLinkAccessor extends DataSourceAccessor {
     protected void createAds(LinkDocHandler docHandler) {
         // 登録に成功した場合、マスタデータを書き込む
         if (getAds() != null) {
+            if (offerAdsWrite(AdsWriteRequest.Kind.CREATE_LINK, docHandler,
+                    AdsWriteFailureLogInfo.OperationKind.CREATE, 1)) {
+                return;
+            }
             try {
                 getAds().createLink(getIndex().getName(), docHandler);
             } catch (AdsException e) {
@@ -125,6 +130,10 @@ public class ODataLinkAccessor extends DataSourceAccessor {
     protected void updateAds(LinkDocHandler docHandler, long version) {
         // 更新に成功した場合、マスタデータを書き込む
         if (getAds() != null) {
+            if (offerAdsWrite(AdsWriteRequest.Kind.UPDATE_LINK, docHandler,
+                    AdsWriteFailureLogInfo.OperationKind.UPDATE, version)) {
+                return;
+            }
             try {
                 getAds().updateLink(getIndex().getName(), docHandler);
             } catch (AdsException e) {
@@ -177,6 +186,10 @@ public class ODataLinkAccessor extends DataSourceAccessor {
 
         // 削除に成功した場合、マスタデータを書き込む
         if (getAds() != null) {
+            if (offerAdsWrite(AdsWriteRequest.Kind.DELETE_LINK, docHandler,
+                    AdsWriteFailureLogInfo.OperationKind.DELETE, version)) {
+                return;
+            }
             try {
                 getAds().deleteLink(getIndex().getName(), id);
             } catch (AdsException e) {
@@ -0,0 +1,238 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model.impl.es.ads;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fujitsu.dc.common.ads.AbstractAdsWriteFailureLog;
+import com.fujitsu.dc.common.ads.AdsWriteFailureLogException;
+import com.fujitsu.dc.common.ads.AdsWriteFailureLogInfo;
+
+/**
+ * Adsへの書き込み待ちデータを記録するジャーナル.
+ * 書き込み待ちデータはADS書き込み失敗ログと同じ形式でローカルファイルへ追記し、DISKへの書き込みを確定させる。<br />
+ * ジャーナルファイルは記録件数が閾値に達すると切り替え、記録したデータのAdsへの書き込みがすべて完了した時点で削除する。
+ * プロセスの異常終了などで削除されずに残ったジャーナルファイルは、{@link #recover()}でADS書き込み失敗ログとしてローテートし、
+ * RepairAdsによる補正の対象とする。
+ */
+class AdsWriteBehindJournal {
+
+    static Logger log = LoggerFactory.getLogger(AdsWriteBehindJournal.class);
+
+    /**
+     * ジャーナルファイル名の接頭辞.
+     */
+    static final String JOURNAL_NAME_PREFIX = "adsWriteBehind_";
+
+    /**
+     * ジャーナルファイル名の拡張子.
+     */
+    static final String JOURNAL_NAME_SUFFIX = ".journal";
+
+    /**
+     * ジャーナルファイル名のフォーマット.
+     */
+    static final String JOURNAL_NAME_FORMAT = JOURNAL_NAME_PREFIX + "%s_%d" + JOURNAL_NAME_SUFFIX;
+
+    private final String baseDir;
+    private final String pcsVersion;
+    private final int segmentSize;
+    private Segment active = null;
+    private long lastCreatedTime = -1L;
+
+    /**
+     * コンストラクタ.
+     * @param baseDir ジャーナル出力用ディレクトリ(ADS書き込み失敗ログと同じディレクトリ)
+     * @param pcsVersion PCSバージョン
+     * @param segmentSize ジャーナルファイルを切り替えるまでの記録件数
+     */
+    AdsWriteBehindJournal(String baseDir, String pcsVersion, int segmentSize) {
+        this.baseDir = baseDir;
+        this.pcsVersion = pcsVersion;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * 削除されずに残ったジャーナルファイルを、ADS書き込み失敗ログとしてローテートする.
+     * ジャーナルへの記録を開始する前に呼び出すこと。
+     * @return ローテートしたファイル数
+     */
+    int recover() {
+        File dir = new File(baseDir);
+        String prefix = JOURNAL_NAME_PREFIX + pcsVersion + "_";
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return 0;
+        }
+        int recovered = 0;
+        for (File file : files) {
+            String name = file.getName();
+            if (!file.isFile() || !name.startsWith(prefix) || !name.endsWith(JOURNAL_NAME_SUFFIX)) {
+                continue;
+            }
+            if (file.length() == 0) {
+                if (!file.delete()) {
+                    log.info("Failed to delete empty adsWriteBehind journal. [" + file.getAbsolutePath() + "]");
+                }
+                continue;
+            }
+            long createdTime;
+            try {
+                createdTime = Long.parseLong(
+                        name.substring(prefix.length(), name.length() - JOURNAL_NAME_SUFFIX.length()));
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            // 同じタイムスタンプのADS書き込み失敗ログが既に存在する場合は、タイムスタンプをずらして重複を避ける
+            File dst = new File(dir, String.format(AbstractAdsWriteFailureLog.LOGNAME_FORMAT_ROTATE,
+                    pcsVersion, createdTime));
+            while (dst.exists()) {
+                createdTime++;
+                dst = new File(dir, String.format(AbstractAdsWriteFailureLog.LOGNAME_FORMAT_ROTATE,
+                        pcsVersion, createdTime));
+            }
+            if (file.renameTo(dst)) {
+                log.info("adsWriteBehind journal is rotated for repair. [" + dst.getAbsolutePath() + "]");
+                recovered++;
+            } else {
+                log.warn("Failed to rotate adsWriteBehind journal. [" + file.getAbsolutePath() + "]");
+            }
+        }
+        return recovered;
+    }
+
+    /**
+     * 書き込み待ちデータをジャーナルに記録する.
+     * 記録したデータはDISKへの書き込みを確定させてから返却する。
+     * @param infos 書き込み待ちデータのADS書き込み失敗ログ情報
+     * @return 記録したジャーナルファイル. Adsへの書き込み完了時に{@link #complete(Segment, int)}に渡すこと
+     * @throws AdsWriteFailureLogException ジャーナルへの記録に失敗した場合
+     */
+    synchronized Segment append(List<AdsWriteFailureLogInfo> infos) throws AdsWriteFailureLogException {
+        if (active == null || active.written >= segmentSize) {
+            roll();
+        }
+        StringBuilder builder = new StringBuilder();
+        for (AdsWriteFailureLogInfo info : infos) {
+            builder.append(info.toString());
+        }
+        try {
+            // DISKへの書き込みを確定させるため、ファイルディスクリプタでsyncする。
+            active.out.write(builder.toString().getBytes());
+            active.out.getFD().sync();
+        } catch (IOException e) {
+            String message = String.format("Failed to write adsWriteBehind journal. [%s]",
+                    active.file.getAbsolutePath());
+            // 書き込み途中のファイルは以降使用せず、残った内容は次回起動時にリペアの対象とする
+            IOUtils.closeQuietly(active.out);
+            active = null;
+            throw new AdsWriteFailureLogException(message, e);
+        }
+        active.written += infos.size();
+        active.outstanding += infos.size();
+        return active;
+    }
+
+    /**
+     * ジャーナルに記録したデータのAdsへの書き込み(または書き込み失敗ログへの出力)が完了したことを通知する.
+     * @param segment 記録したジャーナルファイル
+     * @param count 完了したデータ件数
+     */
+    synchronized void complete(Segment segment, int count) {
+        segment.outstanding -= count;
+        if (segment.outstanding <= 0 && segment != active) {
+            delete(segment);
+        }
+    }
+
+    /**
+     * ジャーナルを閉じる.
+     * Adsへの書き込みが完了していないデータが残っている場合は、ジャーナルファイルを削除せずに残す。
+     */
+    synchronized void close() {
+        if (active == null) {
+            return;
+        }
+        Segment segment = active;
+        active = null;
+        IOUtils.closeQuietly(segment.out);
+        if (segment.outstanding <= 0) {
+            delete(segment);
+        } else {
+            log.warn("adsWriteBehind journal is left for repair. [" + segment.file.getAbsolutePath() + "]");
+        }
+    }
+
+    private void roll() throws AdsWriteFailureLogException {
+        if (active != null) {
+            Segment previous = active;
+            active = null;
+            IOUtils.closeQuietly(previous.out);
+            if (previous.outstanding <= 0) {
+                delete(previous);
+            }
+        }
+        // 同一ミリ秒内の切り替えでファイル名が重複しないようにする
+        long createdTime = Math.max(System.currentTimeMillis(), lastCreatedTime + 1);
+        lastCreatedTime = createdTime;
+        File file = new File(baseDir, String.format(JOURNAL_NAME_FORMAT, pcsVersion, createdTime));
+        try {
+            active = new Segment(file, new FileOutputStream(file, true));
+        } catch (FileNotFoundException e) {
+            String message = String.format("Failed to open adsWriteBehind journal. [%s]", file.getAbsolutePath());
+            throw new AdsWriteFailureLogException(message, e);
+        }
+    }
+
+    private void delete(Segment segment) {
+        IOUtils.closeQuietly(segment.out);
+        if (!segment.file.delete()) {
+            log.warn("Failed to delete adsWriteBehind journal. [" + segment.file.getAbsolutePath() + "]");
+        }
+    }
+
+    /**
+     * ジャーナルファイル.
+     */
+    static final class Segment {
+        private final File file;
+        private final FileOutputStream out;
+        private int written = 0;
+        private int outstanding = 0;
+
+        Segment(File file, FileOutputStream out) {
+            this.file = file;
+            this.out = out;
+        }
+
+        /**
+         * ジャーナルファイルを返す.
+         * @return ジャーナルファイル
+         */
+        File getFile() {
+            return file;
+        }
+    }
+}
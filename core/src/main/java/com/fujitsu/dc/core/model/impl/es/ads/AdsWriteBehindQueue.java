@@ -0,0 +1,554 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model.impl.es.ads;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fujitsu.dc.common.ads.AdsWriteFailureLogException;
+import com.fujitsu.dc.common.ads.AdsWriteFailureLogInfo;
+import com.fujitsu.dc.common.ads.AdsWriteFailureLogWriter;
+import com.fujitsu.dc.core.DcCoreConfig;
+import com.fujitsu.dc.core.DcCoreLog;
+import com.fujitsu.dc.core.model.impl.es.doc.EntitySetDocHandler;
+import com.fujitsu.dc.core.model.impl.es.doc.LinkDocHandler;
+
+/**
+ * Adsへの書き込みを非同期に行うキュー.
+ * 受け付けた書き込み要求はジャーナルに記録してから返却し、書き込みスレッドがまとめてAdsへ書き込む。<br />
+ * 書き込みスレッドはインデックス名ごとに割り当て、同一インデックスへの書き込み順序を保証する。
+ * 連続する同一インデックス・同一種別の登録要求は1回のバルク書き込み(複数行のINSERT文)にまとめる。<br />
+ * 書き込み待ちの件数が上限に達した場合は空きを待ち、待ち時間を過ぎた場合は受け付けずに呼び出し元で同期の書き込みを行わせる。
+ * Adsへの書き込みに失敗した要求は、同期の書き込みと同様にADS書き込み失敗ログへ出力してRepairAdsによる補正の対象とする。
+ */
+public final class AdsWriteBehindQueue {
+
+    static Logger log = LoggerFactory.getLogger(AdsWriteBehindQueue.class);
+
+    /** テーブルが存在しない場合のSQLState. */
+    private static final String MYSQL_BAD_TABLE_ERROR = "42S02";
+
+    private static volatile AdsWriteBehindQueue singleton = null;
+
+    private final Ads ads;
+    private final AdsWriteBehindJournal journal;
+    private final Partition[] partitions;
+    private final int capacity;
+    private final Semaphore permits;
+    private final int batchSize;
+    private final long offerTimeout;
+    private volatile boolean closed = false;
+
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    /**
+     * コンストラクタ.
+     * @param ads 書き込み先のAds
+     * @param journal 書き込み待ちデータを記録するジャーナル
+     * @param threads 書き込みスレッド数
+     * @param capacity 書き込み待ちとして保持するデータ件数の上限
+     * @param batchSize 1回の書き込みでまとめるデータ件数の上限
+     * @param offerTimeout 書き込み待ちが上限に達した場合の待ち時間(ms)
+     */
+    AdsWriteBehindQueue(Ads ads, AdsWriteBehindJournal journal, int threads, int capacity, int batchSize,
+            long offerTimeout) {
+        this.ads = ads;
+        this.journal = journal;
+        this.capacity = capacity;
+        this.permits = new Semaphore(capacity);
+        this.batchSize = batchSize;
+        this.offerTimeout = offerTimeout;
+        this.partitions = new Partition[Math.max(threads, 1)];
+        for (int i = 0; i < partitions.length; i++) {
+            partitions[i] = new Partition("ads-write-behind-" + i);
+        }
+    }
+
+    /**
+     * Adsへの非同期書き込みが有効な場合に、キューのインスタンスを取得する.
+     * @return キューのインスタンス. 非同期書き込みが無効な場合はnull
+     */
+    public static AdsWriteBehindQueue getInstance() {
+        AdsWriteBehindQueue queue = singleton;
+        if (queue != null || !DcCoreConfig.isAdsWriteBehindEnabled()) {
+            return queue;
+        }
+        return createInstance();
+    }
+
+    private static synchronized AdsWriteBehindQueue createInstance() {
+        if (singleton == null && DcCoreConfig.isAdsWriteBehindEnabled()
+                && DcCoreConfig.ES.ADS.TYPE_JDBC.equals(DcCoreConfig.getEsAdsType())) {
+            Ads jdbcAds;
+            try {
+                jdbcAds = new JdbcAds();
+            } catch (AdsConnectionException e) {
+                DcCoreLog.Server.ADS_CONNECTION_ERROR.params(e.getMessage()).reason(e).writeLog();
+                return null;
+            }
+            AdsWriteBehindJournal adsJournal = new AdsWriteBehindJournal(DcCoreConfig.getAdsWriteFailureLogDir(),
+                    DcCoreConfig.getCoreVersion(), DcCoreConfig.getAdsWriteBehindJournalSegmentSize());
+            singleton = new AdsWriteBehindQueue(jdbcAds, adsJournal, DcCoreConfig.getAdsWriteBehindThreads(),
+                    DcCoreConfig.getAdsWriteBehindCapacity(), DcCoreConfig.getAdsWriteBehindBatchSize(),
+                    DcCoreConfig.getAdsWriteBehindOfferTimeout());
+            singleton.start();
+        }
+        return singleton;
+    }
+
+    /**
+     * 前回起動時に書き込みが完了せずに残ったジャーナルを、ADS書き込み失敗ログとしてローテートする.
+     * Webコンテナ起動時、キューの生成前に呼び出すこと。
+     */
+    public static void recoverJournal() {
+        AdsWriteBehindJournal adsJournal = new AdsWriteBehindJournal(DcCoreConfig.getAdsWriteFailureLogDir(),
+                DcCoreConfig.getCoreVersion(), DcCoreConfig.getAdsWriteBehindJournalSegmentSize());
+        int recovered = adsJournal.recover();
+        if (recovered > 0) {
+            log.info("adsWriteBehind journals are rotated for repair. [" + recovered + "]");
+        }
+    }
+
+    /**
+     * キューを停止する.
+     * 書き込み待ちデータの書き込み完了を待ち、待ち時間内に完了しなかったデータはジャーナルに残す。
+     */
+    public static synchronized void shutdownInstance() {
+        if (singleton != null) {
+            singleton.shutdown(TimeUnit.SECONDS.toMillis(DcCoreConfig.getAdsWriteBehindAwaitShutdownInSec()));
+            singleton = null;
+        }
+    }
+
+    /**
+     * 書き込みスレッドを開始する.
+     */
+    void start() {
+        for (Partition partition : partitions) {
+            partition.start();
+        }
+    }
+
+    /**
+     * 書き込み要求を受け付ける.
+     * 受け付けた要求はジャーナルに記録し、同一インデックスの要求は受け付け順にAdsへ書き込む。<br />
+     * 受け付けなかった場合は、呼び出し元の同期の書き込みが先行する要求を追い越さないよう、
+     * 同一インデックスの書き込み待ちの要求が完了するまで待ってから返却する。
+     * @param requests 同一インデックスに対する書き込み要求
+     * @return 受け付けた場合はtrue. 受け付けなかった場合はfalseを返すため、呼び出し元で同期の書き込みを行うこと
+     */
+    public boolean offer(List<AdsWriteRequest> requests) {
+        int size = requests.size();
+        if (size == 0) {
+            return true;
+        }
+        Partition partition = partitionOf(requests.get(0).getIndexName());
+        if (closed || size > capacity) {
+            return reject(partition);
+        }
+        try {
+            if (!permits.tryAcquire(size, offerTimeout, TimeUnit.MILLISECONDS)) {
+                log.info("adsWriteBehind queue is full. pending: " + getPendingCount());
+                return reject(partition);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return reject(partition);
+        }
+
+        List<AdsWriteFailureLogInfo> infos = new ArrayList<AdsWriteFailureLogInfo>(size);
+        for (AdsWriteRequest request : requests) {
+            infos.add(request.getLogInfo());
+        }
+        AdsWriteBehindJournal.Segment segment;
+        try {
+            segment = journal.append(infos);
+        } catch (AdsWriteFailureLogException e) {
+            log.warn("Failed to append adsWriteBehind journal.", e);
+            permits.release(size);
+            return reject(partition);
+        }
+        long now = System.currentTimeMillis();
+        for (AdsWriteRequest request : requests) {
+            request.accepted(now, segment);
+        }
+        partition.add(requests);
+        return true;
+    }
+
+    private boolean reject(Partition partition) {
+        rejectedCount.incrementAndGet();
+        try {
+            partition.awaitCompletion();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    /**
+     * 呼び出し時点で受け付けている書き込み要求がすべて完了するまで待つ.
+     */
+    public void flush() {
+        try {
+            for (Partition partition : partitions) {
+                partition.awaitCompletion();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 書き込み待ちのデータ件数を返す.
+     * @return 書き込み待ちのデータ件数
+     */
+    public int getPendingCount() {
+        return capacity - permits.availablePermits();
+    }
+
+    /**
+     * 書き込み待ちのデータのうち、最も古いものの受け付けからの経過時間を返す.
+     * @return 経過時間(ms). 書き込み待ちのデータがない場合は0
+     */
+    public long getLagMillis() {
+        long oldest = Long.MAX_VALUE;
+        for (Partition partition : partitions) {
+            long accepted = partition.getOldestAcceptedTime();
+            if (accepted > 0 && accepted < oldest) {
+                oldest = accepted;
+            }
+        }
+        if (oldest == Long.MAX_VALUE) {
+            return 0;
+        }
+        return Math.max(System.currentTimeMillis() - oldest, 0);
+    }
+
+    /**
+     * Adsへの書き込みに成功したデータ件数を返す.
+     * @return データ件数
+     */
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    /**
+     * Adsへの書き込みに失敗し、ADS書き込み失敗ログへ出力したデータ件数を返す.
+     * @return データ件数
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * 受け付けずに同期の書き込みを行わせた要求数を返す.
+     * @return 要求数
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * キューを停止する.
+     * @param awaitMillis 書き込み待ちデータの完了待ち時間(ms)
+     */
+    void shutdown(long awaitMillis) {
+        closed = true;
+        for (Partition partition : partitions) {
+            partition.stop();
+        }
+        long deadline = System.currentTimeMillis() + awaitMillis;
+        for (Partition partition : partitions) {
+            try {
+                partition.thread.join(Math.max(deadline - System.currentTimeMillis(), 1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (partition.thread.isAlive()) {
+                log.warn("adsWriteBehind thread did not finish in time. [" + partition.thread.getName() + "]");
+                partition.thread.interrupt();
+            }
+        }
+        journal.close();
+    }
+
+    private Partition partitionOf(String indexName) {
+        return partitions[(indexName.hashCode() & Integer.MAX_VALUE) % partitions.length];
+    }
+
+    /**
+     * 書き込みスレッドが取り出した要求を、連続する同一インデックス・同一種別の要求ごとに書き込む.
+     * @param batch 書き込み要求
+     */
+    private void write(List<AdsWriteRequest> batch) {
+        int start = 0;
+        while (start < batch.size()) {
+            int end = runEnd(batch, start);
+            apply(batch.subList(start, end));
+            start = end;
+        }
+    }
+
+    /**
+     * 指定位置から1回のバルク書き込みにまとめられる要求の終端を返す.
+     * 同一IDの要求が含まれると更新件数による結果確認ができないため、同一IDの要求が現れた時点で区切る。
+     * @param batch 書き込み要求
+     * @param start 開始位置
+     * @return 終端(この位置の要求は含まない)
+     */
+    static int runEnd(List<AdsWriteRequest> batch, int start) {
+        AdsWriteRequest first = batch.get(start);
+        int end = start + 1;
+        if (!first.getKind().isBulk()) {
+            return end;
+        }
+        Set<String> ids = new HashSet<String>();
+        ids.add(first.getId());
+        while (end < batch.size()) {
+            AdsWriteRequest next = batch.get(end);
+            if (next.getKind() != first.getKind() || !next.getIndexName().equals(first.getIndexName())
+                    || !ids.add(next.getId())) {
+                break;
+            }
+            end++;
+        }
+        return end;
+    }
+
+    private void apply(List<AdsWriteRequest> run) {
+        String indexName = run.get(0).getIndexName();
+        try {
+            try {
+                execute(run);
+            } catch (AdsException e) {
+                // Indexが存在しない場合はインデックスを作成して再実行する。
+                if (!(e.getCause() instanceof SQLException)
+                        || !MYSQL_BAD_TABLE_ERROR.equals(((SQLException) e.getCause()).getSQLState())) {
+                    throw e;
+                }
+                DcCoreLog.Server.ES_INDEX_NOT_EXIST.params(indexName).writeLog();
+                ads.createIndex(indexName);
+                execute(run);
+            }
+        } catch (AdsException e) {
+            fail(run, e);
+            return;
+        } catch (RuntimeException e) {
+            fail(run, e);
+            return;
+        }
+        writtenCount.addAndGet(run.size());
+        for (AdsWriteRequest request : run) {
+            journal.complete(request.getSegment(), 1);
+        }
+    }
+
+    private void execute(List<AdsWriteRequest> run) throws AdsException {
+        AdsWriteRequest first = run.get(0);
+        String indexName = first.getIndexName();
+        switch (first.getKind()) {
+        case CREATE_ENTITY:
+            if (run.size() == 1) {
+                ads.createEntity(indexName, first.getEntity());
+            } else {
+                ads.bulkEntity(indexName, entities(run));
+            }
+            break;
+        case UPDATE_ENTITY:
+            ads.updateEntity(indexName, first.getEntity());
+            break;
+        case UPDATE_ENTITY_LINKS:
+            ads.bulkUpdateEntity(indexName, entities(run));
+            break;
+        case DELETE_ENTITY:
+            ads.deleteEntity(indexName, first.getId());
+            break;
+        case CREATE_LINK:
+            if (run.size() == 1) {
+                ads.createLink(indexName, first.getLink());
+            } else {
+                ads.bulkCreateLink(indexName, links(run));
+            }
+            break;
+        case UPDATE_LINK:
+            ads.updateLink(indexName, first.getLink());
+            break;
+        case DELETE_LINK:
+            ads.deleteLink(indexName, first.getId());
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown kind: " + first.getKind());
+        }
+    }
+
+    private void fail(List<AdsWriteRequest> run, Exception e) {
+        AdsWriteRequest first = run.get(0);
+        if (first.getKind().isBulk() && run.size() > 1) {
+            DcCoreLog.Server.DATA_STORE_ENTITY_BULK_CREATE_FAIL.params(e.getMessage()).reason(e).writeLog();
+        } else if (first.getKind() == AdsWriteRequest.Kind.CREATE_ENTITY
+                || first.getKind() == AdsWriteRequest.Kind.CREATE_LINK) {
+            DcCoreLog.Server.DATA_STORE_ENTITY_CREATE_FAIL.params(e.getMessage()).reason(e).writeLog();
+        } else if (first.getKind() == AdsWriteRequest.Kind.DELETE_ENTITY
+                || first.getKind() == AdsWriteRequest.Kind.DELETE_LINK) {
+            DcCoreLog.Server.DATA_STORE_ENTITY_DELETE_FAIL.params(e.getMessage()).reason(e).writeLog();
+        } else {
+            DcCoreLog.Server.DATA_STORE_ENTITY_UPDATE_FAIL.params(e.getMessage()).reason(e).writeLog();
+        }
+        failedCount.addAndGet(run.size());
+
+        // Adsの登録に失敗した場合は、専用のログに書込む
+        AdsWriteFailureLogWriter adsWriteFailureLogWriter = AdsWriteFailureLogWriter.getInstance(
+                DcCoreConfig.getAdsWriteFailureLogDir(),
+                DcCoreConfig.getCoreVersion(),
+                DcCoreConfig.getAdsWriteFailureLogPhysicalDelete());
+        for (AdsWriteRequest request : run) {
+            try {
+                adsWriteFailureLogWriter.writeActiveFile(request.getLogInfo());
+            } catch (AdsWriteFailureLogException e2) {
+                // 専用のログへの書込みに失敗した場合は、ジャーナルに残して次回起動時のリペア対象とする
+                DcCoreLog.Server.WRITE_ADS_FAILURE_LOG_ERROR.reason(e2).writeLog();
+                DcCoreLog.Server.WRITE_ADS_FAILURE_LOG_INFO.params(request.getLogInfo().toString()).writeLog();
+                continue;
+            }
+            journal.complete(request.getSegment(), 1);
+        }
+    }
+
+    private static List<EntitySetDocHandler> entities(List<AdsWriteRequest> run) {
+        List<EntitySetDocHandler> list = new ArrayList<EntitySetDocHandler>(run.size());
+        for (AdsWriteRequest request : run) {
+            list.add(request.getEntity());
+        }
+        return list;
+    }
+
+    private static List<LinkDocHandler> links(List<AdsWriteRequest> run) {
+        List<LinkDocHandler> list = new ArrayList<LinkDocHandler>(run.size());
+        for (AdsWriteRequest request : run) {
+            list.add(request.getLink());
+        }
+        return list;
+    }
+
+    /**
+     * 書き込みスレッドと、そのスレッドが担当する書き込み待ちの要求.
+     */
+    final class Partition implements Runnable {
+        private final LinkedList<AdsWriteRequest> pending = new LinkedList<AdsWriteRequest>();
+        private final Thread thread;
+        private long enqueued = 0;
+        private long completed = 0;
+        private long inFlightSince = 0;
+        private boolean stopped = false;
+
+        Partition(String name) {
+            this.thread = new Thread(this, name);
+            this.thread.setDaemon(true);
+        }
+
+        void start() {
+            thread.start();
+        }
+
+        synchronized void add(List<AdsWriteRequest> requests) {
+            pending.addAll(requests);
+            enqueued += requests.size();
+            notifyAll();
+        }
+
+        synchronized void stop() {
+            stopped = true;
+            notifyAll();
+        }
+
+        synchronized void awaitCompletion() throws InterruptedException {
+            long target = enqueued;
+            while (completed < target && thread.isAlive()) {
+                wait(TimeUnit.SECONDS.toMillis(1));
+            }
+        }
+
+        synchronized long getOldestAcceptedTime() {
+            if (inFlightSince > 0) {
+                return inFlightSince;
+            }
+            if (!pending.isEmpty()) {
+                return pending.getFirst().getAcceptedTime();
+            }
+            return 0;
+        }
+
+        /**
+         * 書き込み待ちの要求を取り出す. 要求がない場合は受け付けるまで待つ.
+         * @return 書き込み要求. 停止後に書き込み待ちの要求がなくなった場合は空のリスト
+         * @throws InterruptedException 割り込まれた場合
+         */
+        private synchronized List<AdsWriteRequest> take() throws InterruptedException {
+            while (pending.isEmpty() && !stopped) {
+                wait();
+            }
+            List<AdsWriteRequest> batch = new ArrayList<AdsWriteRequest>();
+            while (!pending.isEmpty() && batch.size() < batchSize) {
+                batch.add(pending.removeFirst());
+            }
+            if (!batch.isEmpty()) {
+                inFlightSince = batch.get(0).getAcceptedTime();
+            }
+            return batch;
+        }
+
+        private synchronized void done(int count) {
+            completed += count;
+            inFlightSince = 0;
+            notifyAll();
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                List<AdsWriteRequest> batch;
+                try {
+                    batch = take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (batch.isEmpty()) {
+                    return;
+                }
+                try {
+                    write(batch);
+                } finally {
+                    permits.release(batch.size());
+                    done(batch.size());
+                }
+            }
+        }
+    }
+}
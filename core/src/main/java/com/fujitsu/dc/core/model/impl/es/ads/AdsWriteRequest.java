@@ -0,0 +1,169 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model.impl.es.ads;
+
+import com.fujitsu.dc.common.ads.AdsWriteFailureLogInfo;
+import com.fujitsu.dc.core.model.impl.es.doc.EntitySetDocHandler;
+import com.fujitsu.dc.core.model.impl.es.doc.LinkDocHandler;
+
+/**
+ * Adsへの非同期書き込み要求.
+ * 書き込み対象のデータと、書き込みに失敗した場合にADS書き込み失敗ログへ出力する情報を保持する.
+ */
+public final class AdsWriteRequest {
+
+    /**
+     * 書き込み種別.
+     */
+    public enum Kind {
+        /** Entityの登録. */
+        CREATE_ENTITY(true),
+        /** Entityの更新. */
+        UPDATE_ENTITY(false),
+        /** Entityのlinksの一括更新. */
+        UPDATE_ENTITY_LINKS(true),
+        /** Entityの削除. */
+        DELETE_ENTITY(false),
+        /** Linkの登録. */
+        CREATE_LINK(true),
+        /** Linkの更新. */
+        UPDATE_LINK(false),
+        /** Linkの削除. */
+        DELETE_LINK(false);
+
+        private final boolean bulk;
+
+        Kind(boolean bulk) {
+            this.bulk = bulk;
+        }
+
+        /**
+         * 連続する同じ種別の要求を1回のバルク書き込みにまとめられるかを返す.
+         * @return まとめられる場合はtrue
+         */
+        boolean isBulk() {
+            return bulk;
+        }
+    }
+
+    private final String indexName;
+    private final Kind kind;
+    private final EntitySetDocHandler entity;
+    private final LinkDocHandler link;
+    private final AdsWriteFailureLogInfo logInfo;
+    private long acceptedTime;
+    private AdsWriteBehindJournal.Segment segment;
+
+    private AdsWriteRequest(String indexName, Kind kind, EntitySetDocHandler entity, LinkDocHandler link,
+            AdsWriteFailureLogInfo logInfo) {
+        this.indexName = indexName;
+        this.kind = kind;
+        this.entity = entity;
+        this.link = link;
+        this.logInfo = logInfo;
+    }
+
+    /**
+     * Entityに対する書き込み要求を生成する.
+     * @param indexName インデックス名
+     * @param kind 書き込み種別
+     * @param docHandler 書き込み対象のEntity
+     * @param logInfo 書き込み失敗時にADS書き込み失敗ログへ出力する情報
+     * @return 書き込み要求
+     */
+    public static AdsWriteRequest entity(String indexName, Kind kind, EntitySetDocHandler docHandler,
+            AdsWriteFailureLogInfo logInfo) {
+        return new AdsWriteRequest(indexName, kind, docHandler, null, logInfo);
+    }
+
+    /**
+     * Linkに対する書き込み要求を生成する.
+     * @param indexName インデックス名
+     * @param kind 書き込み種別
+     * @param docHandler 書き込み対象のLink
+     * @param logInfo 書き込み失敗時にADS書き込み失敗ログへ出力する情報
+     * @return 書き込み要求
+     */
+    public static AdsWriteRequest link(String indexName, Kind kind, LinkDocHandler docHandler,
+            AdsWriteFailureLogInfo logInfo) {
+        return new AdsWriteRequest(indexName, kind, null, docHandler, logInfo);
+    }
+
+    /**
+     * インデックス名を返す.
+     * @return インデックス名
+     */
+    public String getIndexName() {
+        return indexName;
+    }
+
+    /**
+     * 書き込み種別を返す.
+     * @return 書き込み種別
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * 書き込み対象のEntityを返す.
+     * @return Entity. Linkに対する要求の場合はnull
+     */
+    public EntitySetDocHandler getEntity() {
+        return entity;
+    }
+
+    /**
+     * 書き込み対象のLinkを返す.
+     * @return Link. Entityに対する要求の場合はnull
+     */
+    public LinkDocHandler getLink() {
+        return link;
+    }
+
+    /**
+     * 書き込み失敗時にADS書き込み失敗ログへ出力する情報を返す.
+     * @return ADS書き込み失敗ログ情報
+     */
+    public AdsWriteFailureLogInfo getLogInfo() {
+        return logInfo;
+    }
+
+    /**
+     * 書き込み対象のドキュメントIDを返す.
+     * @return ドキュメントID
+     */
+    String getId() {
+        if (entity != null) {
+            return entity.getId();
+        }
+        return link.getId();
+    }
+
+    long getAcceptedTime() {
+        return acceptedTime;
+    }
+
+    void accepted(long time, AdsWriteBehindJournal.Segment journalSegment) {
+        this.acceptedTime = time;
+        this.segment = journalSegment;
+    }
+
+    AdsWriteBehindJournal.Segment getSegment() {
+        return segment;
+    }
+}
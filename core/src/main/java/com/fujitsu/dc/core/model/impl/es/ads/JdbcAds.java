@@ -449,6 +449,15 @@ public class JdbcAds implements Ads {
         // 管理DB用SQL群
         String sqlCellDeleteInsert;
 
+        /** 一括登録/更新で1つのSQLにまとめる行数. */
+        int bulkRowsPerStatement;
+        /** ID指定の検索で1つのSQLに指定するID数. */
+        int searchIdsPerStatement;
+
+        static final String ENTITY_ROW_PLACEHOLDER = "(?,?,?,?,?,?,?,?,?,?,?,?)";
+        static final String LINK_ROW_PLACEHOLDER = "(?,?,?,?,?,?,?,?,?,?)";
+        static final String DAV_ROW_PLACEHOLDER = "(?,?,?,?,?,?,?,?,?,?,?)";
+
         static final StatementHandler NOP_STATEMENT_HANDLER = new StatementHandler() {
             @Override
             public void handle(PreparedStatement stmt) throws SQLException {
@@ -522,6 +531,9 @@ public class JdbcAds implements Ads {
 
             // 管理DB用SQL群
             this.sqlCellDeleteInsert = Sql.insertCellDelete.replace(SCHEMA_NAME_REPLACING_KEY, this.index);
+
+            this.bulkRowsPerStatement = Math.max(DcCoreConfig.getEsAdsBulkRowsPerStatement(), 1);
+            this.searchIdsPerStatement = Math.max(DcCoreConfig.getEsAdsSearchIdsPerStatement(), 1);
         }
 
         void createEntity(final EntitySetDocHandler oedh) throws AdsException {
@@ -543,79 +555,62 @@ public class JdbcAds implements Ads {
         }
 
         void bulkEntity(final List<EntitySetDocHandler> bulkRequestList) throws AdsException {
-            // 一括登録のSQLを生成する
-            StringBuilder sql = new StringBuilder(this.sqlEntityBulkInsert);
-            for (int i = 0; i < bulkRequestList.size(); i++) {
-                sql.append("(?,?,?,?,?,?,?,?,?,?,?,?)");
-                if (i != bulkRequestList.size() - 1) {
-                    sql.append(",");
-                }
-            }
-            this.executeUpdateSql(sql.toString(), new StatementHandlerForBulkEntity(bulkRequestList),
-                    bulkRequestList.size());
-
+            // 一括登録のSQLを一定の行数ごとに分割して実行する
+            this.executeBulkUpdateSql(this.sqlEntityBulkInsert, ENTITY_ROW_PLACEHOLDER, "", bulkRequestList,
+                    new BulkStatementHandlerFactory<EntitySetDocHandler>() {
+                        @Override
+                        public StatementHandler create(List<EntitySetDocHandler> rows) {
+                            return new StatementHandlerForBulkEntity(rows);
+                        }
+                    }, 1);
         }
 
         void bulkUpdateEntityLink(final List<EntitySetDocHandler> bulkRequestList) throws AdsException {
-            // 一括更新のSQLを生成する
-            StringBuilder sql = new StringBuilder(this.sqlEntityBulkInsert);
-            for (int i = 0; i < bulkRequestList.size(); i++) {
-                sql.append("(?,?,?,?,?,?,?,?,?,?,?,?)");
-                if (i != bulkRequestList.size() - 1) {
-                    sql.append(",");
-                }
-            }
-
-            sql.append(" on duplicate key update ");
-            sql.append("links=values(links)");
-
-            int expectedUpdateCount = bulkRequestList.size() * 2;
-            this.executeUpdateSql(sql.toString(), new StatementHandlerForBulkEntity(bulkRequestList),
-                    expectedUpdateCount);
-
+            // 一括更新のSQLを一定の行数ごとに分割して実行する
+            this.executeBulkUpdateSql(this.sqlEntityBulkInsert, ENTITY_ROW_PLACEHOLDER,
+                    " on duplicate key update links=values(links)", bulkRequestList,
+                    new BulkStatementHandlerFactory<EntitySetDocHandler>() {
+                        @Override
+                        public StatementHandler create(List<EntitySetDocHandler> rows) {
+                            return new StatementHandlerForBulkEntity(rows);
+                        }
+                    }, 2);
         }
 
         void bulkUpdateDav(List<DavNode> bulkRequestList) throws AdsException {
-            // 一括更新のSQLを生成する
-            StringBuilder sql = new StringBuilder(this.sqlDavBulkInsert);
-            for (int i = 0; i < bulkRequestList.size(); i++) {
-                sql.append("(?,?,?,?,?,?,?,?,?,?,?)");
-                if (i != bulkRequestList.size() - 1) {
-                    sql.append(",");
-                }
-            }
-
-            sql.append(" on duplicate key update ");
-            sql.append("cell_id=values(cell_id)");
-            sql.append(",box_id=values(box_id)");
-            sql.append(",parent_id=values(parent_id)");
-            sql.append(",children=values(children)");
-            sql.append(",node_type=values(node_type)");
-            sql.append(",acl=values(acl)");
-            sql.append(",properties=values(properties)");
-            sql.append(",file=values(file)");
-            sql.append(",published=values(published)");
-            sql.append(",updated=values(updated)");
-            sql.append(",id=values(id)");
-
-            int expectedUpdateCount = bulkRequestList.size() * 2;
-            this.executeUpdateSql(sql.toString(), new StatementHandlerForBulkDav(bulkRequestList),
-                    expectedUpdateCount);
-
+            // 一括更新のSQLを一定の行数ごとに分割して実行する
+            StringBuilder suffix = new StringBuilder();
+            suffix.append(" on duplicate key update ");
+            suffix.append("cell_id=values(cell_id)");
+            suffix.append(",box_id=values(box_id)");
+            suffix.append(",parent_id=values(parent_id)");
+            suffix.append(",children=values(children)");
+            suffix.append(",node_type=values(node_type)");
+            suffix.append(",acl=values(acl)");
+            suffix.append(",properties=values(properties)");
+            suffix.append(",file=values(file)");
+            suffix.append(",published=values(published)");
+            suffix.append(",updated=values(updated)");
+            suffix.append(",id=values(id)");
+
+            this.executeBulkUpdateSql(this.sqlDavBulkInsert, DAV_ROW_PLACEHOLDER, suffix.toString(), bulkRequestList,
+                    new BulkStatementHandlerFactory<DavNode>() {
+                        @Override
+                        public StatementHandler create(List<DavNode> rows) {
+                            return new StatementHandlerForBulkDav(rows);
+                        }
+                    }, 2);
         }
 
         void bulkCreateLink(final List<LinkDocHandler> bulkRequestList) throws AdsException {
-            // 一括登録のSQLを生成する
-            StringBuilder sql = new StringBuilder(this.sqlLinkBulkInsert);
-            for (int i = 0; i < bulkRequestList.size(); i++) {
-                sql.append("(?,?,?,?,?,?,?,?,?,?)");
-                if (i != bulkRequestList.size() - 1) {
-                    sql.append(",");
-                }
-            }
-            this.executeUpdateSql(sql.toString(), new StatementHandlerForBulkLink(bulkRequestList),
-                    bulkRequestList.size());
-
+            // 一括登録のSQLを一定の行数ごとに分割して実行する
+            this.executeBulkUpdateSql(this.sqlLinkBulkInsert, LINK_ROW_PLACEHOLDER, "", bulkRequestList,
+                    new BulkStatementHandlerFactory<LinkDocHandler>() {
+                        @Override
+                        public StatementHandler create(List<LinkDocHandler> rows) {
+                            return new StatementHandlerForBulkLink(rows);
+                        }
+                    }, 1);
         }
 
         void createCell(final EntitySetDocHandler docHandler) throws AdsException {
@@ -1055,26 +1050,16 @@ public class JdbcAds implements Ads {
             return sqlbuf.toString();
         }
 
-        @SuppressWarnings("unchecked")
         List<JSONObject> searchEntityList(final List<String> idList) throws AdsException {
-            String sql = createSearchSqlQueryString(this.sqlEntitySearch, idList);
-            Object ret = this.executeQuerySql(sql, new StatementHandlerForSearch(idList),
-                    createEntityQueryResultHandler());
-            return (List<JSONObject>) ret;
+            return this.executeSearchSql(this.sqlEntitySearch, idList, createEntityQueryResultHandler());
         }
 
-        @SuppressWarnings("unchecked")
         List<JSONObject> searchCellList(final List<String> idList) throws AdsException {
-            String sql = createSearchSqlQueryString(this.sqlCellSearch, idList);
-            Object ret = this.executeQuerySql(sql, new StatementHandlerForSearch(idList),
-                    createCellQueryResultHandler());
-            return (List<JSONObject>) ret;
+            return this.executeSearchSql(this.sqlCellSearch, idList, createCellQueryResultHandler());
         }
 
-        @SuppressWarnings("unchecked")
         List<JSONObject> searchLinkList(final List<String> idList) throws AdsException {
-            String sql = createSearchSqlQueryString(this.sqlLinkSearch, idList);
-            Object ret = this.executeQuerySql(sql, new StatementHandlerForSearch(idList),
+            return this.executeSearchSql(this.sqlLinkSearch, idList,
                     new QueryResultHandler() {
                         @Override
                         public Object handle(ResultSet resultSet) throws AdsException {
@@ -1094,15 +1079,35 @@ public class JdbcAds implements Ads {
                             return new ArrayList<JSONObject>();
                         }
                     });
-            return (List<JSONObject>) ret;
         }
 
+        /**
+         * ID指定の検索を、一定のID数ごとに分割して実行する.
+         * 分割したID数が同じ検索は同じSQLとなるため、コネクションごとのPreparedStatementのキャッシュが有効となる。
+         * @param sql IN句の値を除いた検索用SQL
+         * @param idList 検索するIDのリスト
+         * @param queryResultHandler 検索結果をJSONObjectのリストに変換するハンドラ
+         * @return 検索結果
+         * @throws AdsException 検索失敗時
+         */
         @SuppressWarnings("unchecked")
+        private List<JSONObject> executeSearchSql(String sql, List<String> idList,
+                QueryResultHandler queryResultHandler) throws AdsException {
+            if (idList.size() <= this.searchIdsPerStatement) {
+                return (List<JSONObject>) this.executeQuerySql(createSearchSqlQueryString(sql, idList),
+                        new StatementHandlerForSearch(idList), queryResultHandler);
+            }
+            List<JSONObject> ret = new ArrayList<JSONObject>();
+            for (int from = 0; from < idList.size(); from += this.searchIdsPerStatement) {
+                List<String> ids = idList.subList(from, Math.min(from + this.searchIdsPerStatement, idList.size()));
+                ret.addAll((List<JSONObject>) this.executeQuerySql(createSearchSqlQueryString(sql, ids),
+                        new StatementHandlerForSearch(ids), queryResultHandler));
+            }
+            return ret;
+        }
+
         List<JSONObject> searchDavNodeList(final List<String> idList) throws AdsException {
-            String sql = createSearchSqlQueryString(this.sqlDavNodeSearch, idList);
-            Object ret = this.executeQuerySql(sql, new StatementHandlerForSearch(idList),
-                    createDavNodeQueryResultHandler());
-            return (List<JSONObject>) ret;
+            return this.executeSearchSql(this.sqlDavNodeSearch, idList, createDavNodeQueryResultHandler());
         }
 
         Connection getConnection() throws AdsException {
@@ -1200,6 +1205,97 @@ public class JdbcAds implements Ads {
             }
         }
 
+        /**
+         * 複数行のINSERT文を、一定の行数ごとに分割して実行する.
+         * 分割した行数が同じSQLは1つのPreparedStatementでバッチ実行し、複数のSQLに分割した場合は1つのトランザクションで実行する。
+         * @param sql VALUES句の値を除いたINSERT文
+         * @param rowPlaceholder 1行分のVALUES句のプレースホルダ
+         * @param suffix VALUES句の後に付加する句
+         * @param rows 登録/更新する行
+         * @param factory 分割した行の値をプレースホルダに埋め込むHandlerの生成処理
+         * @param expectedCountPerRow 1行あたりの想定する更新件数
+         * @param <T> 行の型
+         * @throws AdsException 処理失敗時、または更新件数が想定と異なる場合
+         */
+        <T> void executeBulkUpdateSql(String sql, String rowPlaceholder, String suffix, List<T> rows,
+                BulkStatementHandlerFactory<T> factory, int expectedCountPerRow) throws AdsException {
+            int chunkSize = this.bulkRowsPerStatement;
+            if (rows.size() <= chunkSize) {
+                this.executeUpdateSql(createBulkSqlString(sql, rowPlaceholder, suffix, rows.size()),
+                        factory.create(rows), rows.size() * expectedCountPerRow);
+                return;
+            }
+            int fullChunks = rows.size() / chunkSize;
+            int remainder = rows.size() % chunkSize;
+            Connection con = this.getConnection();
+            PreparedStatement stmt = null;
+            boolean committed = false;
+            try {
+                con.setAutoCommit(false);
+                long count = 0;
+                boolean countKnown = true;
+                stmt = con.prepareStatement(createBulkSqlString(sql, rowPlaceholder, suffix, chunkSize));
+                for (int i = 0; i < fullChunks; i++) {
+                    factory.create(rows.subList(i * chunkSize, (i + 1) * chunkSize)).handle(stmt);
+                    stmt.addBatch();
+                }
+                for (int result : stmt.executeBatch()) {
+                    if (result < 0) {
+                        countKnown = false;
+                    } else {
+                        count += result;
+                    }
+                }
+                stmt.close();
+                stmt = null;
+                if (remainder > 0) {
+                    stmt = con.prepareStatement(createBulkSqlString(sql, rowPlaceholder, suffix, remainder));
+                    factory.create(rows.subList(fullChunks * chunkSize, rows.size())).handle(stmt);
+                    count += stmt.executeUpdate();
+                }
+                long expectedCount = (long) rows.size() * expectedCountPerRow;
+                if (countKnown && count != expectedCount) {
+                    throw new AdsException("["
+                            + count + "] rows have been affected while " + expectedCount
+                            + " row is expected to be affected.");
+                }
+                con.commit();
+                committed = true;
+            } catch (SQLException e) {
+                if (stmt != null) {
+                    DcCoreLog.Server.JDBC_EXEC_SQL.params(
+                            ((DelegatingPreparedStatement) stmt).getDelegate().toString()).writeLog();
+                }
+                throw new AdsException(e);
+            } finally {
+                try {
+                    if (stmt != null) {
+                        stmt.close();
+                    }
+                    if (!committed) {
+                        con.rollback();
+                    }
+                    con.setAutoCommit(AUTO_COMMIT);
+                    con.close();
+                } catch (SQLException e) {
+                    DcCoreLog.Server.RDB_DISCONNECT_FAIL.params(e.getMessage()).reason(e).writeLog();
+                    throw new AdsException(e);
+                }
+            }
+        }
+
+        private static String createBulkSqlString(String sql, String rowPlaceholder, String suffix, int rowCount) {
+            StringBuilder sqlbuf = new StringBuilder(sql);
+            for (int i = 0; i < rowCount; i++) {
+                sqlbuf.append(rowPlaceholder);
+                if (i != rowCount - 1) {
+                    sqlbuf.append(",");
+                }
+            }
+            sqlbuf.append(suffix);
+            return sqlbuf.toString();
+        }
+
         void executeUpdateSql(String sql, StatementHandler sp) throws AdsException {
             executeUpdateSql(sql, sp, 1);
         }
@@ -1498,6 +1594,14 @@ public class JdbcAds implements Ads {
             }
         }
 
+        /**
+         * 一括登録/更新で分割した行の値をプレースホルダに埋め込むHandlerを生成する.
+         * @param <T> 行の型
+         */
+        interface BulkStatementHandlerFactory<T> {
+            StatementHandler create(List<T> rows);
+        }
+
         /**
          * PreStatementに.
          */
@@ -26,15 +26,15 @@ import com.fujitsu.dc.core.DcCoreConfig;
 import com.fujitsu.dc.core.model.Box;
 import com.fujitsu.dc.core.model.Cell;
 import com.fujitsu.dc.core.utils.CacheClient;
-import com.fujitsu.dc.core.utils.MemcachedClient;
 import com.fujitsu.dc.core.utils.MemcachedClient.MemcachedClientException;
+import com.fujitsu.dc.core.utils.NearCacheClient;
 
 /**
  * Boxのキャッシュを扱うクラス.
  */
 public class BoxCache {
     static Logger log = LoggerFactory.getLogger(BoxCache.class);
-    private static MemcachedClient mcdClient = MemcachedClient.getCacheClient();
+    private static CacheClient mcdClient = NearCacheClient.getCacheClient();
 
     static CacheClient getMcdClient() {
         return mcdClient;
@@ -23,8 +23,8 @@ import org.slf4j.LoggerFactory;
 
 import com.fujitsu.dc.core.DcCoreConfig;
 import com.fujitsu.dc.core.utils.CacheClient;
-import com.fujitsu.dc.core.utils.MemcachedClient;
 import com.fujitsu.dc.core.utils.MemcachedClient.MemcachedClientException;
+import com.fujitsu.dc.core.utils.NearCacheClient;
 
 /**
  * Cellのキャッシュを扱うクラス.
@@ -32,7 +32,7 @@ import com.fujitsu.dc.core.utils.MemcachedClient.MemcachedClientException;
 public class CellCache {
     static Logger log = LoggerFactory.getLogger(CellCache.class);
 
-    static MemcachedClient mcdClient = MemcachedClient.getCacheClient();
+    static CacheClient mcdClient = NearCacheClient.getCacheClient();
 
     private CellCache() {
     }
@@ -0,0 +1,174 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model.impl.es.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fujitsu.dc.common.auth.token.Role;
+import com.fujitsu.dc.common.es.util.DcUUID;
+import com.fujitsu.dc.core.DcCoreConfig;
+import com.fujitsu.dc.core.model.Cell;
+import com.fujitsu.dc.core.utils.CacheClient;
+import com.fujitsu.dc.core.utils.MemcachedClient;
+import com.fujitsu.dc.core.utils.MemcachedClient.MemcachedClientException;
+import com.fujitsu.dc.core.utils.NearCacheClient;
+
+/**
+ * Cell単位のロール解決結果のキャッシュを扱うクラス.
+ * Account名、またはトランスセルトークンのExtCell URLとロールの組をキーとして、払い出すロールのリストを保持する。
+ * キャッシュキーにはCellごとの世代を含めており、{@link #clear(Cell)}で世代を更新することでCell内の全エントリを無効とする。
+ * 呼び出し側は解決前に{@link #generation(Cell)}で世代を取得し、その世代で登録すること。
+ * 解決中に無効化された場合、解決結果は古い世代で登録されるため参照されない.
+ * 世代はプロセス内キャッシュを介さずmemcachedで管理し、他のプロセスでの無効化を即座に反映する。
+ * 世代ごとのエントリは内容が変わらないため、プロセス内キャッシュを介して保持する.
+ */
+public class RoleCache {
+    static Logger log = LoggerFactory.getLogger(RoleCache.class);
+    static CacheClient mcdClient = NearCacheClient.getCacheClient();
+    static CacheClient generationClient = MemcachedClient.getCacheClient();
+
+    /** キャッシュするロール情報の要素数(Role名, Box名, Boxスキーマ, ベースURL). */
+    private static final int ROLE_FIELDS = 4;
+    private static final int INDEX_NAME = 0;
+    private static final int INDEX_BOX_NAME = 1;
+    private static final int INDEX_BOX_SCHEMA = 2;
+    private static final int INDEX_BASE_URL = 3;
+
+    static CacheClient getMcdClient() {
+        return mcdClient;
+    }
+
+    static CacheClient getGenerationClient() {
+        return generationClient;
+    }
+
+    private RoleCache() {
+    }
+
+    /**
+     * Cellのキャッシュ世代を取得する. 世代が存在しない場合は新たに発行する.
+     * @param cell Cellオブジェクト
+     * @return キャッシュ世代。キャッシュが無効、または世代を取得できなかった場合はnull
+     */
+    public static String generation(Cell cell) {
+        if (!isEnabled()) {
+            return null;
+        }
+        try {
+            String generation = getGenerationClient().get(generationKey(cell), String.class);
+            if (generation == null) {
+                // 他で同時に発行された世代を上書きしないよう、存在しない場合のみ登録して登録された世代を使用する
+                String issued = DcUUID.randomUUID();
+                if (Boolean.TRUE.equals(getGenerationClient().add(generationKey(cell),
+                        DcCoreConfig.getCacheMemcachedExpiresIn(), issued))) {
+                    return issued;
+                }
+                generation = getGenerationClient().get(generationKey(cell), String.class);
+            }
+            return generation;
+        } catch (MemcachedClientException e) {
+            // キャッシュのアクセスに失敗した場合は、DBからロールを解決させるためnullを返却
+            log.info("Failed to get RoleCache generation.");
+            return null;
+        }
+    }
+
+    /**
+     * ロール解決結果をキャッシュから取得する.
+     * @param cell Cellオブジェクト
+     * @param generation {@link #generation(Cell)}で取得したキャッシュ世代
+     * @param key ロール解決のキー
+     * @return ロールのリスト。キャッシュに存在しない場合はnull
+     */
+    public static List<Role> get(Cell cell, String generation, String key) {
+        if (generation == null || !isEnabled()) {
+            return null;
+        }
+        @SuppressWarnings("rawtypes")
+        ArrayList obj = null;
+        try {
+            obj = getMcdClient().get(cacheKey(cell, generation, key), ArrayList.class);
+        } catch (MemcachedClientException e) {
+            // キャッシュのアクセスに失敗した場合は、DBからロールを解決させるためnullを返却
+            log.info("Failed to get RoleCache.");
+        }
+        if (obj == null) {
+            return null;
+        }
+
+        List<Role> roles = new ArrayList<Role>(obj.size());
+        for (Object element : obj) {
+            String[] fields = (String[]) element;
+            roles.add(new Role(fields[INDEX_NAME], fields[INDEX_BOX_NAME], fields[INDEX_BOX_SCHEMA],
+                    fields[INDEX_BASE_URL]));
+        }
+        return roles;
+    }
+
+    /**
+     * ロール解決結果をキャッシュする.
+     * @param cell Cellオブジェクト
+     * @param generation 解決前に{@link #generation(Cell)}で取得したキャッシュ世代
+     * @param key ロール解決のキー
+     * @param roles ロールのリスト
+     */
+    public static void cache(Cell cell, String generation, String key, List<Role> roles) {
+        if (generation == null || roles == null || !isEnabled()) {
+            return;
+        }
+        ArrayList<String[]> obj = new ArrayList<String[]>(roles.size());
+        for (Role role : roles) {
+            String[] fields = new String[ROLE_FIELDS];
+            fields[INDEX_NAME] = role.getName();
+            fields[INDEX_BOX_NAME] = role.getBoxName();
+            fields[INDEX_BOX_SCHEMA] = role.getBoxSchema();
+            fields[INDEX_BASE_URL] = role.getBaseUrl();
+            obj.add(fields);
+        }
+        getMcdClient().put(cacheKey(cell, generation, key), DcCoreConfig.getCacheMemcachedExpiresIn(), obj);
+    }
+
+    /**
+     * 指定したCellのロール解決結果のキャッシュをすべて無効とする.
+     * @param cell Cellオブジェクト
+     */
+    public static void clear(Cell cell) {
+        if (!isEnabled()) {
+            return;
+        }
+        getGenerationClient().put(generationKey(cell), DcCoreConfig.getCacheMemcachedExpiresIn(),
+                DcUUID.randomUUID());
+    }
+
+    private static boolean isEnabled() {
+        return DcCoreConfig.isRoleCacheEnabled() && getMcdClient() != null && getGenerationClient() != null;
+    }
+
+    static String generationKey(Cell cell) {
+        return "rolegen:" + cell.getId();
+    }
+
+    static String cacheKey(Cell cell, String generation, String key) {
+        // ExtCell URLやロールURLを含むキーはmemcachedのキー長制限を超え得るためハッシュ化する
+        return "role:" + cell.getId() + ":" + generation + ":" + DigestUtils.sha256Hex(key);
+    }
+}
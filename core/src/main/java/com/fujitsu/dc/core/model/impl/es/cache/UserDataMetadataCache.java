@@ -0,0 +1,111 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model.impl.es.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.odata4j.edm.EdmDataServices;
+
+import com.fujitsu.dc.core.DcCoreConfig;
+
+/**
+ * 解析済みのユーザデータスキーマ(EdmDataServices)をプロセス内にキャッシュするクラス.
+ * UserDataSchemaCacheに格納されたスキーマ情報のバージョンと組で保持するため、
+ * スキーマが変更されてスキーマ情報が再作成された場合は古いEdmDataServicesは使用されない。
+ * キャッシュしたEdmDataServicesは複数のリクエストで共有されるため、変更しないこと。
+ */
+public class UserDataMetadataCache {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private static Map<String, VersionedMetadata> metadataCache = createCacheMap(
+            DcCoreConfig.getCacheSchemaMetadataMaxEntries());
+
+    private UserDataMetadataCache() {
+    }
+
+    /**
+     * 解析済みスキーマをキャッシュから取得する.
+     * @param nodeId ノードID
+     * @param version スキーマ情報のバージョン
+     * @return 解析済みスキーマ。キャッシュに存在しない場合、またはバージョンが一致しない場合はnull
+     */
+    public static EdmDataServices get(String nodeId, String version) {
+        if (!DcCoreConfig.isSchemaCacheEnabled() || version == null) {
+            return null;
+        }
+        VersionedMetadata cache;
+        synchronized (metadataCache) {
+            cache = metadataCache.get(nodeId);
+        }
+        if (cache == null || !version.equals(cache.version)) {
+            return null;
+        }
+        return cache.metadata;
+    }
+
+    /**
+     * 解析済みスキーマをキャッシュする.
+     * @param nodeId ノードID
+     * @param version スキーマ情報のバージョン
+     * @param metadata 解析済みスキーマ
+     */
+    public static void cache(String nodeId, String version, EdmDataServices metadata) {
+        if (!DcCoreConfig.isSchemaCacheEnabled() || version == null || metadata == null) {
+            return;
+        }
+        synchronized (metadataCache) {
+            metadataCache.put(nodeId, new VersionedMetadata(version, metadata));
+        }
+    }
+
+    /**
+     * 指定したノードの解析済みスキーマをキャッシュから削除する.
+     * @param nodeId ノードID
+     */
+    public static void clear(String nodeId) {
+        synchronized (metadataCache) {
+            metadataCache.remove(nodeId);
+        }
+    }
+
+    private static Map<String, VersionedMetadata> createCacheMap(final int maxEntries) {
+        return new LinkedHashMap<String, VersionedMetadata>(INITIAL_CAPACITY, LOAD_FACTOR, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, VersionedMetadata> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * バージョン付きの解析済みスキーマ.
+     */
+    static final class VersionedMetadata {
+        private final String version;
+        private final EdmDataServices metadata;
+
+        VersionedMetadata(String version, EdmDataServices metadata) {
+            this.version = version;
+            this.metadata = metadata;
+        }
+    }
+}
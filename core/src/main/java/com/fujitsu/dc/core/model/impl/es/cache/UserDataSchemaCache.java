@@ -24,15 +24,15 @@ import org.slf4j.LoggerFactory;
 
 import com.fujitsu.dc.core.DcCoreConfig;
 import com.fujitsu.dc.core.utils.CacheClient;
-import com.fujitsu.dc.core.utils.MemcachedClient;
 import com.fujitsu.dc.core.utils.MemcachedClient.MemcachedClientException;
+import com.fujitsu.dc.core.utils.NearCacheClient;
 
 /**
  * ユーザデータスキーマのキャッシュを扱うクラス.
  */
 public class UserDataSchemaCache {
     static Logger log = LoggerFactory.getLogger(UserDataSchemaCache.class);
-    static MemcachedClient mcdClient = MemcachedClient.getCacheClient();
+    static CacheClient mcdClient = NearCacheClient.getCacheClient();
 
     static CacheClient getMcdClient() {
         return mcdClient;
@@ -81,6 +81,7 @@ public class UserDataSchemaCache {
         if (!DcCoreConfig.isSchemaCacheEnabled()) {
             return;
         }
+        UserDataMetadataCache.clear(nodeId);
         getMcdClient().delete(cacheKey(nodeId));
     }
 
@@ -129,7 +130,13 @@ public class UserDataSchemaCache {
 
         Map<String, Object> latestCache = null;
         try {
-            latestCache = getMcdClient().get(cacheKey(nodeId), Map.class);
+            // 他のプロセスでの変更を検知するため、プロセス内キャッシュを参照せずに取得する
+            CacheClient client = getMcdClient();
+            if (client instanceof NearCacheClient) {
+                latestCache = ((NearCacheClient) client).getLatest(cacheKey(nodeId), Map.class);
+            } else {
+                latestCache = client.get(cacheKey(nodeId), Map.class);
+            }
         } catch (MemcachedClientException e) {
             // キャッシュのアクセスに失敗した場合は、DBからデータを取得させるためtrueを返却
             log.info("Failed to get latest UserDataSchemaCache.");
@@ -16,8 +16,11 @@
  */
 package com.fujitsu.dc.core.model.impl.es.odata;
 
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -35,20 +38,25 @@ import org.slf4j.LoggerFactory;
 import com.fujitsu.dc.common.es.response.DcIndexResponse;
 import com.fujitsu.dc.common.es.util.DcUUID;
 import com.fujitsu.dc.core.DcCoreException;
+import com.fujitsu.dc.core.auth.BasicAuthCache;
 import com.fujitsu.dc.core.model.Box;
 import com.fujitsu.dc.core.model.BoxCmp;
 import com.fujitsu.dc.core.model.Cell;
 import com.fujitsu.dc.core.model.ModelFactory;
+import com.fujitsu.dc.core.model.ctl.Account;
 import com.fujitsu.dc.core.model.ctl.CtlSchema;
 import com.fujitsu.dc.core.model.ctl.ExtCell;
+import com.fujitsu.dc.core.model.ctl.ExtRole;
 import com.fujitsu.dc.core.model.ctl.ReceivedMessage;
 import com.fujitsu.dc.core.model.ctl.ReceivedMessagePort;
 import com.fujitsu.dc.core.model.ctl.Relation;
+import com.fujitsu.dc.core.model.ctl.Role;
 import com.fujitsu.dc.core.model.impl.es.EsModel;
 import com.fujitsu.dc.core.model.impl.es.accessor.DataSourceAccessor;
 import com.fujitsu.dc.core.model.impl.es.accessor.EntitySetAccessor;
 import com.fujitsu.dc.core.model.impl.es.accessor.ODataLinkAccessor;
 import com.fujitsu.dc.core.model.impl.es.cache.BoxCache;
+import com.fujitsu.dc.core.model.impl.es.cache.RoleCache;
 import com.fujitsu.dc.core.model.impl.es.doc.EntitySetDocHandler;
 import com.fujitsu.dc.core.model.impl.es.doc.OEntityDocHandler;
 import com.fujitsu.dc.core.model.lock.Lock;
@@ -61,6 +69,17 @@ public class CellCtlODataProducer extends EsODataProducer {
     Cell cell;
     Logger log = LoggerFactory.getLogger(CellCtlODataProducer.class);
 
+    /** ロール解決に影響するエンティティセット名. */
+    private static final Set<String> ROLE_RELATED_ENTITY_SETS = new HashSet<String>(Arrays.asList(
+            Account.EDM_TYPE_NAME, Role.EDM_TYPE_NAME, ExtCell.EDM_TYPE_NAME, Relation.EDM_TYPE_NAME,
+            ExtRole.EDM_TYPE_NAME, Box.EDM_TYPE_NAME));
+
+    /** 更新・削除対象がロール解決に影響するエンティティセットか否か. 更新・削除後にロールのキャッシュを無効とするために使用する. */
+    private boolean roleRelatedChanging = false;
+
+    /** 更新・削除対象のAccount名. 更新・削除後にBasic認証のキャッシュを無効とするために使用する. */
+    private String changingAccountName = null;
+
     /**
      * Constructor.
      * @param cell Cell
@@ -132,10 +151,20 @@ public class CellCtlODataProducer extends EsODataProducer {
         }
     }
 
+    @Override
+    public void afterCreate(final String entitySetName, final OEntity oEntity, final EntitySetDocHandler docHandler) {
+        if (ROLE_RELATED_ENTITY_SETS.contains(entitySetName)) {
+            // ロール解決に影響するデータの登録後はロールのキャッシュを無効とする
+            RoleCache.clear(this.cell);
+        }
+    }
+
     @Override
     public void beforeDelete(final String entitySetName,
             final OEntityKey oEntityKey,
             final EntitySetDocHandler docHandler) {
+        this.roleRelatedChanging = ROLE_RELATED_ENTITY_SETS.contains(entitySetName);
+        this.changingAccountName = getAccountName(entitySetName, oEntityKey);
 
         if (!Box.EDM_TYPE_NAME.equals(entitySetName)) {
             return;
@@ -158,10 +187,22 @@ public class CellCtlODataProducer extends EsODataProducer {
         BoxCache.clear(oEntityKey.asSingleValue().toString(), this.cell);
     }
 
+    @Override
+    public void afterDelete() {
+        if (this.roleRelatedChanging) {
+            // ロール解決に影響するデータの削除後はロールのキャッシュを無効とする
+            RoleCache.clear(this.cell);
+        }
+        invalidateBasicAuthCache();
+    }
+
     @Override
     public void beforeUpdate(final String entitySetName,
             final OEntityKey oEntityKey,
             final EntitySetDocHandler docHandler) {
+        this.roleRelatedChanging = ROLE_RELATED_ENTITY_SETS.contains(entitySetName);
+        this.changingAccountName = getAccountName(entitySetName, oEntityKey);
+
         if (!Box.EDM_TYPE_NAME.equals(entitySetName)) {
             return;
         }
@@ -169,6 +210,47 @@ public class CellCtlODataProducer extends EsODataProducer {
         BoxCache.clear(oEntityKey.asSingleValue().toString(), this.cell);
     }
 
+    @Override
+    public void afterUpdate() {
+        if (this.roleRelatedChanging) {
+            // ロール解決に影響するデータの更新後はロールのキャッシュを無効とする
+            RoleCache.clear(this.cell);
+        }
+        invalidateBasicAuthCache();
+    }
+
+    @Override
+    public void updatePassword(final EdmEntitySet entitySet,
+            final OEntityKey originalKey, final String dcCredHeader) {
+        super.updatePassword(entitySet, originalKey, dcCredHeader);
+        // パスワード変更後は変更前のパスワードによるBasic認証のキャッシュを無効とする
+        BasicAuthCache.invalidate(this.cell.getId(), originalKey.asSingleValue().toString());
+    }
+
+    private String getAccountName(final String entitySetName, final OEntityKey oEntityKey) {
+        if (!Account.EDM_TYPE_NAME.equals(entitySetName)) {
+            return null;
+        }
+        return oEntityKey.asSingleValue().toString();
+    }
+
+    private void invalidateBasicAuthCache() {
+        if (this.changingAccountName != null) {
+            // Accountの更新・削除後は変更前の認証情報によるBasic認証のキャッシュを無効とする
+            BasicAuthCache.invalidate(this.cell.getId(), this.changingAccountName);
+            this.changingAccountName = null;
+        }
+    }
+
+    @Override
+    public void afterLinkChange(final String sourceEntitySetName, final String targetEntitySetName) {
+        if (ROLE_RELATED_ENTITY_SETS.contains(sourceEntitySetName)
+                || ROLE_RELATED_ENTITY_SETS.contains(targetEntitySetName)) {
+            // ロール解決に影響するリンクの登録・削除後はロールのキャッシュを無効とする
+            RoleCache.clear(this.cell);
+        }
+    }
+
     /**
      * 関係登録/削除、及びメッセージ受信のステータスを変更する.
      * @param entitySet entitySetName
@@ -209,6 +291,11 @@ public class CellCtlODataProducer extends EsODataProducer {
             DcIndexResponse idxRes;
             idxRes = esType.update(entitySetDocHandler.getId(), entitySetDocHandler, version);
             entitySetDocHandler.setVersion(idxRes.version());
+
+            // 関係登録/削除によりRelationとExtCellのリンクが変更されるため、ロールのキャッシュを無効とする
+            if (ReceivedMessage.STATUS_APPROVED.equals(status)) {
+                RoleCache.clear(this.cell);
+            }
             return entitySetDocHandler.createEtag();
         } finally {
             log.debug("unlock");
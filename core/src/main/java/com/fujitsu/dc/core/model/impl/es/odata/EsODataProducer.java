@@ -20,6 +20,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -64,6 +65,7 @@ import com.fujitsu.dc.common.es.response.DcBulkResponse;
 import com.fujitsu.dc.common.es.response.DcDeleteResponse;
 import com.fujitsu.dc.common.es.response.DcGetResponse;
 import com.fujitsu.dc.common.es.response.DcIndexResponse;
+import com.fujitsu.dc.common.es.response.DcMultiGetResponse;
 import com.fujitsu.dc.common.es.response.DcSearchHit;
 import com.fujitsu.dc.common.es.response.DcSearchHits;
 import com.fujitsu.dc.common.es.response.DcSearchResponse;
@@ -305,6 +307,14 @@ public abstract class EsODataProducer implements DcODataProducer {
     public void afterDelete() {
     }
 
+    /**
+     * 実装サブクラスProducerリンク登録・削除後の処理を行いたいときは、ここをoverrideして実装する。
+     * @param sourceEntitySetName リンク元のエンティティセット名
+     * @param targetEntitySetName リンク先のエンティティセット名
+     */
+    public void afterLinkChange(final String sourceEntitySetName, final String targetEntitySetName) {
+    }
+
     /**
      * 1-0:Nの削除処理時にN側を検索処理を行う.
      * @param np EdmNavigationProperty
@@ -364,6 +374,71 @@ public abstract class EsODataProducer implements DcODataProducer {
         return LockManager.getLock(Lock.CATEGORY_ODATA, this.getCellId(), null, this.getNodeId());
     }
 
+    /**
+     * 単一エンティティの更新のためのLockを行う.
+     * 他のエンティティやスキーマに影響しない更新の場合は、OData空間を共有モードで、対象のエンティティを排他モードでロックする。
+     * それ以外の場合はOData空間全体をロックする.
+     * @param entitySetName EntitySet名
+     * @param originalKey 更新対象のキー
+     * @param oEntityWrapper 更新内容
+     * @return Lock
+     */
+    Lock lockForUpdate(String entitySetName, OEntityKey originalKey, OEntityWrapper oEntityWrapper) {
+        EdmEntitySet entitySet = this.getMetadata().findEdmEntitySet(entitySetName);
+        if (LockManager.isHierarchicalLockEnabled() && isEntityScopedUpdate(entitySet, originalKey, oEntityWrapper)) {
+            return lockEntity(entitySet, originalKey);
+        }
+        return lock();
+    }
+
+    /**
+     * OData空間を共有モードで、指定したエンティティを排他モードでロックする.
+     * 単一キーでないエンティティの場合はOData空間全体をロックする.
+     * @param entitySet EntitySet
+     * @param entityKey ロック対象のキー
+     * @return Lock
+     */
+    Lock lockEntity(EdmEntitySet entitySet, OEntityKey entityKey) {
+        if (entityKey == null || !KeyType.SINGLE.equals(entityKey.getKeyType())) {
+            return lock();
+        }
+        String keyString = AbstractODataResource.normalizeOEntityKey(entityKey, entitySet)
+                .toKeyStringWithoutParentheses();
+        return LockManager.getHierarchicalLock(Lock.CATEGORY_ODATA, this.getCellId(), null, this.getNodeId(),
+                entitySet.getName() + "(" + keyString + ")");
+    }
+
+    /**
+     * 他のエンティティやスキーマに影響しない単一エンティティの更新かを判定する.
+     * 主キーの変更、UK制約の確認、NTKPによるリンクの変更を伴う更新は、OData空間全体のロックが必要となる。
+     * 実装サブクラスProducerで更新時に他のデータを変更する場合は、ここをoverrideしてfalseを返すよう実装する。
+     * @param entitySet 更新対象のEntitySet
+     * @param originalKey 更新対象のキー
+     * @param oEntityWrapper 更新内容
+     * @return 単一エンティティの更新の場合はtrue
+     */
+    protected boolean isEntityScopedUpdate(EdmEntitySet entitySet, OEntityKey originalKey,
+            OEntityWrapper oEntityWrapper) {
+        if (originalKey == null || !KeyType.SINGLE.equals(originalKey.getKeyType())) {
+            return false;
+        }
+        if (ODataProducerUtils.hasUniqueKeys(entitySet.getType())) {
+            return false;
+        }
+        OEntityKey newKey = oEntityWrapper.getEntityKey();
+        if (newKey == null) {
+            return true;
+        }
+        if (!KeyType.SINGLE.equals(newKey.getKeyType())) {
+            return false;
+        }
+        String orgKeyStr = AbstractODataResource.normalizeOEntityKey(originalKey, entitySet)
+                .toKeyStringWithoutParentheses();
+        String newKeyStr = AbstractODataResource.normalizeOEntityKey(newKey, entitySet)
+                .toKeyStringWithoutParentheses();
+        return orgKeyStr.equals(newKeyStr);
+    }
+
     @Override
     public final BaseResponse callFunction(final EdmFunctionImport arg0,
             final Map<String, OFunctionParameter> arg1,
@@ -471,6 +546,21 @@ public abstract class EsODataProducer implements DcODataProducer {
         oedh.setStaticFields(staticFields);
     }
 
+    /**
+     * 複数のEntitySetDocHandlerにNavigationTargetKeyPropertyを設定する.
+     * NTKPのリンク先のエンティティは、エンティティ単位ではなく一括で取得する.
+     * @param eSet EntitySet
+     * @param oedhList EntitySetDocHandlerのリスト
+     */
+    public void setNavigationTargetKeyProperty(EdmEntitySet eSet, List<EntitySetDocHandler> oedhList) {
+        Map<String, String> ntkpProperties = new HashMap<String, String>();
+        Map<String, String> ntkpValueMap = new HashMap<String, String>();
+        getNtkpValueMap(eSet, oedhList, false, ntkpProperties, ntkpValueMap);
+        for (EntitySetDocHandler oedh : oedhList) {
+            setNtkpValues(oedh, ntkpProperties, ntkpValueMap);
+        }
+    }
+
     /**
      * エンティティを取得する.
      * @param entitySet エンティティセット
@@ -750,9 +840,20 @@ public abstract class EsODataProducer implements DcODataProducer {
             DcSearchHit[] hits = res.getHits().getHits();
             Map<String, List<OEntity>> expandEntitiesMap = null;
 
+            List<EntitySetDocHandler> entityList = new ArrayList<EntitySetDocHandler>();
+            for (DcSearchHit hit : hits) {
+                EntitySetDocHandler oedh = getDocHandler(hit, eSet.getName());
+                entityList.add(oedh);
+            }
+
+            // Property/ComplexTypePropertyのAliasマッピングデータを作成する場合は、
+            // EntityType/ComplexTypeのUUIDと名前とのマッピングデータに全件が必要となるため、NTKPのリンク先を全件検索する
+            boolean searchAll = this.propertyAliasMap != null
+                    && (Property.EDM_TYPE_NAME.equals(eSet.getName())
+                    || ComplexTypeProperty.EDM_TYPE_NAME.equals(eSet.getName()));
             Map<String, String> ntkpProperties = new HashMap<String, String>();
             Map<String, String> ntkpValueMap = new HashMap<String, String>();
-            getNtkpValueMap(eSet, ntkpProperties, ntkpValueMap);
+            getNtkpValueMap(eSet, entityList, searchAll, ntkpProperties, ntkpValueMap);
 
             List<EntitySimpleProperty> selectQuery = null;
             if (queryInfo != null) {
@@ -764,11 +865,6 @@ public abstract class EsODataProducer implements DcODataProducer {
             if (this.propertyAliasMap != null) {
                 setEntityPropertyMap(eSet, hits, ntkpValueMap);
             }
-            List<EntitySetDocHandler> entityList = new ArrayList<EntitySetDocHandler>();
-            for (DcSearchHit hit : hits) {
-                EntitySetDocHandler oedh = getDocHandler(hit, eSet.getName());
-                entityList.add(oedh);
-            }
             ExpandEntitiesMapCreator creator =
                     new ExpandEntitiesMapCreator(queryInfo, eSet.getType(), expandMaxNum);
             creator.setCache(entityList, this);
@@ -790,18 +886,8 @@ public abstract class EsODataProducer implements DcODataProducer {
                 expandEntitiesMap = creator.create(oedh, this);
 
                 // NTKPHashMapから値を設定する
+                setNtkpValues(oedh, ntkpProperties, ntkpValueMap);
                 Map<String, Object> staticFields = oedh.getStaticFields();
-                Map<String, Object> links = oedh.getManyToOnelinkId();
-                for (Map.Entry<String, String> ntkpProperty : ntkpProperties.entrySet()) {
-                    String linksKey = getLinkskey(ntkpProperty.getValue());
-                    if (links.containsKey(linksKey)) {
-                        String linkId = links.get(linksKey).toString();
-                        staticFields.put(ntkpProperty.getKey(), ntkpValueMap.get(ntkpProperty.getKey() + linkId));
-                    } else {
-                        staticFields.put(ntkpProperty.getKey(), null);
-                    }
-                }
-                oedh.setStaticFields(staticFields);
 
                 ((OEntityDocHandler) oedh).setExpandMaxNum(expandMaxNum);
                 OEntityWrapper oEntity = oedh.createOEntity(eSet, this.getMetadata(), expandEntitiesMap, selectQuery);
@@ -883,8 +969,42 @@ public abstract class EsODataProducer implements DcODataProducer {
         return null;
     }
 
+    /**
+     * NTKPのプロパティ名とLinkIDの組から、EntitySetDocHandlerにNTKPの値を設定する.
+     * @param oedh EntitySetDocHandler
+     * @param ntkpProperties NTKPのプロパティ名がKey、リンク先のエンティティタイプ名がValueのMap
+     * @param ntkpValueMap NTKPのプロパティ名とLinkIDの組がKey、NTKPの値がValueのMap
+     */
+    private void setNtkpValues(EntitySetDocHandler oedh,
+            Map<String, String> ntkpProperties,
+            Map<String, String> ntkpValueMap) {
+        Map<String, Object> staticFields = oedh.getStaticFields();
+        Map<String, Object> links = oedh.getManyToOnelinkId();
+        for (Map.Entry<String, String> ntkpProperty : ntkpProperties.entrySet()) {
+            String linksKey = getLinkskey(ntkpProperty.getValue());
+            if (links.containsKey(linksKey)) {
+                String linkId = links.get(linksKey).toString();
+                staticFields.put(ntkpProperty.getKey(), ntkpValueMap.get(ntkpProperty.getKey() + linkId));
+            } else {
+                staticFields.put(ntkpProperty.getKey(), null);
+            }
+        }
+        oedh.setStaticFields(staticFields);
+    }
+
+    /**
+     * 検索結果のエンティティが持つNTKPの値を取得する.
+     * 検索結果のエンティティからリンクしているエンティティのみをIDで一括取得する。
+     * @param eSet EdmEntitySet
+     * @param entityList 検索結果のエンティティ
+     * @param searchAll リンク先のエンティティを全件検索する場合はtrue
+     * @param ntkpProperties NTKPのプロパティ名がKey、リンク先のエンティティタイプ名がValueのMap
+     * @param ntkpValueMap リンク先のプロパティ名とLinkIDの組がKey、NTKPの値がValueのMap
+     */
     @SuppressWarnings("unchecked")
     private void getNtkpValueMap(EdmEntitySet eSet,
+            List<EntitySetDocHandler> entityList,
+            boolean searchAll,
             Map<String, String> ntkpProperties,
             Map<String, String> ntkpValueMap) {
         Enumerable<EdmProperty> eProps = eSet.getType().getProperties();
@@ -897,8 +1017,6 @@ public abstract class EsODataProducer implements DcODataProducer {
                 String propName = ntkp.get("propName");
                 ntkpProperties.put(propertyName, entityType);
 
-                // 1階層目のNTKPのエンティティ一覧を取得する
-                EntitySetAccessor ntkpAccessor = this.getAccessorForEntitySet(entityType);
                 // Cell、Box,NodeIDの検索条件を追加
                 List<Map<String, Object>> implicitFilters = getImplicitFilters(entityType);
                 Map<String, Object> searchQuery = new HashMap<String, Object>();
@@ -909,35 +1027,57 @@ public abstract class EsODataProducer implements DcODataProducer {
                     searchQuery.put("query", query);
                 }
 
-                DcSearchHit[] ntkpSearchResults = ntkpAccessor.search(searchQuery).getHits().getHits();
+                // 1階層目のNTKPのエンティティ一覧を取得する
+                Set<String> linkIds = null;
+                if (!searchAll) {
+                    linkIds = new LinkedHashSet<String>();
+                    String linksKey = getLinkskey(entityType);
+                    for (EntitySetDocHandler entity : entityList) {
+                        Object linkId = entity.getManyToOnelinkId().get(linksKey);
+                        if (linkId != null) {
+                            linkIds.add(linkId.toString());
+                        }
+                    }
+                }
+                Map<String, Map<String, Object>> ntkpEntities = getNtkpEntities(entityType, searchQuery, linkIds);
 
                 // 2階層目のNTKPが存在する場合、2階層目のNTKPのエンティティ一覧を取得する
-                DcSearchHit[] nestNtkpSearchResults = null;
                 Map<String, String> nestNtkpValueMap = new HashMap<String, String>();
                 if (propName.startsWith("_")) {
                     HashMap<String, String> tmpntkp = AbstractODataResource.convertNTKP(propName);
                     entityType = tmpntkp.get("entityType");
                     propName = tmpntkp.get("propName");
-                    ntkpAccessor = this.getAccessorForEntitySet(entityType);
-                    nestNtkpSearchResults = ntkpAccessor.search(searchQuery).getHits().getHits();
-                    for (DcSearchHit nestNtkpSearchResult : nestNtkpSearchResults) {
-                        String linkId = nestNtkpSearchResult.getId();
-                        String linkNtkpValue = ((Map<String, Object>) nestNtkpSearchResult.getSource().get(
+                    Set<String> nestLinkIds = null;
+                    if (!searchAll) {
+                        nestLinkIds = new LinkedHashSet<String>();
+                        for (Map<String, Object> ntkpEntity : ntkpEntities.values()) {
+                            Object linkId = ((Map<String, Object>) ntkpEntity.get(OEntityDocHandler.KEY_LINK))
+                                    .get(entityType);
+                            if (linkId != null) {
+                                nestLinkIds.add(linkId.toString());
+                            }
+                        }
+                    }
+                    Map<String, Map<String, Object>> nestNtkpEntities =
+                            getNtkpEntities(entityType, searchQuery, nestLinkIds);
+                    for (Map.Entry<String, Map<String, Object>> nestNtkpEntity : nestNtkpEntities.entrySet()) {
+                        String linkId = nestNtkpEntity.getKey();
+                        String linkNtkpValue = ((Map<String, Object>) nestNtkpEntity.getValue().get(
                                 OEntityDocHandler.KEY_STATIC_FIELDS)).get(propName).toString();
                         nestNtkpValueMap.put(linkId, linkNtkpValue);
                     }
                 }
 
                 // LinkIDがKey,NTKPの値がValueのMapを作成する
-                for (DcSearchHit ntkpSearchResult : ntkpSearchResults) {
-                    String linkId = ntkpSearchResult.getId();
-                    Map<String, Object> linkFields = (Map<String, Object>) ntkpSearchResult.getSource().get(
+                for (Map.Entry<String, Map<String, Object>> ntkpEntity : ntkpEntities.entrySet()) {
+                    String linkId = ntkpEntity.getKey();
+                    Map<String, Object> linkFields = (Map<String, Object>) ntkpEntity.getValue().get(
                             OEntityDocHandler.KEY_LINK);
                     String linkNtkpValue = null;
                     if (linkFields.containsKey(entityType)) {
                         linkNtkpValue = nestNtkpValueMap.get(linkFields.get(entityType));
                     } else {
-                        Map<String, Object> staticFields = (Map<String, Object>) ntkpSearchResult.getSource().get(
+                        Map<String, Object> staticFields = (Map<String, Object>) ntkpEntity.getValue().get(
                                 OEntityDocHandler.KEY_STATIC_FIELDS);
                         linkNtkpValue = staticFields.get(propName).toString();
                     }
@@ -947,6 +1087,36 @@ public abstract class EsODataProducer implements DcODataProducer {
         }
     }
 
+    /**
+     * NTKPのリンク先のエンティティを取得する.
+     * @param entityType リンク先のエンティティタイプ名
+     * @param searchQuery 全件検索する場合の検索条件
+     * @param linkIds 取得するエンティティのID. nullの場合は全件検索する
+     * @return IDがKey、ドキュメントがValueのMap
+     */
+    private Map<String, Map<String, Object>> getNtkpEntities(String entityType,
+            Map<String, Object> searchQuery,
+            Set<String> linkIds) {
+        Map<String, Map<String, Object>> ntkpEntities = new LinkedHashMap<String, Map<String, Object>>();
+        EntitySetAccessor ntkpAccessor = this.getAccessorForEntitySet(entityType);
+        if (linkIds == null) {
+            for (DcSearchHit hit : ntkpAccessor.search(searchQuery).getHits().getHits()) {
+                ntkpEntities.put(hit.getId(), hit.getSource());
+            }
+        } else if (!linkIds.isEmpty()) {
+            // 検索結果からリンクしているエンティティのみを1回のリクエストで取得する
+            DcMultiGetResponse response = ntkpAccessor.multiGet(new ArrayList<String>(linkIds));
+            if (response != null) {
+                for (DcGetResponse getResponse : response.getResponses()) {
+                    if (getResponse != null && getResponse.isExists()) {
+                        ntkpEntities.put(getResponse.getId(), getResponse.getSource());
+                    }
+                }
+            }
+        }
+        return ntkpEntities;
+    }
+
     /**
      * Deletes an existing entity.
      * @param entitySetName the entity-set name of the entity
@@ -1242,6 +1412,7 @@ public abstract class EsODataProducer implements DcODataProducer {
             log.debug("unlock");
             lock.release();
         }
+        this.afterLinkChange(srcSetName, targetEntity.getEntitySetName());
     }
 
     /**
@@ -1436,6 +1607,7 @@ public abstract class EsODataProducer implements DcODataProducer {
             log.debug("unlock");
             lock.release();
         }
+        this.afterLinkChange(sourceOEntity.getEntitySetName(), targetEntitySetName);
         return res;
     }
 
@@ -1996,6 +2168,7 @@ public abstract class EsODataProducer implements DcODataProducer {
             log.debug("unlock");
             lock.release();
         }
+        this.afterLinkChange(srcSetName, tgtSet.getName());
     }
 
     /**
@@ -2538,7 +2711,7 @@ public abstract class EsODataProducer implements DcODataProducer {
             final OEntityWrapper oEntityWrapper) {
 
         // ロック取得
-        Lock lock = this.lock();
+        Lock lock = this.lockForUpdate(entitySetName, originalKey, oEntityWrapper);
         try {
             updateAndMergeEntity(entitySetName, originalKey, oEntityWrapper, true);
         } finally {
@@ -2554,7 +2727,7 @@ public abstract class EsODataProducer implements DcODataProducer {
         // 注）EntitySetの存在保証は予め呼び出し側で行われているため、ここではチェックしない。
 
         // ロック取得
-        Lock lock = this.lock();
+        Lock lock = this.lockForUpdate(entitySetName, originalKey, oEntityWrapper);
         try {
             hasRelatedEntities(entitySetName, originalKey);
             updateAndMergeEntity(entitySetName, originalKey, oEntityWrapper, false);
@@ -2688,7 +2861,7 @@ public abstract class EsODataProducer implements DcODataProducer {
      */
     public void updatePassword(final EdmEntitySet entitySet,
             final OEntityKey originalKey, final String dcCredHeader) {
-        Lock lock = lock();
+        Lock lock = lockEntity(entitySet, originalKey);
         try {
             // ESから変更するAccount情報を取得する
             EntitySetDocHandler oedhNew = this.retrieveWithKey(entitySet, originalKey);
@@ -2716,7 +2889,7 @@ public abstract class EsODataProducer implements DcODataProducer {
      * @param accountId アカウントのID
      */
     public void updateLastAuthenticated(final EdmEntitySet entitySet, final OEntityKey originalKey, String accountId) {
-        Lock lock = lock();
+        Lock lock = lockEntity(entitySet, originalKey);
         try {
             // 現在時刻を取得
             long nowTimeMillis = System.currentTimeMillis();
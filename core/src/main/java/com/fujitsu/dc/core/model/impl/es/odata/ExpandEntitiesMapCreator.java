@@ -18,6 +18,7 @@ package com.fujitsu.dc.core.model.impl.es.odata;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -167,11 +168,11 @@ public final class ExpandEntitiesMapCreator {
             return;
         }
 
-        // 検索結果をrelatedEntitieslistに追加する
+        // 検索結果から取得データのDocHandlerをエンティティタイプごとに生成する
+        Map<String, List<EntitySetDocHandler>> docHandlersMap = new LinkedHashMap<String, List<EntitySetDocHandler>>();
         for (DcItem item : multiSearchResponse) {
             DcSearchHit[] searchHits = item.getSearchHits();
             for (DcSearchHit hit : searchHits) {
-                // 取得データのDocHandlerを生成する
                 Map<String, String> entityTypeNameMap = producer.getEntityTypeMap();
                 Map<String, Object> source = hit.getSource();
                 String entityTypeName;
@@ -182,8 +183,27 @@ public final class ExpandEntitiesMapCreator {
                 } else {
                     entityTypeName = hit.getType();
                 }
-                EntitySetDocHandler docHandler = producer.getDocHandler(hit, entityTypeName);
+                List<EntitySetDocHandler> docHandlers = docHandlersMap.get(entityTypeName);
+                if (docHandlers == null) {
+                    docHandlers = new ArrayList<EntitySetDocHandler>();
+                    docHandlersMap.put(entityTypeName, docHandlers);
+                }
+                docHandlers.add(producer.getDocHandler(hit, entityTypeName));
+            }
+        }
 
+        // 検索結果をrelatedEntitieslistに追加する
+        for (Map.Entry<String, List<EntitySetDocHandler>> docHandlers : docHandlersMap.entrySet()) {
+            String entityTypeName = docHandlers.getKey();
+            EdmEntitySet edmEntitySet = producer.getMetadata().getEdmEntitySet(entityTypeName);
+            // NTKPのリンク先はエンティティタイプごとに一括で取得する
+            producer.setNavigationTargetKeyProperty(edmEntitySet, docHandlers.getValue());
+
+            // エンティティタイプ名からNavigationProperty名を取得
+            Map<String, String> entityTypeNameNavPropNameMap = getEntityTypeNameNavPropNameMap();
+            String navPropName = entityTypeNameNavPropNameMap.get(entityTypeName);
+
+            for (EntitySetDocHandler docHandler : docHandlers.getValue()) {
                 // ベースデータに紐付くデータのみ返却データに追加する
                 List<String> baseEntityIds;
                 if (docHandler.getManyToOnelinkId().containsKey(baseEntityLinksKey)) {
@@ -196,15 +216,8 @@ public final class ExpandEntitiesMapCreator {
                     }
                 }
 
-                // DocHander生成
-                EdmEntitySet edmEntitySet = producer.getMetadata().getEdmEntitySet(entityTypeName);
-                producer.setNavigationTargetKeyProperty(edmEntitySet, docHandler);
                 OEntity relatedEntity = docHandler.createOEntity(edmEntitySet);
 
-                // エンティティタイプ名からNavigationProperty名を取得
-                Map<String, String> entityTypeNameNavPropNameMap = getEntityTypeNameNavPropNameMap();
-                String navPropName = entityTypeNameNavPropNameMap.get(entityTypeName);
-
                 // リンク元一覧に含まれないエンティティはキャッシュ対象外とする
                 for (String baseEntityId : baseEntityIds) {
                     if (this.relatedEntitiesListCache.containsKey(baseEntityId)) {
@@ -27,6 +27,7 @@ import org.odata4j.core.NamespacedAnnotation;
 import org.odata4j.core.OEntityId;
 import org.odata4j.core.OEntityKey;
 import org.odata4j.core.OProperty;
+import org.odata4j.edm.EdmEntityType;
 import org.odata4j.edm.EdmProperty;
 import org.odata4j.producer.QueryInfo;
 import org.slf4j.Logger;
@@ -56,6 +57,23 @@ public final class ODataProducerUtils {
     private ODataProducerUtils() {
     }
 
+    /**
+     * EntityTypeにUK制約が定義されているかを返す.
+     * @param entityType EntityType
+     * @return UK制約が定義されている場合はtrue
+     */
+    static boolean hasUniqueKeys(EdmEntityType entityType) {
+        for (EdmProperty edmProp : entityType.getProperties().toList()) {
+            for (NamespacedAnnotation<?> anot : edmProp.getAnnotations()) {
+                if ("Unique".equals(anot.getName())
+                        && DcCoreUtils.XmlConst.NS_DC1.equals(anot.getNamespace().getUri())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     /**
      * Entity登録・更新時のデータの一意性チェックを行う.
      * @param producer
@@ -24,11 +24,13 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.UUID;
 
 import net.spy.memcached.internal.CheckedOperationTimeoutException;
 
 import org.odata4j.core.OEntity;
 import org.odata4j.core.OEntityKey;
+import org.odata4j.core.OProperty;
 import org.odata4j.edm.EdmDataServices;
 import org.odata4j.edm.EdmEntitySet;
 import org.odata4j.edm.EdmEntityType;
@@ -63,6 +65,7 @@ import com.fujitsu.dc.core.model.impl.es.QueryMapFactory;
 import com.fujitsu.dc.core.model.impl.es.accessor.DataSourceAccessor;
 import com.fujitsu.dc.core.model.impl.es.accessor.EntitySetAccessor;
 import com.fujitsu.dc.core.model.impl.es.accessor.ODataLinkAccessor;
+import com.fujitsu.dc.core.model.impl.es.cache.UserDataMetadataCache;
 import com.fujitsu.dc.core.model.impl.es.cache.UserDataSchemaCache;
 import com.fujitsu.dc.core.model.impl.es.doc.EntitySetDocHandler;
 import com.fujitsu.dc.core.model.impl.es.doc.LinkDocHandler;
@@ -244,13 +247,21 @@ public class UserDataODataProducer extends EsODataProducer {
             }
 
         } else {
-            this.entityTypeIds = (Map<String, String>) cache.get("entityTypeIds");
-            setPropertyAliasMap((Map<String, PropertyAlias>) cache.get("propertyAliasMap"));
-            setEntityTypeMap((Map<String, String>) cache.get("entityTypeMap"));
+            // キャッシュ情報はプロセス内で共有されるため、更新される可能性のあるMapは複製して使用する
+            this.entityTypeIds = new HashMap<String, String>((Map<String, String>) cache.get("entityTypeIds"));
+            setPropertyAliasMap(new HashMap<String, PropertyAlias>(
+                    (Map<String, PropertyAlias>) cache.get("propertyAliasMap")));
+            setEntityTypeMap(new HashMap<String, String>((Map<String, String>) cache.get("entityTypeMap")));
+            // 解析済みのスキーマがキャッシュされている場合は再解析しない
+            String version = (String) cache.get("version");
+            EdmDataServices metacache = UserDataMetadataCache.get(this.getNodeId(), version);
+            if (metacache != null) {
+                this.metadata = metacache;
+                return;
+            }
             // 取得した情報を設定する
             // XMLパーサ(StAX,SAX,DOM)にInputStreamをそのまま渡すとファイル一覧の取得処理が
             // 中断してしまうため暫定対処としてバッファに格納してからパースする
-            EdmDataServices metacache = null;
             try {
                 StringReader sr = new StringReader((String) cache.get("edmx"));
                 XMLFactoryProvider2 provider = StaxXMLFactoryProvider2.getInstance();
@@ -266,6 +277,7 @@ public class UserDataODataProducer extends EsODataProducer {
                 log.info("XMLParseException: " + tw.getMessage(), tw.fillInStackTrace());
                 throw tw;
             }
+            UserDataMetadataCache.cache(this.getNodeId(), version, metacache);
             this.metadata = metacache;
         }
     }
@@ -285,6 +297,8 @@ public class UserDataODataProducer extends EsODataProducer {
             return null;
         }
         cache.put("edmx", w.toString());
+        // 解析済みスキーマのキャッシュと対応付けるためのバージョン
+        cache.put("version", UUID.randomUUID().toString());
         return cache;
     }
 
@@ -393,6 +407,28 @@ public class UserDataODataProducer extends EsODataProducer {
         createDynamicPropertyEntity(docHandler);
     }
 
+    /**
+     * スキーマに未登録のプロパティを含む更新は、dynamic propertyのPropertyを作成するためOData空間全体のロックが必要となる.
+     * @param entitySet 更新対象のEntitySet
+     * @param originalKey 更新対象のキー
+     * @param oEntityWrapper 更新内容
+     * @return 単一エンティティの更新の場合はtrue
+     */
+    @Override
+    protected boolean isEntityScopedUpdate(EdmEntitySet entitySet, OEntityKey originalKey,
+            OEntityWrapper oEntityWrapper) {
+        if (!super.isEntityScopedUpdate(entitySet, originalKey, oEntityWrapper)) {
+            return false;
+        }
+        EdmEntityType entityType = entitySet.getType();
+        for (OProperty<?> property : oEntityWrapper.getProperties()) {
+            if (entityType.findProperty(property.getName()) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public void beforeBulkCreate(final LinkedHashMap<String, BulkRequest> bulkRequests) {
 
@@ -656,6 +692,11 @@ public class UserDataODataProducer extends EsODataProducer {
         // UserDataにおけるNTKP（_Box.Nameのような関連データをプロパティで指定する方法）は未実装であるため処理不要
     }
 
+    @Override
+    public void setNavigationTargetKeyProperty(EdmEntitySet eSet, List<EntitySetDocHandler> oedhList) {
+        // UserDataにおけるNTKP（_Box.Nameのような関連データをプロパティで指定する方法）は未実装であるため処理不要
+    }
+
     @Override
     public Map<String, Object> getLinkFieldsQuery(String entityTypeId, String id) {
         // { "term" : { "l" : "EntityTypeの内部ID:UserDataの内部ID" }}
@@ -189,6 +189,19 @@ public class UserSchemaODataProducer extends EsODataProducer {
         UserDataSchemaCache.disable(this.davCmp.getNodeId());
     }
 
+    /**
+     * スキーマの更新はOData空間全体に影響するため、常にOData空間全体をロックする.
+     * @param entitySet 更新対象のEntitySet
+     * @param originalKey 更新対象のキー
+     * @param oEntityWrapper 更新内容
+     * @return 常にfalse
+     */
+    @Override
+    protected boolean isEntityScopedUpdate(EdmEntitySet entitySet, OEntityKey originalKey,
+            OEntityWrapper oEntityWrapper) {
+        return false;
+    }
+
     @Override
     public void afterDelete() {
         UserDataSchemaCache.disable(this.davCmp.getNodeId());
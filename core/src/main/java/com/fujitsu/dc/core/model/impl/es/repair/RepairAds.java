@@ -18,11 +18,18 @@ package com.fujitsu.dc.core.model.impl.es.repair;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -67,6 +74,9 @@ public class RepairAds {
     private File adsLogBaseDir;
     private boolean physicalDelete;
     private int logCountPerIteration;
+    private int parallelism;
+    // OData空間ごとのパーティションを並列にリペアするためのスレッドプール（並列度が1の場合はnull）
+    private ExecutorService repairExecutor;
     // 処理中のADS書き込み失敗ログのファイル名に付加されているタイムスタンプ
     // TODO AdsWriteFailureLogWriterクラスから取得するように見直す。
     private long createTime;
@@ -114,6 +124,9 @@ public class RepairAds {
                 logger.info("AdsWriteFailureLog does not exist. Terminate the repair process.");
                 return;
             }
+            if (parallelism > 1) {
+                repairExecutor = Executors.newFixedThreadPool(parallelism, new RepairThreadFactory());
+            }
 
             // リペア処理本体
             // - ADS書き込み失敗ログファイルの読み込み（一定量での読み込み）
@@ -139,10 +152,28 @@ public class RepairAds {
             // - 前回からのエラーも検出したいので、static変数でログ出力可否を判定する？
             logger.error("An error is detected in ads repair process.", e);
         } finally {
+            if (null != repairExecutor) {
+                repairExecutor.shutdown();
+                repairExecutor = null;
+            }
             rotateRetryAndErrorLog();
         }
     }
 
+    /**
+     * リペア用スレッドを生成するThreadFactory.
+     */
+    private static class RepairThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "ads-repair-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
     /**
      * リペア処理中に出力されたリトライ用/エラー用のADS書き込み失敗ログをローテートする.
      */
@@ -178,6 +209,7 @@ public class RepairAds {
         adsLogBaseDir = new File(adsLogBaseDirPath);
         physicalDelete = DcCoreConfig.getAdsWriteFailureLogPhysicalDelete();
         logCountPerIteration = DcCoreConfig.getAdsWriteFailureLogCountPerIteration();
+        parallelism = DcCoreConfig.getAdsRepairParallelism();
     }
 
     /**
@@ -257,12 +289,29 @@ public class RepairAds {
 
     /**
      * ADS書き込み失敗ログを１ファイルずつ読み込み、ADSへデータ補正する.
+     * 一定量ごとに読み込んだログをOData空間キーごとのパーティションに分割して並列にリペアし、
+     * リペアが完了した行数をチェックポイントとして記録する。チェックポイントが存在する場合は、その行から処理を再開する。
      * @param logFile ローテートされたADS書き込み失敗ログ
      */
     private void readAdsWriteFialureLog(File logFile) throws RepairAdsException {
         RollingAdsWriteFailureLog adsLog = new RollingAdsWriteFailureLog(
                 logFile, adsLogBaseDirPath, pcsVersion, physicalDelete);
+        RepairAdsCheckpoint checkpoint = new RepairAdsCheckpoint(logFile);
+        long processedCount = checkpoint.read();
         try {
+            if (processedCount > 0) {
+                // 前回のリペア処理で完了している行を読み飛ばす
+                logger.info("Resuming repair from line " + processedCount + ". Repairlog file: " + logFile);
+                long skipped = 0;
+                while (skipped < processedCount) {
+                    int count = (int) Math.min(processedCount - skipped, logCountPerIteration);
+                    List<String> logRecords = adsLog.readAdsFailureLog(count);
+                    if (logRecords.isEmpty()) {
+                        break;
+                    }
+                    skipped += logRecords.size();
+                }
+            }
             while (true) {
                 // ADS書き込み失敗ログを読み込み、ログ出力情報を作成する。
                 List<String> logRecords = adsLog.readAdsFailureLog(logCountPerIteration);
@@ -290,17 +339,19 @@ public class RepairAds {
                         logger.error("Failed to parse adsWriteFailureLog.", e);
                     }
                 }
-                Map<String, List<AdsWriteFailureLogInfo>> mapOfOdataLock =
-                        new HashMap<String, List<AdsWriteFailureLogInfo>>();
+                Map<String, Map<String, AdsWriteFailureLogInfo>> mapOfOdataLock =
+                        new LinkedHashMap<String, Map<String, AdsWriteFailureLogInfo>>();
                 // データ書き込み時のOData空間キーごとにADS書き込み失敗ログから読み込んだログ出力情報を集約する。
                 // 同じデータに対するログが複数存在する場合は、後勝ちとする。
                 for (AdsWriteFailureLogInfo logInfo : rowsData) {
                     String key = logInfo.getIndexName() + "_" + logInfo.getLockKey();
                     updateAdsWriteFailureLogMap(mapOfOdataLock, logInfo, key);
                 }
-                for (Entry<String, List<AdsWriteFailureLogInfo>> sourceLogInfo : mapOfOdataLock.entrySet()) {
-                    executeRepairAds(sourceLogInfo.getValue());
-                }
+                executeRepairAdsPartitions(mapOfOdataLock.values());
+
+                // 読み込んだ行のリペアがすべて完了したため、チェックポイントを更新する
+                processedCount += logRecords.size();
+                checkpoint.write(processedCount);
             }
         } catch (AdsWriteFailureLogException e) {
             // ここでエラーとなった場合は、呼び出し元に戻り、次のADS書き込み失敗ログの処理に移行する。
@@ -310,10 +361,18 @@ public class RepairAds {
             // エラー発生のため、ADS出力失敗ログは削除せず、クローズのみとしておく
             adsLog.closeRotatedFile();
             return;
+        } catch (RepairAdsException e) {
+            // リペア処理全体を異常終了させるため、ADS出力失敗ログはクローズのみとし、チェックポイントから再開させる
+            adsLog.closeRotatedFile();
+            throw e;
+        } catch (RuntimeException e) {
+            adsLog.closeRotatedFile();
+            throw e;
         }
         try {
             // 正常終了のため、ADS出力失敗ログのクローズおよび削除を行う
             adsLog.deleteRotatedLog();
+            checkpoint.delete();
         } catch (AdsWriteFailureLogException e) {
             logger.error("Faild to delete adsWriteFailureLog.", e);
         }
@@ -321,73 +380,121 @@ public class RepairAds {
 
     /**
      * OData空間ごとに管理しているリペア情報を新たに読み込んだ情報で更新する.
+     * 同じデータ(UUID)に対するリペア情報は後勝ちとし、1件に集約する。
      * @param map OData空間ごとに管理しているリペア情報のマップ
      * @param logInfo ログから読み込んだADS書き込み失敗情報
      * @param key mapへアクセスするためのキー
      */
-    private void updateAdsWriteFailureLogMap(Map<String, List<AdsWriteFailureLogInfo>> map,
+    private void updateAdsWriteFailureLogMap(Map<String, Map<String, AdsWriteFailureLogInfo>> map,
             AdsWriteFailureLogInfo logInfo, String key) {
-        List<AdsWriteFailureLogInfo> list = map.get(key);
-        if (null == list) {
-            list = new ArrayList<AdsWriteFailureLogInfo>();
-            list.add(logInfo);
-            map.put(key, list);
-        } else {
-            // OData空間が存在する場合は、リストの中身をUUIDで検索し、検索結果をもとに追加 or 更新する。
-            String uuid = logInfo.getUuid();
-            int index = 0;
-            for (; index < list.size(); index++) {
-                AdsWriteFailureLogInfo item = list.get(index);
-                if (uuid.equals(item.getUuid())) {
-                    break;
-                }
-            }
-            if (index == list.size()) {
-                list.add(logInfo);
-            } else {
-                list.remove(index);
-                list.add(logInfo);
-            }
+        Map<String, AdsWriteFailureLogInfo> partition = map.get(key);
+        if (null == partition) {
+            partition = new LinkedHashMap<String, AdsWriteFailureLogInfo>();
+            map.put(key, partition);
         }
+        // 処理順序を最後に書き込まれた順とするため、既存の情報は削除してから追加する
+        partition.remove(logInfo.getUuid());
+        partition.put(logInfo.getUuid(), logInfo);
     }
 
-    private void executeRepairAds(List<AdsWriteFailureLogInfo> logInfos) throws RepairAdsException {
-        // 1件ごとに処理を行う。
-        // TODO 性能的な問題が発生した場合は、ｎ件ごとに処理を行うように修正すること。
-        for (AdsWriteFailureLogInfo logInfo : logInfos) {
-            logger.info("Starting repair. Repair record: " + logInfo.toString());
-            String indexName = logInfo.getIndexName();
-            String routingId = logInfo.getRoutingId();
-            if ("".equals(routingId)) {
-                routingId = EsIndex.CELL_ROUTING_KEY_NAME;
+    /**
+     * OData空間ごとのパーティションをリペアする.
+     * OData空間が異なるパーティション同士は独立しているため、リペア用のスレッドプールで並列に処理する。
+     * いずれかのパーティションでリペア処理全体を異常終了させる例外が発生した場合は、すべてのパーティションの完了を待ってからスローする。
+     * @param partitions OData空間ごとのリペア情報
+     * @throws RepairAdsException リペア処理全体を異常終了させる場合
+     */
+    private void executeRepairAdsPartitions(Collection<Map<String, AdsWriteFailureLogInfo>> partitions)
+            throws RepairAdsException {
+        if (null == repairExecutor || partitions.size() <= 1) {
+            for (Map<String, AdsWriteFailureLogInfo> partition : partitions) {
+                executeRepairAds(partition.values());
             }
+            return;
+        }
 
-            Lock lock = null;
-            String lockKey = logInfo.getLockKey();
+        List<Future<Void>> futures = new ArrayList<Future<Void>>(partitions.size());
+        for (final Map<String, AdsWriteFailureLogInfo> partition : partitions) {
+            futures.add(repairExecutor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws RepairAdsException {
+                    executeRepairAds(partition.values());
+                    return null;
+                }
+            }));
+        }
+        Throwable failure = null;
+        for (Future<Void> future : futures) {
             try {
-                // lockKeyが空(Cell再帰的削除の場合)であれば、ロックしない
-                if (null != lockKey && !lockKey.isEmpty()) {
-                    try {
-                        lock = lock(lockKey);
-                    } catch (DcCoreException e) {
-                        if (e.getCode().equals(DcCoreException.Server.GET_LOCK_STATE_ERROR.getCode())
-                                || e.getCode().equals(DcCoreException.Server.DATA_STORE_UNKNOWN_ERROR.getCode())) {
-                            // 全体を異常終了させる
-                            throw e;
-                        } else {
-                            // lockが他のプロセスに取得されており、取得できなかったため、異常終了にはせず、次の行に移行する
+                future.get();
+            } catch (ExecutionException e) {
+                if (null == failure) {
+                    failure = e.getCause();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RepairAdsException("Ads repair process is interrupted.", e);
+            }
+        }
+        if (failure instanceof RepairAdsException) {
+            throw (RepairAdsException) failure;
+        } else if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        } else if (null != failure) {
+            throw new RepairAdsException("Failed to repair ads.", failure);
+        }
+    }
+
+    /**
+     * 1つのOData空間に対するリペア情報をADSへリペアする.
+     * 同じOData空間のリペア情報はすべて同じロックキーを持つため、ロックはパーティションごとに1回だけ取得する。
+     * @param logInfos OData空間ごとのリペア情報
+     * @throws RepairAdsException リペア処理全体を異常終了させる場合
+     */
+    private void executeRepairAds(Collection<AdsWriteFailureLogInfo> logInfos) throws RepairAdsException {
+        if (logInfos.isEmpty()) {
+            return;
+        }
+        Lock lock = null;
+        String lockKey = logInfos.iterator().next().getLockKey();
+        try {
+            // lockKeyが空(Cell再帰的削除の場合)であれば、ロックしない
+            if (null != lockKey && !lockKey.isEmpty()) {
+                try {
+                    lock = lock(lockKey);
+                } catch (DcCoreException e) {
+                    if (e.getCode().equals(DcCoreException.Server.GET_LOCK_STATE_ERROR.getCode())
+                            || e.getCode().equals(DcCoreException.Server.DATA_STORE_UNKNOWN_ERROR.getCode())) {
+                        // 全体を異常終了させる
+                        throw e;
+                    } else {
+                        // lockが他のプロセスに取得されており、取得できなかったため、異常終了にはせず、次のOData空間に移行する
+                        for (AdsWriteFailureLogInfo logInfo : logInfos) {
                             writeAdsRetryLog(logInfo.toString());
-                            logger.info("Other process has a lockObject.");
-                            continue;
                         }
+                        logger.info("Other process has a lockObject.");
+                        return;
                     }
-                    if (null == lock) {
-                        // 該当行を不正ログファイルに退避する
+                }
+                if (null == lock) {
+                    // 該当行を不正ログファイルに退避する
+                    for (AdsWriteFailureLogInfo logInfo : logInfos) {
                         writeAdsErrorLog(logInfo.toString());
-                        String message = String.format("Faild to get lock. lockKey= [%s]", lockKey);
-                        logger.error(message);
-                        continue;
                     }
+                    String message = String.format("Faild to get lock. lockKey= [%s]", lockKey);
+                    logger.error(message);
+                    return;
+                }
+            }
+
+            for (AdsWriteFailureLogInfo logInfo : logInfos) {
+                logger.info("Starting repair. Repair record: " + logInfo.toString());
+                String indexName = logInfo.getIndexName();
+                String routingId = logInfo.getRoutingId();
+                if ("".equals(routingId)) {
+                    routingId = EsIndex.CELL_ROUTING_KEY_NAME;
                 }
 
                 List<String> idList = new ArrayList<String>();
@@ -411,14 +518,13 @@ public class RepairAds {
                     // MySQLへの検索に失敗したため、ツール全体を異常終了させる
                     throw new RepairAdsException(message, e);
                 }
-            } finally {
-                if (null != lock) {
-                    logger.debug("unlock");
-                    lock.release();
-                }
+            }
+        } finally {
+            if (null != lock) {
+                logger.debug("unlock");
+                lock.release();
             }
         }
-
     }
 
     /**
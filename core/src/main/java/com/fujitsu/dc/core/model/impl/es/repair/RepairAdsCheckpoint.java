@@ -0,0 +1,110 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model.impl.es.repair;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * ADS書き込み失敗ログのリペア進捗を管理するクラス.
+ * <p>
+ * リペアが完了した行数をADS書き込み失敗ログごとのチェックポイントファイルに記録する。 リペア処理が途中で中断された場合は、
+ * 次回のリペア処理でチェックポイントの行から処理を再開する。
+ * </p>
+ */
+public final class RepairAdsCheckpoint {
+
+    static Logger logger = LoggerFactory.getLogger(RepairAdsCheckpoint.class);
+
+    /** チェックポイントファイルのファイル名に付加するサフィックス. */
+    public static final String CHECKPOINT_SUFFIX = ".checkpoint";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private final File checkpointFile;
+
+    /**
+     * コンストラクタ.
+     * @param logFile ローテートされたADS書き込み失敗ログ
+     */
+    public RepairAdsCheckpoint(File logFile) {
+        this.checkpointFile = new File(logFile.getParentFile(), logFile.getName() + CHECKPOINT_SUFFIX);
+    }
+
+    /**
+     * リペアが完了した行数を取得する.
+     * チェックポイントファイルが存在しない、または内容が不正な場合は先頭から処理するため0を返す。
+     * @return リペアが完了した行数
+     */
+    public long read() {
+        if (!checkpointFile.isFile()) {
+            return 0L;
+        }
+        try {
+            long count = Long.parseLong(FileUtils.readFileToString(checkpointFile, "UTF-8").trim());
+            return Math.max(count, 0L);
+        } catch (IOException e) {
+            logger.warn("Failed to read checkpoint of ads repair. [" + checkpointFile.getAbsolutePath() + "]", e);
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid checkpoint of ads repair. [" + checkpointFile.getAbsolutePath() + "]", e);
+        }
+        return 0L;
+    }
+
+    /**
+     * リペアが完了した行数を記録する.
+     * 書き込み途中で中断された場合に不正な内容とならないよう、一時ファイルに書き込んでからリネームする。
+     * 記録に失敗した場合も、リペアは冪等であるため処理は継続する。
+     * @param count リペアが完了した行数
+     */
+    public void write(long count) {
+        File temporaryFile = new File(checkpointFile.getParentFile(), checkpointFile.getName() + TEMPORARY_SUFFIX);
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(temporaryFile);
+            out.write(Long.toString(count).getBytes("UTF-8"));
+            out.getFD().sync();
+            out.close();
+            out = null;
+            if (!temporaryFile.renameTo(checkpointFile)) {
+                // 既存ファイルへのリネームができないファイルシステムの場合は、削除してからリネームする
+                if (!checkpointFile.delete() || !temporaryFile.renameTo(checkpointFile)) {
+                    logger.warn("Failed to update checkpoint of ads repair. [" + checkpointFile.getAbsolutePath()
+                            + "]");
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to write checkpoint of ads repair. [" + checkpointFile.getAbsolutePath() + "]", e);
+        } finally {
+            IOUtils.closeQuietly(out);
+        }
+    }
+
+    /**
+     * チェックポイントファイルを削除する.
+     */
+    public void delete() {
+        if (checkpointFile.exists() && !checkpointFile.delete()) {
+            logger.warn("Failed to delete checkpoint of ads repair. [" + checkpointFile.getAbsolutePath() + "]");
+        }
+    }
+}
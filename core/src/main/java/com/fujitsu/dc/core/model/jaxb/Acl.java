@@ -30,6 +30,7 @@ import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlElements;
 import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlTransient;
 
 import com.fujitsu.dc.common.auth.token.Role;
 import com.fujitsu.dc.common.utils.DcCoreUtils;
@@ -37,6 +38,7 @@ import com.fujitsu.dc.core.DcCoreException;
 import com.fujitsu.dc.core.auth.AccessContext;
 import com.fujitsu.dc.core.auth.BoxPrivilege;
 import com.fujitsu.dc.core.auth.CellPrivilege;
+import com.fujitsu.dc.core.auth.CompiledAcl;
 import com.fujitsu.dc.core.auth.Privilege;
 
 /**
@@ -86,12 +88,33 @@ public final class Acl {
     @XmlElements({ @XmlElement(namespace = "DAV:", name = "ace", type = Ace.class) })
     List<Ace> aces;
 
+    /**
+     * 評価用にコンパイルしたACL.
+     */
+    @XmlTransient
+    volatile CompiledAcl compiled;
+
+    /**
+     * 評価用にコンパイルしたACLを返す. 初回の呼び出し時にコンパイルする.
+     * @return コンパイルしたACL
+     */
+    public CompiledAcl getCompiledAcl() {
+        CompiledAcl ret = this.compiled;
+        if (ret == null) {
+            ret = CompiledAcl.compile(this);
+            this.compiled = ret;
+        }
+        return ret;
+    }
+
     /**
      * xml:base setter.
      * @param base baseUrl
      */
     public void setBase(String base) {
         this.base = base;
+        // xml:baseによりロールリソースURLの解決結果が変わるため、コンパイル結果を破棄する
+        this.compiled = null;
     }
 
     /**
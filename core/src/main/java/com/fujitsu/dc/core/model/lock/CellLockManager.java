@@ -53,7 +53,13 @@ public abstract class CellLockManager extends LockManager {
      */
     public static long getCellStatus(String cellId) {
         String key =  CELL_STATUS_PREFIX + cellId;
-        long status = singleton.doGetCellStatus(key);
+        CellStateAgent agent = CellStateAgent.getInstance();
+        long status;
+        if (agent != null) {
+            status = agent.getCellStatus(key);
+        } else {
+            status = singleton.doGetCellStatus(key);
+        }
         if (status < 0) {
             // 存在しない場合は何もしていないので「0:通常」を返す
             status = CELL_STATUS_NORMAL;
@@ -89,22 +95,34 @@ public abstract class CellLockManager extends LockManager {
     private static Boolean setCellStatus(String cellId, long status) {
         String key =  CELL_STATUS_PREFIX + cellId;
         Boolean success = true;
+        CellStateAgent agent = CellStateAgent.getInstance();
         if (status == CELL_STATUS_NORMAL) {
             // 通常状態に戻す場合はデータ自体を削除する
             singleton.doDeleteCellStatus(key);
+            if (agent != null) {
+                agent.setCellStatus(key, -1L);
+            }
         } else {
             success = singleton.doSetCellStatus(key, status);
+            if (agent != null) {
+                agent.setCellStatus(key, status);
+            }
         }
         return success;
     }
 
     /**
      * 指定したIDのセルに対する参照カウントを返す.
+     * セルの状態をプロセス内で管理している場合は、自プロセス内で参照中のリクエスト数と他プロセスのリース数の合計を返す.
      * @param cellId 参照カウントを取得する対象のセルID
      * @return 指定したセルの参照カウント
      */
     public static long getReferenceCount(String cellId) {
         String key =  REFERENCE_COUNT_PREFIX + cellId;
+        CellStateAgent agent = CellStateAgent.getInstance();
+        if (agent != null) {
+            return agent.getReferenceCount(key);
+        }
         long count = singleton.doGetReferenceCount(key);
         return count;
     }
@@ -112,10 +130,14 @@ public abstract class CellLockManager extends LockManager {
     /**
      * 指定したセルの参照カウントをインクリメントする.
      * @param cellId 対象のセルID
-     * @return インクリメント後の参照カウントの値
+     * @return インクリメント後の参照カウントの値. セルの状態をプロセス内で管理している場合は自プロセス内の値
      */
     public static long incrementReferenceCount(String cellId) {
         String key =  REFERENCE_COUNT_PREFIX + cellId;
+        CellStateAgent agent = CellStateAgent.getInstance();
+        if (agent != null) {
+            return agent.acquire(key);
+        }
         long count = singleton.doIncrementReferenceCount(key);
         return count;
     }
@@ -123,14 +145,25 @@ public abstract class CellLockManager extends LockManager {
     /**
      * 指定したセルの参照カウントをデクリメントする.
      * @param cellId 対象のセルID
-     * @return デクリメント後の参照カウントの値
+     * @return デクリメント後の参照カウントの値. セルの状態をプロセス内で管理している場合は自プロセス内の値
      */
     public static long decrementReferenceCount(String cellId) {
         String key =  REFERENCE_COUNT_PREFIX + cellId;
+        CellStateAgent agent = CellStateAgent.getInstance();
+        if (agent != null) {
+            return agent.release(key);
+        }
         long count = singleton.doDecrementReferenceCount(key);
         if (count < 0) {
             count = 0;
         }
         return count;
     }
+
+    /**
+     * セルの状態を管理するエージェントを停止し、自プロセスが保持している参照カウントのリースを解放する.
+     */
+    public static void shutdownCellStateAgent() {
+        CellStateAgent.shutdownInstance();
+    }
 }
@@ -0,0 +1,357 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model.lock;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fujitsu.dc.core.DcCoreConfig;
+import com.fujitsu.dc.core.utils.MemcachedClient.MemcachedClientException;
+
+/**
+ * セルの処理状態、PCSの動作モード、セルの参照カウントをプロセス内で管理するエージェント.
+ * <p>
+ * セルの処理状態とPCSの動作モードは、共有ストア(ロック用のmemcached等)から取得した値を再取得間隔の間プロセス内に保持する。
+ * 参照カウントはプロセス内で集計し、共有ストアにはプロセスごとに参照中か否かをリースとして反映する。
+ * リースは参照中のリクエストがなくなってからリース解放時間が経過した後に解放するため、
+ * 継続的にアクセスされるセルでは共有ストアへのアクセスが発生しない。
+ * 共有ストア上の参照カウントはリースを保持するプロセス数となるため、
+ * 参照カウントの取得時は自プロセスのリースを除き、自プロセス内で参照中のリクエスト数を加えた値を返す.
+ * </p>
+ */
+final class CellStateAgent {
+    static Logger log = LoggerFactory.getLogger(CellStateAgent.class);
+
+    private static final long AWAIT_SHUTDOWN_MILLIS = 10000L;
+    private static final long DEFAULT_SWEEP_INTERVAL = 1000L;
+
+    private static volatile CellStateAgent singleton = null;
+
+    private final LockManager store;
+    private final long refreshInterval;
+    private final long leaseIdle;
+    private final ConcurrentMap<String, CachedStatus> cellStatuses = new ConcurrentHashMap<String, CachedStatus>();
+    private volatile CachedStatus readDeleteOnlyMode = null;
+    private final ConcurrentMap<String, Lease> leases = new ConcurrentHashMap<String, Lease>();
+    private final ScheduledExecutorService sweeper;
+
+    /**
+     * コンストラクタ.
+     * @param store 共有ストア
+     * @param refreshInterval セルの処理状態とPCSの動作モードの再取得間隔(ms). 0以下の場合は保持しない
+     * @param leaseIdle 参照がなくなってからリースを解放するまでの時間(ms). 0以下の場合は参照がなくなった時点で解放する
+     */
+    CellStateAgent(LockManager store, long refreshInterval, long leaseIdle) {
+        this.store = store;
+        this.refreshInterval = refreshInterval;
+        this.leaseIdle = leaseIdle;
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "cell-state-agent");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        // リースの解放が遅れ過ぎないよう、リース解放時間の半分の間隔で解放処理を行う
+        long sweepInterval = DEFAULT_SWEEP_INTERVAL;
+        if (leaseIdle > 0) {
+            sweepInterval = Math.max(leaseIdle / 2, 1L);
+        }
+        this.sweeper.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                sweep(System.currentTimeMillis(), false);
+            }
+        }, sweepInterval, sweepInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * エージェントを取得する.
+     * @return エージェント. プロセス内での管理が無効な場合はnull
+     */
+    static CellStateAgent getInstance() {
+        CellStateAgent agent = singleton;
+        if (agent != null || !DcCoreConfig.isCellStateLocalEnabled()) {
+            return agent;
+        }
+        return createInstance();
+    }
+
+    private static synchronized CellStateAgent createInstance() {
+        if (singleton == null && DcCoreConfig.isCellStateLocalEnabled() && LockManager.singleton != null) {
+            singleton = new CellStateAgent(LockManager.singleton, DcCoreConfig.getCellStateRefreshInterval(),
+                    DcCoreConfig.getCellStateLeaseIdle());
+        }
+        return singleton;
+    }
+
+    /**
+     * エージェントを停止し、保持しているリースをすべて解放する.
+     */
+    static synchronized void shutdownInstance() {
+        if (singleton != null) {
+            singleton.shutdown(AWAIT_SHUTDOWN_MILLIS);
+            singleton = null;
+        }
+    }
+
+    /**
+     * 共有ストアのロックがすべて削除された場合に、エージェントが保持している状態を破棄する.
+     */
+    static void clearInstance() {
+        CellStateAgent agent = singleton;
+        if (agent != null) {
+            agent.clear();
+        }
+    }
+
+    /**
+     * セルの処理状態を取得する.
+     * @param fullKey セルの処理状態のキー
+     * @return 共有ストアの処理状態. 存在しない場合は負の値
+     */
+    long getCellStatus(String fullKey) {
+        long now = System.currentTimeMillis();
+        CachedStatus cached = cellStatuses.get(fullKey);
+        if (cached != null && cached.isValid(now)) {
+            return (Long) cached.value;
+        }
+        long status = store.doGetCellStatus(fullKey);
+        if (refreshInterval > 0) {
+            cellStatuses.put(fullKey, new CachedStatus(status, now + refreshInterval));
+        }
+        return status;
+    }
+
+    /**
+     * 自プロセスで設定したセルの処理状態を反映する.
+     * @param fullKey セルの処理状態のキー
+     * @param status 処理状態. 削除した場合は負の値
+     */
+    void setCellStatus(String fullKey, long status) {
+        if (refreshInterval > 0) {
+            cellStatuses.put(fullKey, new CachedStatus(status, System.currentTimeMillis() + refreshInterval));
+        }
+    }
+
+    /**
+     * PCSの動作モードを取得する.
+     * @param fullKey PCSの動作モードのキー
+     * @return 共有ストアの値. 存在しない場合はnull
+     */
+    String getReadDeleteOnlyMode(String fullKey) {
+        long now = System.currentTimeMillis();
+        CachedStatus cached = readDeleteOnlyMode;
+        if (cached != null && cached.isValid(now)) {
+            return (String) cached.value;
+        }
+        String mode = store.doGetReadDeleteOnlyMode(fullKey);
+        if (refreshInterval > 0) {
+            readDeleteOnlyMode = new CachedStatus(mode, now + refreshInterval);
+        }
+        return mode;
+    }
+
+    /**
+     * セルへの参照を開始する. 自プロセスのリースがない場合は共有ストアの参照カウントをインクリメントする.
+     * @param fullKey 参照カウントのキー
+     * @return 自プロセス内で参照中のリクエスト数
+     */
+    long acquire(String fullKey) {
+        while (true) {
+            Lease lease = leases.get(fullKey);
+            if (lease == null) {
+                Lease created = new Lease();
+                lease = leases.putIfAbsent(fullKey, created);
+                if (lease == null) {
+                    lease = created;
+                }
+            }
+            synchronized (lease) {
+                if (lease.removed) {
+                    // 解放済みのリースを取得した場合は取り直す
+                    continue;
+                }
+                if (!lease.published) {
+                    store.doIncrementReferenceCount(fullKey);
+                    lease.published = true;
+                }
+                return ++lease.inFlight;
+            }
+        }
+    }
+
+    /**
+     * セルへの参照を終了する. リースはリース解放時間の経過後に解放する.
+     * @param fullKey 参照カウントのキー
+     * @return 自プロセス内で参照中のリクエスト数
+     */
+    long release(String fullKey) {
+        Lease lease = leases.get(fullKey);
+        if (lease == null) {
+            return 0L;
+        }
+        synchronized (lease) {
+            if (lease.inFlight > 0) {
+                lease.inFlight--;
+            }
+            if (lease.inFlight == 0) {
+                lease.idleSince = System.currentTimeMillis();
+                if (leaseIdle <= 0) {
+                    unpublish(fullKey, lease);
+                }
+            }
+            return lease.inFlight;
+        }
+    }
+
+    /**
+     * セルの参照カウントを取得する.
+     * @param fullKey 参照カウントのキー
+     * @return 自プロセス内で参照中のリクエスト数と、他プロセスのリース数の合計.
+     *         自プロセスのリースがない場合は共有ストアの値. いずれのプロセスからも参照がない場合は-1
+     */
+    long getReferenceCount(String fullKey) {
+        long shared = store.doGetReferenceCount(fullKey);
+        Lease lease = leases.get(fullKey);
+        if (lease == null) {
+            return shared;
+        }
+        long local;
+        boolean published;
+        synchronized (lease) {
+            local = lease.inFlight;
+            published = lease.published;
+        }
+        if (local == 0 && !published) {
+            return shared;
+        }
+        long others = shared;
+        if (published) {
+            others--;
+        }
+        long count = local + Math.max(others, 0L);
+        if (count == 0) {
+            // 共有ストアに参照カウントが存在しない場合と同じく、参照がないことを-1で返す
+            return -1L;
+        }
+        return count;
+    }
+
+    /**
+     * 参照がなくなってからリース解放時間が経過したリースを解放し、期限切れのセルの処理状態を破棄する.
+     * @param now 現在時刻
+     * @param all 参照がないリースを経過時間によらず解放する場合はtrue
+     */
+    void sweep(long now, boolean all) {
+        for (Map.Entry<String, Lease> entry : leases.entrySet()) {
+            Lease lease = entry.getValue();
+            synchronized (lease) {
+                if (lease.inFlight > 0) {
+                    continue;
+                }
+                if (lease.published && (all || now - lease.idleSince >= leaseIdle)) {
+                    unpublish(entry.getKey(), lease);
+                }
+                if (!lease.published) {
+                    lease.removed = true;
+                    leases.remove(entry.getKey(), lease);
+                }
+            }
+        }
+        for (Map.Entry<String, CachedStatus> entry : cellStatuses.entrySet()) {
+            if (!entry.getValue().isValid(now)) {
+                cellStatuses.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * 保持しているリースとセルの処理状態を、共有ストアに反映せずに破棄する.
+     */
+    void clear() {
+        for (Map.Entry<String, Lease> entry : leases.entrySet()) {
+            Lease lease = entry.getValue();
+            synchronized (lease) {
+                lease.removed = true;
+                leases.remove(entry.getKey(), lease);
+            }
+        }
+        cellStatuses.clear();
+        readDeleteOnlyMode = null;
+    }
+
+    /**
+     * 停止する.
+     * @param timeoutMillis 実行中の解放処理の完了を待つ時間(ms)
+     */
+    void shutdown(long timeoutMillis) {
+        sweeper.shutdown();
+        try {
+            sweeper.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sweep(System.currentTimeMillis(), true);
+    }
+
+    private void unpublish(String fullKey, Lease lease) {
+        try {
+            store.doDecrementReferenceCount(fullKey);
+            lease.published = false;
+        } catch (MemcachedClientException e) {
+            // 解放に失敗したリースは次回の解放処理で再試行する
+            log.info("Failed to release cell reference lease: " + fullKey);
+        }
+    }
+
+    /**
+     * 自プロセスのセルへの参照状況.
+     */
+    static final class Lease {
+        private long inFlight = 0L;
+        private boolean published = false;
+        private long idleSince = 0L;
+        private boolean removed = false;
+    }
+
+    /**
+     * 共有ストアから取得した値と有効期限.
+     */
+    static final class CachedStatus {
+        private final Object value;
+        private final long expiresAt;
+
+        CachedStatus(Object value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isValid(long now) {
+            return now < expiresAt;
+        }
+    }
+}
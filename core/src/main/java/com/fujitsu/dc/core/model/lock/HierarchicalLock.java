@@ -0,0 +1,49 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model.lock;
+
+/**
+ * 親のロックを共有モードで、子のロックを排他モードで保持するLockオブジェクト.
+ */
+final class HierarchicalLock extends Lock {
+    private static final long serialVersionUID = 1L;
+
+    String parentKey;
+
+    /**
+     * コンストラクタ.
+     * @param fullKey 子のロックのキー
+     * @param createdAt ロック取得の開始時刻
+     * @param parentKey 共有モードで保持している親のロックのキー
+     */
+    HierarchicalLock(String fullKey, Long createdAt, String parentKey) {
+        super(fullKey, createdAt);
+        this.parentKey = parentKey;
+    }
+
+    /**
+     * 子のロックを解放してから、親のロックの共有モードを解放します.
+     */
+    @Override
+    public void release() {
+        try {
+            super.release();
+        } finally {
+            LockManager.releaseShared(this.parentKey);
+        }
+    }
+}
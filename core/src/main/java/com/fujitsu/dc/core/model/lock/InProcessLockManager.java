@@ -16,29 +16,41 @@
  */
 package com.fujitsu.dc.core.model.lock;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.fujitsu.dc.core.DcCoreConfig;
 
 /**
  * InProcessのLockManager.
+ * <p>
+ * ロック情報はConcurrentHashMapで保持し、キーごとのアトミックな操作で排他するため、JVM全体で単一のモニタを取得しない。
+ * ロックにはリース期間を設定でき、解放されずに残ったロックはリース期間の経過後に他のスレッドが取得できる。
+ * </p>
  */
 class InProcessLockManager extends LockManager {
-    Map<String, Object> inProcessLock = new HashMap<String, Object>();
-    Map<String, AccountLock> inProcessAccountLock = new HashMap<String, AccountLock>();
+    /** ロック保持者の診断情報として返却する最大件数. */
+    static final int MAX_HOLDERS = 100;
+    private static final int TIME_MILLIS = 1000;
+
+    ConcurrentMap<String, Entry> inProcessLock = new ConcurrentHashMap<String, Entry>();
+    ConcurrentMap<String, Entry> inProcessAccountLock = new ConcurrentHashMap<String, Entry>();
+    long leaseMillis = DcCoreConfig.getLockInProcessLeaseInSec() * (long) TIME_MILLIS;
 
     @Override
     Lock doGetLock(String fullKey) {
-        return (Lock) inProcessLock.get(fullKey);
+        return (Lock) get(inProcessLock, fullKey);
     }
 
     @Override
-    synchronized Boolean doPutLock(String fullKey, Lock lock) {
-        if (inProcessLock.get(fullKey) == null) {
-            inProcessLock.put(fullKey, lock);
-            return Boolean.TRUE;
-        } else {
-            return Boolean.FALSE;
-        }
+    Boolean doPutLock(String fullKey, Lock lock) {
+        return putIfAbsent(inProcessLock, fullKey, lock, leaseMillis);
     }
 
     @Override
@@ -46,6 +58,15 @@ class InProcessLockManager extends LockManager {
         inProcessLock.remove(fullKey);
     }
 
+    @Override
+    void doReleaseLock(String fullKey, Lock lock) {
+        // リース期間切れの後に他で取得されたロックは解放しない
+        Entry entry = inProcessLock.get(fullKey);
+        if (entry != null && entry.value == lock) {
+            inProcessLock.remove(fullKey, entry);
+        }
+    }
+
     @Override
     void doDeleteAllLocks() {
         inProcessLock.clear();
@@ -53,95 +74,95 @@ class InProcessLockManager extends LockManager {
 
     @Override
     String doGetReferenceOnlyLock(String fullKey) {
-        return (String) inProcessLock.get(fullKey);
+        return (String) get(inProcessLock, fullKey);
     }
 
     @Override
     Boolean doPutReferenceOnlyLock(String fullKey, String value) {
-        if (inProcessLock.get(fullKey) == null) {
-            inProcessLock.put(fullKey, value);
-            return Boolean.TRUE;
-        } else {
-            return Boolean.FALSE;
-        }
+        return putIfAbsent(inProcessLock, fullKey, value, 0L);
     }
 
     @Override
     String doGetAccountLock(String fullKey) {
-        AccountLock lock = inProcessAccountLock.get(fullKey);
-        if (lock == null) {
-            return null;
-        }
-        return lock.value();
+        return (String) get(inProcessAccountLock, fullKey);
     }
 
     @Override
     Boolean doPutAccountLock(String fullKey, String value, int expired) {
-        inProcessAccountLock.put(fullKey, new AccountLock(value, expired));
+        inProcessAccountLock.put(fullKey, new Entry(value, expired * (long) TIME_MILLIS));
         return Boolean.TRUE;
     }
 
     @Override
     String doGetUnituserLock(String fullKey) {
-        return (String) inProcessLock.get(fullKey);
+        return (String) get(inProcessLock, fullKey);
     }
 
     @Override
     Boolean doPutUnituserLock(String fullKey, String value, int expired) {
-        if (inProcessLock.get(fullKey) == null) {
-            inProcessLock.put(fullKey, value);
-            return Boolean.TRUE;
-        } else {
-            return Boolean.FALSE;
-        }
+        return putIfAbsent(inProcessLock, fullKey, value, expired * (long) TIME_MILLIS);
     }
 
     @Override
     long doGetReferenceCount(String fullKey) {
-        Long value = -1L;
-        if (inProcessLock.containsKey(fullKey)) {
-            value = (Long) inProcessLock.get(fullKey);
+        Long value = (Long) get(inProcessLock, fullKey);
+        if (value == null) {
+            return -1L;
         }
         return value;
     }
 
     @Override
     long doIncrementReferenceCount(String fullKey) {
-        Long value = 1L;
-        if (inProcessLock.containsKey(fullKey)) {
-            value = (Long) inProcessLock.get(fullKey);
-            value++;
+        while (true) {
+            Entry current = inProcessLock.get(fullKey);
+            if (current == null) {
+                if (inProcessLock.putIfAbsent(fullKey, new Entry(1L, 0L)) == null) {
+                    return 1L;
+                }
+            } else if (current.isExpired(System.currentTimeMillis())) {
+                if (inProcessLock.replace(fullKey, current, new Entry(1L, 0L))) {
+                    return 1L;
+                }
+            } else {
+                long value = (Long) current.value + 1;
+                if (inProcessLock.replace(fullKey, current, new Entry(value, 0L))) {
+                    return value;
+                }
+            }
         }
-        inProcessLock.put(fullKey, value);
-        return value;
     }
 
     @Override
     long doDecrementReferenceCount(String fullKey) {
-        Long value = 0L;
-        if (inProcessLock.containsKey(fullKey)) {
-            value = (Long) inProcessLock.get(fullKey);
-            value--;
-            inProcessLock.put(fullKey, value);
+        while (true) {
+            Entry current = inProcessLock.get(fullKey);
+            if (current == null) {
+                return 0L;
+            }
+            long value = (Long) current.value - 1;
             if (value == 0) {
-                inProcessLock.remove(fullKey);
+                if (inProcessLock.remove(fullKey, current)) {
+                    return value;
+                }
+            } else if (inProcessLock.replace(fullKey, current, new Entry(value, 0L))) {
+                return value;
             }
         }
-        return value;
     }
 
     @Override
     long doGetCellStatus(String fullKey) {
-        Long value = -1L;
-        if (inProcessLock.containsKey(fullKey)) {
-            value = (Long) inProcessLock.get(fullKey);
+        Long value = (Long) get(inProcessLock, fullKey);
+        if (value == null) {
+            return -1L;
         }
         return value;
     }
 
     @Override
     Boolean doSetCellStatus(String fullKey, long status) {
-        inProcessLock.put(fullKey, status);
+        inProcessLock.put(fullKey, new Entry(status, 0L));
         return true;
     }
 
@@ -152,48 +173,106 @@ class InProcessLockManager extends LockManager {
 
     @Override
     String doGetReadDeleteOnlyMode(String fullKey) {
-        String value = null;
-        if (inProcessLock.containsKey(fullKey)) {
-            value = (String) inProcessLock.get(fullKey);
+        return (String) get(inProcessLock, fullKey);
+    }
+
+    @Override
+    List<Map<String, Object>> doGetLockHolders() {
+        long now = System.currentTimeMillis();
+        List<Map.Entry<String, Entry>> held = new ArrayList<Map.Entry<String, Entry>>();
+        for (Map.Entry<String, Entry> entry : inProcessLock.entrySet()) {
+            if (entry.getValue().value instanceof Lock && !entry.getValue().isExpired(now)) {
+                held.add(entry);
+            }
         }
-        return value;
+        // 保持時間の長い順に返却する
+        Collections.sort(held, new Comparator<Map.Entry<String, Entry>>() {
+            @Override
+            public int compare(Map.Entry<String, Entry> o1, Map.Entry<String, Entry> o2) {
+                return Long.valueOf(o1.getValue().acquiredAt).compareTo(o2.getValue().acquiredAt);
+            }
+        });
+        List<Map<String, Object>> holders = new ArrayList<Map<String, Object>>();
+        for (Map.Entry<String, Entry> entry : held.subList(0, Math.min(held.size(), MAX_HOLDERS))) {
+            Map<String, Object> holder = new LinkedHashMap<String, Object>();
+            holder.put("key", entry.getKey());
+            holder.put("heldMillis", now - entry.getValue().acquiredAt);
+            if (entry.getValue().expiresAt > 0) {
+                holder.put("expiresInMillis", entry.getValue().expiresAt - now);
+            }
+            holders.add(holder);
+        }
+        return holders;
     }
 
     /**
-     * InProcessでのAccountLock用の情報を保持するクラス.
+     * 有効期限を考慮して値を取得する. 有効期限を超えている場合は削除してnullを返却する.
+     * @param map 取得対象のマップ
+     * @param fullKey キー
+     * @return 値
      */
-    static class AccountLock {
+    private static Object get(ConcurrentMap<String, Entry> map, String fullKey) {
+        Entry entry = map.get(fullKey);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.isExpired(System.currentTimeMillis())) {
+            map.remove(fullKey, entry);
+            return null;
+        }
+        return entry.value;
+    }
+
+    /**
+     * 値が存在しない、または有効期限を超えている場合のみ値を設定する.
+     * @param map 設定対象のマップ
+     * @param fullKey キー
+     * @param value 値
+     * @param expiresInMillis 有効期間(ms). 0の場合は無期限
+     * @return 設定できた場合はtrue
+     */
+    private static Boolean putIfAbsent(ConcurrentMap<String, Entry> map, String fullKey, Object value,
+            long expiresInMillis) {
+        Entry created = new Entry(value, expiresInMillis);
+        while (true) {
+            Entry current = map.putIfAbsent(fullKey, created);
+            if (current == null) {
+                return Boolean.TRUE;
+            }
+            if (!current.isExpired(System.currentTimeMillis())) {
+                return Boolean.FALSE;
+            }
+            if (map.replace(fullKey, current, created)) {
+                return Boolean.TRUE;
+            }
+        }
+    }
 
-        private static final int TIME_MILLIS = 1000;
-        private String value;
-        private int expiredInSeconds;
-        private long createdAt;
+    /**
+     * InProcessで保持する値と有効期限の情報.
+     */
+    static final class Entry {
+        private final Object value;
+        private final long acquiredAt;
+        private final long expiresAt;
 
         /**
          * コンストラクタ.
          * @param value 値
-         * @param expired ロックの保持期間(秒)
+         * @param expiresInMillis 有効期間(ms). 0の場合は無期限
          */
-        public AccountLock(String value, int expired) {
+        Entry(Object value, long expiresInMillis) {
             this.value = value;
-            this.expiredInSeconds = expired;
-            this.createdAt = System.currentTimeMillis();
+            this.acquiredAt = System.currentTimeMillis();
+            if (expiresInMillis > 0) {
+                this.expiresAt = this.acquiredAt + expiresInMillis;
+            } else {
+                this.expiresAt = 0L;
+            }
         }
 
-        /**
-         * 指定されたAccountLockを返却する. <br />
-         * expiredを超えている場合は、nullを返却する.
-         * @return 指定されたキーに対応する値（存在しない場合、expiredを超えている場合はnull）
-         */
-        public String value() {
-            long now = System.currentTimeMillis();
-
-            // expiredを超えている場合は、nullを返却
-            if (now > this.createdAt + expiredInSeconds * TIME_MILLIS) {
-                return null;
-
-            }
-            return this.value;
+        boolean isExpired(long now) {
+            return expiresAt > 0 && now >= expiresAt;
         }
     }
 }
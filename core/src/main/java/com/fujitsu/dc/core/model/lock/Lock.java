@@ -60,6 +60,6 @@ public class Lock implements Serializable {
      * ロックをリリースします.
      */
     public void release() {
-        LockManager.releaseLock(this.fullKey);
+        LockManager.releaseLock(this);
     }
 }
@@ -17,6 +17,8 @@
 package com.fujitsu.dc.core.model.lock;
 
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
 
 import com.fujitsu.dc.core.DcCoreConfig;
 import com.fujitsu.dc.core.DcCoreException;
@@ -35,6 +37,17 @@ public abstract class LockManager {
     static volatile String lockMemcachedHost = DcCoreConfig.getLockMemcachedHost();
     static volatile String lockMemcachedPort = DcCoreConfig.getLockMemcachedPort();
     static volatile int accountLockLifeTime = Integer.valueOf(DcCoreConfig.getAccountLockLifetime());
+    static volatile String lockWaitMode = DcCoreConfig.getLockWaitMode();
+    static volatile boolean hierarchicalLockEnabled = DcCoreConfig.isLockHierarchicalEnabled();
+
+    /**
+     * 共有モードで保持されているロック数を格納するキーのプレフィックス.
+     */
+    static final String SHARED_COUNT_PREFIX = "SharedLockCount_";
+    /**
+     * 共有モードと排他モードの競合時に相手の解放を確認する間隔(ms).
+     */
+    static final long SHARED_WAIT_INTERVAL = 10L;
 
     /**
      * Memcached タイプ.
@@ -44,6 +57,14 @@ public abstract class LockManager {
      * InProcess タイプ.
      */
     public static final String TYPE_IN_PROCESS = "inProcess";
+    /**
+     * ロック待ちモード: 同一プロセス内の待ち行列に並び、ロックの解放通知で起床する.
+     */
+    public static final String WAIT_MODE_NOTIFY = "notify";
+    /**
+     * ロック待ちモード: ロック取得リトライ間隔ごとにスリープしてロックの取得を再試行する(従来の動作).
+     */
+    public static final String WAIT_MODE_POLL = "poll";
 
     abstract Lock doGetLock(String fullKey);
 
@@ -51,6 +72,15 @@ public abstract class LockManager {
 
     abstract void doReleaseLock(String fullKey);
 
+    /**
+     * 指定したロックを解放する. 保持者を識別できない実装はキーのみでロックを解放する.
+     * @param fullKey ロックのキー
+     * @param lock 解放するロック
+     */
+    void doReleaseLock(String fullKey, Lock lock) {
+        doReleaseLock(fullKey);
+    }
+
     abstract void doDeleteAllLocks();
 
     abstract String doGetReferenceOnlyLock(String fullKey);
@@ -79,6 +109,14 @@ public abstract class LockManager {
 
     abstract String doGetReadDeleteOnlyMode(String fullKey);
 
+    /**
+     * 保持されているロックの診断情報を返す. 保持者を管理していない実装はnullを返す.
+     * @return ロックのキー、保持時間などの一覧
+     */
+    List<Map<String, Object>> doGetLockHolders() {
+        return null;
+    }
+
     static {
         if (TYPE_MEMCACHED.equals(lockType)) {
             singleton = new MemcachedLockManager();
@@ -97,25 +135,160 @@ public abstract class LockManager {
      */
     public static Lock getLock(String category, String cellId, String boxId, String nodeId) {
         Long createdAt = (new Date()).getTime();
+        String fullKey = LockKeyComposer.fullKeyFromCategoryAndKey(category, cellId, boxId, nodeId);
+        Lock lock = getExclusiveLock(fullKey, createdAt);
+        if (lock != null && hierarchicalLockEnabled && !awaitSharedRelease(fullKey, getDeadline(createdAt))) {
+            // 共有モードの保持者が解放しないため、取得した排他ロックを解放する
+            lock.release();
+            lock = null;
+        }
+        return recordWait(category, createdAt, lock);
+    }
+
+    /**
+     * 親のロックを共有モードで、子のロックを排他モードで取得します.
+     * <p>
+     * 子のキーが異なるリクエスト同士は並行して処理でき、親のロックを排他モードで取得するリクエスト({@link #getLock})とは排他される。
+     * 親のロックの排他モードの取得を待っているリクエストがある場合、新たな共有モードの取得は排他モードの解放まで待つ。
+     * 階層ロックが無効の場合は、親のロックを排他モードで取得します。
+     * </p>
+     * @param category ロックのカテゴリ
+     * @param cellId CellのID
+     * @param boxId BoxのID
+     * @param nodeId NodeのID
+     * @param childKey 親のロックの配下で排他する子のキー(EntitySet名とエンティティのキーなど)
+     * @return Lock
+     */
+    public static Lock getHierarchicalLock(String category, String cellId, String boxId, String nodeId,
+            String childKey) {
+        if (!hierarchicalLockEnabled) {
+            return getLock(category, cellId, boxId, nodeId);
+        }
+        Long createdAt = (new Date()).getTime();
+        String parentKey = LockKeyComposer.fullKeyFromCategoryAndKey(category, cellId, boxId, nodeId);
+        String childFullKey = LockKeyComposer.fullKeyFromCategoryAndKey(parentKey, childKey);
+        if (!acquireShared(parentKey, getDeadline(createdAt))) {
+            return recordWait(category, createdAt, null);
+        }
+        Lock lock = null;
+        try {
+            if (getExclusiveLock(childFullKey, createdAt) != null) {
+                lock = new HierarchicalLock(childFullKey, createdAt, parentKey);
+            }
+        } finally {
+            if (lock == null) {
+                releaseShared(parentKey);
+            }
+        }
+        return recordWait(category, createdAt, lock);
+    }
+
+    private static Lock getExclusiveLock(String fullKey, Long createdAt) {
+        if (WAIT_MODE_POLL.equals(lockWaitMode)) {
+            return getLockWithPolling(fullKey, createdAt);
+        } else {
+            return getLockWithNotification(fullKey, createdAt);
+        }
+    }
+
+    private static Lock recordWait(String category, Long createdAt, Lock lock) {
+        long waitMillis = (new Date()).getTime() - createdAt;
+        if (lock == null) {
+            LockWaitMetrics.record(category, waitMillis, false);
+            throw DcCoreException.Misc.TOO_MANY_CONCURRENT_REQUESTS;
+        }
+        LockWaitMetrics.record(category, waitMillis, true);
+        return lock;
+    }
+
+    private static long getDeadline(Long createdAt) {
+        return createdAt + lockRetryInterval * (lockRetryTimes + 1);
+    }
+
+    /**
+     * ロックを共有モードで取得する. 排他モードで保持されている間は解放を待つ.
+     * @param fullKey ロックのキー
+     * @param deadline 待ち時間の上限の時刻
+     * @return 取得できた場合はtrue
+     */
+    private static boolean acquireShared(String fullKey, long deadline) {
+        String countKey = SHARED_COUNT_PREFIX + fullKey;
+        try {
+            while (true) {
+                if (singleton.doGetLock(fullKey) == null) {
+                    singleton.doIncrementReferenceCount(countKey);
+                    if (singleton.doGetLock(fullKey) == null) {
+                        return true;
+                    }
+                    // 排他モードの取得と競合したため、取り消して排他モードの解放を待つ
+                    singleton.doDecrementReferenceCount(countKey);
+                }
+                if (!sleepUntil(deadline)) {
+                    return false;
+                }
+            }
+        } catch (MemcachedClientException e) {
+            MemcachedClient.reportError();
+            throw DcCoreException.Server.GET_LOCK_STATE_ERROR;
+        }
+    }
+
+    /**
+     * 共有モードで保持されているロックがすべて解放されるのを待つ.
+     * @param fullKey ロックのキー
+     * @param deadline 待ち時間の上限の時刻
+     * @return すべて解放された場合はtrue
+     */
+    private static boolean awaitSharedRelease(String fullKey, long deadline) {
+        String countKey = SHARED_COUNT_PREFIX + fullKey;
+        try {
+            while (singleton.doGetReferenceCount(countKey) > 0) {
+                if (!sleepUntil(deadline)) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (MemcachedClientException e) {
+            MemcachedClient.reportError();
+            throw DcCoreException.Server.GET_LOCK_STATE_ERROR;
+        }
+    }
+
+    private static boolean sleepUntil(long deadline) {
+        long remaining = deadline - (new Date()).getTime();
+        if (remaining <= 0) {
+            return false;
+        }
+        try {
+            Thread.sleep(Math.min(remaining, SHARED_WAIT_INTERVAL));
+        } catch (InterruptedException e) {
+            throw DcCoreException.Server.DATA_STORE_UNKNOWN_ERROR.reason(e);
+        }
+        return true;
+    }
+
+    /*
+     * 共有モードのロックのリリース処理
+     */
+    static void releaseShared(String fullKey) {
+        singleton.doDecrementReferenceCount(SHARED_COUNT_PREFIX + fullKey);
+    }
+
+    /**
+     * ロック取得リトライ間隔ごとにスリープしてロックの取得を再試行する.
+     * @param fullKey ロックのキー
+     * @param createdAt ロック取得の開始時刻
+     * @return Lock. リトライ回数を超えても取得できなかった場合はnull
+     */
+    private static Lock getLockWithPolling(String fullKey, Long createdAt) {
         // memcached にキーが存在するか調べる
         // なければmemcached に書きに行く
         // あったら、リトライする。
         int timesRetry = 0;
         while (timesRetry <= lockRetryTimes) {
-            String fullKey = LockKeyComposer.fullKeyFromCategoryAndKey(category, cellId, boxId, nodeId);
-            Lock lock = null;
-            try {
-                lock = singleton.doGetLock(fullKey);
-            } catch (MemcachedClientException e) {
-                MemcachedClient.reportError();
-                throw DcCoreException.Server.GET_LOCK_STATE_ERROR;
-            }
-            if (lock == null) {
-                lock = new Lock(fullKey, createdAt);
-                Boolean success = singleton.doPutLock(fullKey, lock);
-                if (success) {
-                    return lock;
-                }
+            Lock lock = tryLock(fullKey, createdAt);
+            if (lock != null) {
+                return lock;
             }
             try {
                 Thread.sleep(lockRetryInterval);
@@ -124,22 +297,101 @@ public abstract class LockManager {
             }
             timesRetry++;
         }
-        throw DcCoreException.Misc.TOO_MANY_CONCURRENT_REQUESTS;
+        return null;
+    }
+
+    /**
+     * 同一プロセス内の待ち行列に並び、ロックの解放通知を待ってロックの取得を再試行する.
+     * 待ち行列の先頭のスレッドのみが取得を試行するため、同一プロセス内では到着順にロックを取得する。
+     * 他のプロセスが保持しているロックの解放は通知されないため、ロック取得リトライ間隔ごとに再試行する。
+     * 待ち時間の上限はポーリングの場合と同じく、ロック取得リトライ間隔 × (リトライ回数 + 1)とする。
+     * @param fullKey ロックのキー
+     * @param createdAt ロック取得の開始時刻
+     * @return Lock. 待ち時間の上限を超えても取得できなかった場合はnull
+     */
+    private static Lock getLockWithNotification(String fullKey, Long createdAt) {
+        // 同一プロセス内に待機中のスレッドがなければ、待ち行列に並ばずに取得を試行する
+        if (!LockWaitQueue.hasWaiters(fullKey)) {
+            Lock lock = tryLock(fullKey, createdAt);
+            if (lock != null) {
+                return lock;
+            }
+        }
+        long deadline = getDeadline(createdAt);
+        LockWaitQueue queue = LockWaitQueue.enter(fullKey);
+        Lock lock = null;
+        try {
+            while (true) {
+                long generation = queue.generation();
+                if (queue.isHead()) {
+                    lock = tryLock(fullKey, createdAt);
+                    if (lock != null) {
+                        return lock;
+                    }
+                }
+                long remaining = deadline - (new Date()).getTime();
+                if (remaining <= 0) {
+                    return null;
+                }
+                try {
+                    queue.await(generation, Math.min(remaining, lockRetryInterval));
+                } catch (InterruptedException e) {
+                    throw DcCoreException.Server.DATA_STORE_UNKNOWN_ERROR.reason(e);
+                }
+            }
+        } finally {
+            queue.leave(lock != null);
+        }
+    }
+
+    /**
+     * ロックの取得を1回試行する.
+     * @param fullKey ロックのキー
+     * @param createdAt ロック取得の開始時刻
+     * @return Lock. 他で保持されている場合はnull
+     */
+    private static Lock tryLock(String fullKey, Long createdAt) {
+        Lock lock = null;
+        try {
+            lock = singleton.doGetLock(fullKey);
+        } catch (MemcachedClientException e) {
+            MemcachedClient.reportError();
+            throw DcCoreException.Server.GET_LOCK_STATE_ERROR;
+        }
+        if (lock == null) {
+            lock = new Lock(fullKey, createdAt);
+            Boolean success = singleton.doPutLock(fullKey, lock);
+            if (success) {
+                return lock;
+            }
+        }
+        return null;
     }
 
     /*
      * ロックのリリース処理
      */
-    static void releaseLock(String fullKey) {
-        singleton.doReleaseLock(fullKey);
+    static void releaseLock(Lock lock) {
+        singleton.doReleaseLock(lock.fullKey, lock);
+        LockWaitQueue.notifyReleased(lock.fullKey);
     }
 
 
+    /**
+     * 保持されているロックの診断情報を取得します.
+     * @return 保持時間の長い順のロック保持者一覧. 取得できないロックタイプの場合はnull
+     */
+    public static List<Map<String, Object>> getLockHolders() {
+        return singleton.doGetLockHolders();
+    }
+
     /**
      * ロックをすべて消します.
      */
     public static void deleteAllLocks() {
         singleton.doDeleteAllLocks();
+        CellStateAgent.clearInstance();
+        LockWaitQueue.notifyAllReleased();
     }
 
     /**
@@ -156,6 +408,34 @@ public abstract class LockManager {
         LockManager.lockType = lockType;
     }
 
+    /**
+     * @return the lockWaitMode
+     */
+    public static final String getLockWaitMode() {
+        return lockWaitMode;
+    }
+
+    /**
+     * @param lockWaitMode the lockWaitMode to set
+     */
+    public static final void setLockWaitMode(String lockWaitMode) {
+        LockManager.lockWaitMode = lockWaitMode;
+    }
+
+    /**
+     * @return the hierarchicalLockEnabled
+     */
+    public static final boolean isHierarchicalLockEnabled() {
+        return hierarchicalLockEnabled;
+    }
+
+    /**
+     * @param hierarchicalLockEnabled the hierarchicalLockEnabled to set
+     */
+    public static final void setHierarchicalLockEnabled(boolean hierarchicalLockEnabled) {
+        LockManager.hierarchicalLockEnabled = hierarchicalLockEnabled;
+    }
+
     /**
      * @return the lockRetryInterval
      */
@@ -0,0 +1,121 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model.lock;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * ロック取得の待ち時間をカテゴリごとに集計するクラス.
+ * 待ち時間はヒストグラムとして保持し、ステータスAPIから参照する。
+ */
+public final class LockWaitMetrics {
+
+    /** ヒストグラムの各バケットの上限値(ms). 最後のバケットは上限値を超えたものを集計する. */
+    static final long[] BUCKET_BOUNDS = {0L, 10L, 50L, 100L, 500L, 1000L, 5000L };
+
+    private static final ConcurrentMap<String, CategoryMetrics> METRICS =
+            new ConcurrentHashMap<String, CategoryMetrics>();
+
+    private LockWaitMetrics() {
+    }
+
+    /**
+     * ロック取得の待ち時間を記録する.
+     * @param category ロックのカテゴリ
+     * @param waitMillis 待ち時間(ms)
+     * @param acquired ロックを取得できた場合はtrue、タイムアウトした場合はfalse
+     */
+    static void record(String category, long waitMillis, boolean acquired) {
+        CategoryMetrics metrics = METRICS.get(category);
+        if (metrics == null) {
+            metrics = new CategoryMetrics();
+            CategoryMetrics existing = METRICS.putIfAbsent(category, metrics);
+            if (existing != null) {
+                metrics = existing;
+            }
+        }
+        metrics.record(waitMillis, acquired);
+    }
+
+    /**
+     * 集計結果を取得する.
+     * @return カテゴリをキーとした集計結果
+     */
+    public static Map<String, Map<String, Object>> snapshot() {
+        Map<String, Map<String, Object>> result = new LinkedHashMap<String, Map<String, Object>>();
+        for (Map.Entry<String, CategoryMetrics> entry : METRICS.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return result;
+    }
+
+    /**
+     * 集計結果をクリアする.
+     */
+    public static void reset() {
+        METRICS.clear();
+    }
+
+    /**
+     * カテゴリごとの集計値.
+     */
+    static final class CategoryMetrics {
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_BOUNDS.length + 1);
+        private final AtomicLong acquired = new AtomicLong();
+        private final AtomicLong timedOut = new AtomicLong();
+        private final AtomicLong totalWaitMillis = new AtomicLong();
+        private final AtomicLong maxWaitMillis = new AtomicLong();
+
+        void record(long waitMillis, boolean isAcquired) {
+            if (isAcquired) {
+                acquired.incrementAndGet();
+            } else {
+                timedOut.incrementAndGet();
+            }
+            totalWaitMillis.addAndGet(waitMillis);
+            long max = maxWaitMillis.get();
+            while (waitMillis > max && !maxWaitMillis.compareAndSet(max, waitMillis)) {
+                max = maxWaitMillis.get();
+            }
+            int index = 0;
+            while (index < BUCKET_BOUNDS.length && waitMillis > BUCKET_BOUNDS[index]) {
+                index++;
+            }
+            buckets.incrementAndGet(index);
+        }
+
+        Map<String, Object> snapshot() {
+            Map<String, Object> result = new LinkedHashMap<String, Object>();
+            result.put("acquired", acquired.get());
+            result.put("timedOut", timedOut.get());
+            result.put("totalWaitMillis", totalWaitMillis.get());
+            result.put("maxWaitMillis", maxWaitMillis.get());
+            Map<String, Long> histogram = new LinkedHashMap<String, Long>();
+            for (int i = 0; i < BUCKET_BOUNDS.length; i++) {
+                histogram.put("<=" + BUCKET_BOUNDS[i], buckets.get(i));
+            }
+            histogram.put(">" + BUCKET_BOUNDS[BUCKET_BOUNDS.length - 1], buckets.get(BUCKET_BOUNDS.length));
+            result.put("histogram", histogram);
+            return result;
+        }
+    }
+}
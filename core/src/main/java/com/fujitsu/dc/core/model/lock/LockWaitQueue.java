@@ -0,0 +1,186 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model.lock;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 同一プロセス内でロックの取得を待つスレッドのキーごとの待ち行列.
+ * <p>
+ * 待ち行列の先頭のスレッドのみがロックの取得を試行し、後続のスレッドは到着順に待機する。 同一プロセス内でロックが解放された場合は待機中のスレッドを起床させる。
+ * 他のプロセスが保持しているロックの解放は通知されないため、待機はロック取得リトライ間隔でタイムアウトさせて再試行する。
+ * </p>
+ */
+final class LockWaitQueue {
+
+    private static final ConcurrentMap<String, LockWaitQueue> QUEUES = new ConcurrentHashMap<String, LockWaitQueue>();
+
+    private final String fullKey;
+    private final ReentrantLock monitor = new ReentrantLock();
+    private final Condition changed = monitor.newCondition();
+    private final Deque<Thread> waiters = new ArrayDeque<Thread>();
+    private long generation = 0;
+    private boolean retired = false;
+
+    private LockWaitQueue(String fullKey) {
+        this.fullKey = fullKey;
+    }
+
+    /**
+     * 待ち行列の末尾に呼び出し元スレッドを追加する.
+     * @param fullKey ロックのキー
+     * @return 待ち行列
+     */
+    static LockWaitQueue enter(String fullKey) {
+        while (true) {
+            LockWaitQueue queue = QUEUES.get(fullKey);
+            if (queue == null) {
+                queue = new LockWaitQueue(fullKey);
+                LockWaitQueue existing = QUEUES.putIfAbsent(fullKey, queue);
+                if (existing != null) {
+                    queue = existing;
+                }
+            }
+            if (queue.join()) {
+                return queue;
+            }
+            // 空になり破棄された待ち行列の場合は作り直す
+            QUEUES.remove(fullKey, queue);
+        }
+    }
+
+    /**
+     * 同一プロセス内にロックの取得を待っているスレッドが存在するかを返す.
+     * @param fullKey ロックのキー
+     * @return 待機中のスレッドが存在する場合はtrue
+     */
+    static boolean hasWaiters(String fullKey) {
+        return QUEUES.containsKey(fullKey);
+    }
+
+    /**
+     * ロックが解放されたことを待機中のスレッドに通知する.
+     * @param fullKey ロックのキー
+     */
+    static void notifyReleased(String fullKey) {
+        LockWaitQueue queue = QUEUES.get(fullKey);
+        if (queue != null) {
+            queue.signal();
+        }
+    }
+
+    /**
+     * すべてのロックが解放されたことを待機中のスレッドに通知する.
+     */
+    static void notifyAllReleased() {
+        for (LockWaitQueue queue : QUEUES.values()) {
+            queue.signal();
+        }
+    }
+
+    /**
+     * 呼び出し元スレッドが待ち行列の先頭かを返す.
+     * @return 先頭の場合はtrue
+     */
+    boolean isHead() {
+        monitor.lock();
+        try {
+            return waiters.peekFirst() == Thread.currentThread();
+        } finally {
+            monitor.unlock();
+        }
+    }
+
+    /**
+     * 待ち行列の状態の世代を返す. ロックの取得を試行する前に取得し、{@link #await(long, long)}に渡す.
+     * @return 世代
+     */
+    long generation() {
+        monitor.lock();
+        try {
+            return generation;
+        } finally {
+            monitor.unlock();
+        }
+    }
+
+    /**
+     * 待ち行列の状態が変化するまで待機する.
+     * @param observedGeneration ロックの取得を試行する前に取得した世代. 既に変化している場合は待機しない
+     * @param timeoutMillis 最大待機時間(ms)
+     * @throws InterruptedException 待機中に割り込まれた場合
+     */
+    void await(long observedGeneration, long timeoutMillis) throws InterruptedException {
+        monitor.lock();
+        try {
+            if (generation == observedGeneration) {
+                changed.await(timeoutMillis, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            monitor.unlock();
+        }
+    }
+
+    /**
+     * 待ち行列から呼び出し元スレッドを取り除く.
+     * @param acquired ロックを取得した場合はtrue. 取得できずに抜ける場合は後続のスレッドを起床させる
+     */
+    void leave(boolean acquired) {
+        monitor.lock();
+        try {
+            waiters.remove(Thread.currentThread());
+            if (waiters.isEmpty()) {
+                retired = true;
+                QUEUES.remove(fullKey, this);
+            } else if (!acquired) {
+                generation++;
+                changed.signalAll();
+            }
+        } finally {
+            monitor.unlock();
+        }
+    }
+
+    private boolean join() {
+        monitor.lock();
+        try {
+            if (retired) {
+                return false;
+            }
+            waiters.addLast(Thread.currentThread());
+            return true;
+        } finally {
+            monitor.unlock();
+        }
+    }
+
+    private void signal() {
+        monitor.lock();
+        try {
+            generation++;
+            changed.signalAll();
+        } finally {
+            monitor.unlock();
+        }
+    }
+}
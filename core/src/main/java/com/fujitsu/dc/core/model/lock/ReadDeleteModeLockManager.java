@@ -35,7 +35,13 @@ public abstract class ReadDeleteModeLockManager extends LockManager {
      */
     public static boolean isReadDeleteOnlyMode() {
         try {
-            String response = singleton.doGetReadDeleteOnlyMode(LOCK_KEY);
+            CellStateAgent agent = CellStateAgent.getInstance();
+            String response;
+            if (agent != null) {
+                response = agent.getReadDeleteOnlyMode(LOCK_KEY);
+            } else {
+                response = singleton.doGetReadDeleteOnlyMode(LOCK_KEY);
+            }
             return (response != null);
         } catch (MemcachedClientException e) {
             throw DcCoreException.Server.SERVER_CONNECTION_ERROR;
@@ -16,6 +16,8 @@
  */
 package com.fujitsu.dc.core.rs;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 import javax.ws.rs.GET;
@@ -31,7 +33,12 @@ import org.slf4j.LoggerFactory;
 
 import com.fujitsu.dc.common.es.EsClient;
 import com.fujitsu.dc.core.DcCoreConfig;
+import com.fujitsu.dc.core.eventbus.EventLogSink;
 import com.fujitsu.dc.core.model.impl.es.EsModel;
+import com.fujitsu.dc.core.model.impl.es.ads.AdsWriteBehindQueue;
+import com.fujitsu.dc.core.model.lock.LockManager;
+import com.fujitsu.dc.core.model.lock.LockWaitMetrics;
+import com.fujitsu.dc.core.rs.box.DcEngineSvcCollectionResource;
 
 /**
  * StatusResourceに対応するJAX-RS Resource クラス.
@@ -68,6 +75,44 @@ public class StatusResource {
         // Adsの死活チェック
         responseJson.put("ads", checkAds());
 
+        // Adsへの非同期書き込みの状況
+        AdsWriteBehindQueue adsQueue = AdsWriteBehindQueue.getInstance();
+        if (adsQueue != null) {
+            JSONObject adsWriteBehindJson = new JSONObject();
+            adsWriteBehindJson.put("pending", adsQueue.getPendingCount());
+            adsWriteBehindJson.put("lagMillis", adsQueue.getLagMillis());
+            adsWriteBehindJson.put("written", adsQueue.getWrittenCount());
+            adsWriteBehindJson.put("failed", adsQueue.getFailedCount());
+            adsWriteBehindJson.put("rejected", adsQueue.getRejectedCount());
+            responseJson.put("adsWriteBehind", adsWriteBehindJson);
+        }
+
+        // イベントログの非同期出力の状況
+        EventLogSink eventLogSink = EventLogSink.getInstance();
+        if (eventLogSink != null) {
+            JSONObject eventLogSinkJson = new JSONObject();
+            eventLogSinkJson.put("pending", eventLogSink.getPendingCount());
+            eventLogSinkJson.put("maxPending", eventLogSink.getMaxPendingCount());
+            eventLogSinkJson.put("accepted", eventLogSink.getAcceptedCount());
+            eventLogSinkJson.put("written", eventLogSink.getWrittenCount());
+            eventLogSinkJson.put("dropped", eventLogSink.getDroppedCount());
+            eventLogSinkJson.put("failed", eventLogSink.getFailedCount());
+            responseJson.put("eventLogSink", eventLogSinkJson);
+        }
+
+        // ロック取得の待ち時間
+        responseJson.put("lockWait", LockWaitMetrics.snapshot());
+        List<Map<String, Object>> lockHolders = LockManager.getLockHolders();
+        if (lockHolders != null) {
+            responseJson.put("lockHolders", lockHolders);
+        }
+
+        // Engineへの中継に用いる接続プールの利用状況
+        Map<String, Integer> enginePool = DcEngineSvcCollectionResource.getConnectionPoolStats();
+        if (enginePool != null) {
+            responseJson.put("engineConnectionPool", enginePool);
+        }
+
         // ElasticSearch Health
         EsClient client = EsModel.client();
         JSONObject esJson = new JSONObject();
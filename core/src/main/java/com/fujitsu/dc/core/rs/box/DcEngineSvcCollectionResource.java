@@ -16,16 +16,19 @@
  */
 package com.fujitsu.dc.core.rs.box;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Reader;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
+import javax.ws.rs.HEAD;
 import javax.ws.rs.HeaderParam;
 import javax.ws.rs.HttpMethod;
 import javax.ws.rs.OPTIONS;
@@ -52,7 +55,6 @@ import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.entity.InputStreamEntity;
-import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.wink.webdav.WebDAVMethod;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -66,6 +68,8 @@ import com.fujitsu.dc.core.model.DavCmp;
 import com.fujitsu.dc.core.model.DavMoveResource;
 import com.fujitsu.dc.core.model.DavRsCmp;
 import com.fujitsu.dc.core.model.impl.es.DavCmpEsImpl;
+import com.fujitsu.dc.core.utils.HttpClientFactory;
+import com.sun.jersey.spi.CloseableService;
 
 /**
  * DcEngineSvcCollectionResourceを担当するJAX-RSリソース.
@@ -76,6 +80,27 @@ public final class DcEngineSvcCollectionResource {
      */
     private static Logger log = LoggerFactory.getLogger(DcEngineSvcCollectionResource.class);
 
+    /**
+     * レスポンスボディ中継時のバッファサイズ.
+     */
+    private static final int RELAY_BUFFER_SIZE = 8192;
+
+    /**
+     * Engineへの中継に用いるHttpClient. Keep-Aliveされた接続を全リクエストで共有する.
+     */
+    private static HttpClient engineClient = HttpClientFactory.createPooled(
+            DcCoreConfig.getEngineConnectionMaxTotal(),
+            DcCoreConfig.getEngineConnectionMaxPerRoute(),
+            DcCoreConfig.getEngineConnectionPoolTimeout());
+
+    /**
+     * Engineへの中継に用いる接続プールの利用状況を取得する.
+     * @return 貸出中(leased)、空き(available)、取得待ち(pending)の数と最大接続数(max)
+     */
+    public static Map<String, Integer> getConnectionPoolStats() {
+        return HttpClientFactory.getPoolStats(engineClient);
+    }
+
     DavCmp davCmp = null;
     DavCollectionResource dcr = null;
     DavRsCmp davRsCmp;
@@ -188,16 +213,38 @@ public final class DcEngineSvcCollectionResource {
      * @param path パス名
      * @param uriInfo URI
      * @param headers ヘッダ
+     * @param closeableService リクエスト終了時にEngineとの接続を返却するためのCloseableService
      * @return JAX-RS Response
      */
     @Path("{path}")
     @GET
     public Response relayget(@PathParam("path") String path,
             @Context final UriInfo uriInfo,
-            @Context HttpHeaders headers) {
+            @Context HttpHeaders headers,
+            @Context CloseableService closeableService) {
+        // アクセス制御
+        this.davRsCmp.checkAccessContext(this.davRsCmp.getAccessContext(), BoxPrivilege.EXEC);
+        return relaycommon(HttpMethod.GET, uriInfo, path, headers, null, closeableService);
+    }
+
+    /**
+     * relay_HEADメソッド.
+     * Engineへは従来どおりGETで中継し、レスポンスボディは中継しない.
+     * @param path パス名
+     * @param uriInfo URI
+     * @param headers ヘッダ
+     * @param closeableService リクエスト終了時にEngineとの接続を返却するためのCloseableService
+     * @return JAX-RS Response
+     */
+    @Path("{path}")
+    @HEAD
+    public Response relayhead(@PathParam("path") String path,
+            @Context final UriInfo uriInfo,
+            @Context HttpHeaders headers,
+            @Context CloseableService closeableService) {
         // アクセス制御
         this.davRsCmp.checkAccessContext(this.davRsCmp.getAccessContext(), BoxPrivilege.EXEC);
-        return relaycommon(HttpMethod.GET, uriInfo, path, headers, null);
+        return relaycommon(HttpMethod.HEAD, uriInfo, path, headers, null, closeableService);
     }
 
     /**
@@ -205,6 +252,7 @@ public final class DcEngineSvcCollectionResource {
      * @param path パス名
      * @param uriInfo URI
      * @param headers ヘッダ
+     * @param closeableService リクエスト終了時にEngineとの接続を返却するためのCloseableService
      * @param is リクエストボディ
      * @return JAX-RS Response
      */
@@ -213,10 +261,11 @@ public final class DcEngineSvcCollectionResource {
     public Response relaypost(@PathParam("path") String path,
             @Context final UriInfo uriInfo,
             @Context HttpHeaders headers,
+            @Context CloseableService closeableService,
             final InputStream is) {
         // アクセス制御
         this.davRsCmp.checkAccessContext(this.davRsCmp.getAccessContext(), BoxPrivilege.EXEC);
-        return relaycommon(HttpMethod.POST, uriInfo, path, headers, is);
+        return relaycommon(HttpMethod.POST, uriInfo, path, headers, is, closeableService);
     }
 
     /**
@@ -224,6 +273,7 @@ public final class DcEngineSvcCollectionResource {
      * @param path パス名
      * @param uriInfo URI
      * @param headers ヘッダ
+     * @param closeableService リクエスト終了時にEngineとの接続を返却するためのCloseableService
      * @param is リクエストボディ
      * @return JAX-RS Response
      */
@@ -232,10 +282,11 @@ public final class DcEngineSvcCollectionResource {
     public Response relayput(@PathParam("path") String path,
             @Context final UriInfo uriInfo,
             @Context HttpHeaders headers,
+            @Context CloseableService closeableService,
             final InputStream is) {
         // アクセス制御
         this.davRsCmp.checkAccessContext(this.davRsCmp.getAccessContext(), BoxPrivilege.EXEC);
-        return relaycommon(HttpMethod.PUT, uriInfo, path, headers, is);
+        return relaycommon(HttpMethod.PUT, uriInfo, path, headers, is, closeableService);
     }
 
     /**
@@ -243,16 +294,18 @@ public final class DcEngineSvcCollectionResource {
      * @param path パス名
      * @param uriInfo URI
      * @param headers ヘッダ
+     * @param closeableService リクエスト終了時にEngineとの接続を返却するためのCloseableService
      * @return JAX-RS Response
      */
     @Path("{path}")
     @DELETE
     public Response relaydelete(@PathParam("path") String path,
             @Context final UriInfo uriInfo,
-            @Context HttpHeaders headers) {
+            @Context HttpHeaders headers,
+            @Context CloseableService closeableService) {
         // アクセス制御
         this.davRsCmp.checkAccessContext(this.davRsCmp.getAccessContext(), BoxPrivilege.EXEC);
-        return relaycommon(HttpMethod.DELETE, uriInfo, path, headers, null);
+        return relaycommon(HttpMethod.DELETE, uriInfo, path, headers, null, closeableService);
     }
 
     /**
@@ -262,6 +315,7 @@ public final class DcEngineSvcCollectionResource {
      * @param path パス名
      * @param headers ヘッダ
      * @param is リクエストボディ
+     * @param closeableService リクエスト終了時にEngineとの接続を返却するためのCloseableService
      * @return JAX-RS Response
      */
     public Response relaycommon(
@@ -269,7 +323,8 @@ public final class DcEngineSvcCollectionResource {
             UriInfo uriInfo,
             String path,
             HttpHeaders headers,
-            InputStream is) {
+            InputStream is,
+            CloseableService closeableService) {
 
         String cellName = this.davRsCmp.getCell().getName();
         String boxName = this.davRsCmp.getBox().getName();
@@ -280,7 +335,7 @@ public final class DcEngineSvcCollectionResource {
         String baseUrl = uriInfo.getBaseUri().toString();
 
         // リクエストヘッダを取得し、以下内容を追加
-        HttpClient client = new DefaultHttpClient();
+        HttpClient client = engineClient;
         HttpUriRequest req = null;
         if (method.equals(HttpMethod.POST)) {
             HttpPost post = new HttpPost(requestUrl);
@@ -342,11 +397,20 @@ public final class DcEngineSvcCollectionResource {
         try {
             objResponse = client.execute(req);
         } catch (ClientProtocolException e) {
+            req.abort();
             throw DcCoreException.ServiceCollection.SC_INVALID_HTTP_RESPONSE_ERROR;
         } catch (Exception ioe) {
+            req.abort();
             throw DcCoreException.ServiceCollection.SC_ENGINE_CONNECTION_ERROR.reason(ioe);
         }
 
+        // レスポンスボディを取得
+        RelayedEntity relayedEntity = relayEntity(method, req, objResponse);
+        if (relayedEntity != null) {
+            // レスポンスボディが出力されずにリクエストが終了した場合も接続をプールに返却する
+            closeableService.add(relayedEntity);
+        }
+
         // ステータスコードを追加
         ResponseBuilder res = Response.status(objResponse.getStatusLine().getStatusCode());
         Header[] headersResEngine = objResponse.getAllHeaders();
@@ -366,38 +430,87 @@ public final class DcEngineSvcCollectionResource {
             res.header(headersResEngine[i].getName(), headersResEngine[i].getValue());
         }
 
-        InputStream isResBody = null;
-
         // レスポンスボディを追加
+        if (relayedEntity != null) {
+            res.entity(relayedEntity);
+        }
+
+        // レスポンス返却
+        return res.build();
+    }
+
+    /**
+     * Engineからのレスポンスボディを中継するエンティティを作成する.
+     * HEADの場合はレスポンスボディを中継しないため、接続を破棄してプールに返却する.
+     * @param method メソッド
+     * @param req Engineへのリクエスト
+     * @param objResponse Engineからのレスポンス
+     * @return 中継するエンティティ. レスポンスボディを中継しない場合はnull
+     */
+    static RelayedEntity relayEntity(String method, HttpUriRequest req, HttpResponse objResponse) {
         HttpEntity entity = objResponse.getEntity();
-        if (entity != null) {
+        if (entity == null) {
+            return null;
+        }
+        if (HttpMethod.HEAD.equals(method)) {
+            req.abort();
+            return null;
+        }
+        try {
+            return new RelayedEntity(req, entity.getContent());
+        } catch (IllegalStateException e) {
+            req.abort();
+            throw DcCoreException.ServiceCollection.SC_UNKNOWN_ERROR.reason(e);
+        } catch (IOException e) {
+            req.abort();
+            throw DcCoreException.ServiceCollection.SC_ENGINE_CONNECTION_ERROR.reason(e);
+        }
+    }
+
+    /**
+     * Engineからのレスポンスボディを中継するエンティティ.
+     * 最後まで中継した場合はストリームをクローズして接続をプールに返却し、再利用する。
+     * 出力されなかった場合や中継が途中で終了した場合は、クローズ時に接続を破棄してプールに返却する.
+     */
+    static final class RelayedEntity implements StreamingOutput, Closeable {
+        private final HttpUriRequest req;
+        private final InputStream body;
+        private boolean completed = false;
+        private boolean closed = false;
+
+        RelayedEntity(HttpUriRequest req, InputStream body) {
+            this.req = req;
+            this.body = body;
+        }
+
+        @Override
+        public void write(final OutputStream os) throws IOException {
+            byte[] buf = new byte[RELAY_BUFFER_SIZE];
+            int len;
             try {
-                isResBody = entity.getContent();
-            } catch (IllegalStateException e) {
-                throw DcCoreException.ServiceCollection.SC_UNKNOWN_ERROR.reason(e);
-            } catch (IOException e) {
-                throw DcCoreException.ServiceCollection.SC_ENGINE_CONNECTION_ERROR.reason(e);
-            }
-            final InputStream isInvariable = isResBody;
-            // 処理結果を出力
-            StreamingOutput strOutput = new StreamingOutput() {
-                @Override
-                public void write(final OutputStream os) throws IOException {
-                    int chr;
-                    try {
-                        while ((chr = isInvariable.read()) != -1) {
-                            os.write(chr);
-                        }
-                    } finally {
-                        isInvariable.close();
-                    }
+                while ((len = this.body.read(buf)) != -1) {
+                    os.write(buf, 0, len);
+                    os.flush();
                 }
-            };
-            res.entity(strOutput);
+                this.completed = true;
+            } finally {
+                close();
+            }
         }
 
-        // レスポンス返却
-        return res.build();
+        @Override
+        public synchronized void close() throws IOException {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            if (this.completed) {
+                // ストリームをクローズすると接続がプールに返却される
+                this.body.close();
+            } else {
+                this.req.abort();
+            }
+        }
     }
 
     /**
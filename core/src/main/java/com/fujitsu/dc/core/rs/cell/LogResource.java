@@ -24,7 +24,9 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
+import java.io.Writer;
 import java.util.Date;
 import java.util.List;
 
@@ -33,6 +35,7 @@ import javax.ws.rs.GET;
 import javax.ws.rs.HeaderParam;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.HttpHeaders;
@@ -45,6 +48,7 @@ import javax.ws.rs.core.UriInfo;
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.CharEncoding;
 import org.apache.http.HttpStatus;
 import org.apache.wink.webdav.WebDAVMethod.PROPFIND;
 import org.apache.wink.webdav.model.Creationdate;
@@ -65,6 +69,8 @@ import com.fujitsu.dc.core.auth.CellPrivilege;
 import com.fujitsu.dc.core.event.EventUtils;
 import com.fujitsu.dc.core.eventlog.ArchiveLogCollection;
 import com.fujitsu.dc.core.eventlog.ArchiveLogFile;
+import com.fujitsu.dc.core.eventlog.EventLogFilter;
+import com.fujitsu.dc.core.eventlog.EventLogQuery;
 import com.fujitsu.dc.core.model.Cell;
 import com.fujitsu.dc.core.model.DavRsCmp;
 import com.fujitsu.dc.core.utils.ResourceUtils;
@@ -248,6 +254,104 @@ public class LogResource {
         return ret;
     }
 
+    /**
+     * カレントのイベントログから条件に一致するイベントを検索する.
+     * @param since 検索範囲の開始日時(エポックミリ秒またはyyyy-MM-ddTHH:mm:ss.SSSZ形式、この日時を含む)
+     * @param until 検索範囲の終了日時(エポックミリ秒またはyyyy-MM-ddTHH:mm:ss.SSSZ形式、この日時を含まない)
+     * @param subject subject
+     * @param action action
+     * @param object object
+     * @param result result
+     * @return JAX-RS Response Object
+     */
+    @Path(CURRENT_COLLECTION)
+    @GET
+    public final Response queryCurrent(@QueryParam("since") final String since,
+            @QueryParam("until") final String until,
+            @QueryParam("subject") final String subject,
+            @QueryParam("action") final String action,
+            @QueryParam("object") final String object,
+            @QueryParam("result") final String result) {
+        // アクセス制御
+        this.davRsCmp.checkAccessContext(this.davRsCmp.getAccessContext(), CellPrivilege.LOG_READ);
+
+        final EventLogQuery query = createQuery(since, until, subject, action, object, result);
+        return createQueryResponse(new StreamingOutput() {
+            @Override
+            public void write(final OutputStream os) throws IOException, WebApplicationException {
+                Writer writer = new OutputStreamWriter(os, CharEncoding.UTF_8);
+                query.queryCurrent(writer);
+                writer.flush();
+            }
+        });
+    }
+
+    /**
+     * アーカイブのイベントログから条件に一致するイベントを古い順に検索する.
+     * アーカイブのイベントログは検索用のセグメントに変換し、日時の範囲と重なるブロックのみを読み込む。
+     * @param since 検索範囲の開始日時(エポックミリ秒またはyyyy-MM-ddTHH:mm:ss.SSSZ形式、この日時を含む)
+     * @param until 検索範囲の終了日時(エポックミリ秒またはyyyy-MM-ddTHH:mm:ss.SSSZ形式、この日時を含まない)
+     * @param subject subject
+     * @param action action
+     * @param object object
+     * @param result result
+     * @return JAX-RS Response Object
+     */
+    @Path(ARCHIVE_COLLECTION)
+    @GET
+    public final Response queryArchive(@QueryParam("since") final String since,
+            @QueryParam("until") final String until,
+            @QueryParam("subject") final String subject,
+            @QueryParam("action") final String action,
+            @QueryParam("object") final String object,
+            @QueryParam("result") final String result) {
+        // アクセス制御
+        this.davRsCmp.checkAccessContext(this.davRsCmp.getAccessContext(), CellPrivilege.LOG_READ);
+
+        final EventLogQuery query = createQuery(since, until, subject, action, object, result);
+        // セグメントの作成はレスポンスの出力前に行い、失敗した場合はエラーを返却する
+        query.prepare();
+        return createQueryResponse(new StreamingOutput() {
+            @Override
+            public void write(final OutputStream os) throws IOException, WebApplicationException {
+                Writer writer = new OutputStreamWriter(os, CharEncoding.UTF_8);
+                query.queryArchive(writer);
+                writer.flush();
+            }
+        });
+    }
+
+    private EventLogQuery createQuery(String since, String until,
+            String subject, String action, String object, String result) {
+        EventLogFilter filter = new EventLogFilter();
+        if (since != null) {
+            filter.setSince(parseTime("since", since));
+        }
+        if (until != null) {
+            filter.setUntil(parseTime("until", until));
+        }
+        filter.setSubject(subject);
+        filter.setAction(action);
+        filter.setObject(object);
+        filter.setResult(result);
+        return new EventLogQuery(davRsCmp.getCell().getId(), davRsCmp.getCell().getOwner(), filter);
+    }
+
+    private long parseTime(String name, String value) {
+        try {
+            return EventLogFilter.parseTime(value);
+        } catch (IllegalArgumentException e) {
+            throw DcCoreException.Event.REQUEST_FIELD_FORMAT_ERROR.params(name);
+        }
+    }
+
+    private Response createQueryResponse(StreamingOutput output) {
+        ResponseBuilder res = Response.status(HttpStatus.SC_OK);
+        res.header(HttpHeaders.CONTENT_TYPE, EventUtils.TEXT_CSV);
+        res.entity(output);
+        return res.build();
+    }
+
     /**
      * イベントログファイルを取得する.
      * @param ifNoneMatch If-None-Matchヘッダ
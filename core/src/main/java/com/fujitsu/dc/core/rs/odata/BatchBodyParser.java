@@ -46,76 +46,119 @@ public class BatchBodyParser {
 
     /**
      * $batchのリクエストボディをパースする.
+     * <p>
+     * リクエストボディ全体を文字列に展開せず、ストリームから行単位で読み込みながらバウンダリごとに解析する。
+     * ただし解析はボディの終端まで行い、すべてのリクエストを解析し終えてからリストで返す。
+     * ボディの終端やいずれかのリクエストが不正な場合に、どのリクエストも実行する前にエラーを返すためである。
+     * エラーの判定順序はボディ全体を展開していた場合と同じとし、ボディの終端を確認してから個々のリクエストのエラーを返す。
+     * リクエスト数が上限を超えた以降のリクエストは保持せず、エラーの有無の確認のみを行う。
+     * </p>
      * @param boundary バウンダリ文字列
      * @param reader リクエストボディ
      * @param requestUriParam baseUri
      * @return BatchBodyPartのリスト
      */
     public List<BatchBodyPart> parse(String boundary, Reader reader, String requestUriParam) {
-        // TODO リクエストが１万件を超える場合エラーとする
-
         this.collectionUri = requestUriParam.split("/\\$batch")[0];
 
         BufferedReader br = new BufferedReader(reader);
-        // ボディを取得する
-        StringBuilder body;
         try {
-            body = getBatchBody(br);
+            return getRequests(br, boundary);
         } catch (IOException e) {
             // IOExceptionは重大障害
             throw DcCoreException.Server.UNKNOWN_ERROR.reason(e);
         }
+    }
 
-        if (!body.toString().startsWith("--" + boundary + "\n")) {
+    /**
+     * $batchのリクエストボディから個々のリクエストを読み込み、リストで返却する.
+     * @param br リクエストボディ
+     * @param boundaryStr バウンダリ文字列
+     * @return BatchBodyPartのリスト
+     * @throws IOException
+     */
+    private List<BatchBodyPart> getRequests(BufferedReader br, String boundaryStr) throws IOException {
+        String delimiter = "--" + boundaryStr;
+        String line = br.readLine();
+        if (!delimiter.equals(line)) {
             // リクエストボディの先頭が「--バウンダリー文字列」で始まっていなければエラーとする
             throw DcCoreException.OData.BATCH_BODY_PARSE_ERROR;
         }
-        if (!body.toString().trim().endsWith("--" + boundary + "--")) {
+
+        RequestCollector collector = new RequestCollector(boundaryStr);
+        String lastLine = line;
+        StringBuilder boundaryBody = new StringBuilder();
+        while ((line = br.readLine()) != null) {
+            if (!line.trim().isEmpty()) {
+                lastLine = line;
+            }
+            if (line.endsWith(delimiter)) {
+                // 「--バウンダリー文字列」の行でボディを分割する
+                boundaryBody.append(line, 0, line.length() - delimiter.length());
+                collector.add(boundaryBody.toString());
+                boundaryBody.setLength(0);
+            } else {
+                boundaryBody.append(line);
+                boundaryBody.append("\n");
+            }
+        }
+        collector.add(boundaryBody.toString());
+
+        if (!lastLine.trim().endsWith(delimiter + "--")) {
             // リクエストボディの最後が「--バウンダリー文字列--」で終わっていなければエラーとする
             throw DcCoreException.OData.BATCH_BODY_PARSE_ERROR;
         }
-
-        // 個々のリクエストを取得する
-        List<BatchBodyPart> requests = getRequests(body.toString(), boundary);
-        return requests;
+        return collector.getRequests();
     }
 
     /**
-     * $batchのリクエストボディを取得する.
-     * @param br リクエストボディ
-     * @return リクエストボディ（StringBuilder）
-     * @throws IOException
+     * バウンダリごとに解析したリクエストを集約するクラス.
      */
-    private StringBuilder getBatchBody(BufferedReader br) throws IOException {
-        StringBuilder body = new StringBuilder();
-        String line;
-        while (true) {
-            line = br.readLine();
-            if (line == null) {
-                break;
+    class RequestCollector {
+        private final String boundaryStr;
+        private final int maxSize = Integer.parseInt(DcCoreConfig.getOdataBatchBulkRequestMaxSize());
+        private final List<BatchBodyPart> requests = new ArrayList<BatchBodyPart>();
+        private int count = 0;
+        private RuntimeException error = null;
+
+        RequestCollector(String boundaryStr) {
+            this.boundaryStr = boundaryStr;
+        }
+
+        /**
+         * バウンダリのボディを解析して追加する. エラーが発生した以降のバウンダリは解析しない.
+         * @param boundaryBody バウンダリのボディ
+         */
+        void add(String boundaryBody) {
+            if (boundaryBody.equals("") || this.error != null) {
+                return;
+            }
+            try {
+                BoundaryParser boundary = new BoundaryParser(null, this.boundaryStr);
+                List<BatchBodyPart> parts = boundary.parse(boundaryBody);
+                this.count += parts.size();
+                if (this.count <= this.maxSize) {
+                    this.requests.addAll(parts);
+                }
+            } catch (RuntimeException e) {
+                this.error = e;
             }
-            body.append(line + "\n");
         }
-        return body;
-    }
 
-    /**
-     * $batchのリクエストボディから個々のリクエストを取得し、リストで返却する.
-     * @param body $batchのリクエストボディ
-     * @param boundaryStr バウンダリ文字列
-     * @return BatchBodyPartのリスト
-     */
-    private List<BatchBodyPart> getRequests(String body, String boundaryStr) {
-        List<BatchBodyPart> requests = new ArrayList<BatchBodyPart>();
-        // ボディをboundaryで分割する
-        String[] arrBoundary = splitBoundary(body, boundaryStr);
-        for (String boundaryBody : arrBoundary) {
-            if (!boundaryBody.equals("")) {
-                BoundaryParser boundary = new BoundaryParser(null, boundaryStr);
-                requests.addAll(boundary.parse(boundaryBody));
+        /**
+         * 解析したリクエストを返す.
+         * @return BatchBodyPartのリスト
+         */
+        List<BatchBodyPart> getRequests() {
+            if (this.error != null) {
+                throw this.error;
+            }
+            if (this.count > this.maxSize) {
+                // $Batchで指定されたリクエスト数が不正
+                throw DcCoreException.OData.TOO_MANY_REQUESTS.params(this.count);
             }
+            return this.requests;
         }
-        return requests;
     }
 
     private String[] splitBoundary(String input, String boundaryStr) {
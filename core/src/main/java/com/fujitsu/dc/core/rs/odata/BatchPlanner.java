@@ -0,0 +1,413 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.rs.odata;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.HttpMethod;
+
+import com.fujitsu.dc.core.DcCoreConfig;
+import com.fujitsu.dc.core.DcCoreException;
+
+/**
+ * $batchリクエスト内の取得系リクエストの実行順序を決定し、レスポンスを組み立てるクラス.
+ * <p>
+ * 取得系リクエストはEntitySet単位の依存関係に従って並行して実行する。
+ * 取得系リクエストは、それより前の更新系リクエストが完了してから登録されるため、前の更新結果を参照できる。
+ * 更新系リクエストは、同じEntitySetを参照する前の取得系リクエストの完了を{@link #awaitReads}で待ってから実行する。
+ * ただし登録・更新は動的プロパティの追加によりスキーマ情報を変更し得るため、実行中のすべての取得系リクエストの完了を待つ。
+ * 後続に同じEntitySetを更新するリクエストがない取得系リクエストは、レスポンスの書き込み時まで実行を遅延し、
+ * 書き込み済みでない結果がバッファサイズを超えない範囲で先行して実行する。
+ * レスポンスは、取得系リクエストの結果を登録時の位置に埋め込むことでリクエストの順序を保つ。
+ * </p>
+ */
+class BatchPlanner {
+
+    /** すべてのEntitySetに影響するリクエストを表すキー. */
+    static final String ALL_ENTITY_SETS = "*";
+
+    private static final int PARALLELISM = DcCoreConfig.getOdataBatchParallelism();
+    private static final long RESPONSE_BUFFER_SIZE = DcCoreConfig.getOdataBatchResponseBufferSize();
+    private static ExecutorService executor;
+
+    private final boolean parallel;
+    private final long responseBufferSize;
+    private final List<Segment> segments = new ArrayList<Segment>();
+    private final List<PendingRead> pendingReads = new ArrayList<PendingRead>();
+    private final Set<BatchBodyPart> deferrableReads =
+            Collections.newSetFromMap(new IdentityHashMap<BatchBodyPart, Boolean>());
+    private final LinkedList<Segment> prefetchedReads = new LinkedList<Segment>();
+    private int prefetchIndex = 0;
+
+    /**
+     * コンストラクタ.
+     */
+    BatchPlanner() {
+        this(PARALLELISM > 1, RESPONSE_BUFFER_SIZE);
+    }
+
+    /**
+     * コンストラクタ.
+     * @param parallel 取得系リクエストを並行して実行する場合はtrue
+     * @param responseBufferSize 先行して実行した取得系リクエストの結果を保持するバッファサイズ(文字数)
+     */
+    BatchPlanner(boolean parallel, long responseBufferSize) {
+        this.parallel = parallel;
+        this.responseBufferSize = responseBufferSize;
+    }
+
+    /**
+     * リクエストの依存関係から、実行をレスポンスの書き込み時まで遅延できる取得系リクエストを決定する.
+     * @param bodyParts $batchリクエスト内のリクエスト
+     */
+    void plan(List<BatchBodyPart> bodyParts) {
+        Map<String, Integer> lastWrites = new HashMap<String, Integer>();
+        int lastWrite = -1;
+        for (int i = 0; i < bodyParts.size(); i++) {
+            BatchBodyPart bodyPart = bodyParts.get(i);
+            if (!HttpMethod.GET.equals(bodyPart.getHttpMethod())) {
+                for (String entitySet : getEntitySets(bodyPart)) {
+                    lastWrites.put(entitySet, i);
+                }
+                lastWrite = i;
+            }
+        }
+        for (int i = 0; i < bodyParts.size(); i++) {
+            BatchBodyPart bodyPart = bodyParts.get(i);
+            if (HttpMethod.GET.equals(bodyPart.getHttpMethod())
+                    && isDeferrable(i, getEntitySets(bodyPart), lastWrites, lastWrite)) {
+                this.deferrableReads.add(bodyPart);
+            }
+        }
+    }
+
+    private static boolean isDeferrable(int index, Set<String> entitySets, Map<String, Integer> lastWrites,
+            int lastWrite) {
+        if (entitySets.contains(ALL_ENTITY_SETS)) {
+            return index > lastWrite;
+        }
+        Integer lastWriteToAll = lastWrites.get(ALL_ENTITY_SETS);
+        if (lastWriteToAll != null && index < lastWriteToAll) {
+            return false;
+        }
+        for (String entitySet : entitySets) {
+            Integer lastWriteToSet = lastWrites.get(entitySet);
+            if (lastWriteToSet != null && index < lastWriteToSet) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 取得系リクエストを実行する.
+     * 後続に同じEntitySetを更新するリクエストがない場合はレスポンスの書き込み時まで実行を遅延する。
+     * 並行実行が有効な場合はスレッドプールに登録し、レスポンスは{@link #write}の呼び出し時に登録時の位置へ埋め込む。
+     * @param responseBody これまでのレスポンスボディ. 遅延または並行実行の場合は内容を退避してクリアする
+     * @param bodyPart 取得系リクエスト
+     * @param task レスポンスボディを返す処理
+     */
+    void submitRead(StringBuilder responseBody, BatchBodyPart bodyPart, Callable<String> task) {
+        submitRead(responseBody, getEntitySets(bodyPart), this.deferrableReads.contains(bodyPart), task);
+    }
+
+    /**
+     * 取得系リクエストを実行する.
+     * @param responseBody これまでのレスポンスボディ. 遅延または並行実行の場合は内容を退避してクリアする
+     * @param entitySets リクエストが参照するEntitySet名
+     * @param deferrable レスポンスの書き込み時まで実行を遅延できる場合はtrue
+     * @param task レスポンスボディを返す処理
+     */
+    void submitRead(StringBuilder responseBody, Set<String> entitySets, boolean deferrable, Callable<String> task) {
+        if (!deferrable && !this.parallel) {
+            responseBody.append(call(task));
+            return;
+        }
+        this.segments.add(new Segment(responseBody.toString(), null));
+        responseBody.setLength(0);
+        if (deferrable) {
+            this.segments.add(new Segment(null, task));
+            return;
+        }
+        Segment segment = new Segment(null, null);
+        segment.future = getExecutor().submit(task);
+        this.segments.add(segment);
+        this.pendingReads.add(new PendingRead(entitySets, segment.future));
+    }
+
+    /**
+     * 指定されたEntitySetを参照する実行中の取得系リクエストの完了を待つ.
+     * 更新系リクエストの実行前に呼び出し、前の取得系リクエストが更新後のデータを参照しないようにする。
+     * @param entitySets 更新するEntitySet名
+     */
+    void awaitReads(Set<String> entitySets) {
+        List<PendingRead> completed = new ArrayList<PendingRead>();
+        for (PendingRead read : this.pendingReads) {
+            if (read.conflictsWith(entitySets)) {
+                waitFor(read.future);
+                completed.add(read);
+            } else if (read.future.isDone()) {
+                completed.add(read);
+            }
+        }
+        this.pendingReads.removeAll(completed);
+    }
+
+    /**
+     * 取得系リクエストの完了を待ちながら、レスポンスボディを先頭から順に書き込む.
+     * 取得系リクエストの結果は書き込むたびにフラッシュし、書き込み済みの結果は保持しない。
+     * @param writer 書き込み先
+     * @param responseBody 最後の取得系リクエスト以降のレスポンスボディ
+     * @throws IOException 書き込みに失敗した場合
+     */
+    void write(Writer writer, StringBuilder responseBody) throws IOException {
+        try {
+            for (int i = 0; i < this.segments.size(); i++) {
+                prefetch(i);
+                Segment segment = this.segments.get(i);
+                this.segments.set(i, null);
+                if (segment.text != null) {
+                    writer.write(segment.text);
+                    continue;
+                }
+                this.prefetchedReads.remove(segment);
+                if (segment.future != null) {
+                    writer.write(get(segment.future));
+                } else {
+                    writer.write(call(segment.task));
+                }
+                writer.flush();
+            }
+            writer.write(responseBody.toString());
+            writer.flush();
+        } finally {
+            cancel();
+        }
+    }
+
+    /**
+     * 実行待ちの取得系リクエストを取り消す. バッチ処理が中断した場合に呼び出す.
+     */
+    void cancel() {
+        for (Segment segment : this.segments) {
+            if (segment != null && segment.future != null) {
+                segment.future.cancel(false);
+            }
+        }
+        this.segments.clear();
+        this.pendingReads.clear();
+        this.prefetchedReads.clear();
+    }
+
+    /**
+     * 書き込み中の位置より後ろにある遅延した取得系リクエストを、スレッド数とバッファサイズの範囲で先行して実行する.
+     * @param index 書き込み中の位置
+     */
+    private void prefetch(int index) {
+        if (!this.parallel) {
+            return;
+        }
+        if (this.prefetchIndex <= index) {
+            this.prefetchIndex = index + 1;
+        }
+        while (this.prefetchIndex < this.segments.size()) {
+            Segment segment = this.segments.get(this.prefetchIndex);
+            if (segment.task != null) {
+                if (!hasPrefetchCapacity()) {
+                    return;
+                }
+                segment.future = getExecutor().submit(segment.task);
+                this.prefetchedReads.add(segment);
+            }
+            this.prefetchIndex++;
+        }
+    }
+
+    private boolean hasPrefetchCapacity() {
+        int running = 0;
+        long buffered = 0;
+        for (Segment segment : this.prefetchedReads) {
+            if (!segment.future.isDone()) {
+                running++;
+            } else if (!segment.future.isCancelled()) {
+                try {
+                    buffered += segment.future.get().length();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                } catch (ExecutionException e) {
+                    // 取得系リクエストの例外は書き込み時に扱う
+                    continue;
+                }
+            }
+        }
+        return running < PARALLELISM && buffered < this.responseBufferSize;
+    }
+
+    /**
+     * リクエストが参照または更新するEntitySet名を返す.
+     * NavigationProperty経由のリクエストや$links、$expandを指定した取得は、複数のEntitySetに関係するためすべてのEntitySetとして扱う。
+     * @param bodyPart BatchBodyPart
+     * @return EntitySet名
+     */
+    static Set<String> getEntitySets(BatchBodyPart bodyPart) {
+        if (bodyPart.isLinksRequest() || bodyPart.getEntitySetName() == null) {
+            return Collections.singleton(ALL_ENTITY_SETS);
+        }
+        if (bodyPart.hasNavigationProperty()) {
+            if (!HttpMethod.POST.equals(bodyPart.getHttpMethod()) || bodyPart.getTargetEntitySetName() == null) {
+                return Collections.singleton(ALL_ENTITY_SETS);
+            }
+            Set<String> entitySets = new HashSet<String>();
+            entitySets.add(bodyPart.getEntitySetName());
+            entitySets.add(bodyPart.getTargetEntitySetName());
+            return entitySets;
+        }
+        String query = bodyPart.getRequestQuery();
+        if (query != null && query.contains("$expand")) {
+            return Collections.singleton(ALL_ENTITY_SETS);
+        }
+        return Collections.singleton(bodyPart.getEntitySetName());
+    }
+
+    /**
+     * 更新系リクエストの実行前に完了を待つ取得系リクエストのEntitySet名を返す.
+     * 登録・更新は動的プロパティの追加によりProducerが保持するスキーマ情報を変更する。
+     * スキーマ情報は並行実行中の取得系リクエストと共有され排他されないため、すべてのEntitySetとして扱う。
+     * @param bodyPart 更新系リクエスト
+     * @return EntitySet名
+     */
+    static Set<String> getBarrierEntitySets(BatchBodyPart bodyPart) {
+        if (HttpMethod.DELETE.equals(bodyPart.getHttpMethod())) {
+            return getEntitySets(bodyPart);
+        }
+        return Collections.singleton(ALL_ENTITY_SETS);
+    }
+
+    private static String call(Callable<String> task) {
+        try {
+            return task.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw DcCoreException.Server.UNKNOWN_ERROR.reason(e);
+        }
+    }
+
+    private static void waitFor(Future<String> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw DcCoreException.Server.UNKNOWN_ERROR.reason(e);
+        } catch (ExecutionException e) {
+            // 取得系リクエストの例外はレスポンス書き込み時に扱う
+            return;
+        }
+    }
+
+    private static String get(Future<String> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw DcCoreException.Server.UNKNOWN_ERROR.reason(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw DcCoreException.Server.UNKNOWN_ERROR.reason(e.getCause());
+        }
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(Math.max(PARALLELISM, 1), new BatchThreadFactory());
+        }
+        return executor;
+    }
+
+    /**
+     * レスポンスボディの断片. 確定済みの文字列、または取得系リクエストの処理と実行結果を保持する.
+     */
+    private static final class Segment {
+        private final String text;
+        private final Callable<String> task;
+        private Future<String> future;
+
+        Segment(String text, Callable<String> task) {
+            this.text = text;
+            this.task = task;
+        }
+    }
+
+    /**
+     * 実行中の取得系リクエスト.
+     */
+    private static final class PendingRead {
+        private final Set<String> entitySets;
+        private final Future<String> future;
+
+        PendingRead(Set<String> entitySets, Future<String> future) {
+            this.entitySets = entitySets;
+            this.future = future;
+        }
+
+        boolean conflictsWith(Set<String> others) {
+            if (this.entitySets.contains(ALL_ENTITY_SETS) || others.contains(ALL_ENTITY_SETS)) {
+                return true;
+            }
+            for (String entitySet : others) {
+                if (this.entitySets.contains(entitySet)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 取得系リクエストを実行するデーモンスレッドを生成するThreadFactory.
+     */
+    private static final class BatchThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "odata-batch-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
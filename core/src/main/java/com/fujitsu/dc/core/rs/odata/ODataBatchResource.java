@@ -16,15 +16,20 @@
  */
 package com.fujitsu.dc.core.rs.odata;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
 
 import javax.ws.rs.HttpMethod;
 import javax.ws.rs.POST;
@@ -33,8 +38,10 @@ import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
+import org.apache.commons.lang.CharEncoding;
 import org.apache.http.HttpStatus;
 import org.json.simple.JSONObject;
 import org.odata4j.core.ODataConstants;
@@ -122,6 +129,9 @@ public class ODataBatchResource extends AbstractODataResource {
     // EntityType名とEntityTypeIDのマッピングデータ
     Map<String, String> entityTypeIds;
 
+    // 取得系リクエストを並行して実行するためのクラス
+    BatchPlanner planner;
+
     /**
      * コンストラクタ.
      * @param odataResource ODataResource
@@ -171,35 +181,46 @@ public class ODataBatchResource extends AbstractODataResource {
             // パース処理失敗
             throw DcCoreException.OData.BATCH_BODY_PARSE_ERROR;
         }
-        if (bodyParts.size() > Integer.parseInt(DcCoreConfig.getOdataBatchBulkRequestMaxSize())) {
-            // $Batchで指定されたリクエスト数が不正
-            throw DcCoreException.OData.TOO_MANY_REQUESTS.params(bodyParts.size());
-        }
 
         UserDataODataProducer producer = (UserDataODataProducer) this.odataResource.getODataProducer();
         entityTypeIds = producer.getEntityTypeIds();
 
         List<NavigationPropertyBulkContext> npBulkContexts = new ArrayList<NavigationPropertyBulkContext>();
 
-        StringBuilder responseBody = new StringBuilder();
+        final StringBuilder responseBody = new StringBuilder();
+        planner = new BatchPlanner();
+        planner.plan(bodyParts);
 
-        // １件ずつリクエストを実行
-        for (BatchBodyPart bodyPart : bodyParts) {
-            executePartRequest(responseBody, uriInfo, boundary, npBulkContexts, bodyPart);
-        }
+        try {
+            // １件ずつリクエストを実行(取得系リクエストは並行して実行する)
+            for (BatchBodyPart bodyPart : bodyParts) {
+                executePartRequest(responseBody, uriInfo, boundary, npBulkContexts, bodyPart);
+            }
 
-        // POSTのbulk実行
-        checkAndExecBulk(responseBody, uriInfo, boundary, npBulkContexts);
+            // POSTのbulk実行
+            checkAndExecBulk(responseBody, uriInfo, boundary, npBulkContexts);
+        } catch (RuntimeException e) {
+            planner.cancel();
+            throw e;
+        }
 
         // バウンダリ終端文字列
         responseBody.append("--" + boundary + "--");
 
-        // レスポンス作成
+        // レスポンス作成(更新系リクエストはここまでにすべて実行済み)
+        // 遅延した取得系リクエストは書き込み時に実行し、結果を順に書き込む
         String contentType = ODataBatchProvider.MULTIPART_MIXED + "; boundary=" + boundary;
+        StreamingOutput output = new StreamingOutput() {
+            @Override
+            public void write(OutputStream os) throws IOException {
+                Writer writer = new OutputStreamWriter(os, CharEncoding.UTF_8);
+                planner.write(writer, responseBody);
+            }
+        };
         return Response.status(HttpStatus.SC_ACCEPTED)
                 .header(HttpHeaders.CONTENT_TYPE, contentType)
                 .header(ODataConstants.Headers.DATA_SERVICE_VERSION, ODataVersion.V2.asString)
-                .entity(responseBody.toString())
+                .entity(output)
                 .build();
     }
 
@@ -252,6 +273,10 @@ public class ODataBatchResource extends AbstractODataResource {
             String boundary,
             List<NavigationPropertyBulkContext> npBulkContexts,
             BatchBodyPart bodyPart) {
+        // 更新系リクエストは、影響する前の取得系リクエストの完了を待ってから実行する
+        if (!HttpMethod.GET.equals(bodyPart.getHttpMethod())) {
+            planner.awaitReads(BatchPlanner.getBarrierEntitySets(bodyPart));
+        }
         // ReadDeleteOnlyMode中はGETとDELETEメソッド以外は許可しないため、エラーレスポンスを設定する
         if (!DcReadDeleteModeManager.isAllowedMethod(bodyPart.getHttpMethod())) {
             BatchResponse res = new BatchResponse();
@@ -358,14 +383,8 @@ public class ODataBatchResource extends AbstractODataResource {
         } else if (bodyPart.getHttpMethod().equals(HttpMethod.GET)) {
             // POSTのbulk実行
             checkAndExecBulk(responseBody, uriInfo, boundary, npBulkContexts);
-            BatchResponse res = null;
             if (!isTimedOut(BatchElapsedTimer.Lock.HOLD)) {
-                if (isListRequst(bodyPart)) {
-                    res = list(uriInfo, bodyPart);
-                } else {
-                    res = retrieve(uriInfo, bodyPart);
-                }
-                responseBody.append(getRetrieveResponseBody(boundary, res));
+                executeRetrieveRequest(responseBody, uriInfo, boundary, bodyPart);
             } else {
                 setTimeoutResponse(responseBody, boundary);
             }
@@ -402,6 +421,25 @@ public class ODataBatchResource extends AbstractODataResource {
         }
     }
 
+    /**
+     * 取得系リクエストを実行する. 並行実行が有効な場合はレスポンスの作成までを別スレッドで行う.
+     */
+    private void executeRetrieveRequest(StringBuilder responseBody, final UriInfo uriInfo,
+            final String boundary, final BatchBodyPart bodyPart) {
+        planner.submitRead(responseBody, bodyPart, new Callable<String>() {
+            @Override
+            public String call() {
+                BatchResponse res = null;
+                if (isListRequst(bodyPart)) {
+                    res = list(uriInfo, bodyPart);
+                } else {
+                    res = retrieve(uriInfo, bodyPart);
+                }
+                return getRetrieveResponseBody(boundary, res);
+            }
+        });
+    }
+
     private void setChangesetTooManyConcurrentResponse(StringBuilder responseBody,
             String boundary,
             BatchBodyPart bodyPart) {
@@ -1422,14 +1460,18 @@ public class ODataBatchResource extends AbstractODataResource {
 
         Privilege priv = this.odataResource.getNecessaryReadPrivilege(bodyPart.getEntitySetName());
 
-        BatchAccess batchAccess = readAccess.get(priv);
-        if (batchAccess == null) {
-            batchAccess = new BatchAccess();
-            readAccess.put(priv, batchAccess);
-            try {
-                this.checkAccessContextForMimePart(this.odataResource.getAccessContext(), priv);
-            } catch (DcCoreException ex) {
-                batchAccess.setAccessContext(ex);
+        // 取得系リクエストは並行して実行されるため、アクセス制御の結果の登録を排他する
+        BatchAccess batchAccess;
+        synchronized (readAccess) {
+            batchAccess = readAccess.get(priv);
+            if (batchAccess == null) {
+                batchAccess = new BatchAccess();
+                readAccess.put(priv, batchAccess);
+                try {
+                    this.checkAccessContextForMimePart(this.odataResource.getAccessContext(), priv);
+                } catch (DcCoreException ex) {
+                    batchAccess.setAccessContext(ex);
+                }
             }
         }
 
@@ -39,6 +39,15 @@ public interface CacheClient {
      */
     Boolean put(String key, int expiresIn, Object object);
 
+    /**
+     * 指定キーのキャッシュが存在しない場合のみ、オブジェクトを一定の有効期限のみキャッシュします.
+     * @param key キャッシュのキー
+     * @param expiresIn 有効期間
+     * @param object キャッシュすべきオブジェクト
+     * @return 格納した場合はTrue/既に存在する場合、または失敗時はFalseを返す.
+     */
+    Boolean add(String key, int expiresIn, Object object);
+
     /**
      * 指定キーのキャッシュを削除.
      * @param key キャッシュキー
@@ -20,6 +20,7 @@ import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.cert.X509Certificate;
+import java.util.Map;
 
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.SSLContext;
@@ -27,7 +28,10 @@ import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
 
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.params.ClientPNames;
+import org.apache.http.client.params.CookiePolicy;
 import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.params.ConnManagerPNames;
 import org.apache.http.conn.scheme.PlainSocketFactory;
 import org.apache.http.conn.scheme.Scheme;
 import org.apache.http.conn.scheme.SchemeRegistry;
@@ -90,6 +94,42 @@ public class HttpClientFactory extends DefaultHttpClient {
         return hc;
     }
 
+    /**
+     * 接続をプールするスレッドセーフなHTTPClientオブジェクトを作成.
+     * Keep-Aliveされた接続を再利用するため、作成したHttpClientは複数のスレッドで共有して使用すること.
+     * また、レスポンスボディは必ず最後まで読み込むかストリームをクローズして接続をプールに返却すること.
+     * 異なるユーザ・Cellのリクエストで共有されるため、レスポンスのCookieは保持せず、リクエストにも付与しない.
+     * @param maxTotal 最大接続数
+     * @param maxPerRoute ホスト毎の最大接続数
+     * @param poolTimeout プールから接続を取得する際のタイムアウト(ms)
+     * @return 作成したHttpClientクラスインスタンス
+     */
+    public static HttpClient createPooled(final int maxTotal, final int maxPerRoute, final long poolTimeout) {
+        SchemeRegistry schemeRegistry = new SchemeRegistry();
+        schemeRegistry.register(new Scheme("https", PORTHTTPS, SSLSocketFactory.getSocketFactory()));
+        schemeRegistry.register(new Scheme("http", PORTHTTP, PlainSocketFactory.getSocketFactory()));
+        MeteredClientConnManager cm = new MeteredClientConnManager(schemeRegistry);
+        cm.setMaxTotal(maxTotal);
+        cm.setDefaultMaxPerRoute(maxPerRoute);
+        HttpClient hc = new DefaultHttpClient(cm);
+        hc.getParams().setLongParameter(ConnManagerPNames.TIMEOUT, poolTimeout);
+        hc.getParams().setParameter(ClientPNames.COOKIE_POLICY, CookiePolicy.IGNORE_COOKIES);
+        return hc;
+    }
+
+    /**
+     * {@link #createPooled}で作成したHttpClientの接続プールの利用状況を取得する.
+     * @param client HttpClient
+     * @return 貸出中(leased)、空き(available)、取得待ち(pending)の数と最大接続数(max). プールしないHttpClientの場合はnull
+     */
+    public static Map<String, Integer> getPoolStats(final HttpClient client) {
+        ClientConnectionManager cm = client.getConnectionManager();
+        if (cm instanceof MeteredClientConnManager) {
+            return ((MeteredClientConnManager) cm).getStats();
+        }
+        return null;
+    }
+
     /**
      * SSLSocketを生成.
      * @return 生成したSSLSocket
@@ -93,6 +93,7 @@ public class MemcachedClient implements CacheClient {
      * @param object キャッシュすべきオブジェクト
      * @return 処理成功時はTrue/失敗時はFalseを返す.
      */
+    @Override
     public Boolean add(String key, int expiresIn, Object object) {
         try {
             return this.spyClient.add(key, expiresIn, object).get();
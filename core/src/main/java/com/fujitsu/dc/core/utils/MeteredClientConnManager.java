@@ -0,0 +1,82 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.conn.ClientConnectionOperator;
+import org.apache.http.conn.params.ConnPerRoute;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.impl.conn.tsccm.ConnPoolByRoute;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+
+/**
+ * 接続プールの利用状況を取得できるThreadSafeClientConnManager.
+ */
+public class MeteredClientConnManager extends ThreadSafeClientConnManager {
+
+    /** ConnPoolByRouteの最大接続数の初期値. setMaxTotalで上書きされる. */
+    private static final int DEFAULT_MAX_TOTAL = 20;
+
+    /**
+     * コンストラクタ.
+     * @param schemeRegistry スキーマレジストリ
+     */
+    public MeteredClientConnManager(SchemeRegistry schemeRegistry) {
+        super(schemeRegistry);
+    }
+
+    @Override
+    protected ConnPoolByRoute createConnectionPool(long connTTL, TimeUnit connTTLTimeUnit) {
+        return new MeteredConnPool(this.connOperator, this.connPerRoute, DEFAULT_MAX_TOTAL, connTTL,
+                connTTLTimeUnit);
+    }
+
+    /**
+     * 接続プールの利用状況を取得する.
+     * @return 貸出中(leased)、空き(available)、取得待ち(pending)の数と最大接続数(max)
+     */
+    public Map<String, Integer> getStats() {
+        return ((MeteredConnPool) this.pool).getStats();
+    }
+
+    /**
+     * 利用状況を取得できるConnPoolByRoute.
+     */
+    static final class MeteredConnPool extends ConnPoolByRoute {
+        MeteredConnPool(ClientConnectionOperator operator, ConnPerRoute connPerRoute, int maxTotal, long connTTL,
+                TimeUnit connTTLTimeUnit) {
+            super(operator, connPerRoute, maxTotal, connTTL, connTTLTimeUnit);
+        }
+
+        Map<String, Integer> getStats() {
+            Map<String, Integer> stats = new LinkedHashMap<String, Integer>();
+            getLock().lock();
+            try {
+                stats.put("leased", this.leasedConnections.size());
+                stats.put("available", this.freeConnections.size());
+                stats.put("pending", this.waitingThreads.size());
+                stats.put("max", this.maxTotalConnections);
+            } finally {
+                getLock().unlock();
+            }
+            return stats;
+        }
+    }
+}
@@ -0,0 +1,270 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.fujitsu.dc.core.DcCoreConfig;
+
+/**
+ * memcachedの手前にプロセス内キャッシュを持つ2階層のCacheClient.
+ * プロセス内キャッシュにヒットした場合はmemcachedへの通信とデシリアライズを行わない。
+ * プロセス内キャッシュは最大保持件数を超えるとLRUで破棄され、有効期限を過ぎたエントリは参照時に破棄される。
+ * 他のプロセスでの更新・削除は有効期限経過後に反映されるため、有効期限は短く設定すること。
+ * また、プロセス内キャッシュから返却されるオブジェクトは複数のリクエストで共有されるため、呼び出し側で変更しないこと。
+ * 格納時は、呼び出し側が格納後にオブジェクトを変更しても影響しないよう、memcachedと同様にシリアライズした複製を保持する。
+ */
+public class NearCacheClient implements CacheClient {
+
+    private static final long MILLISECONDS_PER_SECOND = 1000L;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private final CacheClient backend;
+    private final long expiresInMillis;
+    private final Map<String, LocalEntry> localCache;
+
+    /**
+     * コンストラクタ.
+     * @param backend 背後のCacheClient
+     * @param maxEntries プロセス内キャッシュの最大保持件数
+     * @param expiresInMillis プロセス内キャッシュの有効期限(ms). 0以下の場合はプロセス内キャッシュを使用しない
+     */
+    public NearCacheClient(CacheClient backend, final int maxEntries, long expiresInMillis) {
+        this.backend = backend;
+        this.expiresInMillis = expiresInMillis;
+        this.localCache = new LinkedHashMap<String, LocalEntry>(INITIAL_CAPACITY, LOAD_FACTOR, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, LocalEntry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * 指定キーのキャッシュを取得.
+     * プロセス内キャッシュに有効なエントリが存在しない場合は背後のCacheClientから取得し、プロセス内キャッシュに格納する.
+     * @param <T> 取得する型
+     * @param key キャッシュキー
+     * @param clazz 取得する型、 型に問題があるときはClassCastExcetpion発生
+     * @return キャッシュされたオブジェクト / null キャッシュが存在しないとき
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key, Class<T> clazz) {
+        if (!isLocalCacheEnabled()) {
+            return this.backend.get(key, clazz);
+        }
+        long now = System.currentTimeMillis();
+        synchronized (this.localCache) {
+            LocalEntry entry = this.localCache.get(key);
+            if (entry != null) {
+                if (!entry.isExpired(now)) {
+                    return (T) entry.value;
+                }
+                this.localCache.remove(key);
+            }
+        }
+        return getLatest(key, clazz);
+    }
+
+    /**
+     * プロセス内キャッシュを参照せずに背後のCacheClientから最新のキャッシュを取得する.
+     * 取得した内容でプロセス内キャッシュを更新する。
+     * @param <T> 取得する型
+     * @param key キャッシュキー
+     * @param clazz 取得する型、 型に問題があるときはClassCastExcetpion発生
+     * @return キャッシュされたオブジェクト / null キャッシュが存在しないとき
+     */
+    public <T> T getLatest(String key, Class<T> clazz) {
+        T value = this.backend.get(key, clazz);
+        if (value == null) {
+            invalidate(key);
+        } else {
+            putLocal(key, value, this.expiresInMillis);
+        }
+        return value;
+    }
+
+    /**
+     * 指定キーでオブジェクトを一定の有効期限のみキャッシュします.
+     * プロセス内キャッシュの有効期限は、指定された有効期限と設定値の短い方となる.
+     * プロセス内キャッシュには指定されたオブジェクトの複製を格納する。複製できない場合はプロセス内キャッシュに格納しない.
+     * @param key キャッシュのキー
+     * @param expiresIn 有効期間
+     * @param object キャッシュすべきオブジェクト
+     * @return 処理成功時はTrue/失敗時はFalseを返す.
+     */
+    @Override
+    public Boolean put(String key, int expiresIn, Object object) {
+        // 背後のCacheClientへの格納に失敗した場合に古い値が残らないよう、先にプロセス内キャッシュを破棄する
+        invalidate(key);
+        Boolean result = this.backend.put(key, expiresIn, object);
+        if (Boolean.TRUE.equals(result) && isLocalCacheEnabled()) {
+            long localExpiresInMillis = this.expiresInMillis;
+            if (expiresIn > 0) {
+                localExpiresInMillis = Math.min(localExpiresInMillis, expiresIn * MILLISECONDS_PER_SECOND);
+            }
+            Object copy = copyOf(object);
+            if (copy != null) {
+                putLocal(key, copy, localExpiresInMillis);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 指定キーのキャッシュが存在しない場合のみ、オブジェクトを一定の有効期限のみキャッシュします.
+     * 格納できたかどうかに関わらず、プロセス内キャッシュには格納しない.
+     * @param key キャッシュのキー
+     * @param expiresIn 有効期間
+     * @param object キャッシュすべきオブジェクト
+     * @return 格納した場合はTrue/既に存在する場合、または失敗時はFalseを返す.
+     */
+    @Override
+    public Boolean add(String key, int expiresIn, Object object) {
+        invalidate(key);
+        return this.backend.add(key, expiresIn, object);
+    }
+
+    /**
+     * シリアライズによりオブジェクトの複製を作成する.
+     * @param object 複製するオブジェクト
+     * @return 複製したオブジェクト. 複製できない場合はnull
+     */
+    static Object copyOf(Object object) {
+        if (!(object instanceof Serializable)) {
+            return null;
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(object);
+            out.close();
+            ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+            try {
+                return in.readObject();
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return null;
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 指定キーのキャッシュを削除.
+     * @param key キャッシュキー
+     */
+    @Override
+    public void delete(String key) {
+        invalidate(key);
+        this.backend.delete(key);
+    }
+
+    /**
+     * 指定キーのプロセス内キャッシュのみを破棄する.
+     * @param key キャッシュキー
+     */
+    public void invalidate(String key) {
+        synchronized (this.localCache) {
+            this.localCache.remove(key);
+        }
+    }
+
+    /**
+     * プロセス内キャッシュをすべて破棄する.
+     */
+    public void invalidateAll() {
+        synchronized (this.localCache) {
+            this.localCache.clear();
+        }
+    }
+
+    /**
+     * @return プロセス内キャッシュの保持件数
+     */
+    public int localSize() {
+        synchronized (this.localCache) {
+            return this.localCache.size();
+        }
+    }
+
+    private void putLocal(String key, Object value, long localExpiresInMillis) {
+        if (!isLocalCacheEnabled()) {
+            return;
+        }
+        LocalEntry entry = new LocalEntry(value, System.currentTimeMillis() + localExpiresInMillis);
+        synchronized (this.localCache) {
+            this.localCache.put(key, entry);
+        }
+    }
+
+    private boolean isLocalCacheEnabled() {
+        return this.expiresInMillis > 0;
+    }
+
+    /**
+     * プロセス内キャッシュのエントリ.
+     */
+    static final class LocalEntry {
+        private final Object value;
+        private final long expiresAt;
+
+        LocalEntry(Object value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return now >= this.expiresAt;
+        }
+    }
+
+    /**
+     * キャッシュに用いるクライアント.
+     */
+    private static NearCacheClient cacheClient;
+
+    static {
+        MemcachedClient mcdClient = MemcachedClient.getCacheClient();
+        if (mcdClient != null) {
+            cacheClient = new NearCacheClient(mcdClient,
+                    DcCoreConfig.getCacheLocalMaxEntries(),
+                    DcCoreConfig.getCacheLocalExpiresIn() * MILLISECONDS_PER_SECOND);
+        }
+    }
+
+    /**
+     * @return キャッシュに用いるクライアント. Cacheのタイプにmemcachedが指定されていない場合はnull
+     */
+    public static final NearCacheClient getCacheClient() {
+        return cacheClient;
+    }
+
+}
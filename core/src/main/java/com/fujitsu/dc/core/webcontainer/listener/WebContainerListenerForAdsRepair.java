@@ -19,6 +19,9 @@ package com.fujitsu.dc.core.webcontainer.listener;
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
 
+import com.fujitsu.dc.core.eventbus.EventLogSink;
+import com.fujitsu.dc.core.model.impl.es.ads.AdsWriteBehindQueue;
+import com.fujitsu.dc.core.model.lock.CellLockManager;
 
 /**
  * Webコンテナ起動/終了時に呼び出されるListenerクラス.
@@ -29,11 +32,16 @@ public class WebContainerListenerForAdsRepair implements ServletContextListener
 
     @Override
     public void contextInitialized(ServletContextEvent arg0) {
+        // 前回起動時にAdsへの書き込みが完了しなかったデータをリペア対象とする
+        AdsWriteBehindQueue.recoverJournal();
         launcher = new RepairServiceLauncher();
     }
 
     @Override
     public void contextDestroyed(ServletContextEvent arg0) {
+        AdsWriteBehindQueue.shutdownInstance();
+        EventLogSink.shutdownInstance();
+        CellLockManager.shutdownCellStateAgent();
         if (null != launcher) {
             launcher.shutdown();
         }
@@ -0,0 +1,110 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.auth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.fujitsu.dc.test.categories.Unit;
+
+/**
+ * BasicAuthCacheユニットテストクラス.
+ */
+@Category({Unit.class })
+public class BasicAuthCacheTest {
+
+    private static final String CELL_ID = "cellId";
+    private static final String USERNAME = "account";
+    private static final String PASSWORD = "password";
+    private static final String ACCOUNT_ID = "accountId";
+    private static final long LIFETIME = 60000L;
+
+    /**
+     * 認証済みの認証情報の場合はAccountのIDが返却されること.
+     */
+    @Test
+    public void 認証済みの認証情報の場合はAccountのIDが返却されること() {
+        BasicAuthCache cache = new BasicAuthCache(100, LIFETIME);
+        cache.cache(CELL_ID, USERNAME, PASSWORD, ACCOUNT_ID, 0L);
+        assertEquals(ACCOUNT_ID, cache.get(CELL_ID, USERNAME, PASSWORD));
+    }
+
+    /**
+     * パスワードが異なる場合はnullが返却されること.
+     */
+    @Test
+    public void パスワードが異なる場合はnullが返却されること() {
+        BasicAuthCache cache = new BasicAuthCache(100, LIFETIME);
+        cache.cache(CELL_ID, USERNAME, PASSWORD, ACCOUNT_ID, 0L);
+        assertNull(cache.get(CELL_ID, USERNAME, "wrongPassword"));
+        assertNull(cache.get("otherCellId", USERNAME, PASSWORD));
+        assertEquals(ACCOUNT_ID, cache.get(CELL_ID, USERNAME, PASSWORD));
+    }
+
+    /**
+     * 有効期間を過ぎた場合はnullが返却されること.
+     * @throws InterruptedException InterruptedException
+     */
+    @Test
+    public void 有効期間を過ぎた場合はnullが返却されること() throws InterruptedException {
+        BasicAuthCache cache = new BasicAuthCache(100, 1L);
+        cache.cache(CELL_ID, USERNAME, PASSWORD, ACCOUNT_ID, 0L);
+        Thread.sleep(10L);
+        assertNull(cache.get(CELL_ID, USERNAME, PASSWORD));
+    }
+
+    /**
+     * 破棄した認証情報の場合はnullが返却されること.
+     */
+    @Test
+    public void 破棄した認証情報の場合はnullが返却されること() {
+        BasicAuthCache cache = new BasicAuthCache(100, LIFETIME);
+        cache.cache(CELL_ID, USERNAME, PASSWORD, ACCOUNT_ID, 0L);
+        cache.remove(CELL_ID, USERNAME);
+        assertNull(cache.get(CELL_ID, USERNAME, PASSWORD));
+    }
+
+    /**
+     * 認証中に破棄が行われた場合は認証結果がキャッシュされないこと.
+     */
+    @Test
+    public void 認証中に破棄が行われた場合は認証結果がキャッシュされないこと() {
+        BasicAuthCache cache = new BasicAuthCache(100, LIFETIME);
+        cache.remove(CELL_ID, USERNAME);
+        cache.cache(CELL_ID, USERNAME, PASSWORD, ACCOUNT_ID, 0L);
+        assertNull(cache.get(CELL_ID, USERNAME, PASSWORD));
+        cache.cache(CELL_ID, USERNAME, PASSWORD, ACCOUNT_ID, 1L);
+        assertEquals(ACCOUNT_ID, cache.get(CELL_ID, USERNAME, PASSWORD));
+    }
+
+    /**
+     * 最大保持件数または有効期間に0を指定した場合はキャッシュされないこと.
+     */
+    @Test
+    public void 最大保持件数または有効期間に0を指定した場合はキャッシュされないこと() {
+        BasicAuthCache noEntries = new BasicAuthCache(0, LIFETIME);
+        noEntries.cache(CELL_ID, USERNAME, PASSWORD, ACCOUNT_ID, 0L);
+        assertNull(noEntries.get(CELL_ID, USERNAME, PASSWORD));
+
+        BasicAuthCache noLifetime = new BasicAuthCache(100, 0L);
+        noLifetime.cache(CELL_ID, USERNAME, PASSWORD, ACCOUNT_ID, 0L);
+        assertNull(noLifetime.get(CELL_ID, USERNAME, PASSWORD));
+    }
+}
@@ -0,0 +1,276 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.auth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.bind.JAXBException;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.fujitsu.dc.common.auth.token.Role;
+import com.fujitsu.dc.core.model.jaxb.Acl;
+import com.fujitsu.dc.core.model.jaxb.ObjectIo;
+import com.fujitsu.dc.test.categories.Unit;
+
+/**
+ * CompiledAclユニットテストクラス.
+ */
+@Category({Unit.class })
+public class CompiledAclTest {
+
+    private static final String BASE = "https://fqdn/aclTest/__role/__/";
+    private static final String ROLE1 = BASE + "role1";
+    private static final String ROLE2 = BASE + "role2";
+    private static final int THREADS = 8;
+    private static final int ITERATIONS = 5000;
+
+    private static Acl createAcl(String... aces) throws IOException, JAXBException {
+        StringBuilder sb = new StringBuilder("<D:acl xmlns:D='DAV:' xml:base='" + BASE + "'>");
+        for (String ace : aces) {
+            sb.append(ace);
+        }
+        sb.append("</D:acl>");
+        return ObjectIo.unmarshal(new StringReader(sb.toString()), Acl.class);
+    }
+
+    private static String ace(String principal, String... privileges) {
+        StringBuilder sb = new StringBuilder("<D:ace><D:principal>" + principal + "</D:principal><D:grant>");
+        for (String privilege : privileges) {
+            sb.append("<D:privilege><D:" + privilege + "/></D:privilege>");
+        }
+        return sb.append("</D:grant></D:ace>").toString();
+    }
+
+    private static String href(String role) {
+        return "<D:href>" + role + "</D:href>";
+    }
+
+    private static Set<String> roles(String... urls) {
+        Set<String> ret = new HashSet<String>();
+        Collections.addAll(ret, urls);
+        return ret;
+    }
+
+    /**
+     * 相対パスで指定したロールに許可されたPrivilegeのみ返却されること.
+     * @throws Exception Exception
+     */
+    @Test
+    public void 相対パスで指定したロールに許可されたPrivilegeのみ返却されること() throws Exception {
+        CompiledAcl compiled = createAcl(ace(href("role1"), "read"), ace(href("role2"), "write"))
+                .getCompiledAcl();
+
+        long granted = compiled.getGrantedPrivileges(roles(ROLE1));
+        assertTrue(BoxPrivilege.READ.isGrantedBy(granted));
+        assertTrue(BoxPrivilege.READ_PROPERTIES.isGrantedBy(granted));
+        assertFalse(BoxPrivilege.WRITE.isGrantedBy(granted));
+
+        granted = compiled.getGrantedPrivileges(roles(ROLE1, ROLE2));
+        assertTrue(BoxPrivilege.READ.isGrantedBy(granted));
+        assertTrue(BoxPrivilege.WRITE.isGrantedBy(granted));
+
+        assertEquals(0, compiled.getGrantedPrivileges(roles(BASE + "role3")));
+    }
+
+    /**
+     * Principalがallの設定はロールに関わらず許可されること.
+     * @throws Exception Exception
+     */
+    @Test
+    public void Principalがallの設定はロールに関わらず許可されること() throws Exception {
+        CompiledAcl compiled = createAcl(ace("<D:all/>", "read"), ace(href("role1"), "write")).getCompiledAcl();
+
+        long granted = compiled.getGrantedPrivileges(roles());
+        assertTrue(BoxPrivilege.READ.isGrantedBy(granted));
+        assertFalse(BoxPrivilege.WRITE.isGrantedBy(granted));
+
+        granted = compiled.getGrantedPrivileges(roles(ROLE1));
+        assertTrue(BoxPrivilege.READ.isGrantedBy(granted));
+        assertTrue(BoxPrivilege.WRITE.isGrantedBy(granted));
+    }
+
+    /**
+     * ロールが解決できない場合は最初のロール指定より前のPrincipalがallの設定のみ許可されること.
+     * @throws Exception Exception
+     */
+    @Test
+    public void ロールが解決できない場合は最初のロール指定より前のPrincipalがallの設定のみ許可されること() throws Exception {
+        CompiledAcl compiled = createAcl(ace("<D:all/>", "read"), ace(href("role1"), "write"),
+                ace("<D:all/>", "exec")).getCompiledAcl();
+
+        long granted = compiled.getGrantedPrivileges(null);
+        assertTrue(BoxPrivilege.READ.isGrantedBy(granted));
+        assertFalse(BoxPrivilege.WRITE.isGrantedBy(granted));
+        assertFalse(BoxPrivilege.EXEC.isGrantedBy(granted));
+
+        // ロールを持たない場合はPrincipalがallの設定をすべて許可する
+        granted = compiled.getGrantedPrivileges(roles());
+        assertTrue(BoxPrivilege.READ.isGrantedBy(granted));
+        assertTrue(BoxPrivilege.EXEC.isGrantedBy(granted));
+    }
+
+    /**
+     * ロールリソースURLが解決できない設定より後ろの設定はロールを持つ場合に許可されないこと.
+     * @throws Exception Exception
+     */
+    @Test
+    public void ロールリソースURLが解決できない設定より後ろの設定はロールを持つ場合に許可されないこと() throws Exception {
+        Acl acl = createAcl(ace(href("role1"), "read"), ace(href("role2"), "write"), ace("<D:all/>", "exec"));
+        // URIとして不正なxml:baseのため、ロールリソースURLが解決できない
+        acl.setBase("https://fqdn/acl Test/__role/__/");
+        CompiledAcl compiled = acl.getCompiledAcl();
+
+        long granted = compiled.getGrantedPrivileges(roles(ROLE1));
+        assertFalse(BoxPrivilege.READ.isGrantedBy(granted));
+        assertFalse(BoxPrivilege.EXEC.isGrantedBy(granted));
+
+        // ロールを持たない場合はロール指定の設定は評価されない
+        granted = compiled.getGrantedPrivileges(roles());
+        assertTrue(BoxPrivilege.EXEC.isGrantedBy(granted));
+    }
+
+    /**
+     * ロールリソースURLが解決できない設定より前の設定は許可されること.
+     * @throws Exception Exception
+     */
+    @Test
+    public void ロールリソースURLが解決できない設定より前の設定は許可されること() throws Exception {
+        CompiledAcl compiled = createAcl(ace("<D:all/>", "read"), ace(href(ROLE1), "write"),
+                "<D:ace><D:principal/><D:grant><D:privilege><D:exec/></D:privilege></D:grant></D:ace>",
+                ace(href(ROLE2), "write-acl")).getCompiledAcl();
+
+        long granted = compiled.getGrantedPrivileges(roles(ROLE1, ROLE2));
+        assertTrue(BoxPrivilege.READ.isGrantedBy(granted));
+        assertTrue(BoxPrivilege.WRITE.isGrantedBy(granted));
+        assertFalse(BoxPrivilege.EXEC.isGrantedBy(granted));
+        assertFalse(BoxPrivilege.WRITE_ACL.isGrantedBy(granted));
+    }
+
+    /**
+     * ビットマスクによる判定がPrivilegeのincludesと一致すること.
+     * @throws Exception Exception
+     */
+    @Test
+    public void ビットマスクによる判定がPrivilegeのincludesと一致すること() throws Exception {
+        for (BoxPrivilege granted : BoxPrivilege.getPrivilegeMap().values()) {
+            CompiledAcl compiled = createAcl(ace(href("role1"), granted.getName())).getCompiledAcl();
+            long mask = compiled.getGrantedPrivileges(roles(ROLE1));
+            for (BoxPrivilege required : BoxPrivilege.getPrivilegeMap().values()) {
+                assertEquals(granted.getName() + " -> " + required.getName(),
+                        granted.includes(required), required.isGrantedBy(mask));
+            }
+        }
+        for (CellPrivilege granted : CellPrivilege.getPrivilegeMap().values()) {
+            CompiledAcl compiled = createAcl(ace(href("role1"), granted.getName())).getCompiledAcl();
+            long mask = compiled.getGrantedPrivileges(roles(ROLE1));
+            for (CellPrivilege required : CellPrivilege.getPrivilegeMap().values()) {
+                assertEquals(granted.getName() + " -> " + required.getName(),
+                        granted.includes(required), required.isGrantedBy(mask));
+            }
+        }
+    }
+
+    /**
+     * 複数スレッドで並行して評価した場合もACLごとの判定結果が正しいこと.
+     * $batchでは取得系リクエストが並行してアクセス制御を行う。
+     * @throws Exception Exception
+     */
+    @Test
+    public void 複数スレッドで並行して評価した場合もACLごとの判定結果が正しいこと() throws Exception {
+        final AccessContext ac = AccessContext.create(null, null, null, null, null, BASE, "fqdn", null);
+        ac.addRole(new Role("role1"));
+        final String cellUrl = "https://fqdn/aclTest/";
+        final String otherCellUrl = "https://fqdn/otherCell/";
+        final int aclCount = 50;
+        final Acl[] acls = new Acl[aclCount];
+        for (int i = 0; i < aclCount; i++) {
+            acls[i] = createAcl(ace(href("role1"), i % 2 == 0 ? "read" : "write"));
+        }
+        final AtomicInteger errors = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            futures.add(pool.submit(new Runnable() {
+                @Override
+                public void run() {
+                    for (int n = 0; n < ITERATIONS; n++) {
+                        int i = (n + thread) % aclCount;
+                        // 一部のスレッドは異なるセルURLで評価し、評価結果の作り直しを発生させる
+                        boolean other = thread == 0 && n % 7 == 0;
+                        boolean read = ac.requirePrivilege(acls[i], BoxPrivilege.READ, other ? otherCellUrl : cellUrl);
+                        if (read != (!other && i % 2 == 0)) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+        assertEquals(0, errors.get());
+    }
+
+    /**
+     * xml:baseを変更した場合はコンパイル結果が破棄されること.
+     * @throws Exception Exception
+     */
+    @Test
+    public void xml_baseを変更した場合はコンパイル結果が破棄されること() throws Exception {
+        Acl acl = createAcl(ace(href("role1"), "read"));
+        CompiledAcl compiled = acl.getCompiledAcl();
+        assertSame(compiled, acl.getCompiledAcl());
+
+        acl.setBase("https://fqdn/otherCell/__role/__/");
+        long granted = acl.getCompiledAcl().getGrantedPrivileges(roles(ROLE1));
+        assertFalse(BoxPrivilege.READ.isGrantedBy(granted));
+        granted = acl.getCompiledAcl().getGrantedPrivileges(roles("https://fqdn/otherCell/__role/__/role1"));
+        assertTrue(BoxPrivilege.READ.isGrantedBy(granted));
+    }
+
+    /**
+     * コンパイル結果はJSONに出力されないこと.
+     * @throws Exception Exception
+     */
+    @Test
+    public void コンパイル結果はJSONに出力されないこと() throws Exception {
+        Acl acl = createAcl(ace(href("role1"), "read"));
+        String expected = acl.toJSON();
+        acl.getCompiledAcl();
+        assertEquals(expected, acl.toJSON());
+    }
+}
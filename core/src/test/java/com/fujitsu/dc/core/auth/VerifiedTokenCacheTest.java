@@ -0,0 +1,125 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.auth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.fujitsu.dc.common.auth.token.AbstractOAuth2Token;
+import com.fujitsu.dc.common.auth.token.AbstractOAuth2Token.TokenParseException;
+import com.fujitsu.dc.common.auth.token.CellLocalAccessToken;
+import com.fujitsu.dc.common.auth.token.LocalToken;
+import com.fujitsu.dc.common.auth.token.Role;
+import com.fujitsu.dc.core.DcCoreConfig;
+import com.fujitsu.dc.test.categories.Unit;
+
+/**
+ * VerifiedTokenCacheユニットテストクラス.
+ */
+@Category({Unit.class })
+public class VerifiedTokenCacheTest {
+
+    private static final String ISSUER = "https://localhost/cell/";
+    private static final String HOST = "localhost";
+
+    /**
+     * トークン処理ライブラリの初期設定.
+     */
+    @BeforeClass
+    public static void beforeClass() {
+        LocalToken.setKeyString(DcCoreConfig.getTokenSecretKey());
+    }
+
+    private static String createToken(long issuedAt) {
+        return new CellLocalAccessToken(issuedAt, ISSUER, ISSUER + "#account", new ArrayList<Role>(), null)
+                .toTokenString();
+    }
+
+    /**
+     * 同じトークンの場合は検証済みのオブジェクトが返却されること.
+     * @throws Exception Exception
+     */
+    @Test
+    public void 同じトークンの場合は検証済みのオブジェクトが返却されること() throws Exception {
+        VerifiedTokenCache cache = new VerifiedTokenCache(100);
+        String token = createToken(System.currentTimeMillis());
+        AbstractOAuth2Token first = cache.get(token, ISSUER, HOST);
+        AbstractOAuth2Token second = cache.get(token, ISSUER, HOST);
+        assertSame(first, second);
+        assertEquals(ISSUER + "#account", second.getSubject());
+        assertEquals(1, cache.count());
+    }
+
+    /**
+     * issuerが異なる場合はキャッシュを使用せずに検証されること.
+     * @throws Exception Exception
+     */
+    @Test(expected = TokenParseException.class)
+    public void issuerが異なる場合はキャッシュを使用せずに検証されること() throws Exception {
+        VerifiedTokenCache cache = new VerifiedTokenCache(100);
+        String token = createToken(System.currentTimeMillis());
+        cache.get(token, ISSUER, HOST);
+        cache.get(token, "https://localhost/other/", HOST);
+    }
+
+    /**
+     * 有効期限切れのトークンはキャッシュされないこと.
+     * @throws Exception Exception
+     */
+    @Test
+    public void 有効期限切れのトークンはキャッシュされないこと() throws Exception {
+        VerifiedTokenCache cache = new VerifiedTokenCache(100);
+        String token = createToken(System.currentTimeMillis() - 2L * AbstractOAuth2Token.MILLISECS_IN_AN_HOUR);
+        AbstractOAuth2Token first = cache.get(token, ISSUER, HOST);
+        AbstractOAuth2Token second = cache.get(token, ISSUER, HOST);
+        assertNotSame(first, second);
+        assertEquals(0, cache.count());
+    }
+
+    /**
+     * 最大保持件数を超えた場合は古いエントリが破棄されること.
+     * @throws Exception Exception
+     */
+    @Test
+    public void 最大保持件数を超えた場合は古いエントリが破棄されること() throws Exception {
+        VerifiedTokenCache cache = new VerifiedTokenCache(32);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 100; i++) {
+            cache.get(createToken(now - i), ISSUER, HOST);
+        }
+        assertEquals(true, cache.count() <= 32);
+    }
+
+    /**
+     * 最大保持件数が0の場合はキャッシュしないこと.
+     * @throws Exception Exception
+     */
+    @Test
+    public void 最大保持件数が0の場合はキャッシュしないこと() throws Exception {
+        VerifiedTokenCache cache = new VerifiedTokenCache(0);
+        String token = createToken(System.currentTimeMillis());
+        assertNotSame(cache.get(token, ISSUER, HOST), cache.get(token, ISSUER, HOST));
+        assertEquals(0, cache.count());
+    }
+}
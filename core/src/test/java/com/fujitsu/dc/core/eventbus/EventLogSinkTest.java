@@ -0,0 +1,150 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.eventbus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.fujitsu.dc.core.model.ctl.Event;
+import com.fujitsu.dc.test.categories.Unit;
+
+/**
+ * EventLogSinkユニットテストクラス.
+ */
+@Category({Unit.class })
+public class EventLogSinkTest {
+
+    /**
+     * 出力内容を記録するAppender.
+     */
+    static class RecordingAppender implements EventLogSink.Appender {
+        private final List<String> appended = new ArrayList<String>();
+        private final List<String> synced = new ArrayList<String>();
+        private String failPath;
+
+        @Override
+        public void append(String path, List<EventLogSink.Record> records) {
+            if (path.equals(failPath)) {
+                throw new IllegalStateException("test");
+            }
+            StringBuilder sb = new StringBuilder(path).append(":");
+            for (EventLogSink.Record record : records) {
+                sb.append(record.getMessage());
+            }
+            appended.add(sb.toString());
+        }
+
+        @Override
+        public void sync(String path) throws IOException {
+            synced.add(path);
+        }
+    }
+
+    /**
+     * 取り出したイベントがセルごとに受け付け順でまとめて出力されること.
+     */
+    @Test
+    public void 取り出したイベントがセルごとに受け付け順でまとめて出力されること() {
+        RecordingAppender appender = new RecordingAppender();
+        EventLogSink sink = new EventLogSink(appender, 10, 10, false, true);
+        assertTrue(sink.offer("a", Event.LEVEL.INFO, "1"));
+        assertTrue(sink.offer("b", Event.LEVEL.INFO, "2"));
+        assertTrue(sink.offer("a", Event.LEVEL.WARN, "3"));
+        assertEquals(3, sink.getPendingCount());
+        assertEquals(3, sink.getMaxPendingCount());
+
+        sink.start();
+        sink.shutdown(10000L);
+        assertEquals(Arrays.asList("a:13", "b:2"), appender.appended);
+        assertEquals(Arrays.asList("a", "b"), appender.synced);
+        assertEquals(3, sink.getAcceptedCount());
+        assertEquals(3, sink.getWrittenCount());
+        assertEquals(0, sink.getPendingCount());
+    }
+
+    /**
+     * 出力に失敗したセルのイベントのみが失敗として集計されること.
+     */
+    @Test
+    public void 出力に失敗したセルのイベントのみが失敗として集計されること() {
+        RecordingAppender appender = new RecordingAppender();
+        appender.failPath = "a";
+        EventLogSink sink = new EventLogSink(appender, 10, 10, false, false);
+        sink.offer("a", Event.LEVEL.INFO, "1");
+        sink.offer("b", Event.LEVEL.INFO, "2");
+        sink.offer("a", Event.LEVEL.INFO, "3");
+
+        sink.start();
+        sink.shutdown(10000L);
+        assertEquals(Arrays.asList("b:2"), appender.appended);
+        assertTrue(appender.synced.isEmpty());
+        assertEquals(1, sink.getWrittenCount());
+        assertEquals(2, sink.getFailedCount());
+    }
+
+    /**
+     * 破棄する設定の場合はキューが上限に達したイベントが破棄されること.
+     */
+    @Test
+    public void 破棄する設定の場合はキューが上限に達したイベントが破棄されること() {
+        RecordingAppender appender = new RecordingAppender();
+        EventLogSink sink = new EventLogSink(appender, 2, 10, true, false);
+        assertTrue(sink.offer("a", Event.LEVEL.INFO, "1"));
+        assertTrue(sink.offer("a", Event.LEVEL.INFO, "2"));
+        assertTrue(sink.offer("a", Event.LEVEL.INFO, "3"));
+        assertEquals(2, sink.getAcceptedCount());
+        assertEquals(1, sink.getDroppedCount());
+
+        sink.start();
+        sink.shutdown(10000L);
+        assertEquals(Arrays.asList("a:12"), appender.appended);
+    }
+
+    /**
+     * 空きを待つ設定の場合は停止されるとfalseが返却されること.
+     */
+    @Test
+    public void 空きを待つ設定の場合は停止されるとfalseが返却されること() {
+        RecordingAppender appender = new RecordingAppender();
+        final EventLogSink sink = new EventLogSink(appender, 1, 10, false, false);
+        assertTrue(sink.offer("a", Event.LEVEL.INFO, "1"));
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(300L);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                sink.shutdown(0L);
+            }
+        }).start();
+        // キューが上限に達しているため、停止されるまで待つ
+        assertFalse(sink.offer("a", Event.LEVEL.INFO, "2"));
+        assertFalse(sink.offer("a", Event.LEVEL.INFO, "3"));
+        assertEquals(1, sink.getAcceptedCount());
+    }
+}
@@ -0,0 +1,169 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model.impl.es.ads;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+import com.fujitsu.dc.common.ads.AdsWriteFailureLogFilter;
+import com.fujitsu.dc.common.ads.AdsWriteFailureLogInfo;
+import com.fujitsu.dc.core.model.impl.es.doc.EntitySetDocHandler;
+import com.fujitsu.dc.test.categories.Unit;
+
+/**
+ * AdsWriteBehindQueueユニットテストクラス.
+ */
+@Category({ Unit.class })
+public class AdsWriteBehindQueueTest {
+
+    static final String TEST_INDEX = "u0_test";
+    static final String TEST_VERSION = "1.0";
+
+    /**
+     * ジャーナル出力用ディレクトリ.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Ads ads;
+    private AdsWriteBehindJournal journal;
+    private AdsWriteBehindQueue queue;
+
+    /**
+     * テストの前処理.
+     */
+    @Before
+    public void before() {
+        ads = Mockito.mock(Ads.class);
+        journal = new AdsWriteBehindJournal(folder.getRoot().getAbsolutePath(), TEST_VERSION, 2);
+        queue = new AdsWriteBehindQueue(ads, journal, 1, 100, 100, 100);
+    }
+
+    /**
+     * 連続する登録要求が1回のバルク書き込みにまとめられること.
+     * @throws Exception Exception
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void 連続する登録要求が1回のバルク書き込みにまとめられること() throws Exception {
+        List<AdsWriteRequest> requests = new ArrayList<AdsWriteRequest>();
+        requests.add(createRequest(AdsWriteRequest.Kind.CREATE_ENTITY, "id1"));
+        requests.add(createRequest(AdsWriteRequest.Kind.CREATE_ENTITY, "id2"));
+        requests.add(createRequest(AdsWriteRequest.Kind.CREATE_ENTITY, "id3"));
+        queue.start();
+        assertTrue(queue.offer(requests));
+        queue.flush();
+        queue.shutdown(1000);
+
+        Mockito.verify(ads, Mockito.times(1)).bulkEntity(Mockito.eq(TEST_INDEX), Mockito.anyList());
+        Mockito.verify(ads, Mockito.never()).createEntity(Mockito.anyString(), Mockito.any(EntitySetDocHandler.class));
+    }
+
+    /**
+     * 種別が異なる要求と同一IDの要求でバルク書き込みが区切られること.
+     */
+    @Test
+    public void 種別が異なる要求と同一IDの要求でバルク書き込みが区切られること() {
+        List<AdsWriteRequest> requests = new ArrayList<AdsWriteRequest>();
+        requests.add(createRequest(AdsWriteRequest.Kind.UPDATE_ENTITY_LINKS, "id1"));
+        requests.add(createRequest(AdsWriteRequest.Kind.UPDATE_ENTITY_LINKS, "id2"));
+        requests.add(createRequest(AdsWriteRequest.Kind.UPDATE_ENTITY_LINKS, "id1"));
+        requests.add(createRequest(AdsWriteRequest.Kind.UPDATE_ENTITY, "id3"));
+        requests.add(createRequest(AdsWriteRequest.Kind.UPDATE_ENTITY, "id4"));
+
+        assertEquals(2, AdsWriteBehindQueue.runEnd(requests, 0));
+        assertEquals(3, AdsWriteBehindQueue.runEnd(requests, 2));
+        assertEquals(4, AdsWriteBehindQueue.runEnd(requests, 3));
+    }
+
+    /**
+     * 書き込みが完了したジャーナルファイルが削除されること.
+     * @throws Exception Exception
+     */
+    @Test
+    public void 書き込みが完了したジャーナルファイルが削除されること() throws Exception {
+        queue.start();
+        for (int i = 0; i < 5; i++) {
+            List<AdsWriteRequest> requests = new ArrayList<AdsWriteRequest>();
+            requests.add(createRequest(AdsWriteRequest.Kind.CREATE_ENTITY, "id" + i));
+            assertTrue(queue.offer(requests));
+        }
+        queue.flush();
+        assertEquals(0, queue.getPendingCount());
+        assertEquals(5, queue.getWrittenCount());
+
+        queue.shutdown(1000);
+        assertEquals(0, folder.getRoot().list().length);
+    }
+
+    /**
+     * 停止後の要求は受け付けないこと.
+     */
+    @Test
+    public void 停止後の要求は受け付けないこと() {
+        queue.start();
+        queue.shutdown(1000);
+        List<AdsWriteRequest> requests = new ArrayList<AdsWriteRequest>();
+        requests.add(createRequest(AdsWriteRequest.Kind.CREATE_ENTITY, "id1"));
+        assertFalse(queue.offer(requests));
+        assertEquals(1, queue.getRejectedCount());
+    }
+
+    /**
+     * 残ったジャーナルファイルがADS書き込み失敗ログとしてローテートされること.
+     * @throws Exception Exception
+     */
+    @Test
+    public void 残ったジャーナルファイルがADS書き込み失敗ログとしてローテートされること() throws Exception {
+        File file = new File(folder.getRoot(),
+                String.format(AdsWriteBehindJournal.JOURNAL_NAME_FORMAT, TEST_VERSION, 1400000000000L));
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(createRequest(AdsWriteRequest.Kind.CREATE_ENTITY, "id1").getLogInfo().toString().getBytes());
+        } finally {
+            IOUtils.closeQuietly(out);
+        }
+
+        assertEquals(1, journal.recover());
+        assertFalse(file.exists());
+        File[] logs = folder.getRoot().listFiles(new AdsWriteFailureLogFilter(TEST_VERSION));
+        assertEquals(1, logs.length);
+        assertEquals("adsWriteFailure_1.0.log.1400000000000", logs[0].getName());
+    }
+
+    private AdsWriteRequest createRequest(AdsWriteRequest.Kind kind, String id) {
+        EntitySetDocHandler docHandler = Mockito.mock(EntitySetDocHandler.class);
+        Mockito.when(docHandler.getId()).thenReturn(id);
+        AdsWriteFailureLogInfo logInfo = new AdsWriteFailureLogInfo(TEST_INDEX, "Account", "lockKey",
+                "cellId", id, AdsWriteFailureLogInfo.OperationKind.CREATE, 1, 1400000000000L);
+        return AdsWriteRequest.entity(TEST_INDEX, kind, docHandler, logInfo);
+    }
+}
@@ -25,7 +25,8 @@ import org.junit.runners.Suite.SuiteClasses;
  */
 @RunWith(Suite.class)
 @SuiteClasses({
-    JdbcAdsTest.class
+    JdbcAdsTest.class,
+    AdsWriteBehindQueueTest.class
     })
 public class AllTests {
 }
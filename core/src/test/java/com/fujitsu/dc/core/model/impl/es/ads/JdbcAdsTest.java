@@ -32,9 +32,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.fujitsu.dc.common.es.util.DcUUID;
+import com.fujitsu.dc.core.DcCoreConfig;
 import com.fujitsu.dc.core.model.Box;
 import com.fujitsu.dc.core.model.Cell;
 import com.fujitsu.dc.core.model.DavNode;
+import com.fujitsu.dc.core.model.impl.es.doc.EntitySetDocHandler;
 import com.fujitsu.dc.core.model.impl.es.doc.LinkDocHandler;
 import com.fujitsu.dc.core.model.impl.es.doc.OEntityDocHandler;
 import com.fujitsu.dc.test.categories.Unit;
@@ -142,6 +144,32 @@ public class JdbcAdsTest {
         assertEquals(0, ads.countEntity(TEST_INDEX));
     }
 
+    /**
+     * 1つのSQLにまとめる行数を超えるOEntityDocの一括登録とID検索.
+     * @throws Exception Exception
+     */
+    @Test
+    public void 一つのSQLにまとめる行数を超えるOEntityDocの一括登録とID検索() throws Exception {
+        JdbcAds ads = new JdbcAds();
+        int count = DcCoreConfig.getEsAdsBulkRowsPerStatement() * 2 + 1;
+        List<EntitySetDocHandler> bulkRequestList = new ArrayList<EntitySetDocHandler>();
+        List<String> idList = new ArrayList<String>();
+        for (int i = 0; i < count; i++) {
+            OEntityDocHandler oedh = this.createTestOEntityDocHandler();
+            bulkRequestList.add(oedh);
+            idList.add(oedh.getId());
+        }
+        ads.bulkEntity(TEST_INDEX, bulkRequestList);
+        assertEquals(count, ads.countEntity(TEST_INDEX));
+
+        // 1つのSQLに指定するID数を超えるID検索
+        while (idList.size() <= DcCoreConfig.getEsAdsSearchIdsPerStatement()) {
+            idList.add(DcUUID.randomUUID());
+        }
+        List<JSONObject> res = ads.searchEntityList(TEST_INDEX, idList);
+        assertEquals(count, res.size());
+    }
+
     OEntityDocHandler createTestOEntityDocHandler() {
         OEntityDocHandler oedh = new OEntityDocHandler();
         String testId = DcUUID.randomUUID();
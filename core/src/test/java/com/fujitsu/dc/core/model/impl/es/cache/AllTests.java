@@ -27,7 +27,9 @@ import org.junit.runners.Suite.SuiteClasses;
 @SuiteClasses({
     CellCacheTest.class,
     BoxCacheTest.class,
-    UserDataSchemaCacheTest.class
+    UserDataSchemaCacheTest.class,
+    UserDataMetadataCacheTest.class,
+    RoleCacheTest.class
     })
 public class AllTests {
 }
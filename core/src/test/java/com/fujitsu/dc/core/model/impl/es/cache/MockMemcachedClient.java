@@ -40,6 +40,15 @@ public class MockMemcachedClient implements CacheClient {
         return true;
     }
 
+    @Override
+    public Boolean add(String key, int expiresIn, Object object) {
+        if (cache.containsKey(key)) {
+            return false;
+        }
+        cache.put(key, object);
+        return true;
+    }
+
     @Override
     public void delete(String key) {
         cache.remove(key);
@@ -0,0 +1,203 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model.impl.es.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mockito.Mockito;
+
+import com.fujitsu.dc.common.auth.token.Role;
+import com.fujitsu.dc.core.DcCoreConfig;
+import com.fujitsu.dc.core.model.Cell;
+import com.fujitsu.dc.core.utils.CacheClient;
+import com.fujitsu.dc.core.utils.NearCacheClient;
+import com.fujitsu.dc.test.categories.Unit;
+
+/**
+ * RoleCache ユニットテストクラス.
+ */
+@Category({Unit.class })
+public class RoleCacheTest {
+
+    private CacheClient originalClient;
+    private CacheClient originalGenerationClient;
+    private String originalEnabled;
+    private MockMemcachedClient mockMemcachedClient;
+    private Cell cell;
+
+    /**
+     * テスト用のキャッシュクラスに接続するよう設定する.
+     */
+    @Before
+    public void setUp() {
+        originalClient = RoleCache.mcdClient;
+        originalGenerationClient = RoleCache.generationClient;
+        originalEnabled = DcCoreConfig.get(DcCoreConfig.Cache.ROLE_CACHE_ENABLED);
+        mockMemcachedClient = new MockMemcachedClient();
+        RoleCache.mcdClient = mockMemcachedClient;
+        RoleCache.generationClient = mockMemcachedClient;
+
+        cell = Mockito.mock(Cell.class);
+        Mockito.when(cell.getId()).thenReturn("roleCacheTestCellId");
+    }
+
+    /**
+     * 設定を元に戻す.
+     */
+    @After
+    public void tearDown() {
+        RoleCache.mcdClient = originalClient;
+        RoleCache.generationClient = originalGenerationClient;
+        DcCoreConfig.set(DcCoreConfig.Cache.ROLE_CACHE_ENABLED, originalEnabled);
+    }
+
+    /**
+     * ロールのキャッシュを無効にしている場合キャッシュの登録取得を実行しても何も行わないこと.
+
+     */
+    @Test
+    public void ロールのキャッシュを無効にしている場合キャッシュの登録取得を実行しても何も行わないこと() {
+        setEnabled(false);
+
+        String generation = RoleCache.generation(cell);
+        assertNull(generation);
+        RoleCache.cache(cell, generation, "account\nuser", createRoles());
+        assertNull(RoleCache.get(cell, generation, "account\nuser"));
+        assertEquals(0, mockMemcachedClient.cache.size());
+    }
+
+    /**
+     * ロールのキャッシュを有効にしている場合登録したロールを取得できること.
+
+     */
+    @Test
+    public void ロールのキャッシュを有効にしている場合登録したロールを取得できること() {
+        setEnabled(true);
+
+        String generation = RoleCache.generation(cell);
+        assertNotNull(generation);
+        assertEquals(generation, RoleCache.generation(cell));
+        assertNull(RoleCache.get(cell, generation, "account\nuser"));
+
+        RoleCache.cache(cell, generation, "account\nuser", createRoles());
+        List<Role> roles = RoleCache.get(cell, generation, "account\nuser");
+        assertEquals(2, roles.size());
+        assertEquals("role1", roles.get(0).getName());
+        assertNull(roles.get(0).getBoxName());
+        assertNull(roles.get(0).getBoxSchema());
+        assertNull(roles.get(0).getBaseUrl());
+        assertEquals("role2", roles.get(1).getName());
+        assertEquals("box2", roles.get(1).getBoxName());
+        assertEquals("https://example.com/schema/", roles.get(1).getBoxSchema());
+        assertEquals("https://example.com/cell/", roles.get(1).getBaseUrl());
+
+        // 別のキーのロールは取得できないこと
+        assertNull(RoleCache.get(cell, generation, "account\nuser2"));
+    }
+
+    /**
+     * キャッシュを無効化した場合は無効化前に登録したロールを取得できないこと.
+
+     */
+    @Test
+    public void キャッシュを無効化した場合は無効化前に登録したロールを取得できないこと() {
+        setEnabled(true);
+
+        String generation = RoleCache.generation(cell);
+        RoleCache.cache(cell, generation, "account\nuser", createRoles());
+
+        RoleCache.clear(cell);
+        String newGeneration = RoleCache.generation(cell);
+        assertFalse(generation.equals(newGeneration));
+        assertNull(RoleCache.get(cell, newGeneration, "account\nuser"));
+    }
+
+    /**
+     * ロール解決中に無効化された場合は解決結果が以降の取得で参照されないこと.
+
+     */
+    @Test
+    public void ロール解決中に無効化された場合は解決結果が以降の取得で参照されないこと() {
+        setEnabled(true);
+
+        // 解決前に世代を取得し、解決中に無効化された後で解決結果を登録する
+        String generation = RoleCache.generation(cell);
+        RoleCache.clear(cell);
+        RoleCache.cache(cell, generation, "account\nuser", createRoles());
+
+        assertNull(RoleCache.get(cell, RoleCache.generation(cell), "account\nuser"));
+    }
+
+    /**
+     * 同時に世代が発行された場合は先に登録された世代を使用すること.
+     */
+    @Test
+    public void 同時に世代が発行された場合は先に登録された世代を使用すること() {
+        setEnabled(true);
+        RoleCache.generationClient = new MockMemcachedClient() {
+            @Override
+            public Boolean add(String key, int expiresIn, Object object) {
+                // 取得後、登録前に他で世代が発行された状態
+                cache.put(key, "issuedByOther");
+                return super.add(key, expiresIn, object);
+            }
+        };
+
+        assertEquals("issuedByOther", RoleCache.generation(cell));
+        assertEquals("issuedByOther", RoleCache.generation(cell));
+    }
+
+    /**
+     * 他のプロセスで無効化された場合はプロセス内キャッシュの有効期限内でも新しい世代を取得すること.
+     */
+    @Test
+    public void 他のプロセスで無効化された場合はプロセス内キャッシュの有効期限内でも新しい世代を取得すること() {
+        setEnabled(true);
+        RoleCache.mcdClient = new NearCacheClient(mockMemcachedClient, 10, 60000L);
+
+        String generation = RoleCache.generation(cell);
+        RoleCache.cache(cell, generation, "account\nuser", createRoles());
+        assertNotNull(RoleCache.get(cell, generation, "account\nuser"));
+
+        // 他のプロセスで世代が更新された状態
+        mockMemcachedClient.cache.put(RoleCache.generationKey(cell), "updatedByOther");
+        String newGeneration = RoleCache.generation(cell);
+        assertEquals("updatedByOther", newGeneration);
+        assertNull(RoleCache.get(cell, newGeneration, "account\nuser"));
+    }
+
+    private void setEnabled(boolean enabled) {
+        DcCoreConfig.set(DcCoreConfig.Cache.ROLE_CACHE_ENABLED, String.valueOf(enabled));
+    }
+
+    private List<Role> createRoles() {
+        List<Role> roles = new ArrayList<Role>();
+        roles.add(new Role("role1", null, null));
+        roles.add(new Role("role2", "box2", "https://example.com/schema/", "https://example.com/cell/"));
+        return roles;
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model.impl.es.cache;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.odata4j.edm.EdmDataServices;
+
+import com.fujitsu.dc.core.DcCoreConfig;
+import com.fujitsu.dc.test.categories.Unit;
+
+/**
+ * UserDataMetadataCache ユニットテストクラス.
+ */
+@Category({Unit.class })
+public class UserDataMetadataCacheTest {
+
+    private static final String NODE_ID = "userDataMetadataCacheTestNode";
+
+    private String originalEnabled;
+
+    /**
+     * スキーマのキャッシュを有効にする.
+     */
+    @Before
+    public void before() {
+        originalEnabled = DcCoreConfig.get(DcCoreConfig.Cache.SCHEMA_CACHE_ENABLED);
+        DcCoreConfig.set(DcCoreConfig.Cache.SCHEMA_CACHE_ENABLED, "true");
+    }
+
+    /**
+     * テスト後処理.
+     */
+    @After
+    public void after() {
+        UserDataMetadataCache.clear(NODE_ID);
+        DcCoreConfig.set(DcCoreConfig.Cache.SCHEMA_CACHE_ENABLED, originalEnabled);
+    }
+
+    /**
+     * バージョンが一致する場合キャッシュしたスキーマを返すこと.
+     */
+    @Test
+    public void バージョンが一致する場合キャッシュしたスキーマを返すこと() {
+        EdmDataServices metadata = EdmDataServices.newBuilder().build();
+        UserDataMetadataCache.cache(NODE_ID, "version1", metadata);
+        assertSame(metadata, UserDataMetadataCache.get(NODE_ID, "version1"));
+    }
+
+    /**
+     * バージョンが一致しない場合NULLを返すこと.
+     */
+    @Test
+    public void バージョンが一致しない場合NULLを返すこと() {
+        EdmDataServices metadata = EdmDataServices.newBuilder().build();
+        UserDataMetadataCache.cache(NODE_ID, "version1", metadata);
+        assertNull(UserDataMetadataCache.get(NODE_ID, "version2"));
+        assertNull(UserDataMetadataCache.get(NODE_ID, null));
+    }
+
+    /**
+     * 削除した場合NULLを返すこと.
+     */
+    @Test
+    public void 削除した場合NULLを返すこと() {
+        EdmDataServices metadata = EdmDataServices.newBuilder().build();
+        UserDataMetadataCache.cache(NODE_ID, "version1", metadata);
+        UserDataMetadataCache.clear(NODE_ID);
+        assertNull(UserDataMetadataCache.get(NODE_ID, "version1"));
+    }
+}
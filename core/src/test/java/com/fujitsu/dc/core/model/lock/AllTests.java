@@ -26,8 +26,10 @@ import org.junit.runners.Suite.SuiteClasses;
 @RunWith(Suite.class)
 @SuiteClasses({
     LockManagerTest.class,
+    InProcessLockManagerTest.class,
     AccountLockManagerTest.class,
-    CellLockManagerTest.class
+    CellLockManagerTest.class,
+    CellStateAgentTest.class
     })
 public class AllTests {
 }
@@ -0,0 +1,199 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model.lock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.fujitsu.dc.test.categories.Unit;
+
+/**
+ * CellStateAgentユニットテストクラス.
+ */
+@Category({Unit.class })
+public class CellStateAgentTest {
+
+    private static final String COUNT_KEY = CellLockManager.REFERENCE_COUNT_PREFIX + "TestingCellId";
+    private static final String STATUS_KEY = CellLockManager.CELL_STATUS_PREFIX + "TestingCellId";
+    private static final long LEASE_IDLE = 60000L;
+
+    private InProcessLockManager store;
+    private List<CellStateAgent> agents;
+
+    /**
+     * 前処理.
+     */
+    @Before
+    public void before() {
+        store = new InProcessLockManager();
+        agents = new ArrayList<CellStateAgent>();
+    }
+
+    /**
+     * 後処理.
+     */
+    @After
+    public void after() {
+        for (CellStateAgent agent : agents) {
+            agent.shutdown(0L);
+        }
+    }
+
+    /**
+     * 同一プロセス内の参照は共有ストアに1つのリースとして反映されること.
+     */
+    @Test
+    public void 同一プロセス内の参照は共有ストアに1つのリースとして反映されること() {
+        CellStateAgent agent = createAgent(0L);
+        assertEquals(1L, agent.acquire(COUNT_KEY));
+        assertEquals(2L, agent.acquire(COUNT_KEY));
+        assertEquals(3L, agent.acquire(COUNT_KEY));
+
+        assertEquals(1L, store.doGetReferenceCount(COUNT_KEY));
+        assertEquals(3L, agent.getReferenceCount(COUNT_KEY));
+
+        assertEquals(2L, agent.release(COUNT_KEY));
+        assertEquals(2L, agent.getReferenceCount(COUNT_KEY));
+    }
+
+    /**
+     * 他プロセスのリースも参照カウントに含まれること.
+     */
+    @Test
+    public void 他プロセスのリースも参照カウントに含まれること() {
+        CellStateAgent agent1 = createAgent(0L);
+        CellStateAgent agent2 = createAgent(0L);
+        agent1.acquire(COUNT_KEY);
+        agent2.acquire(COUNT_KEY);
+        agent2.acquire(COUNT_KEY);
+
+        assertEquals(2L, store.doGetReferenceCount(COUNT_KEY));
+        // 自プロセスの参照1件と他プロセスのリース1件
+        assertEquals(2L, agent1.getReferenceCount(COUNT_KEY));
+        // 自プロセスの参照2件と他プロセスのリース1件
+        assertEquals(3L, agent2.getReferenceCount(COUNT_KEY));
+
+        // 他プロセスの参照がなくなってもリースを保持している間は参照中とみなすこと
+        agent2.release(COUNT_KEY);
+        agent2.release(COUNT_KEY);
+        assertEquals(2L, agent1.getReferenceCount(COUNT_KEY));
+
+        // 他プロセスのリースが解放された後は自プロセスの参照のみとなること
+        agent2.sweep(System.currentTimeMillis() + LEASE_IDLE, false);
+        assertEquals(1L, agent1.getReferenceCount(COUNT_KEY));
+    }
+
+    /**
+     * 参照がなくなってからリース解放時間が経過するまでリースを保持すること.
+     */
+    @Test
+    public void 参照がなくなってからリース解放時間が経過するまでリースを保持すること() {
+        CellStateAgent agent = createAgent(0L);
+        agent.acquire(COUNT_KEY);
+        assertEquals(0L, agent.release(COUNT_KEY));
+
+        agent.sweep(System.currentTimeMillis(), false);
+        assertEquals(1L, store.doGetReferenceCount(COUNT_KEY));
+        assertEquals(-1L, agent.getReferenceCount(COUNT_KEY));
+
+        // リース保持中の参照では共有ストアにアクセスしないこと
+        agent.acquire(COUNT_KEY);
+        assertEquals(1L, store.doGetReferenceCount(COUNT_KEY));
+        agent.release(COUNT_KEY);
+
+        agent.sweep(System.currentTimeMillis() + LEASE_IDLE, false);
+        assertTrue(store.doGetReferenceCount(COUNT_KEY) <= 0);
+    }
+
+    /**
+     * 停止時に保持しているリースが解放されること.
+     */
+    @Test
+    public void 停止時に保持しているリースが解放されること() {
+        CellStateAgent agent = createAgent(0L);
+        agent.acquire(COUNT_KEY);
+        agent.release(COUNT_KEY);
+        assertEquals(1L, store.doGetReferenceCount(COUNT_KEY));
+
+        agent.shutdown(0L);
+        assertTrue(store.doGetReferenceCount(COUNT_KEY) <= 0);
+    }
+
+    /**
+     * 共有ストアのロックが削除された後は保持していた状態を破棄すること.
+     */
+    @Test
+    public void 共有ストアのロックが削除された後は保持していた状態を破棄すること() {
+        CellStateAgent agent = createAgent(LEASE_IDLE);
+        agent.acquire(COUNT_KEY);
+        agent.setCellStatus(STATUS_KEY, CellLockManager.CELL_STATUS_BULK_DELETION);
+
+        store.doDeleteAllLocks();
+        agent.clear();
+        assertEquals(-1L, agent.getReferenceCount(COUNT_KEY));
+        assertEquals(-1L, agent.getCellStatus(STATUS_KEY));
+        assertEquals(0L, agent.release(COUNT_KEY));
+
+        // 破棄後の参照は共有ストアに改めて反映されること
+        assertEquals(1L, agent.acquire(COUNT_KEY));
+        assertEquals(1L, store.doGetReferenceCount(COUNT_KEY));
+    }
+
+    /**
+     * セルの処理状態とPCSの動作モードは再取得間隔の間プロセス内に保持されること.
+     */
+    @Test
+    public void セルの処理状態とPCSの動作モードは再取得間隔の間プロセス内に保持されること() {
+        CellStateAgent agent = createAgent(LEASE_IDLE);
+        assertEquals(-1L, agent.getCellStatus(STATUS_KEY));
+        assertNull(agent.getReadDeleteOnlyMode("PcsReadDeleteMode"));
+
+        store.doSetCellStatus(STATUS_KEY, CellLockManager.CELL_STATUS_BULK_DELETION);
+        assertEquals(-1L, agent.getCellStatus(STATUS_KEY));
+
+        // 自プロセスで設定した処理状態は即時に反映されること
+        agent.setCellStatus(STATUS_KEY, CellLockManager.CELL_STATUS_BULK_DELETION);
+        assertEquals(CellLockManager.CELL_STATUS_BULK_DELETION, agent.getCellStatus(STATUS_KEY));
+    }
+
+    /**
+     * 再取得間隔に0を指定した場合はセルの処理状態を保持しないこと.
+     */
+    @Test
+    public void 再取得間隔に0を指定した場合はセルの処理状態を保持しないこと() {
+        CellStateAgent agent = createAgent(0L);
+        assertEquals(-1L, agent.getCellStatus(STATUS_KEY));
+
+        store.doSetCellStatus(STATUS_KEY, CellLockManager.CELL_STATUS_BULK_DELETION);
+        assertEquals(CellLockManager.CELL_STATUS_BULK_DELETION, agent.getCellStatus(STATUS_KEY));
+    }
+
+    private CellStateAgent createAgent(long refreshInterval) {
+        CellStateAgent agent = new CellStateAgent(store, refreshInterval, LEASE_IDLE);
+        agents.add(agent);
+        return agent;
+    }
+}
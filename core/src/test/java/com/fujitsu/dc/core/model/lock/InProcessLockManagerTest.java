@@ -0,0 +1,137 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.model.lock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.fujitsu.dc.test.categories.Unit;
+
+/**
+ * InProcessLockManagerユニットテストクラス.
+ */
+@Category({Unit.class })
+public class InProcessLockManagerTest {
+
+    private InProcessLockManager manager;
+
+    /**
+     * 前処理.
+     */
+    @Before
+    public void before() {
+        manager = new InProcessLockManager();
+    }
+
+    /**
+     * リース期間を過ぎたロックは他から取得できる.
+     * @throws InterruptedException InterruptedException
+     */
+    @Test
+    public void リース期間を過ぎたロックは他から取得できる() throws InterruptedException {
+        manager.leaseMillis = 100L;
+        assertTrue(manager.doPutLock("key", new Lock("key", 0L)));
+        assertFalse(manager.doPutLock("key", new Lock("key", 0L)));
+        Thread.sleep(200L);
+        assertNull(manager.doGetLock("key"));
+        assertTrue(manager.doPutLock("key", new Lock("key", 0L)));
+    }
+
+    /**
+     * リース期間が0の場合はロックが期限切れにならない.
+     * @throws InterruptedException InterruptedException
+     */
+    @Test
+    public void リース期間が0の場合はロックが期限切れにならない() throws InterruptedException {
+        manager.leaseMillis = 0L;
+        assertTrue(manager.doPutLock("key", new Lock("key", 0L)));
+        Thread.sleep(50L);
+        assertFalse(manager.doPutLock("key", new Lock("key", 0L)));
+    }
+
+    /**
+     * ロック保持者の診断情報が取得できる.
+     */
+    @Test
+    public void ロック保持者の診断情報が取得できる() {
+        manager.doPutLock("key", new Lock("key", 0L));
+        manager.doSetCellStatus("CellStatus_cell", 1L);
+        List<Map<String, Object>> holders = manager.doGetLockHolders();
+        assertEquals(1, holders.size());
+        assertEquals("key", holders.get(0).get("key"));
+        assertFalse(holders.get(0).containsKey("holder"));
+    }
+
+    /**
+     * リース期間切れの後に他で取得されたロックは元の保持者の解放で削除されない.
+     * @throws InterruptedException InterruptedException
+     */
+    @Test
+    public void リース期間切れの後に他で取得されたロックは元の保持者の解放で削除されない() throws InterruptedException {
+        manager.leaseMillis = 100L;
+        Lock expired = new Lock("key", 0L);
+        assertTrue(manager.doPutLock("key", expired));
+        Thread.sleep(200L);
+        Lock current = new Lock("key", 0L);
+        assertTrue(manager.doPutLock("key", current));
+        manager.doReleaseLock("key", expired);
+        assertSame(current, manager.doGetLock("key"));
+        manager.doReleaseLock("key", current);
+        assertNull(manager.doGetLock("key"));
+    }
+
+    /**
+     * 参照カウントの並行した増減で値が失われない.
+     * @throws InterruptedException InterruptedException
+     */
+    @Test
+    public void 参照カウントの並行した増減で値が失われない() throws InterruptedException {
+        final int threadCount = 8;
+        final int loop = 1000;
+        manager.doIncrementReferenceCount("count");
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < threadCount; i++) {
+            Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    for (int j = 0; j < loop; j++) {
+                        manager.doIncrementReferenceCount("count");
+                        manager.doDecrementReferenceCount("count");
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(1L, manager.doGetReferenceCount("count"));
+        assertEquals(0L, manager.doDecrementReferenceCount("count"));
+        assertEquals(-1L, manager.doGetReferenceCount("count"));
+    }
+}
@@ -18,8 +18,12 @@ package com.fujitsu.dc.core.model.lock;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.junit.Before;
 import org.junit.Ignore;
@@ -148,6 +152,158 @@ public class LockManagerTest {
         this.違うカテゴリであれば同キー名での連続取得が可能();
     }
 
+    /**
+     * 通知モードではロック解放時に待機中のスレッドがリトライ間隔を待たずにロックを取得できる.
+     * @throws InterruptedException InterruptedException
+     */
+    @Test
+    public void 通知モードではロック解放時に待機中のスレッドがリトライ間隔を待たずにロックを取得できる() throws InterruptedException {
+        LockManager originalLm = LockManager.singleton;
+        String originalMode = LockManager.getLockWaitMode();
+        long originalInterval = LockManager.getLockRetryInterval();
+        LockManager.singleton = new InProcessLockManager();
+        LockManager.setLockWaitMode(LockManager.WAIT_MODE_NOTIFY);
+        LockManager.setLockRetryInterval(10000L);
+        try {
+            final String lockName = "notify" + new Date().getTime();
+            final AtomicLong acquiredAt = new AtomicLong();
+            Lock lock = LockManager.getLock(Lock.CATEGORY_ODATA, lockName, null, null);
+            Thread waiter = new Thread(new Runnable() {
+                public void run() {
+                    Lock lock2 = LockManager.getLock(Lock.CATEGORY_ODATA, lockName, null, null);
+                    acquiredAt.set(System.currentTimeMillis());
+                    lock2.release();
+                }
+            });
+            waiter.start();
+            Thread.sleep(200L);
+            long releasedAt = System.currentTimeMillis();
+            lock.release();
+            waiter.join(5000L);
+            assertTrue(acquiredAt.get() > 0);
+            assertTrue(acquiredAt.get() - releasedAt < 5000L);
+        } finally {
+            LockManager.singleton = originalLm;
+            LockManager.setLockWaitMode(originalMode);
+            LockManager.setLockRetryInterval(originalInterval);
+        }
+    }
+
+    /**
+     * ロック取得の待ち時間がカテゴリごとに集計される.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void ロック取得の待ち時間がカテゴリごとに集計される() {
+        LockManager originalLm = LockManager.singleton;
+        LockManager.singleton = new InProcessLockManager();
+        LockWaitMetrics.reset();
+        try {
+            Lock lock = LockManager.getLock(Lock.CATEGORY_DAV, "metrics", null, null);
+            lock.release();
+            Map<String, Object> dav = LockWaitMetrics.snapshot().get(Lock.CATEGORY_DAV);
+            assertEquals(1L, dav.get("acquired"));
+            assertEquals(0L, dav.get("timedOut"));
+            long total = 0;
+            for (Long count : ((Map<String, Long>) dav.get("histogram")).values()) {
+                total += count;
+            }
+            assertEquals(1L, total);
+        } finally {
+            LockManager.singleton = originalLm;
+        }
+    }
+
+    /**
+     * 階層ロックでは子のキーが異なれば同じ親の配下で並行して取得できる.
+     */
+    @Test
+    public void 階層ロックでは子のキーが異なれば同じ親の配下で並行して取得できる() {
+        LockManager originalLm = LockManager.singleton;
+        boolean originalEnabled = LockManager.isHierarchicalLockEnabled();
+        LockManager.singleton = new InProcessLockManager();
+        LockManager.setHierarchicalLockEnabled(true);
+        try {
+            Lock lock1 = LockManager.getHierarchicalLock(Lock.CATEGORY_ODATA, null, "box", "node", "Set('1')");
+            Lock lock2 = LockManager.getHierarchicalLock(Lock.CATEGORY_ODATA, null, "box", "node", "Set('2')");
+            assertNotNull(lock1);
+            assertNotNull(lock2);
+            lock1.release();
+            lock2.release();
+        } finally {
+            LockManager.singleton = originalLm;
+            LockManager.setHierarchicalLockEnabled(originalEnabled);
+        }
+    }
+
+    /**
+     * 階層ロックで同じ子のキーの取得はブロックされる.
+     */
+    @Test(expected = DcCoreException.class)
+    public void 階層ロックで同じ子のキーの取得はブロックされる() {
+        LockManager originalLm = LockManager.singleton;
+        boolean originalEnabled = LockManager.isHierarchicalLockEnabled();
+        long originalInterval = LockManager.getLockRetryInterval();
+        int originalTimes = LockManager.getLockRetryTimes();
+        LockManager.singleton = new InProcessLockManager();
+        LockManager.setHierarchicalLockEnabled(true);
+        LockManager.setLockRetryInterval(10L);
+        LockManager.setLockRetryTimes(2);
+        Lock lock = null;
+        try {
+            lock = LockManager.getHierarchicalLock(Lock.CATEGORY_ODATA, null, "box", "node", "Set('1')");
+            LockManager.getHierarchicalLock(Lock.CATEGORY_ODATA, null, "box", "node", "Set('1')");
+        } finally {
+            if (lock != null) {
+                lock.release();
+            }
+            LockManager.singleton = originalLm;
+            LockManager.setHierarchicalLockEnabled(originalEnabled);
+            LockManager.setLockRetryInterval(originalInterval);
+            LockManager.setLockRetryTimes(originalTimes);
+        }
+    }
+
+    /**
+     * 階層ロックの子を保持している間は親の排他ロックを取得できない.
+     */
+    @Test
+    public void 階層ロックの子を保持している間は親の排他ロックを取得できない() {
+        LockManager originalLm = LockManager.singleton;
+        boolean originalEnabled = LockManager.isHierarchicalLockEnabled();
+        long originalInterval = LockManager.getLockRetryInterval();
+        int originalTimes = LockManager.getLockRetryTimes();
+        LockManager.singleton = new InProcessLockManager();
+        LockManager.setHierarchicalLockEnabled(true);
+        LockManager.setLockRetryInterval(10L);
+        LockManager.setLockRetryTimes(2);
+        try {
+            Lock child = LockManager.getHierarchicalLock(Lock.CATEGORY_ODATA, null, "box", "node", "Set('1')");
+            try {
+                LockManager.getLock(Lock.CATEGORY_ODATA, null, "box", "node");
+                fail("exclusive lock must not be acquired while shared holders exist");
+            } catch (DcCoreException e) {
+                assertEquals(DcCoreException.Misc.TOO_MANY_CONCURRENT_REQUESTS.getCode(), e.getCode());
+            }
+            child.release();
+            // 共有モードがすべて解放されれば取得できる
+            Lock parent = LockManager.getLock(Lock.CATEGORY_ODATA, null, "box", "node");
+            assertNotNull(parent);
+            try {
+                LockManager.getHierarchicalLock(Lock.CATEGORY_ODATA, null, "box", "node", "Set('2')");
+                fail("shared lock must not be acquired while the exclusive lock is held");
+            } catch (DcCoreException e) {
+                assertEquals(DcCoreException.Misc.TOO_MANY_CONCURRENT_REQUESTS.getCode(), e.getCode());
+            }
+            parent.release();
+        } finally {
+            LockManager.singleton = originalLm;
+            LockManager.setHierarchicalLockEnabled(originalEnabled);
+            LockManager.setLockRetryInterval(originalInterval);
+            LockManager.setLockRetryTimes(originalTimes);
+        }
+    }
+
     /**
      * Retryが指定回数行われる.
      * @throws InterruptedException InterruptedException
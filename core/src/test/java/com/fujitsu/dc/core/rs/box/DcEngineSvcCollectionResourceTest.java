@@ -0,0 +1,180 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.rs.box;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Map;
+
+import javax.ws.rs.HttpMethod;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.fujitsu.dc.core.rs.box.DcEngineSvcCollectionResource.RelayedEntity;
+import com.fujitsu.dc.core.utils.HttpClientFactory;
+import com.fujitsu.dc.test.categories.Unit;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * DcEngineSvcCollectionResource ユニットテストクラス.
+ */
+@Category({Unit.class })
+public class DcEngineSvcCollectionResourceTest {
+
+    private static final int BODY_SIZE = 256 * 1024;
+    private static final int MAX_CONNECTIONS = 2;
+
+    private HttpServer server;
+    private HttpClient client;
+    private String baseUrl;
+
+    /**
+     * Engineの代わりにレスポンスボディを返却するHTTPサーバを起動する.
+     * @throws IOException IOException
+     */
+    @Before
+    public void before() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                int status = 200;
+                if (exchange.getRequestURI().getPath().endsWith("/error")) {
+                    status = 500;
+                }
+                byte[] body = new byte[BODY_SIZE];
+                Arrays.fill(body, (byte) 'a');
+                exchange.sendResponseHeaders(status, body.length);
+                OutputStream os = exchange.getResponseBody();
+                try {
+                    os.write(body);
+                } catch (IOException e) {
+                    // 中継側で接続が破棄された場合
+                    return;
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        server.start();
+        client = HttpClientFactory.createPooled(MAX_CONNECTIONS, MAX_CONNECTIONS, 1000);
+        baseUrl = "http://localhost:" + server.getAddress().getPort() + "/service/";
+    }
+
+    /**
+     * HTTPサーバを停止する.
+     */
+    @After
+    public void after() {
+        client.getConnectionManager().shutdown();
+        server.stop(0);
+    }
+
+    /**
+     * HEADの場合はレスポンスボディを中継せずに接続がプールに返却されること.
+     * @throws IOException IOException
+     */
+    @Test
+    public void HEADの場合はレスポンスボディを中継せずに接続がプールに返却されること() throws IOException {
+        for (int i = 0; i < MAX_CONNECTIONS + 1; i++) {
+            HttpGet req = new HttpGet(baseUrl + "test");
+            HttpResponse res = client.execute(req);
+            assertNull(DcEngineSvcCollectionResource.relayEntity(HttpMethod.HEAD, req, res));
+            assertEquals(Integer.valueOf(0), HttpClientFactory.getPoolStats(client).get("leased"));
+        }
+    }
+
+    /**
+     * エラーのレスポンスボディが出力されずに終了した場合も接続がプールに返却されること.
+     * @throws IOException IOException
+     */
+    @Test
+    public void エラーのレスポンスボディが出力されずに終了した場合も接続がプールに返却されること() throws IOException {
+        for (int i = 0; i < MAX_CONNECTIONS + 1; i++) {
+            HttpGet req = new HttpGet(baseUrl + "error");
+            HttpResponse res = client.execute(req);
+            assertEquals(500, res.getStatusLine().getStatusCode());
+            RelayedEntity entity = DcEngineSvcCollectionResource.relayEntity(HttpMethod.GET, req, res);
+            assertEquals(Integer.valueOf(1), HttpClientFactory.getPoolStats(client).get("leased"));
+            // リクエスト終了時にCloseableServiceからクローズされる
+            entity.close();
+            assertEquals(Integer.valueOf(0), HttpClientFactory.getPoolStats(client).get("leased"));
+        }
+    }
+
+    /**
+     * 中継が途中で失敗した場合も接続がプールに返却されること.
+     * @throws IOException IOException
+     */
+    @Test
+    public void 中継が途中で失敗した場合も接続がプールに返却されること() throws IOException {
+        HttpGet req = new HttpGet(baseUrl + "test");
+        RelayedEntity entity = DcEngineSvcCollectionResource.relayEntity(HttpMethod.GET, req, client.execute(req));
+        try {
+            entity.write(new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    throw new IOException("client disconnected");
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    throw new IOException("client disconnected");
+                }
+            });
+            fail("IOException must be thrown");
+        } catch (IOException e) {
+            assertEquals("client disconnected", e.getMessage());
+        }
+        entity.close();
+        assertEquals(Integer.valueOf(0), HttpClientFactory.getPoolStats(client).get("leased"));
+    }
+
+    /**
+     * 最後まで中継した場合は接続が再利用のためにプールに返却されること.
+     * @throws IOException IOException
+     */
+    @Test
+    public void 最後まで中継した場合は接続が再利用のためにプールに返却されること() throws IOException {
+        HttpGet req = new HttpGet(baseUrl + "test");
+        RelayedEntity entity = DcEngineSvcCollectionResource.relayEntity(HttpMethod.GET, req, client.execute(req));
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        entity.write(os);
+        entity.close();
+        assertEquals(BODY_SIZE, os.size());
+        Map<String, Integer> stats = HttpClientFactory.getPoolStats(client);
+        assertEquals(Integer.valueOf(0), stats.get("leased"));
+        assertEquals(Integer.valueOf(1), stats.get("available"));
+        assertEquals(Integer.valueOf(0), stats.get("pending"));
+        assertEquals(Integer.valueOf(MAX_CONNECTIONS), stats.get("max"));
+    }
+}
@@ -25,7 +25,9 @@ import org.junit.runners.Suite.SuiteClasses;
  */
 @RunWith(Suite.class)
 @SuiteClasses({
-        AbstractODataResourceTest.class
+        AbstractODataResourceTest.class,
+        BatchBodyParserTest.class,
+        BatchPlannerTest.class
 })
 public class AllTests {
 }
@@ -0,0 +1,121 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.rs.odata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.fujitsu.dc.core.DcCoreConfig;
+import com.fujitsu.dc.core.DcCoreException;
+import com.fujitsu.dc.test.categories.Unit;
+import com.fujitsu.dc.test.utils.BatchUtils;
+
+/**
+ * BatchBodyParserユニットテストクラス.
+ */
+@Category({Unit.class })
+public class BatchBodyParserTest {
+
+    private static final String BOUNDARY = "batch_XAmu9BiJJLBa20sRWIq74jp2UlNAVueztqu";
+    private static final String START_BOUNDARY = "--" + BOUNDARY + "\n";
+    private static final String END_BOUNDARY = "--" + BOUNDARY + "--";
+    private static final String REQUEST_URI = "http://localhost/cell/box/col/$batch";
+
+    /**
+     * 取得系リクエストとchangesetのリクエストが順にパースされること.
+     */
+    @Test
+    public void 取得系リクエストとchangesetのリクエストが順にパースされること() {
+        String body = START_BOUNDARY + BatchUtils.retrieveGetBody("Supplier('id1')")
+                + START_BOUNDARY + BatchUtils.retrievePostBody("Supplier", "id2")
+                + START_BOUNDARY + BatchUtils.retrieveGetBody("Sales?$top=1")
+                + END_BOUNDARY;
+        List<BatchBodyPart> parts = parse(body);
+
+        assertEquals(3, parts.size());
+        assertEquals("GET", parts.get(0).getHttpMethod());
+        assertEquals("Supplier", parts.get(0).getEntitySetName());
+        assertEquals("'id1'", parts.get(0).getEntityKey());
+        assertNull(parts.get(0).getChangesetStr());
+        assertEquals("POST", parts.get(1).getHttpMethod());
+        assertTrue(parts.get(1).isChangesetStart());
+        assertTrue(parts.get(1).isChangesetEnd());
+        assertEquals("\n{\"__id\":\"id2\",\"Name\":\"testName\"}\n", parts.get(1).getEntity());
+        assertEquals("Sales", parts.get(2).getEntitySetName());
+        assertEquals("$top=1", parts.get(2).getRequestQuery());
+    }
+
+    /**
+     * ボディの終端が不正な場合はリクエストのエラーよりも優先してパースエラーとなること.
+     */
+    @Test
+    public void ボディの終端が不正な場合はリクエストのエラーよりも優先してパースエラーとなること() {
+        String body = START_BOUNDARY + "Content-Transfer-Encoding:binary\n\n"
+                + START_BOUNDARY + BatchUtils.retrieveGetBody("Supplier('id1')");
+        try {
+            parse(body);
+            fail("parse error must be thrown");
+        } catch (DcCoreException e) {
+            assertEquals(DcCoreException.OData.BATCH_BODY_PARSE_ERROR.getCode(), e.getCode());
+        }
+    }
+
+    /**
+     * ボディの先頭がバウンダリ文字列でない場合はパースエラーとなること.
+     */
+    @Test
+    public void ボディの先頭がバウンダリ文字列でない場合はパースエラーとなること() {
+        String body = "\n" + START_BOUNDARY + BatchUtils.retrieveGetBody("Supplier('id1')") + END_BOUNDARY;
+        try {
+            parse(body);
+            fail("parse error must be thrown");
+        } catch (DcCoreException e) {
+            assertEquals(DcCoreException.OData.BATCH_BODY_PARSE_ERROR.getCode(), e.getCode());
+        }
+    }
+
+    /**
+     * リクエスト数が上限を超えた場合はエラーとなること.
+     */
+    @Test
+    public void リクエスト数が上限を超えた場合はエラーとなること() {
+        int maxSize = Integer.parseInt(DcCoreConfig.getOdataBatchBulkRequestMaxSize());
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i <= maxSize; i++) {
+            body.append(START_BOUNDARY).append(BatchUtils.retrieveGetBody("Supplier('id" + i + "')"));
+        }
+        body.append(END_BOUNDARY);
+        try {
+            parse(body.toString());
+            fail("too many requests error must be thrown");
+        } catch (DcCoreException e) {
+            assertEquals(DcCoreException.OData.TOO_MANY_REQUESTS.getCode(), e.getCode());
+        }
+    }
+
+    private List<BatchBodyPart> parse(String body) {
+        return new BatchBodyParser().parse(BOUNDARY, new StringReader(body), REQUEST_URI);
+    }
+}
@@ -0,0 +1,276 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.rs.odata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.fujitsu.dc.test.categories.Unit;
+
+/**
+ * BatchPlannerユニットテストクラス.
+ */
+@Category({Unit.class })
+public class BatchPlannerTest {
+
+    /**
+     * 並行実行した取得系リクエストのレスポンスが登録時の位置に組み立てられること.
+     */
+    @Test
+    public void 並行実行した取得系リクエストのレスポンスが登録時の位置に組み立てられること() {
+        BatchPlanner planner = new BatchPlanner(true, Long.MAX_VALUE);
+        StringBuilder responseBody = new StringBuilder("x");
+        planner.submitRead(responseBody, Collections.singleton("S"), false, new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                Thread.sleep(200L);
+                return "A";
+            }
+        });
+        responseBody.append("y");
+        planner.submitRead(responseBody, Collections.singleton("T"), false, new Callable<String>() {
+            @Override
+            public String call() {
+                return "B";
+            }
+        });
+        responseBody.append("z");
+        assertEquals("xAyBz", write(planner, responseBody));
+    }
+
+    /**
+     * 逐次実行の場合は登録時に取得系リクエストが実行されること.
+     */
+    @Test
+    public void 逐次実行の場合は登録時に取得系リクエストが実行されること() {
+        BatchPlanner planner = new BatchPlanner(false, Long.MAX_VALUE);
+        StringBuilder responseBody = new StringBuilder("x");
+        planner.submitRead(responseBody, Collections.singleton("S"), false, new Callable<String>() {
+            @Override
+            public String call() {
+                return "A";
+            }
+        });
+        assertEquals("xA", responseBody.toString());
+        assertEquals("xA", write(planner, responseBody));
+    }
+
+    /**
+     * 更新系リクエストは同じEntitySetを参照する取得系リクエストの完了を待つこと.
+     */
+    @Test
+    public void 更新系リクエストは同じEntitySetを参照する取得系リクエストの完了を待つこと() {
+        BatchPlanner planner = new BatchPlanner(true, Long.MAX_VALUE);
+        final AtomicBoolean finished = new AtomicBoolean(false);
+        StringBuilder responseBody = new StringBuilder();
+        planner.submitRead(responseBody, Collections.singleton("S"), false, new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                Thread.sleep(200L);
+                finished.set(true);
+                return "A";
+            }
+        });
+        planner.awaitReads(Collections.singleton("S"));
+        assertTrue(finished.get());
+        assertEquals("A", write(planner, responseBody));
+    }
+
+    /**
+     * 更新系リクエストは異なるEntitySetを参照する取得系リクエストの完了を待たないこと.
+     * @throws InterruptedException InterruptedException
+     */
+    @Test
+    public void 更新系リクエストは異なるEntitySetを参照する取得系リクエストの完了を待たないこと() throws InterruptedException {
+        BatchPlanner planner = new BatchPlanner(true, Long.MAX_VALUE);
+        final CountDownLatch latch = new CountDownLatch(1);
+        StringBuilder responseBody = new StringBuilder();
+        planner.submitRead(responseBody, Collections.singleton("T"), false, new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                assertTrue(latch.await(5, TimeUnit.SECONDS));
+                return "A";
+            }
+        });
+        planner.awaitReads(Collections.singleton("S"));
+        latch.countDown();
+        assertEquals("A", write(planner, responseBody));
+    }
+
+    /**
+     * $expandを指定した取得系リクエストはすべてのEntitySetを参照すること.
+     */
+    @Test
+    public void expandを指定した取得系リクエストはすべてのEntitySetを参照すること() {
+        BatchBodyPart bodyPart = new BatchBodyPart(new HashMap<String, String>());
+        bodyPart.setHttpMethod("GET");
+        bodyPart.setUri("http://localhost/cell/box/col/Sales");
+        assertEquals(Collections.singleton("Sales"), BatchPlanner.getEntitySets(bodyPart));
+        bodyPart.setRequestQuery("$expand=_Product");
+        assertEquals(Collections.singleton(BatchPlanner.ALL_ENTITY_SETS), BatchPlanner.getEntitySets(bodyPart));
+    }
+
+    /**
+     * 遅延した取得系リクエストはレスポンスの書き込み時に実行されること.
+     */
+    @Test
+    public void 遅延した取得系リクエストはレスポンスの書き込み時に実行されること() {
+        BatchPlanner planner = new BatchPlanner(false, Long.MAX_VALUE);
+        final AtomicInteger called = new AtomicInteger();
+        StringBuilder responseBody = new StringBuilder("x");
+        planner.submitRead(responseBody, Collections.singleton("S"), true, new Callable<String>() {
+            @Override
+            public String call() {
+                called.incrementAndGet();
+                return "A";
+            }
+        });
+        responseBody.append("y");
+        assertEquals(0, called.get());
+        assertEquals("xAy", write(planner, responseBody));
+        assertEquals(1, called.get());
+    }
+
+    /**
+     * 後続に同じEntitySetを更新するリクエストがある取得系リクエストは遅延しないこと.
+     */
+    @Test
+    public void 後続に同じEntitySetを更新するリクエストがある取得系リクエストは遅延しないこと() {
+        BatchBodyPart readS = createBodyPart("GET", "S");
+        BatchBodyPart writeS = createBodyPart("POST", "S");
+        BatchBodyPart readT = createBodyPart("GET", "T");
+        BatchPlanner planner = new BatchPlanner(false, Long.MAX_VALUE);
+        planner.plan(Arrays.asList(readS, writeS, readT));
+
+        StringBuilder responseBody = new StringBuilder();
+        planner.submitRead(responseBody, readS, new Callable<String>() {
+            @Override
+            public String call() {
+                return "A";
+            }
+        });
+        assertEquals("A", responseBody.toString());
+        planner.submitRead(responseBody, readT, new Callable<String>() {
+            @Override
+            public String call() {
+                return "B";
+            }
+        });
+        assertEquals("", responseBody.toString());
+        assertEquals("AB", write(planner, responseBody));
+    }
+
+    /**
+     * 並行実行の場合は遅延した取得系リクエストを先行して実行すること.
+     * @throws InterruptedException InterruptedException
+     */
+    @Test
+    public void 並行実行の場合は遅延した取得系リクエストを先行して実行すること() throws InterruptedException {
+        BatchPlanner planner = new BatchPlanner(true, Long.MAX_VALUE);
+        final CountDownLatch started = new CountDownLatch(1);
+        StringBuilder responseBody = new StringBuilder();
+        planner.submitRead(responseBody, Collections.singleton("S"), true, new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                // 後続の取得系リクエストが先行して実行されるまで待つ
+                assertTrue(started.await(5, TimeUnit.SECONDS));
+                return "A";
+            }
+        });
+        planner.submitRead(responseBody, Collections.singleton("T"), true, new Callable<String>() {
+            @Override
+            public String call() {
+                started.countDown();
+                return "B";
+            }
+        });
+        assertEquals("AB", write(planner, responseBody));
+    }
+
+    /**
+     * 登録系リクエストは異なるEntitySetを参照する取得系リクエストの完了も待つこと.
+     * 動的プロパティを追加する登録はProducerのスキーマ情報を変更するため、並行実行中の取得と同時に実行しない。
+     */
+    @Test
+    public void 登録系リクエストは異なるEntitySetを参照する取得系リクエストの完了も待つこと() {
+        BatchPlanner planner = new BatchPlanner(true, Long.MAX_VALUE);
+        BatchBodyPart get = createBodyPart("GET", "Sales");
+        BatchBodyPart post = createBodyPart("POST", "Product");
+        post.setEntity("{\"__id\":\"p1\",\"newDynamicProperty\":\"value\"}");
+        // 後続にSalesの更新があるため、Salesの取得は遅延せずに並行実行される
+        planner.plan(Arrays.asList(get, post, createBodyPart("PUT", "Sales")));
+
+        final AtomicBoolean finished = new AtomicBoolean(false);
+        StringBuilder responseBody = new StringBuilder();
+        planner.submitRead(responseBody, get, new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                Thread.sleep(200L);
+                finished.set(true);
+                return "A";
+            }
+        });
+        planner.awaitReads(BatchPlanner.getBarrierEntitySets(post));
+        assertTrue(finished.get());
+        assertEquals("A", write(planner, responseBody));
+    }
+
+    /**
+     * 削除系リクエストは同じEntitySetを参照する取得系リクエストの完了のみ待つこと.
+     */
+    @Test
+    public void 削除系リクエストは同じEntitySetを参照する取得系リクエストの完了のみ待つこと() {
+        assertEquals(Collections.singleton("Product"),
+                BatchPlanner.getBarrierEntitySets(createBodyPart("DELETE", "Product")));
+        assertEquals(Collections.singleton(BatchPlanner.ALL_ENTITY_SETS),
+                BatchPlanner.getBarrierEntitySets(createBodyPart("PUT", "Product")));
+        assertEquals(Collections.singleton(BatchPlanner.ALL_ENTITY_SETS),
+                BatchPlanner.getBarrierEntitySets(createBodyPart("MERGE", "Product")));
+    }
+
+    private BatchBodyPart createBodyPart(String method, String entitySetName) {
+        BatchBodyPart bodyPart = new BatchBodyPart(new HashMap<String, String>());
+        bodyPart.setHttpMethod(method);
+        bodyPart.setUri("http://localhost/cell/box/col/" + entitySetName);
+        return bodyPart;
+    }
+
+    private String write(BatchPlanner planner, StringBuilder responseBody) {
+        StringWriter writer = new StringWriter();
+        try {
+            planner.write(writer, responseBody);
+        } catch (IOException e) {
+            fail(e.getMessage());
+        }
+        return writer.toString();
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.fujitsu.dc.test.categories.Unit;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * HttpClientFactory ユニットテストクラス.
+ */
+@Category({Unit.class })
+public class HttpClientFactoryTest {
+
+    private HttpServer server;
+    private List<String> receivedCookies = new ArrayList<String>();
+
+    /**
+     * Set-Cookieを返却し、受信したCookieヘッダを記録するHTTPサーバを起動する.
+     * @throws IOException IOException
+     */
+    @Before
+    public void before() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                synchronized (receivedCookies) {
+                    receivedCookies.add(exchange.getRequestHeaders().getFirst("Cookie"));
+                }
+                exchange.getResponseHeaders().add("Set-Cookie", "session=user1; Path=/");
+                byte[] body = "ok".getBytes("UTF-8");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream os = exchange.getResponseBody();
+                os.write(body);
+                os.close();
+            }
+        });
+        server.start();
+    }
+
+    /**
+     * HTTPサーバを停止する.
+     */
+    @After
+    public void after() {
+        server.stop(0);
+    }
+
+    /**
+     * プールするHttpClientではレスポンスのCookieが以降のリクエストに付与されないこと.
+     * @throws IOException IOException
+     */
+    @Test
+    public void プールするHttpClientではレスポンスのCookieが以降のリクエストに付与されないこと() throws IOException {
+        HttpClient client = HttpClientFactory.createPooled(2, 2, 1000);
+        String url = "http://localhost:" + server.getAddress().getPort() + "/";
+        try {
+            for (int i = 0; i < 2; i++) {
+                HttpResponse res = client.execute(new HttpGet(url));
+                assertEquals(200, res.getStatusLine().getStatusCode());
+                EntityUtils.consume(res.getEntity());
+            }
+        } finally {
+            client.getConnectionManager().shutdown();
+        }
+        assertEquals(2, receivedCookies.size());
+        assertNull(receivedCookies.get(0));
+        assertNull(receivedCookies.get(1));
+    }
+}
@@ -0,0 +1,223 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.core.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.fujitsu.dc.test.categories.Unit;
+
+/**
+ * NearCacheClient ユニットテストクラス.
+ */
+@Category({Unit.class })
+public class NearCacheClientTest {
+
+    /**
+     * 背後のキャッシュへのアクセス回数を数えるテスト用のCacheClient.
+     */
+    static class CountingCacheClient implements CacheClient {
+        Map<String, Object> cache = new HashMap<String, Object>();
+        int getCount = 0;
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public <T> T get(String key, Class<T> clazz) {
+            getCount++;
+            return (T) cache.get(key);
+        }
+
+        @Override
+        public Boolean put(String key, int expiresIn, Object object) {
+            cache.put(key, object);
+            return true;
+        }
+
+        @Override
+        public Boolean add(String key, int expiresIn, Object object) {
+            if (cache.containsKey(key)) {
+                return false;
+            }
+            cache.put(key, object);
+            return true;
+        }
+
+        @Override
+        public void delete(String key) {
+            cache.remove(key);
+        }
+    }
+
+    /**
+     * プロセス内キャッシュにヒットした場合背後のキャッシュにアクセスしないこと.
+     */
+    @Test
+    public void プロセス内キャッシュにヒットした場合背後のキャッシュにアクセスしないこと() {
+        CountingCacheClient backend = new CountingCacheClient();
+        backend.cache.put("key", "value");
+        NearCacheClient client = new NearCacheClient(backend, 10, 60000L);
+
+        assertEquals("value", client.get("key", String.class));
+        assertEquals("value", client.get("key", String.class));
+        assertEquals(1, backend.getCount);
+    }
+
+    /**
+     * 格納後に格納元のオブジェクトを変更してもプロセス内キャッシュの内容は変わらないこと.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void 格納後に格納元のオブジェクトを変更してもプロセス内キャッシュの内容は変わらないこと() {
+        CountingCacheClient backend = new CountingCacheClient();
+        NearCacheClient client = new NearCacheClient(backend, 10, 60000L);
+        Map<String, String> schema = new HashMap<String, String>();
+        schema.put("entityType", "Sales");
+        client.put("key", 0, schema);
+
+        // 格納元のオブジェクトを変更する(動的プロパティの追加によるスキーマ情報の変更を想定)
+        schema.put("entityType", "Product");
+        schema.put("property", "newProperty");
+
+        Map<String, String> cached = client.get("key", Map.class);
+        assertEquals(1, cached.size());
+        assertEquals("Sales", cached.get("entityType"));
+        assertEquals(0, backend.getCount);
+    }
+
+    /**
+     * 複製できないオブジェクトはプロセス内キャッシュに格納しないこと.
+     */
+    @Test
+    public void 複製できないオブジェクトはプロセス内キャッシュに格納しないこと() {
+        CountingCacheClient backend = new CountingCacheClient();
+        NearCacheClient client = new NearCacheClient(backend, 10, 60000L);
+        Object value = new Object();
+        client.put("key", 0, value);
+
+        assertEquals(0, client.localSize());
+        assertEquals(value, client.get("key", Object.class));
+        assertEquals(1, backend.getCount);
+    }
+
+    /**
+     * 有効期限が0の場合常に背後のキャッシュにアクセスすること.
+     */
+    @Test
+    public void 有効期限が0の場合常に背後のキャッシュにアクセスすること() {
+        CountingCacheClient backend = new CountingCacheClient();
+        backend.cache.put("key", "value");
+        NearCacheClient client = new NearCacheClient(backend, 10, 0L);
+
+        assertEquals("value", client.get("key", String.class));
+        assertEquals("value", client.get("key", String.class));
+        assertEquals(2, backend.getCount);
+        assertEquals(0, client.localSize());
+    }
+
+    /**
+     * 有効期限を過ぎたエントリは背後のキャッシュから再取得すること.
+     * @throws InterruptedException 割り込み
+     */
+    @Test
+    public void 有効期限を過ぎたエントリは背後のキャッシュから再取得すること() throws InterruptedException {
+        CountingCacheClient backend = new CountingCacheClient();
+        backend.cache.put("key", "value");
+        NearCacheClient client = new NearCacheClient(backend, 10, 1L);
+
+        assertEquals("value", client.get("key", String.class));
+        Thread.sleep(10L);
+        backend.cache.put("key", "newValue");
+        assertEquals("newValue", client.get("key", String.class));
+        assertEquals(2, backend.getCount);
+    }
+
+    /**
+     * 最大保持件数を超えた場合は最も古く参照されたエントリが破棄されること.
+     */
+    @Test
+    public void 最大保持件数を超えた場合は最も古く参照されたエントリが破棄されること() {
+        CountingCacheClient backend = new CountingCacheClient();
+        NearCacheClient client = new NearCacheClient(backend, 2, 60000L);
+
+        client.put("key1", 0, "value1");
+        client.put("key2", 0, "value2");
+        client.get("key1", String.class);
+        client.put("key3", 0, "value3");
+        assertEquals(2, client.localSize());
+
+        // key2が破棄されているため背後のキャッシュにアクセスする
+        client.get("key1", String.class);
+        assertEquals(0, backend.getCount);
+        client.get("key2", String.class);
+        assertEquals(1, backend.getCount);
+    }
+
+    /**
+     * 削除した場合はプロセス内キャッシュからも削除されること.
+     */
+    @Test
+    public void 削除した場合はプロセス内キャッシュからも削除されること() {
+        CountingCacheClient backend = new CountingCacheClient();
+        NearCacheClient client = new NearCacheClient(backend, 10, 60000L);
+
+        client.put("key", 0, "value");
+        assertEquals("value", client.get("key", String.class));
+        client.delete("key");
+        assertNull(client.get("key", String.class));
+        assertEquals(1, backend.getCount);
+    }
+
+    /**
+     * addはキャッシュが存在しない場合のみ格納しプロセス内キャッシュには格納しないこと.
+     */
+    @Test
+    public void addはキャッシュが存在しない場合のみ格納しプロセス内キャッシュには格納しないこと() {
+        CountingCacheClient backend = new CountingCacheClient();
+        NearCacheClient client = new NearCacheClient(backend, 10, 60000L);
+
+        assertTrue(client.add("key", 0, "value"));
+        assertFalse(client.add("key", 0, "other"));
+        assertEquals(0, client.localSize());
+        assertEquals("value", client.get("key", String.class));
+        assertEquals(1, backend.getCount);
+    }
+
+    /**
+     * getLatestは背後のキャッシュの最新値でプロセス内キャッシュを更新すること.
+     */
+    @Test
+    public void getLatestは背後のキャッシュの最新値でプロセス内キャッシュを更新すること() {
+        CountingCacheClient backend = new CountingCacheClient();
+        NearCacheClient client = new NearCacheClient(backend, 10, 60000L);
+
+        client.put("key", 0, "value");
+        // 他のプロセスで更新された状態
+        backend.cache.put("key", "newValue");
+        assertEquals("value", client.get("key", String.class));
+        assertEquals("newValue", client.getLatest("key", String.class));
+        assertEquals("newValue", client.get("key", String.class));
+        assertEquals(1, backend.getCount);
+    }
+}
@@ -25,7 +25,8 @@ import org.junit.runners.Suite.SuiteClasses;
  */
 @RunWith(Suite.class)
 @SuiteClasses({
-    EventLoggerTest.class
+    EventLoggerTest.class,
+    EventLogSegmentTest.class
     })
 public class AllTests {
 }
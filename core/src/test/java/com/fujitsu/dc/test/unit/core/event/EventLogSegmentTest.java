@@ -0,0 +1,129 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.test.unit.core.event;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+
+import com.fujitsu.dc.core.eventlog.EventLogFilter;
+import com.fujitsu.dc.core.eventlog.EventLogSegment;
+import com.fujitsu.dc.test.categories.Unit;
+
+/**
+ * EventLogSegment ユニットテストクラス.
+ */
+@Category({ Unit.class })
+public class EventLogSegmentTest {
+
+    /**
+     * 一時ディレクトリ.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static String event(int minute, String action, String result) {
+        return String.format("2014-01-01T00:%02d:00.000Z,[INFO ],RequestKey,client,\"\",subject,%s,object,%s\n",
+                minute, action, result);
+    }
+
+    private EventLogSegment build(String log, int blockSize) throws IOException {
+        File file = new File(folder.getRoot(), "segment/default.log.1.seg");
+        EventLogSegment.build(new StringReader(log), file, blockSize);
+        return EventLogSegment.open(file);
+    }
+
+    /**
+     * 日時の範囲に一致するイベントのみが取得できること.
+     * @throws IOException IOException
+     */
+    @Test
+    public void 日時の範囲に一致するイベントのみが取得できること() throws IOException {
+        StringBuilder log = new StringBuilder();
+        for (int i = 0; i < 60; i++) {
+            log.append(event(i, "POST", "201"));
+        }
+        // 1ブロックに数イベントずつ格納する
+        EventLogSegment segment = build(log.toString(), 200);
+        assertEquals(EventLogFilter.parseTime("2014-01-01T00:00:00.000Z"), segment.getMinTime());
+        assertEquals(EventLogFilter.parseTime("2014-01-01T00:59:00.000Z"), segment.getMaxTime());
+
+        EventLogFilter filter = new EventLogFilter();
+        filter.setSince(EventLogFilter.parseTime("2014-01-01T00:10:00.000Z"));
+        filter.setUntil(EventLogFilter.parseTime("2014-01-01T00:13:00.000Z"));
+        StringWriter writer = new StringWriter();
+        assertEquals(3, segment.query(filter, writer));
+        assertEquals(event(10, "POST", "201") + event(11, "POST", "201") + event(12, "POST", "201"),
+                writer.toString());
+    }
+
+    /**
+     * 項目の完全一致で絞り込めること.
+     * @throws IOException IOException
+     */
+    @Test
+    public void 項目の完全一致で絞り込めること() throws IOException {
+        String log = event(0, "POST", "201") + event(1, "GET", "200") + event(2, "POST", "400")
+                + event(3, "POSTX", "201");
+        EventLogSegment segment = build(log, 65536);
+
+        EventLogFilter filter = new EventLogFilter();
+        filter.setAction("POST");
+        StringWriter writer = new StringWriter();
+        assertEquals(2, segment.query(filter, writer));
+        assertEquals(event(0, "POST", "201") + event(2, "POST", "400"), writer.toString());
+
+        filter.setResult("400");
+        writer = new StringWriter();
+        assertEquals(1, segment.query(filter, writer));
+        assertEquals(event(2, "POST", "400"), writer.toString());
+    }
+
+    /**
+     * 改行を含むイベントが1件として扱われること.
+     * @throws IOException IOException
+     */
+    @Test
+    public void 改行を含むイベントが1件として扱われること() throws IOException {
+        String multiLine = "2014-01-01T00:01:00.000Z,[INFO ],RequestKey,client,\"\",subject,POST,\"line1\n"
+                + "line2\",201\n";
+        String log = event(0, "GET", "200") + multiLine + event(2, "GET", "200");
+        EventLogSegment segment = build(log, 10);
+
+        EventLogFilter filter = new EventLogFilter();
+        filter.setAction("POST");
+        StringWriter writer = new StringWriter();
+        assertEquals(1, segment.query(filter, writer));
+        assertEquals(multiLine, writer.toString());
+    }
+
+    /**
+     * 日時の形式が不正な場合にIllegalArgumentExceptionとなること.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void 日時の形式が不正な場合にIllegalArgumentExceptionとなること() {
+        EventLogFilter.parseTime("2014-01-01");
+    }
+}
@@ -28,6 +28,7 @@ import org.junit.runners.Suite.SuiteClasses;
         AdsAcessorTest.class,
         EsAcessorTest.class,
         RepairAdsTest.class,
+        RepairAdsCheckpointTest.class,
         RepairAdsCompleteTest.class,
         RepairAdsIntegrationTest.class
 })
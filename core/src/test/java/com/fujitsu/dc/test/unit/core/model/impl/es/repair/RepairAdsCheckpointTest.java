@@ -0,0 +1,109 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.test.unit.core.model.impl.es.repair;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.fujitsu.dc.core.model.impl.es.repair.RepairAdsCheckpoint;
+import com.fujitsu.dc.test.categories.Unit;
+
+/**
+ * RepairAdsCheckpoint ユニットテストクラス.
+ */
+@Category({Unit.class })
+public class RepairAdsCheckpointTest {
+
+    private File baseDir;
+    private File logFile;
+
+    /**
+     * すべてのテスト毎に１度実行される処理.
+     * @throws IOException IOException
+     */
+    @Before
+    public void before() throws IOException {
+        baseDir = new File(System.getProperty("java.io.tmpdir"), "repairAdsCheckpointTest");
+        FileUtils.deleteDirectory(baseDir);
+        baseDir.mkdirs();
+        logFile = new File(baseDir, "adsWriteFailure_1.0.log.1400000000000");
+    }
+
+    /**
+     * すべてのテスト毎に１度実行される処理.
+     * @throws IOException IOException
+     */
+    @After
+    public void after() throws IOException {
+        FileUtils.deleteDirectory(baseDir);
+    }
+
+    /**
+     * チェックポイントが存在しない場合は0が返却されること.
+     */
+    @Test
+    public void チェックポイントが存在しない場合は0が返却されること() {
+        assertEquals(0L, new RepairAdsCheckpoint(logFile).read());
+    }
+
+    /**
+     * 記録した行数がログファイルごとに読み込めること.
+     */
+    @Test
+    public void 記録した行数がログファイルごとに読み込めること() {
+        new RepairAdsCheckpoint(logFile).write(100L);
+        new RepairAdsCheckpoint(logFile).write(200L);
+        assertEquals(200L, new RepairAdsCheckpoint(logFile).read());
+        File otherLogFile = new File(baseDir, "adsWriteFailure_1.0.log.1400000000001");
+        assertEquals(0L, new RepairAdsCheckpoint(otherLogFile).read());
+    }
+
+    /**
+     * チェックポイントの内容が不正な場合は0が返却されること.
+     * @throws IOException IOException
+     */
+    @Test
+    public void チェックポイントの内容が不正な場合は0が返却されること() throws IOException {
+        File checkpointFile = new File(baseDir, logFile.getName() + RepairAdsCheckpoint.CHECKPOINT_SUFFIX);
+        FileUtils.writeStringToFile(checkpointFile, "invalid", "UTF-8");
+        assertEquals(0L, new RepairAdsCheckpoint(logFile).read());
+    }
+
+    /**
+     * チェックポイントを削除した場合はファイルが残らないこと.
+     */
+    @Test
+    public void チェックポイントを削除した場合はファイルが残らないこと() {
+        RepairAdsCheckpoint checkpoint = new RepairAdsCheckpoint(logFile);
+        checkpoint.write(10L);
+        File checkpointFile = new File(baseDir, logFile.getName() + RepairAdsCheckpoint.CHECKPOINT_SUFFIX);
+        assertTrue(checkpointFile.exists());
+        checkpoint.delete();
+        assertFalse(checkpointFile.exists());
+        assertEquals(0, baseDir.list().length);
+    }
+}
@@ -21,15 +21,19 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.lang.reflect.Method;
 import java.net.URL;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 
 import org.apache.http.HttpStatus;
 import org.mozilla.javascript.ContextFactory;
@@ -102,20 +106,26 @@ public class DcEngineContext implements Closeable {
         this.factory = new DcJsContextFactory();
         this.cx = factory.enterContext();
 
-        this.scope = cx.initStandardObjects();
-
+        if (DcEngineConfig.isSharedScopeEnabled()) {
+            // 標準オブジェクトとExtensionクラスは共有スコープに定義済みのため、リクエスト毎のスコープを重ねるだけとする
+            try {
+                ExtensionJarLoader extLoader = loadExtensionJar();
+                this.scope = DcSharedScope.newRequestScope(this.cx, extLoader);
+            } catch (DcEngineException e) {
+                DcJsContext.exit();
+                throw e;
+            }
+        } else {
+            this.scope = cx.initStandardObjects();
+        }
     }
 
     /**
-     * Extensionクラスを JavaScriptに公開する.
-     * この際、ロガークラス実体を Extensionクラス側に設定する。
-     * @throws DcEngineException 公開失敗時
-     */
-    /**
-     * @throws DcEngineException
+     * Extension用 jarをロードし、Extensionクラスのクラスローダーを Rhinoに設定する.
+     * @return ExtensionJarLoader
+     * @throws DcEngineException ロード失敗時
      */
-    private void prepareExtensionClass() throws DcEngineException {
-        // Extension用 jarのロード
+    private ExtensionJarLoader loadExtensionJar() throws DcEngineException {
         ExtensionJarLoader extLoader = null;
         try {
             extLoader = ExtensionJarLoader.getInstance(this.cx.getApplicationClassLoader(),
@@ -123,16 +133,44 @@ public class DcEngineContext implements Closeable {
             factory.initApplicationClassLoader(extLoader.getClassLoader());
         } catch (IOException e) {
             throw new DcEngineException("Server Error", DcEngineException.STATUSCODE_SERVER_ERROR, e);
-        } catch (DcEngineException e) {
-            throw e;
         }
+        return extLoader;
+    }
 
+    /**
+     * Extensionクラスを JavaScriptに公開する.
+     * この際、ロガークラス実体を Extensionクラス側に設定する。
+     * @throws DcEngineException 公開失敗時
+     */
+    private void prepareExtensionClass() throws DcEngineException {
         // Javascript内でプロトタイプとして使用可能な Javaクラスを定義する。
         // スコープの設定
         NativeObject dcScope = (NativeObject) this.scope.get(DC_SCOPE, this.scope);
         NativeObject declaringClass = (NativeObject) dcScope.get(DC_EXTENSION_SCOPE, dcScope);
 
-        for (Class<? extends Scriptable> clazz : extLoader.getPrototypeClassSet()) {
+        if (DcEngineConfig.isSharedScopeEnabled()) {
+            // 共有スコープに定義済みのコンストラクタを公開する
+            DcSharedScope.revealExtensionClasses(declaringClass);
+            return;
+        }
+
+        // Extension用 jarのロード
+        ExtensionJarLoader extLoader = loadExtensionJar();
+        defineExtensionClasses(declaringClass, extLoader.getPrototypeClassSet(), false);
+    }
+
+    /**
+     * Extensionクラスを指定したスコープに定義する.
+     * この際、ロガークラス実体を Extensionクラス側に設定する。
+     * @param declaringClass 定義先のスコープ
+     * @param classSet Extensionクラス
+     * @param sealed trueの場合、定義したコンストラクタとプロトタイプをsealする
+     * @return 定義したクラス名とコンストラクタ
+     */
+    static Map<String, Scriptable> defineExtensionClasses(Scriptable declaringClass,
+            Set<Class<? extends Scriptable>> classSet, boolean sealed) {
+        Map<String, Scriptable> constructors = new LinkedHashMap<String, Scriptable>();
+        for (Class<? extends Scriptable> clazz : classSet) {
             try {
                 if (AbstractExtensionScriptableObject.class.isAssignableFrom(clazz)) {
                     // AbstractExtensionScriptableObjectであれば、ロガー設定を行う。
@@ -160,7 +198,8 @@ public class DcEngineContext implements Closeable {
                 // 問題となる extensionを利用していない UserScriptまで実行できなくなるのを防ぐため、ここからは例外は投げない。
                 // 問題のプロトタイプにアクセスした場合、Script実行時のエラーとなる。
                 // ############################################################################3
-                ScriptableObject.defineClass(declaringClass, clazz);
+                String className = ScriptableObject.defineClass(declaringClass, clazz, sealed, false);
+                constructors.put(className, (Scriptable) declaringClass.get(className, declaringClass));
             } catch (RuntimeException e) {
                 log.warn(String.format("Warn: Extension class(%s) could not be revealed to javascript.: %s",
                         clazz.getCanonicalName(), e.getMessage()));
@@ -169,6 +208,7 @@ public class DcEngineContext implements Closeable {
                         clazz.getCanonicalName(), e.getMessage()));
             }
         }
+        return constructors;
     }
 
     /**
@@ -201,6 +241,7 @@ public class DcEngineContext implements Closeable {
     /**
      * JSGIを実行.
      * @param source 実行するユーザースクリプト
+     * @param sourceCacheKey コンパイル済みスクリプトのキャッシュキー. nullの場合はキャッシュしない
      * @param req Requestオブジェクト
      * @param res Responseオブジェクト
      * @param is リクエストストリームオブジェクト
@@ -209,6 +250,7 @@ public class DcEngineContext implements Closeable {
      * @throws DcEngineException DcEngine例外
      */
     public final Response runJsgi(final String source,
+            final String sourceCacheKey,
             final HttpServletRequest req,
             final HttpServletResponse res,
             final InputStream is,
@@ -258,17 +300,19 @@ public class DcEngineContext implements Closeable {
         try {
             Object ret;
             log.info("eval user script : script size = " + source.length());
-            ret = evalUserScript(source, dcReq);
+            ret = evalUserScript(source, sourceCacheKey, dcReq);
             log.info("[" + DcEngineConfig.getVersion() + "] " + "<<< Request Ended ");
 
             DcResponse dcRes = DcResponse.parseJsgiResponse(ret);
 
-            return dcRes.build();
+            return releaseConnectionsAfterResponse(dcRes.build(), dc);
         } catch (Error e) {
+            dc.releaseConnections();
             // ユーザースクリプトのタイムアウトはINFOレベルでログ出力
             log.info("UserScript TimeOut", e);
             throw new DcEngineException("Script TimeOut", HttpStatus.SC_SERVICE_UNAVAILABLE);
         } catch (Exception e) {
+            dc.releaseConnections();
             if (e instanceof WrappedException) {
                 e = (Exception) ((WrappedException) e).getWrappedException();
             }
@@ -280,14 +324,47 @@ public class DcEngineContext implements Closeable {
         }
     }
 
+    /**
+     * レスポンスボディの出力完了後に、DAOが使用したプール接続を解放するようにする.
+     * レスポンスボディはユーザースクリプトが取得したストリームを参照している場合があるため、出力完了まで解放しない。
+     * @param response レスポンス
+     * @param dc DAOオブジェクト
+     * @return レスポンス
+     */
+    private Response releaseConnectionsAfterResponse(final Response response, final DcEngineDao dc) {
+        final Object entity = response.getEntity();
+        if (!(entity instanceof StreamingOutput)) {
+            dc.releaseConnections();
+            return response;
+        }
+        StreamingOutput output = new StreamingOutput() {
+            @Override
+            public void write(OutputStream os) throws IOException {
+                try {
+                    ((StreamingOutput) entity).write(os);
+                } finally {
+                    dc.releaseConnections();
+                }
+            }
+        };
+        return Response.fromResponse(response).entity(output).build();
+    }
+
     /**
      * UserScript実行.
      * @param source ユーザースクリプトソース
+     * @param sourceCacheKey コンパイル済みスクリプトのキャッシュキー
      * @throws IOException IO例外
      * @throws DcEngineException DcEngineException
      */
-    private Object evalUserScript(final String source, JSGIRequest dcReq) throws DcEngineException {
-        cx.evaluateString(scope, "fn_jsgi = " + source, null, 1, null);
+    private Object evalUserScript(final String source, final String sourceCacheKey, JSGIRequest dcReq)
+            throws DcEngineException {
+        Script userScript = UserScriptCache.get(sourceCacheKey);
+        if (userScript == null) {
+            userScript = cx.compileString("fn_jsgi = " + source, null, 1, null);
+            UserScriptCache.cache(sourceCacheKey, userScript);
+        }
+        userScript.exec(cx, scope);
 
         Object fObj = scope.get("fn_jsgi", scope);
         Object result = null;
@@ -314,6 +391,13 @@ public class DcEngineContext implements Closeable {
 
         DcEngineDao dccx = new DcEngineDao(baseUrl, currentCellName, currentSchemeUri, currentBoxName);
         dccx.setServiceSubject(serviceSubject);
+        if (DcEngineConfig.isDaoConnectionPoolingEnabled()) {
+            dccx.getDaoConfig().setConnectionPooling(true);
+            dccx.getDaoConfig().setMaxConnectionsTotal(DcEngineConfig.getDaoConnectionMaxTotal());
+            dccx.getDaoConfig().setMaxConnectionsPerRoute(DcEngineConfig.getDaoConnectionMaxPerRoute());
+        }
+        // Coreが同一ホストに配置されている場合は、フロントのWebサーバを経由せずに直接アクセスする
+        dccx.setDirectUrl(DcEngineConfig.getDaoDirectUrl());
         dccx.setBoxSchema(req.getHeader("X-Dc-Box-Schema"));
         String auth = req.getHeader(HttpHeaders.AUTHORIZATION);
         String version = req.getHeader(DcEngineDao.DC_VERSION);
@@ -23,6 +23,7 @@ import org.mozilla.javascript.Scriptable;
 
 import com.fujitsu.dc.engine.accesscontrol.DcClassShutterImpl;
 import com.fujitsu.dc.engine.accesscontrol.PrimitiveWrapFactory;
+import com.fujitsu.dc.engine.utils.DcEngineConfig;
 
 
 
@@ -39,6 +40,7 @@ public class DcJsContextFactory extends ContextFactory {
     protected final Context makeContext() {
         DcJsContext cx = new DcJsContext();
         cx.setInstructionObserverThreshold(TIMEOUTVALUE / MVALUE);
+        cx.setOptimizationLevel(DcEngineConfig.getScriptOptimizationLevel());
 
         // ClassShutterの登録(Javaパッケージ呼び出し制御)
         cx.setClassShutter(new DcClassShutterImpl());
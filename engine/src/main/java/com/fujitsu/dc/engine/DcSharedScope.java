@@ -0,0 +1,95 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.engine;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fujitsu.dc.engine.extension.support.ExtensionJarLoader;
+
+/**
+ * 全リクエストで共有するRhinoのスコープ.
+ * 標準オブジェクトの初期化とExtensionクラスの定義は初回のみ行い、リクエスト毎のスコープは共有スコープをプロトタイプとして作成する。
+ * 共有スコープはsealしているため変更できず、複数のスレッドから同時に参照しても安全である。
+ */
+public class DcSharedScope {
+    /** ログオブジェクト. */
+    private static Logger log = LoggerFactory.getLogger(DcSharedScope.class);
+
+    /** sealする前に初期化しておく遅延ロードの標準オブジェクト. */
+    private static final String LAZY_LOADED_OBJECTS = "RegExp; getClass; java; Packages; JavaAdapter;";
+
+    /** 共有スコープ. */
+    private static ScriptableObject sharedScope = null;
+    /** 共有スコープ上に定義したExtensionクラスのコンストラクタ. */
+    private static Map<String, Scriptable> extensionConstructors = Collections.emptyMap();
+
+    private DcSharedScope() {
+    }
+
+    /**
+     * 共有スコープをプロトタイプとするリクエスト毎のスコープを作成する.
+     * 共有スコープが未作成の場合は作成する。
+     * @param cx RhinoのContext
+     * @param extLoader ExtensionJarLoader
+     * @return リクエスト毎のスコープ
+     */
+    public static Scriptable newRequestScope(Context cx, ExtensionJarLoader extLoader) {
+        ScriptableObject shared = getSharedScope(cx, extLoader);
+        Scriptable scope = cx.newObject(shared);
+        scope.setPrototype(shared);
+        scope.setParentScope(null);
+        return scope;
+    }
+
+    /**
+     * 共有スコープ上に定義したExtensionクラスのコンストラクタを指定したオブジェクトに公開する.
+     * @param declaringClass 公開先のオブジェクト
+     */
+    public static void revealExtensionClasses(Scriptable declaringClass) {
+        for (Map.Entry<String, Scriptable> entry : getExtensionConstructors().entrySet()) {
+            ScriptableObject.putProperty(declaringClass, entry.getKey(), entry.getValue());
+        }
+    }
+
+    private static synchronized Map<String, Scriptable> getExtensionConstructors() {
+        return extensionConstructors;
+    }
+
+    private static synchronized ScriptableObject getSharedScope(Context cx, ExtensionJarLoader extLoader) {
+        if (sharedScope == null) {
+            ScriptableObject scope = cx.initStandardObjects(null, true);
+            cx.evaluateString(scope, LAZY_LOADED_OBJECTS, DcSharedScope.class.getSimpleName(), 1, null);
+
+            // Extensionクラスは共有スコープを親とするオブジェクトに定義し、コンストラクタのみ各リクエストで公開する
+            Scriptable holder = cx.newObject(scope);
+            extensionConstructors = Collections.unmodifiableMap(
+                    DcEngineContext.defineExtensionClasses(holder, extLoader.getPrototypeClassSet(), true));
+
+            scope.sealObject();
+            sharedScope = scope;
+            log.info("Shared scope initialized. Extension classes: " + extensionConstructors.keySet());
+        }
+        return sharedScope;
+    }
+}
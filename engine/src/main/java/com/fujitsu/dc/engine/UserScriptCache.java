@@ -0,0 +1,87 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.engine;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.mozilla.javascript.Script;
+
+import com.fujitsu.dc.engine.utils.DcEngineConfig;
+
+/**
+ * コンパイル済みのユーザースクリプトをプロセス内にキャッシュするクラス.
+ * キャッシュキーにはソースファイルの更新で変わる値(ノードIDとバージョン)を用いるため、
+ * ソースファイルが更新された場合は古いスクリプトは使用されず、最大保持件数を超えた時点でLRUで破棄される。
+ */
+public class UserScriptCache {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private static int maxEntries = DcEngineConfig.getScriptCacheMaxEntries();
+
+    private static Map<String, Script> scriptCache = new LinkedHashMap<String, Script>(
+            INITIAL_CAPACITY, LOAD_FACTOR, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Script> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    private UserScriptCache() {
+    }
+
+    /**
+     * コンパイル済みスクリプトをキャッシュから取得する.
+     * @param key キャッシュキー
+     * @return コンパイル済みスクリプト / null キャッシュが存在しないとき
+     */
+    public static Script get(String key) {
+        if (key == null || maxEntries <= 0) {
+            return null;
+        }
+        synchronized (scriptCache) {
+            return scriptCache.get(key);
+        }
+    }
+
+    /**
+     * コンパイル済みスクリプトをキャッシュする.
+     * @param key キャッシュキー. nullの場合はキャッシュしない
+     * @param script コンパイル済みスクリプト
+     */
+    public static void cache(String key, Script script) {
+        if (key == null || maxEntries <= 0) {
+            return;
+        }
+        synchronized (scriptCache) {
+            scriptCache.put(key, script);
+        }
+    }
+
+    /**
+     * キャッシュをすべて破棄する.
+     */
+    public static void clear() {
+        synchronized (scriptCache) {
+            scriptCache.clear();
+        }
+    }
+}
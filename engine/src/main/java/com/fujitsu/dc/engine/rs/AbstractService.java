@@ -328,9 +328,11 @@ public abstract class AbstractService {
             dcContext.loadGlobalObject(baseUrl, targetCell, targetScheme, targetScheme, targetServiceName);
             // ユーザスクリプトを取得（設定及びソース）
             String source = "";
+            String sourceCacheKey = null;
             try {
                 String sourceName = this.sourceManager.getScriptNameForServicePath(targetServiceName);
                 source = this.sourceManager.getSource(sourceName);
+                sourceCacheKey = this.sourceManager.getSourceCacheKey(sourceName);
             } catch (DcEngineException e) {
                 return errorResponse(e);
             } catch (Exception e) {
@@ -342,7 +344,7 @@ public abstract class AbstractService {
             }
             // JSGI実行
             try {
-                response = dcContext.runJsgi(source, req, res, is, this.serviceSubject);
+                response = dcContext.runJsgi(source, sourceCacheKey, req, res, is, this.serviceSubject);
             } catch (DcEngineException e) {
                 return errorResponse(e);
             } catch (Exception e) {
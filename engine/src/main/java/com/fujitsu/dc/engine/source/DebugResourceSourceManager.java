@@ -74,5 +74,15 @@ public class DebugResourceSourceManager implements ISourceManager {
             throw new DcEngineException("404 Not Found", DcEngineException.STATUSCODE_NOTFOUND, e);
         }
     }
+
+    /**
+     * コンパイル済みスクリプトのキャッシュキーを取得.
+     * デバッグ用リソースはファイルを直接編集して利用されるため、キャッシュしない。
+     * @param sourceName ソースファイル名
+     * @return null
+     */
+    public String getSourceCacheKey(String sourceName) {
+        return null;
+    }
 }
 
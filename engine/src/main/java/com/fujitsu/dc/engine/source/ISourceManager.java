@@ -44,4 +44,12 @@ public interface ISourceManager {
      * @throws DcEngineException DcEngineException
      */
     String getSource(String scriptFileName) throws DcEngineException;
+
+    /**
+     * コンパイル済みスクリプトのキャッシュキーを返却.
+     * スクリプトファイルが更新された場合は異なる値を返すこと。getSourceの呼出し後に使用する.
+     * @param scriptFileName スクリプトファイル名
+     * @return キャッシュキー / null キャッシュしないとき
+     */
+    String getSourceCacheKey(String scriptFileName);
 }
@@ -21,6 +21,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
+import java.util.HashMap;
 import java.util.Map;
 
 import javax.xml.parsers.DocumentBuilder;
@@ -41,6 +42,8 @@ import com.fujitsu.dc.core.model.file.BinaryDataAccessException;
 import com.fujitsu.dc.core.model.file.BinaryDataAccessor;
 import com.fujitsu.dc.engine.DcEngineException;
 import com.fujitsu.dc.engine.EsModel;
+import com.fujitsu.dc.engine.source.ServiceSourceCache.CollectionEntry;
+import com.fujitsu.dc.engine.source.ServiceSourceCache.SourceEntry;
 import com.fujitsu.dc.engine.utils.DcEngineConfig;
 
 /**
@@ -65,11 +68,11 @@ public class ServiceResourceSourceManager implements ISourceManager {
     /** ESアクセッサtype. */
     private EsType typ;
 
-    /** ODataコレクションのPROPPATCH情報. */
-    private String serviceCollectionInfo;
+    /** サービスコレクションの情報. */
+    private CollectionEntry collection;
 
-    /** ESから取得したODataコレクションの配下のソース情報. */
-    private Map<?, ?> sourceInfo;
+    /** 取得したソースファイルのキャッシュキー. */
+    private Map<String, String> sourceCacheKeys = new HashMap<String, String>();
 
     /**
      * コンストラクタ.
@@ -93,7 +96,7 @@ public class ServiceResourceSourceManager implements ISourceManager {
      * @throws DcEngineException DcEngineException
      */
     private void loadServiceCollectionInfo() throws DcEngineException {
-        if (this.sourceInfo != null) {
+        if (this.collection != null) {
             return;
         }
         // elasticsearchからPROPを取得する
@@ -104,6 +107,14 @@ public class ServiceResourceSourceManager implements ISourceManager {
                     DcEngineException.STATUSCODE_NOTFOUND);
         }
 
+        // 有効期限内のキャッシュがあればElasticsearchへの問合せを行わない
+        String cacheKey = this.index + "/" + this.id;
+        CollectionEntry cached = ServiceSourceCache.getCollection(cacheKey);
+        if (cached != null && !cached.isExpired()) {
+            this.collection = cached;
+            return;
+        }
+
         // サービスコレクションを取得
         DcGetResponse getResp = this.typ.get(this.id);
         if (!getResp.isExists()) {
@@ -113,14 +124,15 @@ public class ServiceResourceSourceManager implements ISourceManager {
         }
 
         // スクリプトの情報を取得する
-        this.serviceCollectionInfo = (String) ((Map<?, ?>) getResp.getSource().get("d")).get("service@urn:x-dc1:xmlns");
-        if (null == this.serviceCollectionInfo) {
+        String serviceCollectionInfo = (String) ((Map<?, ?>) getResp.getSource().get("d"))
+                .get("service@urn:x-dc1:xmlns");
+        if (null == serviceCollectionInfo) {
             log.info("Service property Invalid ");
             throw new DcEngineException("404 Not Found (Service property invalid) ",
                     DcEngineException.STATUSCODE_NOTFOUND);
         }
 
-        log.debug("scriptPath: [" + this.serviceCollectionInfo + "] ");
+        log.debug("scriptPath: [" + serviceCollectionInfo + "] ");
         // childrenを取る （__src）
         String children = (String) ((Map<?, ?>) getResp.getSource().get("o")).get("__src");
         // __src の情報を取得
@@ -130,7 +142,20 @@ public class ServiceResourceSourceManager implements ISourceManager {
             throw new DcEngineException("404 Not Found (Service Source Collection invalid) ",
                     DcEngineException.STATUSCODE_NOTFOUND);
         }
-        this.sourceInfo = (Map<?, ?>) getResp.getSource().get("o");
+        Map<?, ?> sourceInfo = (Map<?, ?>) getResp.getSource().get("o");
+
+        // サービス設定が変わっていなければ解析済みの内容を再利用する
+        String serviceSubject;
+        Map<String, String> routes;
+        if (cached != null && serviceCollectionInfo.equals(cached.getServiceXml())) {
+            serviceSubject = cached.getServiceSubject();
+            routes = cached.getRoutes();
+        } else {
+            serviceSubject = getServiceSubject(serviceCollectionInfo);
+            routes = getRoutes(serviceCollectionInfo);
+        }
+        this.collection = new CollectionEntry(serviceCollectionInfo, serviceSubject, routes, sourceInfo);
+        ServiceSourceCache.cacheCollection(cacheKey, this.collection);
     }
 
     /**
@@ -141,7 +166,7 @@ public class ServiceResourceSourceManager implements ISourceManager {
     public String getServiceSubject() throws DcEngineException {
         this.loadServiceCollectionInfo();
         // サービスサブジェクトの取得
-        return getServiceSubject(this.serviceCollectionInfo);
+        return this.collection.getServiceSubject();
     }
 
     /**
@@ -152,7 +177,11 @@ public class ServiceResourceSourceManager implements ISourceManager {
      */
     public String getScriptNameForServicePath(String servicePath) throws DcEngineException {
         this.loadServiceCollectionInfo();
-        return getScriptName(this.serviceCollectionInfo, servicePath);
+        String scriptName = this.collection.getRoutes().get(servicePath);
+        if (scriptName == null) {
+            return "";
+        }
+        return scriptName;
     }
 
     /**
@@ -164,17 +193,40 @@ public class ServiceResourceSourceManager implements ISourceManager {
     public String getSource(String sourceName) throws DcEngineException {
         this.loadServiceCollectionInfo();
         // 対象のスクリプトの情報を取得する
-        String sourceNodeId = (String) this.sourceInfo.get(sourceName);
+        String sourceNodeId = (String) this.collection.getSourceInfo().get(sourceName);
         if (sourceNodeId == null) {
             log.info("Service Source not found (" + sourceName + ")");
             throw new DcEngineException("404 Not Found", DcEngineException.STATUSCODE_NOTFOUND);
         }
-        DcGetResponse getResp = this.typ.get(sourceNodeId);
-        if (!getResp.isExists()) {
-            log.info("Service Source not found (" + sourceName + ")");
-            throw new DcEngineException("404 Not Found", DcEngineException.STATUSCODE_NOTFOUND);
+
+        String cacheKey = this.index + "/" + sourceNodeId;
+        SourceEntry cached = ServiceSourceCache.getSource(cacheKey);
+        if (cached == null || cached.isExpired()) {
+            DcGetResponse getResp = this.typ.get(sourceNodeId);
+            if (!getResp.isExists()) {
+                log.info("Service Source not found (" + sourceName + ")");
+                throw new DcEngineException("404 Not Found", DcEngineException.STATUSCODE_NOTFOUND);
+            }
+            // ソースファイルが更新されていなければ読込済みの内容を再利用する
+            if (cached == null || cached.getVersion() != getResp.getVersion()) {
+                cached = new SourceEntry(getResp.getVersion(), readSource(sourceNodeId));
+            } else {
+                cached = new SourceEntry(cached.getVersion(), cached.getSource());
+            }
+            ServiceSourceCache.cacheSource(cacheKey, cached);
         }
+        // ソースファイルが更新されるとESのバージョンが変わるため、ノードIDとバージョンをキャッシュキーとする
+        this.sourceCacheKeys.put(sourceName, cacheKey + "#" + cached.getVersion());
+        return cached.getSource();
+    }
 
+    /**
+     * ソースファイルの中身を読み込む.
+     * @param sourceNodeId ソースファイルのノードID
+     * @return ソースファイルの中身
+     * @throws DcEngineException DcEngineException
+     */
+    private String readSource(String sourceNodeId) throws DcEngineException {
         BinaryDataAccessor binaryAccessor = new BinaryDataAccessor(DcEngineConfig.getBlobStoreRoot(), this.index
                 .substring(DcEngineConfig.getUnitPrefix().length() + 1), DcEngineConfig.getFsyncEnabled());
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
@@ -193,13 +245,21 @@ public class ServiceResourceSourceManager implements ISourceManager {
     }
 
     /**
-     * サービス名からスクリプトファイルのパスを取得する.
+     * コンパイル済みスクリプトのキャッシュキーを取得.
+     * @param sourceName ソースファイル名
+     * @return キャッシュキー / null ソースファイルを取得していないとき
+     */
+    public String getSourceCacheKey(String sourceName) {
+        return this.sourceCacheKeys.get(sourceName);
+    }
+
+    /**
+     * サービス設定からサービス名とスクリプトファイルのパスの対応を取得する.
      * @param xml XML文字列
-     * @param svcName サービス名
-     * @return スクリプトファイルパス
+     * @return サービス名とスクリプトファイルパスの対応
      */
-    private String getScriptName(final String xml, final String svcName) {
-        String scriptName = "";
+    private Map<String, String> getRoutes(final String xml) {
+        Map<String, String> routes = new HashMap<String, String>();
         DocumentBuilder builder = null;
         try {
             DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
@@ -216,9 +276,7 @@ public class ServiceResourceSourceManager implements ISourceManager {
             NodeList nl = doc.getElementsByTagNameNS("*", "path");
             for (int i = 0; i < nl.getLength(); i++) {
                 NamedNodeMap nnm = nl.item(i).getAttributes();
-                if (nnm.getNamedItem("name").getNodeValue().equals(svcName)) {
-                    scriptName = nnm.getNamedItem("src").getNodeValue();
-                }
+                routes.put(nnm.getNamedItem("name").getNodeValue(), nnm.getNamedItem("src").getNodeValue());
             }
         } catch (SAXException e) {
             throw new RuntimeException(e);
@@ -226,7 +284,7 @@ public class ServiceResourceSourceManager implements ISourceManager {
             throw new RuntimeException(e);
         }
 
-        return scriptName;
+        return routes;
     }
 
     /**
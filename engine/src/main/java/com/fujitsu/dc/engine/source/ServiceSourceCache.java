@@ -0,0 +1,241 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.engine.source;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.fujitsu.dc.engine.utils.DcEngineConfig;
+
+/**
+ * サービスコレクションの情報とスクリプトソースをプロセス内にキャッシュするクラス.
+ * 有効期限内はElasticsearchへの問合せを行わない。有効期限を過ぎた場合は呼び出し側で再取得し、
+ * 設定XMLやソースファイルのバージョンが変わっていなければ解析結果や読込済みのソースを再利用する。
+ */
+public class ServiceSourceCache {
+
+    private static final long MILLISECONDS_PER_SECOND = 1000L;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private static long expiresInMillis = DcEngineConfig.getSourceCacheExpiresIn() * MILLISECONDS_PER_SECOND;
+
+    private static Map<String, CollectionEntry> collectionCache = createCacheMap(
+            DcEngineConfig.getSourceCacheMaxEntries());
+
+    private static Map<String, SourceEntry> sourceCache = createCacheMap(
+            DcEngineConfig.getSourceCacheMaxEntries());
+
+    private ServiceSourceCache() {
+    }
+
+    /**
+     * @return キャッシュを使用する場合はtrue
+     */
+    public static boolean isEnabled() {
+        return expiresInMillis > 0;
+    }
+
+    /**
+     * サービスコレクションの情報をキャッシュから取得する.
+     * 有効期限を過ぎたエントリも返却するため、呼び出し側でisExpiredを確認すること.
+     * @param key サービスコレクションのキー
+     * @return サービスコレクションの情報 / null キャッシュが存在しないとき
+     */
+    public static CollectionEntry getCollection(String key) {
+        if (!isEnabled()) {
+            return null;
+        }
+        synchronized (collectionCache) {
+            return collectionCache.get(key);
+        }
+    }
+
+    /**
+     * サービスコレクションの情報をキャッシュする.
+     * @param key サービスコレクションのキー
+     * @param entry サービスコレクションの情報
+     */
+    public static void cacheCollection(String key, CollectionEntry entry) {
+        if (!isEnabled()) {
+            return;
+        }
+        synchronized (collectionCache) {
+            collectionCache.put(key, entry);
+        }
+    }
+
+    /**
+     * ソースをキャッシュから取得する.
+     * 有効期限を過ぎたエントリも返却するため、呼び出し側でisExpiredを確認すること.
+     * @param key ソースのキー
+     * @return ソース / null キャッシュが存在しないとき
+     */
+    public static SourceEntry getSource(String key) {
+        if (!isEnabled()) {
+            return null;
+        }
+        synchronized (sourceCache) {
+            return sourceCache.get(key);
+        }
+    }
+
+    /**
+     * ソースをキャッシュする.
+     * @param key ソースのキー
+     * @param entry ソース
+     */
+    public static void cacheSource(String key, SourceEntry entry) {
+        if (!isEnabled()) {
+            return;
+        }
+        synchronized (sourceCache) {
+            sourceCache.put(key, entry);
+        }
+    }
+
+    /**
+     * キャッシュをすべて破棄する.
+     */
+    public static void clear() {
+        synchronized (collectionCache) {
+            collectionCache.clear();
+        }
+        synchronized (sourceCache) {
+            sourceCache.clear();
+        }
+    }
+
+    private static long newExpiresAt() {
+        return System.currentTimeMillis() + expiresInMillis;
+    }
+
+    private static <V> Map<String, V> createCacheMap(final int maxEntries) {
+        return new LinkedHashMap<String, V>(INITIAL_CAPACITY, LOAD_FACTOR, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * キャッシュするサービスコレクションの情報.
+     */
+    public static final class CollectionEntry {
+        private final long expiresAt;
+        private final String serviceXml;
+        private final String serviceSubject;
+        private final Map<String, String> routes;
+        private final Map<?, ?> sourceInfo;
+
+        /**
+         * コンストラクタ.
+         * @param serviceXml サービスコレクションのサービス設定XML
+         * @param serviceSubject サービスサブジェクト
+         * @param routes サービス名とスクリプトファイル名の対応
+         * @param sourceInfo スクリプトファイル名とノードIDの対応
+         */
+        public CollectionEntry(String serviceXml, String serviceSubject, Map<String, String> routes,
+                Map<?, ?> sourceInfo) {
+            this.expiresAt = newExpiresAt();
+            this.serviceXml = serviceXml;
+            this.serviceSubject = serviceSubject;
+            this.routes = Collections.unmodifiableMap(routes);
+            this.sourceInfo = Collections.unmodifiableMap(sourceInfo);
+        }
+
+        /**
+         * @return 有効期限を過ぎている場合はtrue
+         */
+        public boolean isExpired() {
+            return System.currentTimeMillis() >= this.expiresAt;
+        }
+
+        /**
+         * @return サービス設定XML
+         */
+        public String getServiceXml() {
+            return this.serviceXml;
+        }
+
+        /**
+         * @return サービスサブジェクト
+         */
+        public String getServiceSubject() {
+            return this.serviceSubject;
+        }
+
+        /**
+         * @return サービス名とスクリプトファイル名の対応
+         */
+        public Map<String, String> getRoutes() {
+            return this.routes;
+        }
+
+        /**
+         * @return スクリプトファイル名とノードIDの対応
+         */
+        public Map<?, ?> getSourceInfo() {
+            return this.sourceInfo;
+        }
+    }
+
+    /**
+     * キャッシュするスクリプトソース.
+     */
+    public static final class SourceEntry {
+        private final long expiresAt;
+        private final long version;
+        private final String source;
+
+        /**
+         * コンストラクタ.
+         * @param version ソースファイルのESのバージョン
+         * @param source ソースファイルの中身
+         */
+        public SourceEntry(long version, String source) {
+            this.expiresAt = newExpiresAt();
+            this.version = version;
+            this.source = source;
+        }
+
+        /**
+         * @return 有効期限を過ぎている場合はtrue
+         */
+        public boolean isExpired() {
+            return System.currentTimeMillis() >= this.expiresAt;
+        }
+
+        /**
+         * @return ソースファイルのESのバージョン
+         */
+        public long getVersion() {
+            return this.version;
+        }
+
+        /**
+         * @return ソースファイルの中身
+         */
+        public String getSource() {
+            return this.source;
+        }
+    }
+}
@@ -108,6 +108,61 @@ public class DcEngineConfig {
         public static final String FSYNC_ENABLED = KEY_ROOT + "binaryData.fsync.enabled";
     }
 
+    /**
+     * ユーザースクリプトからCoreへのアクセス(DAO)の設定.
+     */
+    public static final class Dao {
+        /**
+         * Coreへの接続をプールして再利用するか否か(true:有効(デフォルト) false:無効).
+         */
+        public static final String CONNECTION_POOLING_ENABLED = KEY_ROOT + "dao.connectionPooling.enabled";
+
+        /**
+         * 接続プールの最大接続数.
+         */
+        public static final String CONNECTION_MAX_TOTAL = KEY_ROOT + "dao.connection.maxTotal";
+
+        /**
+         * 接続プールのホスト毎の最大接続数.
+         */
+        public static final String CONNECTION_MAX_PER_ROUTE = KEY_ROOT + "dao.connection.maxPerRoute";
+
+        /**
+         * 同一ホストに配置されたCoreに直接アクセスする際のURL(例: http://localhost:8080/dc1-core/). 空の場合は基底URLにアクセスする.
+         */
+        public static final String DIRECT_URL = KEY_ROOT + "dao.directUrl";
+    }
+
+    /**
+     * スクリプト実行環境の設定.
+     */
+    public static final class Script {
+        /**
+         * 標準オブジェクトとExtensionクラスを定義したスコープを全リクエストで共有するか否か(true:有効(デフォルト) false:無効).
+         */
+        public static final String SHARED_SCOPE_ENABLED = KEY_ROOT + "script.sharedScope.enabled";
+
+        /**
+         * コンパイル済みユーザースクリプトのキャッシュの最大保持件数. 0の場合はキャッシュしない.
+         */
+        public static final String CACHE_MAX_ENTRIES = KEY_ROOT + "script.cache.maxEntries";
+
+        /**
+         * スクリプトの最適化レベル(-1:インタプリタ 0～9:コンパイル).
+         */
+        public static final String OPTIMIZATION_LEVEL = KEY_ROOT + "script.optimizationLevel";
+
+        /**
+         * サービスコレクション情報とスクリプトソースのキャッシュの有効期限(秒). 0の場合はキャッシュしない.
+         */
+        public static final String SOURCE_CACHE_EXPIRES_IN = KEY_ROOT + "script.sourceCache.expiresin";
+
+        /**
+         * サービスコレクション情報とスクリプトソースのキャッシュの最大保持件数.
+         */
+        public static final String SOURCE_CACHE_MAX_ENTRIES = KEY_ROOT + "script.sourceCache.maxEntries";
+    }
+
     /**
      * Blobの設定.
      */
@@ -450,4 +505,71 @@ public class DcEngineConfig {
     public static boolean getFsyncEnabled() {
         return Boolean.parseBoolean(get(BinaryData.FSYNC_ENABLED));
     }
+
+    /**
+     * @return Coreへの接続をプールする場合はtrue
+     */
+    public static boolean isDaoConnectionPoolingEnabled() {
+        return Boolean.parseBoolean(get(Dao.CONNECTION_POOLING_ENABLED));
+    }
+
+    /**
+     * @return Coreへの接続プールの最大接続数
+     */
+    public static int getDaoConnectionMaxTotal() {
+        return Integer.parseInt(get(Dao.CONNECTION_MAX_TOTAL));
+    }
+
+    /**
+     * @return Coreへの接続プールのホスト毎の最大接続数
+     */
+    public static int getDaoConnectionMaxPerRoute() {
+        return Integer.parseInt(get(Dao.CONNECTION_MAX_PER_ROUTE));
+    }
+
+    /**
+     * @return Coreに直接アクセスする際のURL. 設定されていない場合はnull
+     */
+    public static String getDaoDirectUrl() {
+        String value = get(Dao.DIRECT_URL);
+        if (value == null || value.length() == 0) {
+            return null;
+        }
+        return value;
+    }
+
+    /**
+     * @return 共有スコープを使用する場合はtrue
+     */
+    public static boolean isSharedScopeEnabled() {
+        return Boolean.parseBoolean(get(Script.SHARED_SCOPE_ENABLED));
+    }
+
+    /**
+     * @return コンパイル済みユーザースクリプトのキャッシュの最大保持件数
+     */
+    public static int getScriptCacheMaxEntries() {
+        return Integer.parseInt(get(Script.CACHE_MAX_ENTRIES));
+    }
+
+    /**
+     * @return スクリプトの最適化レベル
+     */
+    public static int getScriptOptimizationLevel() {
+        return Integer.parseInt(get(Script.OPTIMIZATION_LEVEL));
+    }
+
+    /**
+     * @return サービスコレクション情報とスクリプトソースのキャッシュの有効期限(秒)
+     */
+    public static int getSourceCacheExpiresIn() {
+        return Integer.parseInt(get(Script.SOURCE_CACHE_EXPIRES_IN));
+    }
+
+    /**
+     * @return サービスコレクション情報とスクリプトソースのキャッシュの最大保持件数
+     */
+    public static int getSourceCacheMaxEntries() {
+        return Integer.parseInt(get(Script.SOURCE_CACHE_MAX_ENTRIES));
+    }
 }
@@ -54,6 +54,16 @@ public class EsClient {
         internalClient.closeConnection();
     }
 
+    /**
+     * バルクリクエストの集約の閾値を設定する.
+     * @param maxActions 1つのバルクに集約するアクション数の閾値
+     * @param maxBytes 1つのバルクに集約するバイト数の閾値
+     * @param flushInterval 集約中のリクエストを送信するまでの待機時間の閾値(ms)
+     */
+    public void setBulkThresholds(int maxActions, long maxBytes, long flushInterval) {
+        internalClient.setBulkThresholds(maxActions, maxBytes, flushInterval);
+    }
+
     /**
      * EsClientEventの種類.
      */
@@ -21,6 +21,8 @@ import java.util.Map;
 
 import com.fujitsu.dc.common.es.query.DcQueryBuilder;
 import com.fujitsu.dc.common.es.response.DcBulkResponse;
+import com.fujitsu.dc.common.es.response.DcBulkResponseFuture;
+import com.fujitsu.dc.common.es.response.DcMultiGetResponse;
 import com.fujitsu.dc.common.es.response.DcMultiSearchResponse;
 import com.fujitsu.dc.common.es.response.DcSearchResponse;
 
@@ -87,6 +89,15 @@ public interface EsIndex {
      */
     DcMultiSearchResponse multiSearch(String routingId, List<Map<String, Object>> queryList);
 
+    /**
+     * 指定したタイプのドキュメントを一括取得.
+     * @param routingId routingId
+     * @param type タイプ名
+     * @param ids ドキュメントのIDのリスト
+     * @return ES応答. インデックスが存在しない場合はnull
+     */
+    DcMultiGetResponse multiGet(String routingId, String type, List<String> ids);
+
     /**
      * クエリ指定の一括削除機能.
      * @param routingId routingId
@@ -103,6 +114,28 @@ public interface EsIndex {
      */
     DcBulkResponse bulkRequest(final String routingId, final List<EsBulkRequest> datas, boolean isWriteLog);
 
+    /**
+     * リフレッシュ方針を指定してバルクでドキュメントを登録/更新/削除する.
+     * @param routingId routingId
+     * @param datas バルクドキュメント
+     * @param isWriteLog リクエスト情報のログ出力有無
+     * @param refreshPolicy リフレッシュ方針
+     * @return ES応答
+     */
+    DcBulkResponse bulkRequest(final String routingId, final List<EsBulkRequest> datas, boolean isWriteLog,
+            EsRefreshPolicy refreshPolicy);
+
+    /**
+     * リフレッシュ方針を指定して非同期でバルクでドキュメントを登録/更新/削除する.
+     * @param routingId routingId
+     * @param datas バルクドキュメント
+     * @param isWriteLog リクエスト情報のログ出力有無
+     * @param refreshPolicy リフレッシュ方針
+     * @return 非同期応答
+     */
+    DcBulkResponseFuture asyncBulkRequest(final String routingId, final List<EsBulkRequest> datas,
+            boolean isWriteLog, EsRefreshPolicy refreshPolicy);
+
     /**
      * インデックスの設定を更新する.
      * @param index インデックス名
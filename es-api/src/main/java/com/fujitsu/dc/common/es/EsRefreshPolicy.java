@@ -0,0 +1,32 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.common.es;
+
+/**
+ * バルクリクエスト完了時のリフレッシュ方針.
+ */
+public enum EsRefreshPolicy {
+    /** リフレッシュしない. 登録内容はインデックスのrefresh_interval経過後に検索可能となる. */
+    NONE,
+    /**
+     * 登録内容が検索可能となるまで待ってから応答する.
+     * 同時に集約されたバルクリクエストに対してインデックスのリフレッシュを1回だけ行い、その完了を待つ。
+     */
+    WAIT_FOR,
+    /** バルクリクエストごとに即時リフレッシュする(従来の動作). */
+    IMMEDIATE;
+}
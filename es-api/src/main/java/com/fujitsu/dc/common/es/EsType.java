@@ -23,6 +23,7 @@ import com.fujitsu.dc.common.es.response.DcDeleteResponse;
 import com.fujitsu.dc.common.es.response.DcGetResponse;
 import com.fujitsu.dc.common.es.response.DcIndexResponse;
 import com.fujitsu.dc.common.es.response.DcMappingMetaData;
+import com.fujitsu.dc.common.es.response.DcMultiGetResponse;
 import com.fujitsu.dc.common.es.response.DcMultiSearchResponse;
 import com.fujitsu.dc.common.es.response.DcPutMappingResponse;
 import com.fujitsu.dc.common.es.response.DcSearchResponse;
@@ -59,6 +60,22 @@ public interface EsType {
      */
     DcGetResponse get(String id, boolean realtime);
 
+    /**
+     * realtimeモード指定でドキュメントを一括取得する.
+     * @param ids ドキュメントのIDのリスト
+     * @return 応答
+     */
+    DcMultiGetResponse multiGet(List<String> ids);
+
+    /**
+     * ドキュメントの一括取得.
+     * 存在しないドキュメントは応答に含まれない。
+     * @param ids ドキュメントのIDのリスト
+     * @param realtime リアルタイムモードなら真
+     * @return 応答. インデックスが存在しない場合はnull
+     */
+    DcMultiGetResponse multiGet(List<String> ids, boolean realtime);
+
     /**
      * ドキュメント新規作成.
      * @param data ドキュメント
@@ -0,0 +1,319 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.common.es.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.elasticsearch.ElasticsearchIllegalStateException;
+import org.elasticsearch.action.ActionFuture;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.admin.indices.refresh.RefreshRequest;
+import org.elasticsearch.action.admin.indices.refresh.RefreshResponse;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.support.PlainActionFuture;
+import org.elasticsearch.client.Client;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fujitsu.dc.common.es.EsRefreshPolicy;
+
+/**
+ * 同一インデックスへの並行するバルクリクエストを集約して非同期にElasticsearchへ送信するクラス.
+ * インデックスごとに送信中のバルクがない場合は即時に送信し、送信中に受け付けたリクエストは送信完了後に1つのバルクにまとめて送信する。
+ * 集約中のリクエストがアクション数またはバイト数の閾値を超えた場合、または待機時間の閾値を超えた場合は送信完了を待たずに送信する。
+ * 集約したバルクに対するリフレッシュは、リクエストごとではなくバルクごとに1回だけ行う.
+ */
+class EsBulkProcessor {
+
+    static Logger log = LoggerFactory.getLogger(EsBulkProcessor.class);
+
+    /** 1つのバルクに集約するアクション数の閾値のデフォルト値. */
+    static final int DEFAULT_MAX_ACTIONS = 1000;
+    /** 1つのバルクに集約するバイト数の閾値のデフォルト値(5MB). */
+    static final long DEFAULT_MAX_BYTES = 5L * 1024L * 1024L;
+    /** 集約中のリクエストを送信するまでの待機時間の閾値のデフォルト値(ms). */
+    static final long DEFAULT_FLUSH_INTERVAL = 100L;
+
+    private final Client client;
+    private volatile int maxActions = DEFAULT_MAX_ACTIONS;
+    private volatile long maxBytes = DEFAULT_MAX_BYTES;
+    private volatile long flushInterval = DEFAULT_FLUSH_INTERVAL;
+
+    private final Map<String, IndexQueue> queues = new HashMap<String, IndexQueue>();
+    private ScheduledExecutorService scheduler;
+    private boolean closed = false;
+
+    /**
+     * コンストラクタ.
+     * @param client ESクライアント
+     */
+    EsBulkProcessor(Client client) {
+        this.client = client;
+    }
+
+    /**
+     * 集約の閾値を設定する.
+     * @param argMaxActions 1つのバルクに集約するアクション数の閾値
+     * @param argMaxBytes 1つのバルクに集約するバイト数の閾値
+     * @param argFlushInterval 集約中のリクエストを送信するまでの待機時間の閾値(ms). 0以下の場合は送信中のバルクの完了まで待機する
+     */
+    void setThresholds(int argMaxActions, long argMaxBytes, long argFlushInterval) {
+        this.maxActions = argMaxActions;
+        this.maxBytes = argMaxBytes;
+        this.flushInterval = argFlushInterval;
+    }
+
+    /**
+     * バルクリクエストを受け付ける.
+     * @param index インデックス名
+     * @param request バルクリクエスト
+     * @param refreshPolicy リフレッシュ方針
+     * @return 非同期応答. 受け付けたリクエスト分のアイテムのみを含む
+     */
+    ActionFuture<BulkResponse> submit(String index, BulkRequest request, EsRefreshPolicy refreshPolicy) {
+        PendingBulk pending = new PendingBulk(request, refreshPolicy);
+        if (request.numberOfActions() == 0) {
+            pending.future.onResponse(new BulkResponse(new BulkItemResponse[0], 0));
+            return pending.future;
+        }
+        IndexQueue queue = getQueue(index);
+        List<PendingBulk> batch = null;
+        synchronized (queue) {
+            queue.add(pending);
+            if (queue.inFlight == 0 || queue.actions >= maxActions || queue.bytes >= maxBytes) {
+                batch = queue.drain();
+            } else if (!queue.flushScheduled && flushInterval > 0) {
+                queue.flushScheduled = true;
+                schedule(queue);
+            }
+        }
+        if (batch != null) {
+            send(queue, batch);
+        }
+        return pending.future;
+    }
+
+    /**
+     * 送信待ちのリクエストをすべて失敗させ、以降のリクエストを受け付けないようにする.
+     */
+    void close() {
+        List<PendingBulk> rejected = new ArrayList<PendingBulk>();
+        synchronized (this) {
+            closed = true;
+            if (scheduler != null) {
+                scheduler.shutdownNow();
+                scheduler = null;
+            }
+        }
+        synchronized (queues) {
+            for (IndexQueue queue : queues.values()) {
+                synchronized (queue) {
+                    rejected.addAll(queue.pending);
+                    queue.pending.clear();
+                }
+            }
+            queues.clear();
+        }
+        for (PendingBulk pending : rejected) {
+            pending.future.onFailure(new ElasticsearchIllegalStateException("bulk processor is closed"));
+        }
+    }
+
+    private IndexQueue getQueue(String index) {
+        synchronized (queues) {
+            IndexQueue queue = queues.get(index);
+            if (queue == null) {
+                queue = new IndexQueue(index);
+                queues.put(index, queue);
+            }
+            return queue;
+        }
+    }
+
+    private synchronized void schedule(final IndexQueue queue) {
+        if (closed) {
+            return;
+        }
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "es-bulk-flush");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                List<PendingBulk> batch;
+                synchronized (queue) {
+                    queue.flushScheduled = false;
+                    if (queue.pending.isEmpty()) {
+                        return;
+                    }
+                    batch = queue.drain();
+                }
+                send(queue, batch);
+            }
+        }, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    private void send(final IndexQueue queue, final List<PendingBulk> batch) {
+        BulkRequest bulkRequest = new BulkRequest();
+        boolean immediate = false;
+        boolean waitFor = false;
+        for (PendingBulk pending : batch) {
+            bulkRequest.add(pending.request.requests());
+            immediate |= pending.refreshPolicy == EsRefreshPolicy.IMMEDIATE;
+            waitFor |= pending.refreshPolicy == EsRefreshPolicy.WAIT_FOR;
+        }
+        bulkRequest.refresh(immediate);
+        // 即時リフレッシュを要求したリクエストが含まれる場合は、バルク内のリフレッシュで検索可能となっている
+        final boolean refreshAfterBulk = waitFor && !immediate;
+        try {
+            client.bulk(bulkRequest, new ActionListener<BulkResponse>() {
+                @Override
+                public void onResponse(BulkResponse response) {
+                    if (refreshAfterBulk) {
+                        refreshAndComplete(queue, batch, response);
+                    } else {
+                        complete(queue, batch, response, null);
+                    }
+                }
+
+                @Override
+                public void onFailure(Throwable e) {
+                    complete(queue, batch, null, e);
+                }
+            });
+        } catch (RuntimeException e) {
+            complete(queue, batch, null, e);
+        }
+    }
+
+    private void refreshAndComplete(final IndexQueue queue, final List<PendingBulk> batch,
+            final BulkResponse response) {
+        try {
+            client.admin().indices().refresh(new RefreshRequest(queue.index), new ActionListener<RefreshResponse>() {
+                @Override
+                public void onResponse(RefreshResponse refreshResponse) {
+                    complete(queue, batch, response, null);
+                }
+
+                @Override
+                public void onFailure(Throwable e) {
+                    // 登録自体は成功しているため、リフレッシュの失敗はログ出力のみとする
+                    log.warn("Failed to refresh index after bulk: " + queue.index, e);
+                    complete(queue, batch, response, null);
+                }
+            });
+        } catch (RuntimeException e) {
+            log.warn("Failed to refresh index after bulk: " + queue.index, e);
+            complete(queue, batch, response, null);
+        }
+    }
+
+    private void complete(IndexQueue queue, List<PendingBulk> batch, BulkResponse response, Throwable error) {
+        if (error != null) {
+            for (PendingBulk pending : batch) {
+                pending.future.onFailure(error);
+            }
+        } else {
+            // 集約したバルクの応答を、リクエストごとの応答に分割する
+            BulkItemResponse[] items = response.getItems();
+            int offset = 0;
+            for (PendingBulk pending : batch) {
+                int count = pending.request.numberOfActions();
+                BulkItemResponse[] slice = Arrays.copyOfRange(items, offset, offset + count);
+                offset += count;
+                pending.future.onResponse(new BulkResponse(slice, response.getTookInMillis()));
+            }
+        }
+
+        List<PendingBulk> next = null;
+        synchronized (queue) {
+            queue.inFlight--;
+            if (queue.inFlight == 0 && !queue.pending.isEmpty()) {
+                next = queue.drain();
+            }
+        }
+        if (next != null) {
+            send(queue, next);
+        }
+    }
+
+    /**
+     * インデックスごとの送信待ちリクエスト.
+     */
+    static final class IndexQueue {
+        private final String index;
+        private final List<PendingBulk> pending = new ArrayList<PendingBulk>();
+        private int actions = 0;
+        private long bytes = 0;
+        private int inFlight = 0;
+        private boolean flushScheduled = false;
+
+        IndexQueue(String index) {
+            this.index = index;
+        }
+
+        void add(PendingBulk bulk) {
+            pending.add(bulk);
+            actions += bulk.request.numberOfActions();
+            bytes += bulk.request.estimatedSizeInBytes();
+        }
+
+        /**
+         * 送信待ちのリクエストをすべて取り出し、送信中のバルク数を加算する.
+         * @return 送信待ちのリクエスト
+         */
+        List<PendingBulk> drain() {
+            List<PendingBulk> batch = new ArrayList<PendingBulk>(pending);
+            pending.clear();
+            actions = 0;
+            bytes = 0;
+            inFlight++;
+            return batch;
+        }
+    }
+
+    /**
+     * 送信待ちのバルクリクエスト.
+     */
+    static final class PendingBulk {
+        private final BulkRequest request;
+        private final EsRefreshPolicy refreshPolicy;
+        private final PlainActionFuture<BulkResponse> future = PlainActionFuture.newFuture();
+
+        PendingBulk(BulkRequest request, EsRefreshPolicy refreshPolicy) {
+            this.request = request;
+            this.refreshPolicy = refreshPolicy;
+        }
+    }
+}
@@ -45,8 +45,11 @@ import org.slf4j.LoggerFactory;
 
 import com.fujitsu.dc.common.es.EsBulkRequest;
 import com.fujitsu.dc.common.es.EsIndex;
+import com.fujitsu.dc.common.es.EsRefreshPolicy;
 import com.fujitsu.dc.common.es.query.DcQueryBuilder;
 import com.fujitsu.dc.common.es.response.DcBulkResponse;
+import com.fujitsu.dc.common.es.response.DcBulkResponseFuture;
+import com.fujitsu.dc.common.es.response.DcMultiGetResponse;
 import com.fujitsu.dc.common.es.response.DcMultiSearchResponse;
 import com.fujitsu.dc.common.es.response.DcSearchResponse;
 import com.fujitsu.dc.common.es.response.EsClientException;
@@ -152,6 +155,12 @@ public class EsIndexImpl extends EsTranslogHandler implements EsIndex {
         return DcMultiSearchResponseImpl.getInstance(request.doRequest());
     }
 
+    @Override
+    public DcMultiGetResponse multiGet(String routingId, String type, List<String> ids) {
+        // リトライはタイプ単位のmulti getの実装に委譲する
+        return new EsTypeImpl(this.name, type, routingId, retryCount, retryInterval, esClient).multiGet(ids);
+    }
+
     @Override
     public void deleteByQuery(String routingId, DcQueryBuilder queryBuilder) {
         QueryBuilder deleteQuery = getQueryBuilder(queryBuilder);
@@ -186,6 +195,33 @@ public class EsIndexImpl extends EsTranslogHandler implements EsIndex {
         return DcBulkResponseImpl.getInstance(request.doRequest());
     }
 
+    @Override
+    public DcBulkResponse bulkRequest(final String routingId, final List<EsBulkRequest> datas, boolean isWriteLog,
+            EsRefreshPolicy refreshPolicy) {
+        return asyncBulkRequest(routingId, datas, isWriteLog, refreshPolicy).get();
+    }
+
+    @Override
+    public DcBulkResponseFuture asyncBulkRequest(final String routingId, final List<EsBulkRequest> datas,
+            boolean isWriteLog, EsRefreshPolicy refreshPolicy) {
+        final ActionFuture<BulkResponse> future = esClient.asyncBulkRequest(this.name, routingId, datas, isWriteLog,
+                refreshPolicy);
+        final BulkRetryableRequest request = new BulkRetryableRequest(retryCount, retryInterval,
+                this.name, routingId, datas, isWriteLog, refreshPolicy, future);
+        return new DcBulkResponseFuture() {
+            @Override
+            public boolean isDone() {
+                return future.isDone();
+            }
+
+            @Override
+            public DcBulkResponse get() {
+                // 必要な場合、メソッド内でリトライが行われる.
+                return DcBulkResponseImpl.getInstance(request.doRequest());
+            }
+        };
+    }
+
     /**
      * インデックスの設定を更新する.
      * @param index インデックス名
@@ -582,19 +618,39 @@ public class EsIndexImpl extends EsTranslogHandler implements EsIndex {
         String routingId;
         List<EsBulkRequest> datas;
         boolean isWriteLog;
+        EsRefreshPolicy refreshPolicy;
+        ActionFuture<BulkResponse> submitted;
 
         public BulkRetryableRequest(int retryCount, long retryInterval,
                 String argName, String argRoutingId, List<EsBulkRequest> argDatas, boolean isWriteLog) {
+            this(retryCount, retryInterval, argName, argRoutingId, argDatas, isWriteLog, null, null);
+        }
+
+        /**
+         * 送信済みの非同期バルクリクエストの応答を待つ場合のコンストラクタ.
+         * 初回は送信済みの応答を待ち、リトライ時は同じリフレッシュ方針で再送信する.
+         */
+        public BulkRetryableRequest(int retryCount, long retryInterval,
+                String argName, String argRoutingId, List<EsBulkRequest> argDatas, boolean isWriteLog,
+                EsRefreshPolicy argRefreshPolicy, ActionFuture<BulkResponse> argSubmitted) {
             super(retryCount, retryInterval, "EsIndex bulkCreate");
             this.name = argName;
             this.routingId = argRoutingId;
             this.datas = argDatas;
             this.isWriteLog = isWriteLog;
+            this.refreshPolicy = argRefreshPolicy;
+            this.submitted = argSubmitted;
         }
 
         @Override
         BulkResponse doProcess() {
-            return esClient.bulkRequest(name, routingId, datas, isWriteLog);
+            if (refreshPolicy == null) {
+                return esClient.bulkRequest(name, routingId, datas, isWriteLog);
+            }
+            if (firstAttempt && submitted != null) {
+                return submitted.actionGet();
+            }
+            return esClient.bulkRequest(name, routingId, datas, isWriteLog, refreshPolicy);
         }
 
         @Override
@@ -25,6 +25,8 @@ import org.elasticsearch.action.ListenableActionFuture;
 import org.elasticsearch.action.admin.indices.mapping.put.PutMappingResponse;
 import org.elasticsearch.action.delete.DeleteResponse;
 import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetResponse;
 import org.elasticsearch.action.index.IndexRequest.OpType;
 import org.elasticsearch.action.index.IndexResponse;
 import org.elasticsearch.action.search.MultiSearchResponse;
@@ -45,6 +47,7 @@ import com.fujitsu.dc.common.es.response.DcDeleteResponse;
 import com.fujitsu.dc.common.es.response.DcGetResponse;
 import com.fujitsu.dc.common.es.response.DcIndexResponse;
 import com.fujitsu.dc.common.es.response.DcMappingMetaData;
+import com.fujitsu.dc.common.es.response.DcMultiGetResponse;
 import com.fujitsu.dc.common.es.response.DcMultiSearchResponse;
 import com.fujitsu.dc.common.es.response.DcPutMappingResponse;
 import com.fujitsu.dc.common.es.response.DcSearchResponse;
@@ -54,6 +57,7 @@ import com.fujitsu.dc.common.es.response.impl.DcDeleteResponseImpl;
 import com.fujitsu.dc.common.es.response.impl.DcGetResponseImpl;
 import com.fujitsu.dc.common.es.response.impl.DcIndexResponseImpl;
 import com.fujitsu.dc.common.es.response.impl.DcMappingMetaDataImpl;
+import com.fujitsu.dc.common.es.response.impl.DcMultiGetResponseImpl;
 import com.fujitsu.dc.common.es.response.impl.DcMultiSearchResponseImpl;
 import com.fujitsu.dc.common.es.response.impl.DcNullSearchResponse;
 import com.fujitsu.dc.common.es.response.impl.DcPutMappingResponseImpl;
@@ -138,6 +142,23 @@ public class EsTypeImpl extends EsTranslogHandler implements EsType {
         return DcGetResponseImpl.getInstance(request.doRequest());
     }
 
+    @Override
+    public DcMultiGetResponse multiGet(final List<String> ids) {
+        // Realtime指定はtrue, // 高速さよりも一貫性を取得
+        return this.multiGet(ids, true);
+    }
+
+    @Override
+    public DcMultiGetResponse multiGet(final List<String> ids, final boolean realtime) {
+        if (ids.isEmpty()) {
+            // ESはドキュメント指定のないmulti getをエラーとするため、空の応答を返す
+            return DcMultiGetResponseImpl.getInstance(new MultiGetResponse(new MultiGetItemResponse[0]));
+        }
+        MultiGetRetryableRequest request = new MultiGetRetryableRequest(retryCount, retryInterval, ids, realtime);
+        // 必要な場合、メソッド内でリトライが行われる.
+        return DcMultiGetResponseImpl.getInstance(request.doRequest());
+    }
+
     @Override
     @SuppressWarnings("rawtypes")
     public DcIndexResponse create(final Map data) {
@@ -246,6 +267,70 @@ public class EsTypeImpl extends EsTranslogHandler implements EsType {
         }
     }
 
+    /**
+     * Elasticsearchへの multi get処理実装.
+     * ドキュメント単位の失敗は応答に含まれて返却されるため、インデックスが存在しない場合を除いてリトライの対象とする.
+     */
+    class MultiGetRetryableRequest extends AbstractRetryableEsRequest<MultiGetResponse> {
+        List<String> ids;
+        boolean realTime;
+
+        public MultiGetRetryableRequest(int retryCount, long retryInterval,
+                List<String> argIds, boolean argRealTime) {
+            super(retryCount, retryInterval, "ES multiGet");
+            ids = argIds;
+            realTime = argRealTime;
+        }
+
+        @Override
+        MultiGetResponse doProcess() {
+            MultiGetResponse response = asyncMultiGet(ids, realTime).actionGet();
+            for (MultiGetItemResponse item : response.getResponses()) {
+                if (item.isFailed() && !isIndexMissing(item.getFailure())) {
+                    throw new MultiGetItemFailedException(item.getFailure());
+                }
+            }
+            return response;
+        }
+
+        private boolean isIndexMissing(MultiGetResponse.Failure failure) {
+            return failure.getMessage() != null
+                    && failure.getMessage().contains(IndexMissingException.class.getSimpleName());
+        }
+
+        @Override
+        boolean isParticularError(ElasticsearchException e) {
+            return e instanceof IndexMissingException || e.getCause() instanceof IndexMissingException
+                    || e instanceof MultiGetItemFailedException;
+        }
+
+        @Override
+        MultiGetResponse onParticularError(ElasticsearchException e) {
+            if (e instanceof IndexMissingException || e.getCause() instanceof IndexMissingException) {
+                return null;
+            }
+            if (e instanceof MultiGetItemFailedException) {
+                throw new ContinueRetry();
+            }
+            throw e;
+        }
+
+        @Override
+        EsTranslogHandler getEsTranslogHandler() {
+            return requestOwner;
+        }
+    }
+
+    /**
+     * multi getでドキュメント単位の取得に失敗した場合の例外.
+     */
+    @SuppressWarnings("serial")
+    static class MultiGetItemFailedException extends ElasticsearchException {
+        MultiGetItemFailedException(MultiGetResponse.Failure failure) {
+            super("multi get failed. id=" + failure.getId() + ": " + failure.getMessage());
+        }
+    }
+
     /**
      * Elasticsearchへの create処理実装.
      */
@@ -552,6 +637,16 @@ public class EsTypeImpl extends EsTranslogHandler implements EsType {
         return esClient.asyncGet(this.indexName, this.name, id, this.routingId, realtime);
     }
 
+    /**
+     * 非同期でドキュメントを一括取得.
+     * @param ids ドキュメントのIDのリスト
+     * @param realtime リアルタイムモードなら真
+     * @return 非同期応答
+     */
+    public ActionFuture<MultiGetResponse> asyncMultiGet(final List<String> ids, final boolean realtime) {
+        return esClient.asyncMultiGet(this.indexName, this.name, ids, this.routingId, realtime);
+    }
+
     /**
      * 非同期でドキュメントを検索.
      * @param builder クエリ情報
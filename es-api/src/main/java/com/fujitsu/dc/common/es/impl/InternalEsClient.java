@@ -47,6 +47,8 @@ import org.elasticsearch.action.delete.DeleteResponse;
 import org.elasticsearch.action.deletebyquery.DeleteByQueryResponse;
 import org.elasticsearch.action.get.GetRequest;
 import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.get.MultiGetResponse;
 import org.elasticsearch.action.index.IndexRequest.OpType;
 import org.elasticsearch.action.index.IndexRequestBuilder;
 import org.elasticsearch.action.index.IndexResponse;
@@ -72,6 +74,7 @@ import org.json.simple.JSONObject;
 import com.fujitsu.dc.common.es.EsBulkRequest;
 import com.fujitsu.dc.common.es.EsClient.Event;
 import com.fujitsu.dc.common.es.EsClient.EventHandler;
+import com.fujitsu.dc.common.es.EsRefreshPolicy;
 import com.fujitsu.dc.common.es.EsRequestLogInfo;
 import com.fujitsu.dc.common.es.response.DcBulkResponse;
 import com.fujitsu.dc.common.es.response.DcRefreshResponse;
@@ -88,6 +91,7 @@ public class InternalEsClient {
 
     private TransportClient esTransportClient;
     private boolean routingFlag;
+    private EsBulkProcessor bulkProcessor;
 
     /**
      * デフォルトコンストラクタ.
@@ -120,6 +124,12 @@ public class InternalEsClient {
      * ESとのコネクションを一度明示的に閉じる.
      */
     public void closeConnection() {
+        synchronized (this) {
+            if (bulkProcessor != null) {
+                bulkProcessor.close();
+                bulkProcessor = null;
+            }
+        }
         if (esTransportClient == null) {
             return;
         }
@@ -357,6 +367,31 @@ public class InternalEsClient {
         return ret;
     }
 
+    /**
+     * 非同期で複数のドキュメントを一括取得.
+     * @param index インデックス名
+     * @param type タイプ名
+     * @param ids ドキュメントのIDのリスト
+     * @param routingId routingId
+     * @param realtime リアルタイムモードなら真
+     * @return 非同期応答
+     */
+    public ActionFuture<MultiGetResponse> asyncMultiGet(String index, String type, List<String> ids,
+            String routingId, boolean realtime) {
+        MultiGetRequest req = new MultiGetRequest();
+        for (String id : ids) {
+            MultiGetRequest.Item item = new MultiGetRequest.Item(index, type, id);
+            if (routingFlag) {
+                item.routing(routingId);
+            }
+            req.add(item);
+        }
+        req.realtime(realtime);
+        ActionFuture<MultiGetResponse> ret = esTransportClient.multiGet(req);
+        this.fireEvent(Event.afterRequest, index, type, null, ids.toString(), "MultiGet");
+        return ret;
+    }
+
     /**
      * 非同期でドキュメントを検索.
      * @param index インデックス名
@@ -627,10 +662,73 @@ public class InternalEsClient {
      * @param isWriteLog リクエスト情報のログ出力有無
      * @return ES応答
      */
-    @SuppressWarnings("unchecked")
     public BulkResponse bulkRequest(String index, String routingId, List<EsBulkRequest> datas, boolean isWriteLog) {
-        BulkRequestBuilder bulkRequest = esTransportClient.prepareBulk();
         List<Map<String, Object>> bulkList = new ArrayList<Map<String, Object>>();
+        BulkRequestBuilder bulkRequest = prepareBulkRequest(index, routingId, datas, bulkList);
+        BulkResponse ret = bulkRequest.setRefresh(true).execute().actionGet();
+        if (isWriteLog) {
+            fireBulkRequestEvent(index, bulkList);
+        }
+        return ret;
+    }
+
+    /**
+     * リフレッシュ方針を指定してバルクでドキュメントを登録/更新/削除.
+     * 同一インデックスへの並行するバルクリクエストは集約して送信される.
+     * @param index インデックス名
+     * @param routingId routingId
+     * @param datas バルクドキュメント
+     * @param isWriteLog リクエスト情報のログ出力有無
+     * @param refreshPolicy リフレッシュ方針
+     * @return ES応答
+     */
+    public BulkResponse bulkRequest(String index, String routingId, List<EsBulkRequest> datas, boolean isWriteLog,
+            EsRefreshPolicy refreshPolicy) {
+        return asyncBulkRequest(index, routingId, datas, isWriteLog, refreshPolicy).actionGet();
+    }
+
+    /**
+     * リフレッシュ方針を指定して非同期でバルクでドキュメントを登録/更新/削除.
+     * 同一インデックスへの並行するバルクリクエストは集約して送信される.
+     * @param index インデックス名
+     * @param routingId routingId
+     * @param datas バルクドキュメント
+     * @param isWriteLog リクエスト情報のログ出力有無
+     * @param refreshPolicy リフレッシュ方針
+     * @return 非同期応答
+     */
+    public ActionFuture<BulkResponse> asyncBulkRequest(String index, String routingId, List<EsBulkRequest> datas,
+            boolean isWriteLog, EsRefreshPolicy refreshPolicy) {
+        List<Map<String, Object>> bulkList = new ArrayList<Map<String, Object>>();
+        BulkRequestBuilder bulkRequest = prepareBulkRequest(index, routingId, datas, bulkList);
+        ActionFuture<BulkResponse> ret = getBulkProcessor().submit(index, bulkRequest.request(), refreshPolicy);
+        if (isWriteLog) {
+            fireBulkRequestEvent(index, bulkList);
+        }
+        return ret;
+    }
+
+    /**
+     * バルクリクエストの集約の閾値を設定する.
+     * @param maxActions 1つのバルクに集約するアクション数の閾値
+     * @param maxBytes 1つのバルクに集約するバイト数の閾値
+     * @param flushInterval 集約中のリクエストを送信するまでの待機時間の閾値(ms)
+     */
+    public void setBulkThresholds(int maxActions, long maxBytes, long flushInterval) {
+        getBulkProcessor().setThresholds(maxActions, maxBytes, flushInterval);
+    }
+
+    private synchronized EsBulkProcessor getBulkProcessor() {
+        if (bulkProcessor == null) {
+            bulkProcessor = new EsBulkProcessor(esTransportClient);
+        }
+        return bulkProcessor;
+    }
+
+    @SuppressWarnings("unchecked")
+    private BulkRequestBuilder prepareBulkRequest(String index, String routingId, List<EsBulkRequest> datas,
+            List<Map<String, Object>> bulkList) {
+        BulkRequestBuilder bulkRequest = esTransportClient.prepareBulk();
         for (EsBulkRequest data : datas) {
 
             if (EsBulkRequest.BULK_REQUEST_TYPE.DELETE == data.getRequestType()) {
@@ -645,14 +743,13 @@ public class InternalEsClient {
             logData.put("source", data.getSource());
             bulkList.add(logData);
         }
+        return bulkRequest;
+    }
+
+    private void fireBulkRequestEvent(String index, List<Map<String, Object>> bulkList) {
         Map<String, Object> debug = new HashMap<String, Object>();
         debug.put("bulk", bulkList);
-
-        BulkResponse ret = bulkRequest.setRefresh(true).execute().actionGet();
-        if (isWriteLog) {
-            this.fireEvent(Event.afterRequest, index, "none", "none", debug, "bulkRequest");
-        }
-        return ret;
+        this.fireEvent(Event.afterRequest, index, "none", "none", debug, "bulkRequest");
     }
 
     /**
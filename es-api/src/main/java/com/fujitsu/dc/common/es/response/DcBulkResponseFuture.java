@@ -0,0 +1,36 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.common.es.response;
+
+/**
+ * 非同期バルクリクエストの応答のinterface.
+ */
+public interface DcBulkResponseFuture {
+
+    /**
+     * バルクリクエストが完了しているかを返す.
+     * @return 完了している場合はtrue
+     */
+    boolean isDone();
+
+    /**
+     * バルクリクエストの完了を待ってES応答を返す.
+     * 送信に失敗した場合は同期のバルクリクエストと同様にリトライを行う。
+     * @return ES応答
+     */
+    DcBulkResponse get();
+}
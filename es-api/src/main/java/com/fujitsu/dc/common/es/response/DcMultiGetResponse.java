@@ -0,0 +1,37 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.common.es.response;
+
+/**
+ * DcMultiGetResponseのinterface.
+ */
+public interface DcMultiGetResponse extends DcActionResponse {
+
+    /**
+     * 取得したドキュメントを要求したIDの順に返す.
+     * @return 取得結果の配列. 取得に失敗した要素はnull
+     */
+    DcGetResponse[] getResponses();
+
+    /**
+     * 指定したIDのドキュメントを返す.
+     * @param id ドキュメントのID
+     * @return 取得結果. ドキュメントが存在しない場合はnull
+     */
+    DcGetResponse getResponse(String id);
+
+}
@@ -0,0 +1,91 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.common.es.response.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetResponse;
+
+import com.fujitsu.dc.common.es.response.DcGetResponse;
+import com.fujitsu.dc.common.es.response.DcMultiGetResponse;
+
+/**
+ * MultiGetResponseのラッパークラス.
+ */
+public class DcMultiGetResponseImpl extends DcActionResponseImpl implements DcMultiGetResponse {
+    private DcGetResponse[] responses;
+    private Map<String, DcGetResponse> responseMap;
+
+    /**
+     * .
+     */
+    private DcMultiGetResponseImpl() {
+        super(null);
+        throw new IllegalStateException();
+    }
+
+    /**
+     * MultiGetResponseを指定してインスタンスを生成する.
+     * @param response ESからのレスポンスオブジェクト
+     */
+    private DcMultiGetResponseImpl(MultiGetResponse response) {
+        super(response);
+        MultiGetItemResponse[] items = response.getResponses();
+        this.responses = new DcGetResponse[items.length];
+        this.responseMap = new HashMap<String, DcGetResponse>();
+        for (int i = 0; i < items.length; i++) {
+            if (items[i].isFailed()) {
+                continue;
+            }
+            DcGetResponse getResponse = DcGetResponseImpl.getInstance(items[i].getResponse());
+            this.responses[i] = getResponse;
+            if (getResponse != null && getResponse.exists()) {
+                this.responseMap.put(getResponse.getId(), getResponse);
+            }
+        }
+    }
+
+    /**
+     * .
+     * @param response .
+     * @return .
+     */
+    public static DcMultiGetResponse getInstance(MultiGetResponse response) {
+        if (response == null) {
+            return null;
+        }
+        return new DcMultiGetResponseImpl(response);
+    }
+
+    /* (non-Javadoc)
+     * @see com.fujitsu.dc.common.es.response.DcMultiGetResponse#getResponses()
+     */
+    @Override
+    public DcGetResponse[] getResponses() {
+        return this.responses.clone();
+    }
+
+    /* (non-Javadoc)
+     * @see com.fujitsu.dc.common.es.response.DcMultiGetResponse#getResponse(java.lang.String)
+     */
+    @Override
+    public DcGetResponse getResponse(String id) {
+        return this.responseMap.get(id);
+    }
+}
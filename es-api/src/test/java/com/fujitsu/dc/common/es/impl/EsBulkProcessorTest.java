@@ -0,0 +1,172 @@
+/**
+ * personium.io
+ * Copyright 2014 FUJITSU LIMITED
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fujitsu.dc.common.es.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.elasticsearch.ElasticsearchIllegalStateException;
+import org.elasticsearch.action.ActionFuture;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.client.Client;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.fujitsu.dc.common.es.EsRefreshPolicy;
+
+/**
+ * EsBulkProcessorのユニットテスト.
+ */
+public class EsBulkProcessorTest {
+
+    private List<BulkRequest> sentRequests;
+    private List<ActionListener<BulkResponse>> listeners;
+    private EsBulkProcessor processor;
+
+    /**
+     * 送信されたバルクリクエストを記録し、応答はテストから返すモックを準備する.
+     */
+    @SuppressWarnings("unchecked")
+    @Before
+    public void setUp() {
+        sentRequests = new ArrayList<BulkRequest>();
+        listeners = new ArrayList<ActionListener<BulkResponse>>();
+        Client client = Mockito.mock(Client.class);
+        Mockito.doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                sentRequests.add((BulkRequest) invocation.getArguments()[0]);
+                listeners.add((ActionListener<BulkResponse>) invocation.getArguments()[1]);
+                return null;
+            }
+        }).when(client).bulk(Mockito.any(BulkRequest.class), Mockito.any(ActionListener.class));
+        processor = new EsBulkProcessor(client);
+        processor.setThresholds(100, Long.MAX_VALUE, 0);
+    }
+
+    /**
+     * 送信中に受け付けたリクエストは送信完了後に1つのバルクにまとめて送信されること.
+     */
+    @Test
+    public void 送信中に受け付けたリクエストは送信完了後に1つのバルクにまとめて送信されること() {
+        ActionFuture<BulkResponse> first = processor.submit("index", createRequest("a"), EsRefreshPolicy.NONE);
+        ActionFuture<BulkResponse> second = processor.submit("index", createRequest("b", "c"), EsRefreshPolicy.NONE);
+        ActionFuture<BulkResponse> third = processor.submit("index", createRequest("d"), EsRefreshPolicy.NONE);
+        assertEquals(1, sentRequests.size());
+
+        respond(0);
+        assertEquals(1, first.actionGet().getItems().length);
+        assertEquals("a", first.actionGet().getItems()[0].getId());
+        assertFalse(second.isDone());
+        assertEquals(2, sentRequests.size());
+        assertEquals(3, sentRequests.get(1).numberOfActions());
+
+        respond(1);
+        BulkItemResponse[] secondItems = second.actionGet().getItems();
+        assertEquals(2, secondItems.length);
+        assertEquals("b", secondItems[0].getId());
+        assertEquals("c", secondItems[1].getId());
+        BulkItemResponse[] thirdItems = third.actionGet().getItems();
+        assertEquals(1, thirdItems.length);
+        assertEquals("d", thirdItems[0].getId());
+    }
+
+    /**
+     * 集約中のアクション数が閾値に達した場合は送信完了を待たずに送信されること.
+     */
+    @Test
+    public void 集約中のアクション数が閾値に達した場合は送信完了を待たずに送信されること() {
+        processor.setThresholds(2, Long.MAX_VALUE, 0);
+        processor.submit("index", createRequest("a"), EsRefreshPolicy.NONE);
+        processor.submit("index", createRequest("b"), EsRefreshPolicy.NONE);
+        assertEquals(1, sentRequests.size());
+        processor.submit("index", createRequest("c"), EsRefreshPolicy.NONE);
+        assertEquals(2, sentRequests.size());
+        assertEquals(2, sentRequests.get(1).numberOfActions());
+    }
+
+    /**
+     * インデックスが異なるリクエストは集約されないこと.
+     */
+    @Test
+    public void インデックスが異なるリクエストは集約されないこと() {
+        processor.submit("index1", createRequest("a"), EsRefreshPolicy.NONE);
+        processor.submit("index2", createRequest("b"), EsRefreshPolicy.NONE);
+        assertEquals(2, sentRequests.size());
+    }
+
+    /**
+     * 即時リフレッシュを要求したリクエストを含むバルクのみリフレッシュ指定で送信されること.
+     */
+    @Test
+    public void 即時リフレッシュを要求したリクエストを含むバルクのみリフレッシュ指定で送信されること() {
+        processor.submit("index", createRequest("a"), EsRefreshPolicy.NONE);
+        processor.submit("index", createRequest("b"), EsRefreshPolicy.NONE);
+        processor.submit("index", createRequest("c"), EsRefreshPolicy.IMMEDIATE);
+        assertFalse(sentRequests.get(0).refresh());
+
+        respond(0);
+        assertTrue(sentRequests.get(1).refresh());
+    }
+
+    /**
+     * 送信に失敗した場合は集約したすべてのリクエストが失敗となること.
+     */
+    @Test(expected = ElasticsearchIllegalStateException.class)
+    public void 送信に失敗した場合は集約したすべてのリクエストが失敗となること() {
+        processor.submit("index", createRequest("a"), EsRefreshPolicy.NONE);
+        ActionFuture<BulkResponse> second = processor.submit("index", createRequest("b"), EsRefreshPolicy.NONE);
+        ActionFuture<BulkResponse> third = processor.submit("index", createRequest("c"), EsRefreshPolicy.NONE);
+        respond(0);
+
+        listeners.get(1).onFailure(new ElasticsearchIllegalStateException("test"));
+        assertTrue(second.isDone());
+        assertTrue(third.isDone());
+        third.actionGet();
+    }
+
+    private BulkRequest createRequest(String... ids) {
+        BulkRequest request = new BulkRequest();
+        for (String id : ids) {
+            request.add(new IndexRequest("index", "type", id).source("{}"));
+        }
+        return request;
+    }
+
+    private void respond(int sent) {
+        List<ActionRequest> requests = sentRequests.get(sent).requests();
+        BulkItemResponse[] items = new BulkItemResponse[requests.size()];
+        for (int i = 0; i < items.length; i++) {
+            String id = ((IndexRequest) requests.get(i)).id();
+            items[i] = new BulkItemResponse(i, "index", new IndexResponse("index", "type", id, 1, true));
+        }
+        listeners.get(sent).onResponse(new BulkResponse(items, 1));
+    }
+}
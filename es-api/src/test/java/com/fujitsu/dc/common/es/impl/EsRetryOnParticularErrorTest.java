@@ -16,12 +16,18 @@
  */
 package com.fujitsu.dc.common.es.impl;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.Arrays;
 import java.util.Map;
 
+import org.elasticsearch.action.ActionFuture;
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetResponse;
 import org.elasticsearch.action.index.IndexRequest.OpType;
 import org.elasticsearch.action.search.SearchPhaseExecutionException;
 import org.elasticsearch.common.settings.SettingsException;
@@ -37,6 +43,7 @@ import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
 import com.fujitsu.dc.common.es.response.DcGetResponse;
+import com.fujitsu.dc.common.es.response.DcMultiGetResponse;
 import com.fujitsu.dc.common.es.response.DcSearchResponse;
 import com.fujitsu.dc.common.es.response.EsClientException;
 import com.fujitsu.dc.common.es.response.EsClientException.DcSearchPhaseExecutionException;
@@ -86,6 +93,84 @@ public class EsRetryOnParticularErrorTest {
         assertNull(result);
     }
 
+    /**
+     * EsType_multiGetメソッドで初回にIndexMissingExceptionが投げられた場合のテスト.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void EsType_multiGetメソッドで初回にIndexMissingExceptionが投げられた場合のテスト() {
+        PowerMockito.mockStatic(EsClientException.class);
+        EsTypeImpl esTypeObject = Mockito.spy(new EsTypeImpl("dummy", "Test", "TestRoutingId", 0, 0, null));
+
+        // EsType#asyncMultiGet()が呼ばれた場合に、IndexMissingExceptionを投げる。
+        // 送出する例外オブジェクトのモックを作成
+        IndexMissingException toBeThrown = Mockito.mock(IndexMissingException.class);
+        Mockito.doThrow(toBeThrown)
+                .when(esTypeObject)
+                .asyncMultiGet(Mockito.anyList(), Mockito.anyBoolean());
+        // メソッド呼び出し
+        DcMultiGetResponse result = esTypeObject.multiGet(Arrays.asList("dummyId"), true);
+        assertNull(result);
+    }
+
+    /**
+     * EsType_multiGetメソッドでインデックスが存在しないことによるドキュメント単位の失敗が返された場合のテスト.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void EsType_multiGetメソッドでインデックスが存在しないことによるドキュメント単位の失敗が返された場合のテスト() {
+        EsTypeImpl esTypeObject = Mockito.spy(new EsTypeImpl("dummy", "Test", "TestRoutingId", 0, 0, null));
+
+        // EsType#asyncMultiGet()が呼ばれた場合に、IndexMissingExceptionによる失敗を含む応答を返す。
+        ActionFuture<MultiGetResponse> future = createMultiGetFuture("IndexMissingException[[dummy] missing]");
+        Mockito.doReturn(future)
+                .when(esTypeObject)
+                .asyncMultiGet(Mockito.anyList(), Mockito.anyBoolean());
+        // メソッド呼び出し
+        DcMultiGetResponse result = esTypeObject.multiGet(Arrays.asList("dummyId"), true);
+        assertNotNull(result);
+        assertEquals(1, result.getResponses().length);
+        assertNull(result.getResponses()[0]);
+        assertNull(result.getResponse("dummyId"));
+        Mockito.verify(esTypeObject, Mockito.times(1)).asyncMultiGet(Mockito.anyList(), Mockito.anyBoolean());
+    }
+
+    /**
+     * EsType_multiGetメソッドでドキュメント単位の失敗が返された場合にリトライされることのテスト.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void EsType_multiGetメソッドでドキュメント単位の失敗が返された場合にリトライされることのテスト() {
+        EsTypeImpl esTypeObject = Mockito.spy(new EsTypeImpl("dummy", "Test", "TestRoutingId", 1, 0, null));
+
+        // EsType#asyncMultiGet()が呼ばれた場合に、初回はシャードの失敗を含む応答を返し、2回目は正常な応答を返す。
+        ActionFuture<MultiGetResponse> failed = createMultiGetFuture("NoShardAvailableActionException[[dummy][0]]");
+        ActionFuture<MultiGetResponse> succeeded = createMultiGetFuture(null);
+        Mockito.doReturn(failed).doReturn(succeeded)
+                .when(esTypeObject)
+                .asyncMultiGet(Mockito.anyList(), Mockito.anyBoolean());
+        // メソッド呼び出し
+        DcMultiGetResponse result = esTypeObject.multiGet(Arrays.asList("dummyId"), true);
+        assertNotNull(result);
+        assertEquals(1, result.getResponses().length);
+        Mockito.verify(esTypeObject, Mockito.times(2)).asyncMultiGet(Mockito.anyList(), Mockito.anyBoolean());
+    }
+
+    @SuppressWarnings("unchecked")
+    private ActionFuture<MultiGetResponse> createMultiGetFuture(String failureMessage) {
+        MultiGetItemResponse item;
+        if (failureMessage != null) {
+            item = new MultiGetItemResponse(null,
+                    new MultiGetResponse.Failure("dummy", "Test", "dummyId", failureMessage));
+        } else {
+            item = new MultiGetItemResponse(null, null);
+        }
+        MultiGetResponse response = new MultiGetResponse(new MultiGetItemResponse[] {item});
+        ActionFuture<MultiGetResponse> future = Mockito.mock(ActionFuture.class);
+        Mockito.when(future.actionGet()).thenReturn(response);
+        return future;
+    }
+
     /**
      * EsType_updateメソッドで初回にIndexMissingExceptionが投げられた場合のテスト.
      */